@@ -3,17 +3,26 @@ package online.devliving.rxfirebasesample;
 import android.app.AlertDialog;
 import android.app.ProgressDialog;
 import android.content.DialogInterface;
+import android.os.Bundle;
 import android.support.v4.app.ActivityCompat;
 import android.widget.Toast;
 
-import com.google.firebase.auth.FirebaseAuth;
 import com.trello.rxlifecycle.components.support.RxAppCompatActivity;
 
+import online.devliving.rxfirebase.RxAuth;
+import online.devliving.rxfirebasesample.helpers.FirebaseHelper;
+
 
 public class BaseActivity extends RxAppCompatActivity {
 
     private ProgressDialog mProgressDialog;
 
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        FirebaseHelper.installDiskCache(getApplicationContext());
+    }
+
     public void showProgressDialog() {
         showProgressDialog("loading...");
     }
@@ -28,6 +37,12 @@ public class BaseActivity extends RxAppCompatActivity {
         mProgressDialog.show();
     }
 
+    public void setProgressMessage(String message) {
+        if (mProgressDialog != null) {
+            mProgressDialog.setMessage(message);
+        }
+    }
+
     public void hideProgressDialog() {
         if (mProgressDialog != null && mProgressDialog.isShowing()) {
             mProgressDialog.dismiss();
@@ -43,7 +58,7 @@ public class BaseActivity extends RxAppCompatActivity {
     }
 
     public String getUid() {
-        return FirebaseAuth.getInstance().getCurrentUser().getUid();
+        return RxAuth.requireUid();
     }
 
     void requestPermission(final String permission, String rationale, final int requestCode) {
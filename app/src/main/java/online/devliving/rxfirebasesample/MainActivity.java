@@ -26,11 +26,12 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 
-import com.google.firebase.auth.FirebaseAuth;
 
+import online.devliving.rxfirebase.RxAuth;
 import online.devliving.rxfirebasesample.fragment.MyPostsFragment;
 import online.devliving.rxfirebasesample.fragment.MyTopPostsFragment;
 import online.devliving.rxfirebasesample.fragment.RecentPostsFragment;
+import online.devliving.rxfirebasesample.helpers.FirebaseHelper;
 
 public class  MainActivity extends BaseActivity {
 
@@ -94,7 +95,9 @@ public class  MainActivity extends BaseActivity {
     public boolean onOptionsItemSelected(MenuItem item) {
         int i = item.getItemId();
         if (i == R.id.action_logout) {
-            FirebaseAuth.getInstance().signOut();
+            RxAuth.signOut();
+            FirebaseHelper.clearDiskCache();
+            FirebaseHelper.getPrefetcher().reset();
             startActivity(new Intent(this, SignInActivity.class));
             finish();
             return true;
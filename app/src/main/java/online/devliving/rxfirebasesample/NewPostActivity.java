@@ -1,19 +1,26 @@
 package online.devliving.rxfirebasesample;
 
+import android.content.ClipData;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.support.design.widget.FloatingActionButton;
 import android.text.TextUtils;
 import android.view.View;
+import android.widget.Button;
 import android.widget.EditText;
 
 import com.google.firebase.database.DatabaseException;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
-import online.devliving.rxfirebase.RxGMSTask;
 import online.devliving.rxfirebase.RxQuery;
 import online.devliving.rxfirebasesample.helpers.FirebaseHelper;
 import online.devliving.rxfirebasesample.models.Post;
@@ -26,6 +33,7 @@ public class NewPostActivity extends BaseActivity {
 
     private static final String TAG = "NewPostActivity";
     private static final String REQUIRED = "Required";
+    private static final int PICK_IMAGES = 109;
 
     // [START declare_database_ref]
     private DatabaseReference mDatabase;
@@ -34,6 +42,9 @@ public class NewPostActivity extends BaseActivity {
     private EditText mTitleField;
     private EditText mBodyField;
     private FloatingActionButton mSubmitButton;
+    private Button mAddImagesButton;
+
+    private final ArrayList<Uri> mImages = new ArrayList<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -47,6 +58,7 @@ public class NewPostActivity extends BaseActivity {
         mTitleField = (EditText) findViewById(R.id.field_title);
         mBodyField = (EditText) findViewById(R.id.field_body);
         mSubmitButton = (FloatingActionButton) findViewById(R.id.fab_submit_post);
+        mAddImagesButton = (Button) findViewById(R.id.button_add_images);
 
         mSubmitButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -54,6 +66,41 @@ public class NewPostActivity extends BaseActivity {
                 submitPost();
             }
         });
+
+        mAddImagesButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showImagePicker();
+            }
+        });
+    }
+
+    void showImagePicker(){
+        Intent getIntent = new Intent(Intent.ACTION_GET_CONTENT);
+        getIntent.setType("image/*");
+        // ignored before API 18, one image is picked at a time there
+        getIntent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+
+        startActivityForResult(Intent.createChooser(getIntent, "Select Images"), PICK_IMAGES);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+
+        if(requestCode == PICK_IMAGES && resultCode == RESULT_OK && data != null){
+            ClipData picked = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ? data.getClipData() : null;
+            if(picked != null){
+                for(int i = 0; i < picked.getItemCount(); i++){
+                    mImages.add(picked.getItemAt(i).getUri());
+                }
+            }
+            else if(data.getData() != null){
+                mImages.add(data.getData());
+            }
+
+            mAddImagesButton.setText(String.format(Locale.US, "Add images (%d)", mImages.size()));
+        }
     }
 
     private void submitPost() {
@@ -76,6 +123,7 @@ public class NewPostActivity extends BaseActivity {
         setEditingEnabled(false);
         showProgressDialog("posting...");
 
+        List<Uri> images = new ArrayList<>(mImages);
         FirebaseHelper.getUser()
                 .flatMap(user -> {
                     if(user == null) return Observable.error(new DatabaseException("user not found"));
@@ -84,6 +132,8 @@ public class NewPostActivity extends BaseActivity {
                         return writeNewPost(uid, user.username, title, body);
                     }
                 })
+                // the post is saved first, its images are linked to it once they are all uploaded
+                .flatMap(key -> images.isEmpty() ? Observable.just(key) : uploadImages(key, images))
                 .compose(bindToLifecycle())
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
@@ -109,11 +159,19 @@ public class NewPostActivity extends BaseActivity {
         }
     }
 
-    private Observable<Map<String, Object>> buildPostData(String userId, String username, String title, String body){
+    private Observable<String> uploadImages(String postKey, List<Uri> images){
+        return FirebaseHelper.uploadPostImages(this, postKey, images)
+                .observeOn(AndroidSchedulers.mainThread())
+                .doOnNext(progress -> setProgressMessage(String.format(Locale.US, "uploading images... %d%%",
+                        (int) (progress.getFraction() * 100))))
+                .filter(progress -> progress.isCompleted())
+                .map(progress -> postKey);
+    }
+
+    private Observable<Map<String, Object>> buildPostData(String key, String userId, String username, String title, String body){
         return Observable.fromCallable(() -> {
             // Create new post at /user-posts/$userid/$postid and at
             // /posts/$postid simultaneously
-            String key = mDatabase.child("posts").push().getKey();
             Post post = new Post(userId, username, title, body);
             Map<String, Object> postValues = post.toMap();
 
@@ -125,9 +183,11 @@ public class NewPostActivity extends BaseActivity {
         });
     }
     // [START write_fan_out]
-    private Observable<Void> writeNewPost(String userId, String username, String title, String body) {
-        return buildPostData(userId, username, title, body)
-                .flatMap(dataMap -> RxGMSTask.just(mDatabase.updateChildren(dataMap)));
+    private Observable<String> writeNewPost(String userId, String username, String title, String body) {
+        String key = mDatabase.child("posts").push().getKey();
+        return buildPostData(key, userId, username, title, body)
+                .flatMap(dataMap -> FirebaseHelper.getWriteBatcher().updateChildren(mDatabase, dataMap))
+                .map(done -> key);
     }
     // [END write_fan_out]
 }
@@ -3,7 +3,6 @@ package online.devliving.rxfirebasesample;
 import android.os.Bundle;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,15 +10,12 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
 
-import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseException;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
-
-import java.util.ArrayList;
-import java.util.List;
 
+import online.devliving.rxfirebase.FIRKeyedList;
+import online.devliving.rxfirebase.FIRListChange;
 import online.devliving.rxfirebase.RxGMSTask;
 import online.devliving.rxfirebase.RxQuery;
 import online.devliving.rxfirebasesample.helpers.FirebaseHelper;
@@ -84,9 +80,11 @@ public class PostDetailActivity extends BaseActivity implements View.OnClickList
         super.onStart();
 
         //load post data
-        RxQuery.observeValue(mPostReference, Post.class)
+        // Firebase calls back on the main thread, map the snapshots on a background thread instead
+        // the post saved last time is shown until the server answers
+        RxQuery.observeValueCached(mPostReference, Post.class, Schedulers.computation())
+                .map(cached -> cached.getValue())
                 .compose(bindToLifecycle())
-                .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(post -> {
                     mAuthorView.setText(post.author);
@@ -145,13 +143,12 @@ public class PostDetailActivity extends BaseActivity implements View.OnClickList
         }
     }
 
-    private static class CommentAdapter extends RecyclerView.Adapter<CommentViewHolder> {
+    private static class CommentAdapter extends RecyclerView.Adapter<CommentViewHolder> implements FIRListChange.Callback {
 
         private BaseActivity mActivity;
         private DatabaseReference mDatabaseReference;
 
-        private List<String> mCommentIds = new ArrayList<>();
-        private List<Comment> mComments = new ArrayList<>();
+        private FIRKeyedList<Comment> mComments = new FIRKeyedList<>();
 
         public CommentAdapter(final BaseActivity activity, DatabaseReference ref) {
             mActivity = activity;
@@ -159,63 +156,38 @@ public class PostDetailActivity extends BaseActivity implements View.OnClickList
         }
 
         public void startObservingComments(){
-            RxQuery.observeChild(mDatabaseReference)
+            mComments.clear();
+            notifyDataSetChanged();
+
+            RxQuery.observeList(mDatabaseReference, Comment.class)
                     .compose(mActivity.bindToLifecycle())
-                    .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread())
-                    .subscribe(event -> handleEvent(event),
+                    .subscribe(change -> {
+                                // Update the displayed list, then the RecyclerView
+                                mComments.apply(change);
+                                change.dispatchTo(this);
+                            },
                             error -> mActivity.showToast("Error: " + error.getMessage()));
         }
 
-        private void handleEvent(RxQuery.FIRChildEvent<DataSnapshot> event){
-            switch (event.getType()){
-                case ADD:
-                    // A new comment has been added, add it to the displayed list
-                    Comment comment = event.getValue().getValue(Comment.class);
-
-                    // Update RecyclerView
-                    mCommentIds.add(event.getValue().getKey());
-                    mComments.add(comment);
-                    notifyItemInserted(mComments.size() - 1);
-                    break;
-
-                case CHANGE:
-                    // A comment has changed, use the key to determine if we are displaying this
-                    // comment and if so displayed the changed comment.
-                    Comment newComment = event.getValue().getValue(Comment.class);
-                    String commentKey = event.getValue().getKey();
-
-                    int commentIndex = mCommentIds.indexOf(commentKey);
-                    if (commentIndex > -1) {
-                        // Replace with the new data
-                        mComments.set(commentIndex, newComment);
-
-                        // Update the RecyclerView
-                        notifyItemChanged(commentIndex);
-                    } else {
-                        Log.w(TAG, "onChildChanged:unknown_child:" + commentKey);
-                    }
-                    break;
-
-                case REMOVE:
-                    // A comment has changed, use the key to determine if we are displaying this
-                    // comment and if so remove it.
-                    commentKey = event.getValue().getKey();
-
-                    // [START_EXCLUDE]
-                    commentIndex = mCommentIds.indexOf(commentKey);
-                    if (commentIndex > -1) {
-                        // Remove data from the list
-                        mCommentIds.remove(commentIndex);
-                        mComments.remove(commentIndex);
-
-                        // Update the RecyclerView
-                        notifyItemRemoved(commentIndex);
-                    } else {
-                        Log.w(TAG, "onChildRemoved:unknown_child:" + commentKey);
-                    }
-                    break;
-            }
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(position, count);
         }
 
         @Override
@@ -17,6 +17,7 @@ import com.yalantis.ucrop.UCrop;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Locale;
 
 import online.devliving.rxfirebasesample.helpers.FirebaseHelper;
 import online.devliving.rxfirebasesample.models.User;
@@ -52,11 +53,15 @@ public class ProfileActivity extends BaseActivity {
     void reloadInfo(){
         showProgressDialog("loading...");
 
-        FirebaseHelper.getUser()
+        // the cached user is shown right away, the one from the server replaces it
+        FirebaseHelper.getUserCached()
                 .compose(bindToLifecycle())
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(user -> updateView(user),
+                .subscribe(user -> {
+                            hideProgressDialog();
+                            updateView(user.getValue());
+                        },
                         error -> {
                             hideProgressDialog();
                             showToast("Error: " + error.getMessage());
@@ -104,7 +109,8 @@ public class ProfileActivity extends BaseActivity {
 
     void changePropic(Uri imageUri){
         showProgressDialog("uploading...");
-        FirebaseHelper.changeProfilePhoto(imageUri)
+        FirebaseHelper.changeProfilePhoto(this, imageUri, progress -> runOnUiThread(() ->
+                        setProgressMessage(String.format(Locale.US, "uploading... %d%%", (int) (progress.getFraction() * 100)))))
                 .compose(bindToLifecycle())
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
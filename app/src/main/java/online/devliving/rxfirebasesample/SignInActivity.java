@@ -112,6 +112,9 @@ public class SignInActivity extends BaseActivity implements View.OnClickListener
     }
 
     private void gotoMainActivity(){
+        // the user is known, warm the hot reads while MainActivity starts
+        FirebaseHelper.getPrefetcher().start();
+
         // Go to MainActivity
         startActivity(new Intent(SignInActivity.this, MainActivity.class));
         finish();
@@ -10,20 +10,19 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import com.firebase.ui.database.FirebaseRecyclerAdapter;
-import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.MutableData;
 import com.google.firebase.database.Query;
-import com.google.firebase.database.Transaction;
 import com.trello.rxlifecycle.components.support.RxFragment;
 
+import online.devliving.rxfirebase.RxAuth;
+import online.devliving.rxfirebase.RxTransaction;
 import online.devliving.rxfirebasesample.PostDetailActivity;
 import online.devliving.rxfirebasesample.R;
+import online.devliving.rxfirebasesample.helpers.FirebaseHelper;
 import online.devliving.rxfirebasesample.models.Post;
 import online.devliving.rxfirebasesample.viewholder.PostViewHolder;
+import rx.android.schedulers.AndroidSchedulers;
 
 public abstract class PostListFragment extends RxFragment {
 
@@ -35,6 +34,7 @@ public abstract class PostListFragment extends RxFragment {
 
     private FirebaseRecyclerAdapter<Post, PostViewHolder> mAdapter;
     private RecyclerView mRecycler;
+    private View mProgress;
     private LinearLayoutManager mManager;
 
     public PostListFragment() {}
@@ -51,6 +51,7 @@ public abstract class PostListFragment extends RxFragment {
 
         mRecycler = (RecyclerView) rootView.findViewById(R.id.messages_list);
         mRecycler.setHasFixedSize(true);
+        mProgress = rootView.findViewById(R.id.progress_posts);
 
         return rootView;
     }
@@ -108,40 +109,29 @@ public abstract class PostListFragment extends RxFragment {
             }
         };
         mRecycler.setAdapter(mAdapter);
+
+        // the first page is read through the prefetcher, which usually read it at sign in already, so the
+        // adapter's listener starts from the cached data; getPrefetches() tells if the read was used
+        FirebaseHelper.getPrefetcher().observeRefSingle(postsQuery)
+                .compose(bindToLifecycle())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(firstPage -> mProgress.setVisibility(View.GONE),
+                        error -> {
+                            mProgress.setVisibility(View.GONE);
+                            Log.w(TAG, "loadPosts:onError", error);
+                        });
     }
 
     // [START post_stars_transaction]
     private void onStarClicked(DatabaseReference postRef) {
-        postRef.runTransaction(new Transaction.Handler() {
-            @Override
-            public Transaction.Result doTransaction(MutableData mutableData) {
-                Post p = mutableData.getValue(Post.class);
-                if (p == null) {
-                    return Transaction.success(mutableData);
-                }
-
-                if (p.stars.containsKey(getUid())) {
-                    // Unstar the post and remove self from stars
-                    p.starCount = p.starCount - 1;
-                    p.stars.remove(getUid());
-                } else {
-                    // Star the post and add self to stars
-                    p.starCount = p.starCount + 1;
-                    p.stars.put(getUid(), true);
-                }
-
-                // Set value and report transaction success
-                mutableData.setValue(p);
-                return Transaction.success(mutableData);
-            }
-
-            @Override
-            public void onComplete(DatabaseError databaseError, boolean b,
-                                   DataSnapshot dataSnapshot) {
-                // Transaction completed
-                Log.d(TAG, "postTransaction:onComplete:" + databaseError);
-            }
-        });
+        String uid = getUid();
+        if(uid == null) return;
+
+        // one transaction that only changes our star and the count, they can't drift apart
+        RxTransaction.toggleCounted(postRef, "stars/" + uid, "starCount")
+                .compose(bindToLifecycle())
+                .subscribe(starred -> Log.d(TAG, "postTransaction:onComplete:" + starred),
+                        error -> Log.w(TAG, "postTransaction:onError", error));
     }
     // [END post_stars_transaction]
 
@@ -153,8 +143,9 @@ public abstract class PostListFragment extends RxFragment {
         }
     }
 
+    // null once the user signed out, the list can still be showing
     public String getUid() {
-        return FirebaseAuth.getInstance().getCurrentUser().getUid();
+        return RxAuth.getUid();
     }
 
     public abstract Query getQuery(DatabaseReference databaseReference);
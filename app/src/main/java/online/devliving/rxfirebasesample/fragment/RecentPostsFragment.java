@@ -3,6 +3,8 @@ package online.devliving.rxfirebasesample.fragment;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.Query;
 
+import online.devliving.rxfirebasesample.helpers.FirebaseHelper;
+
 public class RecentPostsFragment extends PostListFragment {
 
     public RecentPostsFragment() {}
@@ -10,10 +12,8 @@ public class RecentPostsFragment extends PostListFragment {
     @Override
     public Query getQuery(DatabaseReference databaseReference) {
         // [START recent_posts_query]
-        // Last 100 posts, these are automatically the 100 most recent
-        // due to sorting by push() keys
-        Query recentPostsQuery = databaseReference.child("posts")
-                .limitToFirst(100);
+        // the same query the prefetcher reads at sign in
+        Query recentPostsQuery = FirebaseHelper.getRecentPostsQuery(databaseReference);
         // [END recent_posts_query]
 
         return recentPostsQuery;
@@ -1,33 +1,97 @@
 package online.devliving.rxfirebasesample.helpers;
 
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
 import android.net.Uri;
+import android.telephony.TelephonyManager;
 
-import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.auth.UserProfileChangeRequest;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
 import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageMetadata;
 import com.google.firebase.storage.StorageReference;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import online.devliving.rxfirebase.CachedValue;
+import online.devliving.rxfirebase.FIRBatchUploadProgress;
+import online.devliving.rxfirebase.FIRUploadProgress;
+import online.devliving.rxfirebase.ImageTransform;
+import online.devliving.rxfirebase.RxAuth;
+import online.devliving.rxfirebase.RxFirebasePrefetcher;
 import online.devliving.rxfirebase.RxGMSTask;
 import online.devliving.rxfirebase.RxQuery;
+import online.devliving.rxfirebase.RxStorage;
+import online.devliving.rxfirebase.RxWriteBatcher;
+import online.devliving.rxfirebase.SnapshotDiskCache;
 import online.devliving.rxfirebasesample.models.User;
 import rx.Observable;
+import rx.functions.Action1;
 
 /**
  * Created by Mehedi Hasan Khan <mehedi.mailing@gmail.com> on 6/12/17.
  */
 
 public final class FirebaseHelper {
+    private static final int PROFILE_PHOTO_SIZE_DP = 120;
+    private static final int PROFILE_PHOTO_QUALITY = 85;
+    private static final int POST_IMAGE_SIZE_PX = 1280;
+    private static final int POST_IMAGE_QUALITY = 85;
+
+    private static RxWriteBatcher writeBatcher;
+    private static RxFirebasePrefetcher prefetcher;
+
+    // read from the user cached by RxAuth, no lookup
     public static String getUid() {
-        return FirebaseAuth.getInstance().getCurrentUser().getUid();
+        return RxAuth.requireUid();
+    }
+
+    // writes issued close together go out as one multi-path update
+    public static synchronized RxWriteBatcher getWriteBatcher(){
+        if(writeBatcher == null) writeBatcher = RxWriteBatcher.create(FirebaseDatabase.getInstance().getReference());
+        return writeBatcher;
+    }
+
+    // cold starts show the last known values while the database connects
+    public static synchronized void installDiskCache(Context context){
+        if(RxQuery.getDiskCache() == null){
+            RxQuery.setDiskCache(SnapshotDiskCache.open(new File(context.getCacheDir(), "rxfirebase"), 2 * 1024 * 1024));
+        }
+    }
+
+    public static void clearDiskCache(){
+        SnapshotDiskCache cache = RxQuery.getDiskCache();
+        if(cache != null) cache.clear();
+    }
+
+    // reads the screens need first, started in parallel as soon as the user is signed in
+    public static synchronized RxFirebasePrefetcher getPrefetcher(){
+        if(prefetcher == null){
+            prefetcher = RxFirebasePrefetcher.create()
+                    .register("user", () -> FirebaseDatabase.getInstance().getReference().child("users").child(getUid()))
+                    // the first page of the feed, read by RecentPostsFragment
+                    .register("recent-posts", () -> getRecentPostsQuery(FirebaseDatabase.getInstance().getReference()));
+        }
+        return prefetcher;
+    }
+
+    // Last 100 posts, these are automatically the 100 most recent due to sorting by push() keys
+    public static Query getRecentPostsQuery(DatabaseReference root){
+        return root.child("posts").limitToFirst(100);
     }
 
     public static Observable<DatabaseReference> getUserRef(){
-        return Observable.just(FirebaseDatabase.getInstance())
-                .map(fireDB -> fireDB.getReference().child("users").child(getUid()));
+        // waits for a signed in user instead of failing while auth isn't ready
+        return RxAuth.observeSignedIn().first()
+                .map(user -> FirebaseDatabase.getInstance().getReference().child("users").child(user.getUid()));
     }
 
     public static Observable<Void> saveUser(FirebaseUser user){
@@ -40,33 +104,111 @@ public final class FirebaseHelper {
                 });
     }
 
+    // picks up the prefetched user if it is still fresh
     public static Observable<User> getUser(){
+        return getPrefetcher().observeSingleValue("user", User.class);
+    }
+
+    // the cached user first if there is one, then the user from the server
+    public static Observable<CachedValue<User>> getUserCached(){
         return getUserRef()
-                .flatMap(userRef -> RxQuery.observeSingleValue(userRef, User.class));
+                .flatMap(userRef -> RxQuery.observeSingleValueCached(userRef, User.class));
     }
 
     public static Observable<StorageReference> getUserPicRef(){
-        return Observable.just(FirebaseStorage.getInstance().getReference().child("users").child(getUid()).child("propic.jpg"));
+        return RxAuth.observeSignedIn().first()
+                .map(user -> FirebaseStorage.getInstance().getReference().child("users").child(user.getUid()).child("propic.jpg"));
     }
 
     // upload the pic to storage, save the link to database, update user profile
-    public static Observable<Void> changeProfilePhoto(Uri fileUri){
-        return getUserPicRef()
-                .flatMap(ref -> RxGMSTask.just(ref.putFile(fileUri, getImageMetadata())))
-                .flatMap(taskResult -> getUserRef()
+    public static Observable<Void> changeProfilePhoto(Context context, Uri fileUri, Action1<FIRUploadProgress> onProgress){
+        // the photo is shown at most 120dp wide, a full size camera image would only cost time and data
+        int size = Math.round(PROFILE_PHOTO_SIZE_DP * context.getResources().getDisplayMetrics().density);
+        File resized = new File(context.getCacheDir(), "propic-upload.jpg");
+
+        // intermediate results are consumed right where the tasks complete, no need to hop to the main thread
+        // unsubscribing while the photo is uploading cancels the upload
+        return ImageTransform.create(size, size, PROFILE_PHOTO_QUALITY)
+                .apply(context.getContentResolver(), fileUri, resized)
+                .flatMap(resizedUri -> getUserPicRef()
+                        // a dropped connection resumes the upload session instead of starting over
+                        .flatMap(ref -> RxStorage.upload(ref, resizedUri, getImageMetadata(), null, RxGMSTask.DIRECT).retry(2)))
+                .doOnNext(onProgress)
+                .filter(progress -> progress.isCompleted())
+                .flatMap(uploaded -> getUserRef()
                             .map(userRef -> userRef.child("photo_url"))
-                            .flatMap(picRef -> RxGMSTask.just(picRef.setValue(taskResult.getDownloadUrl().toString())))
-                            .map(done -> taskResult.getDownloadUrl())
+                            .flatMap(picRef -> getWriteBatcher().setValue(picRef, uploaded.getDownloadUrl().toString()))
+                            .map(done -> uploaded.getDownloadUrl())
                 )
                 .flatMap(uri -> {
-                    FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+                    FirebaseUser user = RxAuth.getUser();
+                    if(user == null) return Observable.error(new IllegalStateException("No user is signed in"));
                     UserProfileChangeRequest request = new UserProfileChangeRequest.Builder()
                             .setPhotoUri(uri)
                             .build();
-                    return RxGMSTask.just(user.updateProfile(request));
+                    return RxGMSTask.just(user.updateProfile(request), RxGMSTask.DIRECT);
+                });
+    }
+
+    // shrink the images of a post and upload them a few at a time, then save their links with the post and the user's copy of it
+    public static Observable<FIRBatchUploadProgress> uploadPostImages(Context context, String postKey, List<Uri> images){
+        String uid = getUid();
+        StorageReference folder = FirebaseStorage.getInstance().getReference().child("posts").child(postKey);
+        List<StorageReference> refs = new ArrayList<>(images.size());
+        for(int i = 0; i < images.size(); i++){
+            refs.add(folder.child(i + ".jpg"));
+        }
+
+        // shrunk one after another, decoding them in parallel would hold several large bitmaps at once
+        ImageTransform transform = ImageTransform.create(POST_IMAGE_SIZE_PX, POST_IMAGE_SIZE_PX, POST_IMAGE_QUALITY);
+        return Observable.range(0, images.size())
+                .concatMap(i -> transform.apply(context.getContentResolver(), images.get(i),
+                        new File(context.getCacheDir(), "post-" + postKey + "-" + i + ".jpg")))
+                .toList()
+                .flatMap(resized -> RxStorage.uploadAll(refs, resized, getImageMetadata(), getUploadConcurrency(context), 2, RxGMSTask.DIRECT))
+                .concatMap(progress -> {
+                    if(!progress.isCompleted()) return Observable.just(progress);
+
+                    List<String> urls = new ArrayList<>(images.size());
+                    for(Uri url : progress.getDownloadUrls()){
+                        urls.add(url.toString());
+                    }
+
+                    Map<String, Object> childUpdates = new HashMap<>();
+                    childUpdates.put("/posts/" + postKey + "/images", urls);
+                    childUpdates.put("/user-posts/" + uid + "/" + postKey + "/images", urls);
+                    return getWriteBatcher().updateChildren(FirebaseDatabase.getInstance().getReference(), childUpdates)
+                            .map(done -> progress);
                 });
     }
 
+    // more parallel uploads keep a fast network busy, fewer leave each upload enough bandwidth on a slow one
+    public static int getUploadConcurrency(Context context){
+        ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo network = connectivity == null ? null : connectivity.getActiveNetworkInfo();
+        if(network == null) return 1;
+
+        switch (network.getType()){
+            case ConnectivityManager.TYPE_WIFI:
+            case ConnectivityManager.TYPE_ETHERNET:
+                return 4;
+            case ConnectivityManager.TYPE_MOBILE:
+                switch (network.getSubtype()){
+                    case TelephonyManager.NETWORK_TYPE_LTE:
+                        return 3;
+                    case TelephonyManager.NETWORK_TYPE_GPRS:
+                    case TelephonyManager.NETWORK_TYPE_EDGE:
+                    case TelephonyManager.NETWORK_TYPE_CDMA:
+                    case TelephonyManager.NETWORK_TYPE_1xRTT:
+                        return 1;
+                    default:
+                        return 2;
+                }
+            default:
+                return 2;
+        }
+    }
+
     private static String usernameFromEmail(String email) {
         if (email.contains("@")) {
             return email.split("@")[0];
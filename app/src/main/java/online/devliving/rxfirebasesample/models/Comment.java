@@ -2,8 +2,11 @@ package online.devliving.rxfirebasesample.models;
 
 import com.google.firebase.database.IgnoreExtraProperties;
 
+import online.devliving.rxfirebase.FirebaseModel;
+
 // [START comment_class]
 @IgnoreExtraProperties
+@FirebaseModel
 public class Comment {
 
     public String uid;
@@ -11,7 +14,7 @@ public class Comment {
     public String text;
 
     public Comment() {
-        // Default constructor required for calls to DataSnapshot.getValue(Comment.class)
+        // Default constructor required for calls to DataSnapshot.getValue(Comment.class) and Comment_SnapshotMapper
     }
 
     public Comment(String uid, String author, String text) {
@@ -6,8 +6,11 @@ import com.google.firebase.database.IgnoreExtraProperties;
 import java.util.HashMap;
 import java.util.Map;
 
+import online.devliving.rxfirebase.FirebaseModel;
+
 // [START post_class]
 @IgnoreExtraProperties
+@FirebaseModel
 public class Post {
 
     public String uid;
@@ -18,7 +21,7 @@ public class Post {
     public Map<String, Boolean> stars = new HashMap<>();
 
     public Post() {
-        // Default constructor required for calls to DataSnapshot.getValue(Post.class)
+        // Default constructor required for calls to DataSnapshot.getValue(Post.class) and Post_SnapshotMapper
     }
 
     public Post(String uid, String author, String title, String body) {
@@ -31,15 +34,7 @@ public class Post {
     // [START post_to_map]
     @Exclude
     public Map<String, Object> toMap() {
-        HashMap<String, Object> result = new HashMap<>();
-        result.put("uid", uid);
-        result.put("author", author);
-        result.put("title", title);
-        result.put("body", body);
-        result.put("starCount", starCount);
-        result.put("stars", stars);
-
-        return result;
+        return new Post_SnapshotMapper().toMap(this);
     }
     // [END post_to_map]
 
@@ -2,8 +2,11 @@ package online.devliving.rxfirebasesample.models;
 
 import com.google.firebase.database.IgnoreExtraProperties;
 
+import online.devliving.rxfirebase.FirebaseModel;
+
 // [START blog_user_class]
 @IgnoreExtraProperties
+@FirebaseModel
 public class User {
 
     public String username;
@@ -11,7 +14,7 @@ public class User {
     public String photo_url;
 
     public User() {
-        // Default constructor required for calls to DataSnapshot.getValue(User.class)
+        // Default constructor required for calls to DataSnapshot.getValue(User.class) and User_SnapshotMapper
     }
 
     public User(String username, String email) {
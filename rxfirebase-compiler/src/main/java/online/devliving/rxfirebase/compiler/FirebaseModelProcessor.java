@@ -0,0 +1,351 @@
+package online.devliving.rxfirebase.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a reflection free {@code ModelMapper} for every class annotated with {@code @FirebaseModel}
+ */
+
+public final class FirebaseModelProcessor extends AbstractProcessor {
+    static final String FIREBASE_MODEL = "online.devliving.rxfirebase.FirebaseModel";
+    static final String EXCLUDE = "com.google.firebase.database.Exclude";
+    static final String PROPERTY_NAME = "com.google.firebase.database.PropertyName";
+    static final String MAPPER_SUFFIX = "_SnapshotMapper";
+    static final String VALUES = "online.devliving.rxfirebase.SnapshotValues";
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        filer = processingEnv.getFiler();
+        messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(FIREBASE_MODEL);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement annotation = elements.getTypeElement(FIREBASE_MODEL);
+        if(annotation == null) return false;
+
+        for(Element element : roundEnv.getElementsAnnotatedWith(annotation)){
+            try {
+                if(element.getKind() != ElementKind.CLASS){
+                    throw new ModelException(element, "@FirebaseModel can only be applied to classes");
+                }
+
+                TypeElement model = (TypeElement) element;
+                write(model, readFields(model));
+            } catch (ModelException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+            } catch (IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Unable to write mapper: " + e.getMessage(), element);
+            }
+        }
+
+        return true;
+    }
+
+    private List<ModelField> readFields(TypeElement model) throws ModelException {
+        if(model.getModifiers().contains(Modifier.ABSTRACT)){
+            throw new ModelException(model, "@FirebaseModel classes can't be abstract");
+        }
+        if(model.getNestingKind().isNested() && !model.getModifiers().contains(Modifier.STATIC)){
+            throw new ModelException(model, "nested @FirebaseModel classes must be static");
+        }
+
+        boolean hasDefaultConstructor = false;
+        for(ExecutableElement constructor : ElementFilter.constructorsIn(model.getEnclosedElements())){
+            if(constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)){
+                hasDefaultConstructor = true;
+            }
+        }
+        if(!hasDefaultConstructor){
+            throw new ModelException(model, "@FirebaseModel classes need a non private no-arg constructor");
+        }
+
+        PackageElement modelPackage = elements.getPackageOf(model);
+        List<ModelField> fields = new ArrayList<>();
+
+        TypeElement type = model;
+        while (type != null && !type.getQualifiedName().contentEquals("java.lang.Object")){
+            for(VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())){
+                Set<Modifier> modifiers = field.getModifiers();
+                if(modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) continue;
+                if(findAnnotation(field, EXCLUDE) != null) continue;
+
+                if(modifiers.contains(Modifier.PRIVATE)){
+                    throw new ModelException(field, "private fields can't be mapped, make it accessible or annotate it with @Exclude");
+                }
+                if(!modifiers.contains(Modifier.PUBLIC) && !elements.getPackageOf(type).equals(modelPackage)){
+                    throw new ModelException(field, "inherited package private fields can't be mapped");
+                }
+                if(modifiers.contains(Modifier.FINAL)){
+                    throw new ModelException(field, "final fields can't be mapped, annotate it with @Exclude");
+                }
+
+                String property = field.getSimpleName().toString();
+                AnnotationMirror propertyName = findAnnotation(field, PROPERTY_NAME);
+                if(propertyName != null){
+                    for(Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                            : propertyName.getElementValues().entrySet()){
+                        if(entry.getKey().getSimpleName().contentEquals("value")){
+                            property = (String) entry.getValue().getValue();
+                        }
+                    }
+                }
+
+                fields.add(new ModelField(field.getSimpleName().toString(), property, field.asType(),
+                        mapperFor(field, field.asType())));
+            }
+
+            TypeMirror superclass = type.getSuperclass();
+            type = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) types.asElement(superclass) : null;
+        }
+
+        return fields;
+    }
+
+    /**
+     * @return java expression that creates/refers to a ModelMapper for {@param type}
+     */
+    private String mapperFor(Element field, TypeMirror type) throws ModelException {
+        switch (type.getKind()){
+            case BOOLEAN:
+                return VALUES + ".BOOLEAN";
+            case INT:
+                return VALUES + ".INTEGER";
+            case LONG:
+                return VALUES + ".LONG";
+            case DOUBLE:
+                return VALUES + ".DOUBLE";
+            case FLOAT:
+                return VALUES + ".FLOAT";
+            case DECLARED:
+                break;
+            default:
+                throw new ModelException(field, "unsupported type " + type);
+        }
+
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement element = (TypeElement) declared.asElement();
+        String name = element.getQualifiedName().toString();
+        List<? extends TypeMirror> arguments = declared.getTypeArguments();
+
+        switch (name){
+            case "java.lang.String":
+                return VALUES + ".STRING";
+            case "java.lang.Boolean":
+                return VALUES + ".BOOLEAN";
+            case "java.lang.Integer":
+                return VALUES + ".INTEGER";
+            case "java.lang.Long":
+                return VALUES + ".LONG";
+            case "java.lang.Double":
+                return VALUES + ".DOUBLE";
+            case "java.lang.Float":
+                return VALUES + ".FLOAT";
+            case "java.util.Map":
+                if(arguments.size() != 2 || !isString(arguments.get(0))){
+                    throw new ModelException(field, "only Map<String, V> is supported, found " + type);
+                }
+                return VALUES + ".mapOf(" + mapperFor(field, arguments.get(1)) + ")";
+            case "java.util.List":
+                if(arguments.size() != 1){
+                    throw new ModelException(field, "raw List is not supported");
+                }
+                return VALUES + ".listOf(" + mapperFor(field, arguments.get(0)) + ")";
+        }
+
+        if(findAnnotation(element, FIREBASE_MODEL) == null){
+            throw new ModelException(field, "unsupported type " + type + ", annotate it with @FirebaseModel");
+        }
+
+        return "new " + mapperName(element) + "()";
+    }
+
+    private boolean isString(TypeMirror type){
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) types.asElement(type)).getQualifiedName().contentEquals("java.lang.String");
+    }
+
+    private boolean isSimple(ModelField field){
+        return field.mapper.startsWith(VALUES + ".") && !field.mapper.contains("(");
+    }
+
+    /**
+     * @return qualified name of the generated mapper, nested classes are flattened i.e Outer$Inner -> Outer_Inner_SnapshotMapper
+     */
+    private String mapperName(TypeElement model){
+        String packageName = elements.getPackageOf(model).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(model).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                .replace('$', '_') + MAPPER_SUFFIX;
+
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+
+    private void write(TypeElement model, List<ModelField> fields) throws IOException {
+        String mapperName = mapperName(model);
+        int packageEnd = mapperName.lastIndexOf('.');
+        String packageName = packageEnd < 0 ? "" : mapperName.substring(0, packageEnd);
+        String simpleName = mapperName.substring(packageEnd + 1);
+        String modelName = model.getQualifiedName().toString();
+
+        StringBuilder out = new StringBuilder();
+        if(!packageName.isEmpty()) out.append("package ").append(packageName).append(";\n\n");
+
+        out.append("/**\n")
+                .append(" * Generated by rxfirebase-compiler for {@link ").append(modelName).append("}, do not edit\n")
+                .append(" */\n")
+                .append("public final class ").append(simpleName)
+                .append(" implements online.devliving.rxfirebase.ModelMapper<").append(modelName).append("> {\n");
+
+        for(ModelField field : fields){
+            if(isSimple(field)) continue;
+            out.append("    private static final online.devliving.rxfirebase.ModelMapper<").append(boxed(field.type)).append("> ")
+                    .append(constant(field)).append(" = ").append(field.mapper).append(";\n");
+        }
+
+        out.append("\n    @Override\n")
+                .append("    public ").append(modelName).append(" fromSnapshot(com.google.firebase.database.DataSnapshot snapshot) {\n")
+                .append("        return fromValue(snapshot.getValue());\n")
+                .append("    }\n\n");
+
+        out.append("    @Override\n")
+                .append("    public ").append(modelName).append(" fromValue(Object value) {\n")
+                .append("        if (value == null) return null;\n\n")
+                .append("        java.util.Map<String, Object> map = ").append(VALUES)
+                .append(".asObject(value, \"").append(modelName).append("\");\n")
+                .append("        ").append(modelName).append(" model = new ").append(modelName).append("();\n");
+        if(!fields.isEmpty()) out.append("        Object v;\n");
+        for(ModelField field : fields){
+            out.append("\n        v = map.get(\"").append(escape(field.property)).append("\");\n")
+                    .append("        if (v != null) model.").append(field.name).append(" = ")
+                    .append(isSimple(field) ? field.mapper : constant(field)).append(".fromValue(v);\n");
+        }
+        out.append("\n        return model;\n")
+                .append("    }\n\n");
+
+        out.append("    @Override\n")
+                .append("    public Object toValue(").append(modelName).append(" model) {\n")
+                .append("        return toMap(model);\n")
+                .append("    }\n\n");
+
+        out.append("    public java.util.Map<String, Object> toMap(").append(modelName).append(" model) {\n")
+                .append("        if (model == null) return null;\n\n")
+                .append("        java.util.HashMap<String, Object> map = new java.util.HashMap<String, Object>(")
+                .append(fields.size() < 3 ? fields.size() + 1 : (int) (fields.size() / 0.75f) + 1).append(");\n");
+        for(ModelField field : fields){
+            out.append("        map.put(\"").append(escape(field.property)).append("\", ");
+            if(isSimple(field)) out.append("model.").append(field.name);
+            else out.append(constant(field)).append(".toValue(model.").append(field.name).append(")");
+            out.append(");\n");
+        }
+        out.append("        return map;\n")
+                .append("    }\n")
+                .append("}\n");
+
+        JavaFileObject file = filer.createSourceFile(mapperName, model);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(out.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private String boxed(TypeMirror type){
+        return type.getKind().isPrimitive() ? types.boxedClass((javax.lang.model.type.PrimitiveType) type).getQualifiedName().toString()
+                : type.toString();
+    }
+
+    private static String constant(ModelField field){
+        StringBuilder name = new StringBuilder();
+        for(char c : field.name.toCharArray()){
+            if(Character.isUpperCase(c) && name.length() > 0) name.append('_');
+            name.append(Character.toUpperCase(c));
+        }
+        return name.toString();
+    }
+
+    private static String escape(String value){
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotation){
+        for(AnnotationMirror mirror : element.getAnnotationMirrors()){
+            if(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)){
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    static final class ModelField {
+        final String name;
+        final String property;
+        final TypeMirror type;
+        final String mapper;
+
+        ModelField(String name, String property, TypeMirror type, String mapper) {
+            this.name = name;
+            this.property = property;
+            this.type = type;
+            this.mapper = mapper;
+        }
+    }
+
+    static final class ModelException extends Exception {
+        final Element element;
+
+        ModelException(Element element, String message) {
+            super(message);
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package online.devliving.rxfirebase.perf;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import online.devliving.rxfirebase.ModelMapper;
+import online.devliving.rxfirebase.SnapshotValues;
+
+/**
+ * Model used by the benchmarks, with a hand written mapper like the ones rxfirebase-compiler generates
+ */
+
+public class BenchPost {
+    public static final ModelMapper<BenchPost> MAPPER = new ModelMapper<BenchPost>() {
+        @Override
+        public BenchPost fromSnapshot(DataSnapshot snapshot) {
+            return fromValue(snapshot.getValue());
+        }
+
+        @Override
+        public BenchPost fromValue(@Nullable Object value) {
+            if(value == null) return null;
+
+            Map<String, Object> raw = SnapshotValues.asObject(value, "BenchPost");
+            BenchPost post = new BenchPost();
+            post.uid = SnapshotValues.STRING.fromValue(raw.get("uid"));
+            post.author = SnapshotValues.STRING.fromValue(raw.get("author"));
+            post.title = SnapshotValues.STRING.fromValue(raw.get("title"));
+            post.body = SnapshotValues.STRING.fromValue(raw.get("body"));
+            Integer starCount = SnapshotValues.INTEGER.fromValue(raw.get("starCount"));
+            if(starCount != null) post.starCount = starCount;
+            return post;
+        }
+
+        @Override
+        public Object toValue(@Nullable BenchPost model) {
+            if(model == null) return null;
+
+            HashMap<String, Object> result = new HashMap<>();
+            result.put("uid", model.uid);
+            result.put("author", model.author);
+            result.put("title", model.title);
+            result.put("body", model.body);
+            result.put("starCount", (long) model.starCount);
+            return result;
+        }
+    };
+
+    public String uid;
+    public String author;
+    public String title;
+    public String body;
+    public int starCount;
+}
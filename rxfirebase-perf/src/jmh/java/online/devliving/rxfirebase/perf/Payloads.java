@@ -0,0 +1,53 @@
+package online.devliving.rxfirebase.perf;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Raw values shaped like the sample app's data, the way the SDK hands them out
+ */
+
+public final class Payloads {
+    private Payloads(){}
+
+    public static String key(int index){
+        return String.format("-Kpost%06d", index);
+    }
+
+    public static Map<String, Object> post(int index){
+        HashMap<String, Object> post = new HashMap<>();
+        post.put("uid", "uid" + (index % 50));
+        post.put("author", "author" + (index % 50));
+        post.put("title", "Title of post " + index);
+        post.put("body", "Body of post " + index + ", long enough to be a realistic paragraph of text.");
+        post.put("starCount", (long) (index % 100));
+        return post;
+    }
+
+    /**
+     * @param size number of children
+     * @return snapshot of a list of posts, children in key order
+     */
+    public static DataSnapshot posts(int size){
+        LinkedHashMap<String, Object> posts = new LinkedHashMap<>();
+        for(int i = 0; i < size; i++){
+            posts.put(key(i), post(i));
+        }
+        return new DataSnapshot("posts", posts);
+    }
+
+    /**
+     * @param size number of children
+     * @return snapshots of the children of {@link #posts(int)}
+     */
+    public static DataSnapshot[] children(int size){
+        DataSnapshot[] children = new DataSnapshot[size];
+        for(int i = 0; i < size; i++){
+            children[i] = new DataSnapshot(key(i), post(i));
+        }
+        return children;
+    }
+}
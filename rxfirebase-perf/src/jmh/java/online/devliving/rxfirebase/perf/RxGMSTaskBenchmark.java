@@ -0,0 +1,69 @@
+package online.devliving.rxfirebase.perf;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.functions.Action;
+import online.devliving.rxfirebase.RxGMSTask;
+
+/**
+ * Cost of turning a Task result into an emission: subscribing to an already completed task, and subscribing to a
+ * pending task that completes afterwards. RxJava 1 and RxJava 2 side by side.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RxGMSTaskBenchmark {
+    final Task<String> completed = Tasks.forResult("result");
+
+    @Benchmark
+    public void justCompleted(Blackhole blackhole){
+        RxGMSTask.just(completed, RxGMSTask.DIRECT).subscribe(Sinks.<String>rx1(blackhole));
+    }
+
+    @Benchmark
+    public void justPending(Blackhole blackhole){
+        TaskCompletionSource<String> source = new TaskCompletionSource<>();
+        RxGMSTask.just(source.getTask(), RxGMSTask.DIRECT).subscribe(Sinks.<String>rx1(blackhole));
+        source.setResult("result");
+    }
+
+    @Benchmark
+    public void maybeCompleted(Blackhole blackhole){
+        online.devliving.rxfirebase2.RxGMSTask.maybe(completed, RxGMSTask.DIRECT).toFlowable().subscribe(Sinks.<String>rx2(blackhole));
+    }
+
+    @Benchmark
+    public void maybePending(Blackhole blackhole){
+        TaskCompletionSource<String> source = new TaskCompletionSource<>();
+        online.devliving.rxfirebase2.RxGMSTask.maybe(source.getTask(), RxGMSTask.DIRECT).toFlowable().subscribe(Sinks.<String>rx2(blackhole));
+        source.setResult("result");
+    }
+
+    @Benchmark
+    public void completableCompleted(Blackhole blackhole){
+        online.devliving.rxfirebase2.RxGMSTask.completable(completed, RxGMSTask.DIRECT).subscribe(new Action() {
+            @Override
+            public void run() throws Exception {
+                blackhole.consume(this);
+            }
+        });
+    }
+}
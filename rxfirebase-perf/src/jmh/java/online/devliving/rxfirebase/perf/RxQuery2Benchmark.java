@@ -0,0 +1,112 @@
+package online.devliving.rxfirebase.perf;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import online.devliving.rxfirebase.SnapshotValues;
+import online.devliving.rxfirebase2.RxQuery;
+
+/**
+ * Cost of delivering Firebase events through the RxJava 2 {@link RxQuery} streams, compare with {@link RxQueryBenchmark}, from the listener callback to
+ * the subscribers. One operation is one value event, or {@code payloadSize} child events.
+ *
+ * Run with the GC profiler, {@code -prof gc}, for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RxQuery2Benchmark {
+    /**
+     * number of children in the list
+     */
+    @Param({"1", "10", "100", "1000"})
+    public int payloadSize;
+
+    /**
+     * number of subscribers to each stream
+     */
+    @Param({"1", "4"})
+    public int subscribers;
+
+    DataSnapshot posts;
+    DataSnapshot[] children;
+
+    final Query valueQuery = new Query("posts/value");
+    final Query valuesQuery = new Query("posts/values");
+    final Query childQuery = new Query("posts/child");
+    final Query childValueQuery = new Query("posts/childValue");
+
+    final ArrayList<Sinks.Rx2Sink<?>> sinks = new ArrayList<>();
+
+    @Setup
+    public void setup(Blackhole blackhole){
+        posts = Payloads.posts(payloadSize);
+        children = Payloads.children(payloadSize);
+
+        for(int i = 0; i < subscribers; i++){
+            subscribe(RxQuery.observeValue(valueQuery, SnapshotValues.mapOf(BenchPost.MAPPER)), blackhole);
+            subscribe(RxQuery.observeValues(valuesQuery, BenchPost.MAPPER), blackhole);
+            subscribe(RxQuery.observeChild(childQuery), blackhole);
+            subscribe(RxQuery.observeChildValue(childValueQuery, BenchPost.MAPPER), blackhole);
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        for(Sinks.Rx2Sink<?> sink : sinks){
+            sink.cancel();
+        }
+        sinks.clear();
+    }
+
+    <T> void subscribe(Flowable<T> flowable, Blackhole blackhole){
+        Sinks.Rx2Sink<T> sink = Sinks.rx2(blackhole);
+        flowable.subscribe(sink);
+        sinks.add(sink);
+    }
+
+    @Benchmark
+    public void observeValue(){
+        valueQuery.fireValue(posts);
+    }
+
+    @Benchmark
+    public void observeValues(){
+        valuesQuery.fireValue(posts);
+    }
+
+    @Benchmark
+    public void observeChild(){
+        for(int i = 0; i < children.length; i++){
+            childQuery.fireChildAdded(children[i], i == 0 ? null : children[i - 1].getKey());
+        }
+    }
+
+    @Benchmark
+    public void observeChildValue(){
+        for(int i = 0; i < children.length; i++){
+            childValueQuery.fireChildChanged(children[i], i == 0 ? null : children[i - 1].getKey());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package online.devliving.rxfirebase.perf;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import online.devliving.rxfirebase.RxQuery;
+import online.devliving.rxfirebase.SnapshotValues;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Cost of delivering Firebase events through the RxJava 1 {@link RxQuery} streams, from the listener callback to
+ * the subscribers. One operation is one value event, or {@code payloadSize} child events.
+ *
+ * Run with the GC profiler, {@code -prof gc}, for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RxQueryBenchmark {
+    /**
+     * number of children in the list
+     */
+    @Param({"1", "10", "100", "1000"})
+    public int payloadSize;
+
+    /**
+     * number of subscribers to each stream
+     */
+    @Param({"1", "4"})
+    public int subscribers;
+
+    DataSnapshot posts;
+    DataSnapshot[] children;
+
+    final Query valueQuery = new Query("posts/value");
+    final Query valuesQuery = new Query("posts/values");
+    final Query childQuery = new Query("posts/child");
+    final Query childValueQuery = new Query("posts/childValue");
+
+    final CompositeSubscription subscriptions = new CompositeSubscription();
+
+    @Setup
+    public void setup(Blackhole blackhole){
+        posts = Payloads.posts(payloadSize);
+        children = Payloads.children(payloadSize);
+
+        for(int i = 0; i < subscribers; i++){
+            subscriptions.add(RxQuery.observeValue(valueQuery, SnapshotValues.mapOf(BenchPost.MAPPER))
+                    .subscribe(Sinks.rx1(blackhole)));
+            subscriptions.add(RxQuery.observeValues(valuesQuery, BenchPost.MAPPER)
+                    .subscribe(Sinks.rx1(blackhole)));
+            subscriptions.add(RxQuery.observeChild(childQuery)
+                    .subscribe(Sinks.rx1(blackhole)));
+            subscriptions.add(RxQuery.observeChildValue(childValueQuery, BenchPost.MAPPER)
+                    .subscribe(Sinks.rx1(blackhole)));
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        subscriptions.clear();
+    }
+
+    @Benchmark
+    public void observeValue(){
+        valueQuery.fireValue(posts);
+    }
+
+    @Benchmark
+    public void observeValues(){
+        valuesQuery.fireValue(posts);
+    }
+
+    @Benchmark
+    public void observeChild(){
+        for(int i = 0; i < children.length; i++){
+            childQuery.fireChildAdded(children[i], i == 0 ? null : children[i - 1].getKey());
+        }
+    }
+
+    @Benchmark
+    public void observeChildValue(){
+        for(int i = 0; i < children.length; i++){
+            childValueQuery.fireChildChanged(children[i], i == 0 ? null : children[i - 1].getKey());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package online.devliving.rxfirebase.perf;
+
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscription;
+
+/**
+ * Subscribers that hand every value to a {@link Blackhole}
+ */
+
+public final class Sinks {
+    private Sinks(){}
+
+    public static <T> rx.Subscriber<T> rx1(Blackhole blackhole){
+        return new rx.Subscriber<T>() {
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                throw new IllegalStateException(e);
+            }
+
+            @Override
+            public void onNext(T t) {
+                blackhole.consume(t);
+            }
+        };
+    }
+
+    public static <T> Rx2Sink<T> rx2(Blackhole blackhole){
+        return new Rx2Sink<>(blackhole);
+    }
+
+    public static final class Rx2Sink<T> implements org.reactivestreams.Subscriber<T> {
+        final Blackhole blackhole;
+        Subscription subscription;
+
+        Rx2Sink(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T t) {
+            blackhole.consume(t);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        public void cancel(){
+            subscription.cancel();
+        }
+    }
+}
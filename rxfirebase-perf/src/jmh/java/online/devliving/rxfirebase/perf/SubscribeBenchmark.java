@@ -0,0 +1,56 @@
+package online.devliving.rxfirebase.perf;
+
+import com.google.firebase.database.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import online.devliving.rxfirebase.RxQuery;
+
+/**
+ * Cost of subscribing to a query stream and unsubscribing again, i.e. attaching and removing the listener.
+ * Run with {@code -prof gc} to see the allocation per subscription.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscribeBenchmark {
+    final Query query = new Query("posts");
+
+    @Benchmark
+    public void observeValue(Blackhole blackhole){
+        RxQuery.observeValue(query, BenchPost.MAPPER).subscribe(Sinks.<BenchPost>rx1(blackhole)).unsubscribe();
+    }
+
+    @Benchmark
+    public void observeChild(Blackhole blackhole){
+        RxQuery.observeChildValue(query, BenchPost.MAPPER).subscribe(Sinks.<RxQuery.FIRChildEvent<BenchPost>>rx1(blackhole)).unsubscribe();
+    }
+
+    @Benchmark
+    public void observeValue2(Blackhole blackhole){
+        Sinks.Rx2Sink<BenchPost> sink = Sinks.rx2(blackhole);
+        online.devliving.rxfirebase2.RxQuery.observeValue(query, BenchPost.MAPPER).subscribe(sink);
+        sink.cancel();
+    }
+
+    @Benchmark
+    public void observeChild2(Blackhole blackhole){
+        Sinks.Rx2Sink<RxQuery.FIRChildEvent<BenchPost>> sink = Sinks.rx2(blackhole);
+        online.devliving.rxfirebase2.RxQuery.observeChildValue(query, BenchPost.MAPPER).subscribe(sink);
+        sink.cancel();
+    }
+}
@@ -0,0 +1,83 @@
+package online.devliving.rxfirebase.perf.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds, values are kept with about 3% precision.
+ * Recording is lock free and can happen while another thread reads percentiles.
+ */
+
+public final class LatencyHistogram {
+    /**
+     * values below this are counted exactly, above it every power of 2 is split in SUB_BUCKETS buckets
+     */
+    private static final int LINEAR = 64;
+    private static final int SUB_BUCKETS = 32;
+    private static final int BUCKETS = LINEAR + 58 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos){
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexFor(value));
+        count.incrementAndGet();
+
+        long current;
+        while(value > (current = max.get())){
+            if(max.compareAndSet(current, value)) break;
+        }
+    }
+
+    public long getCount(){
+        return count.get();
+    }
+
+    public long getMax(){
+        return max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket the {@param percentile} falls in, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile){
+        long total = count.get();
+        if(total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100d));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts.get(i);
+            if(seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset(){
+        for(int i = 0; i < BUCKETS; i++){
+            counts.set(i, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    static int indexFor(long value){
+        if(value < LINEAR) return (int) value;
+
+        // value has at least 7 significant bits, keep the top 6 of them
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 5;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR + (shift - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index){
+        if(index < LINEAR) return index;
+
+        int shift = (index - LINEAR) / SUB_BUCKETS + 1;
+        long sub = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,210 @@
+package online.devliving.rxfirebase.perf.load;
+
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import online.devliving.rxfirebase.RxQuery;
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import online.devliving.rxfirebase.SnapshotValues;
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Drives the in-memory {@link FirebaseDatabase} with N listeners subscribed through {@link RxQuery} and M writes a
+ * second, and reports the latency from a write to the emission it causes and the heap in use, every interval and
+ * in total. Listener callbacks run on a single main thread like on Android.
+ *
+ * Options, all optional: {@code --shape hot_post|spread|list --listeners 100 --writes 1000 --children 1000
+ * --duration 30 --interval 1}
+ */
+
+public final class LoadDriver {
+    final TreeShape shape;
+    final int listeners;
+    final int writesPerSecond;
+    final int children;
+    final int durationSeconds;
+    final int intervalSeconds;
+
+    final FirebaseDatabase database = FirebaseDatabase.getInstance();
+    final LatencyHistogram intervalLatency = new LatencyHistogram();
+    final LatencyHistogram totalLatency = new LatencyHistogram();
+    final AtomicLong writes = new AtomicLong();
+    final AtomicLong emissions = new AtomicLong();
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    LoadDriver(TreeShape shape, int listeners, int writesPerSecond, int children, int durationSeconds, int intervalSeconds) {
+        this.shape = shape;
+        this.listeners = listeners;
+        this.writesPerSecond = writesPerSecond;
+        this.children = children;
+        this.durationSeconds = durationSeconds;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        TreeShape shape = TreeShape.valueOf(option(args, "--shape", "hot_post").toUpperCase(Locale.US));
+        LoadDriver driver = new LoadDriver(shape,
+                Integer.parseInt(option(args, "--listeners", "100")),
+                Integer.parseInt(option(args, "--writes", "1000")),
+                Integer.parseInt(option(args, "--children", "1000")),
+                Integer.parseInt(option(args, "--duration", "30")),
+                Integer.parseInt(option(args, "--interval", "1")));
+        driver.run();
+    }
+
+    void run() throws InterruptedException {
+        System.out.println(String.format(Locale.US, "shape=%s listeners=%d writes/s=%d children=%d duration=%ds",
+                shape, listeners, writesPerSecond, children, durationSeconds));
+
+        shape.populate(database, children);
+        CompositeSubscription subscriptions = subscribe();
+
+        ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+        long start = System.nanoTime();
+        Random random = new Random(42);
+        writer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                // catch up to the target rate every millisecond, the scheduler can't tick faster than that
+                long due = (System.nanoTime() - start) * writesPerSecond / TimeUnit.SECONDS.toNanos(1);
+                while(writes.get() < due){
+                    long n = writes.incrementAndGet();
+                    shape.write(database, random, children, new LoadItem(System.nanoTime(), "write " + n));
+                }
+            }
+        }, 0, 1, TimeUnit.MILLISECONDS);
+
+        System.out.println("second\twrites\temissions\tp50_us\tp90_us\tp99_us\tp999_us\tmax_us\theap_mb");
+        long peakHeap = 0;
+        long previousWrites = 0;
+        long previousEmissions = 0;
+        for(int elapsed = intervalSeconds; elapsed <= durationSeconds; elapsed += intervalSeconds){
+            Thread.sleep(TimeUnit.SECONDS.toMillis(intervalSeconds));
+
+            long heap = memory.getHeapMemoryUsage().getUsed();
+            peakHeap = Math.max(peakHeap, heap);
+            long w = writes.get();
+            long e = emissions.get();
+            System.out.println(row(elapsed, w - previousWrites, e - previousEmissions, intervalLatency, heap));
+            intervalLatency.reset();
+            previousWrites = w;
+            previousEmissions = e;
+        }
+
+        writer.shutdown();
+        writer.awaitTermination(1, TimeUnit.SECONDS);
+        drainEvents();
+        subscriptions.unsubscribe();
+
+        System.gc();
+        System.out.println(row(durationSeconds, writes.get(), emissions.get(), totalLatency, peakHeap) + "\t(total, peak heap)");
+        System.out.println(String.format(Locale.US, "retained heap after unsubscribing: %.1f MB",
+                memory.getHeapMemoryUsage().getUsed() / 1048576d));
+    }
+
+    CompositeSubscription subscribe(){
+        CompositeSubscription subscriptions = new CompositeSubscription();
+        ArrayList<Subscription> all = new ArrayList<>(listeners);
+
+        for(int i = 0; i < listeners; i++){
+            Query query = database.getReference(shape.listenPath(i, children));
+            switch (shape){
+                case HOT_POST:
+                    all.add(RxQuery.observeChildValue(query, LoadItem.MAPPER)
+                            .subscribe(new Action1<FIRChildEvent<LoadItem>>() {
+                                @Override
+                                public void call(FIRChildEvent<LoadItem> event) {
+                                    onEmission(event.getValue().writtenAt);
+                                }
+                            }));
+                    break;
+
+                case SPREAD:
+                    all.add(RxQuery.observeValue(query, LoadItem.MAPPER)
+                            .subscribe(new Action1<LoadItem>() {
+                                @Override
+                                public void call(LoadItem item) {
+                                    onEmission(item.writtenAt);
+                                }
+                            }));
+                    break;
+
+                case LIST:
+                    all.add(RxQuery.observeValue(query, SnapshotValues.mapOf(LoadItem.MAPPER))
+                            .subscribe(new Action1<Map<String, LoadItem>>() {
+                                @Override
+                                public void call(Map<String, LoadItem> items) {
+                                    long latest = 0;
+                                    for(LoadItem item : items.values()){
+                                        latest = Math.max(latest, item.writtenAt);
+                                    }
+                                    onEmission(latest);
+                                }
+                            }));
+                    break;
+            }
+        }
+
+        for(Subscription subscription : all){
+            subscriptions.add(subscription);
+        }
+        return subscriptions;
+    }
+
+    void onEmission(long writtenAt){
+        emissions.incrementAndGet();
+        // the initial data wasn't written during the run
+        if(writtenAt == 0) return;
+
+        long latency = System.nanoTime() - writtenAt;
+        intervalLatency.record(latency);
+        totalLatency.record(latency);
+    }
+
+    /**
+     * waits until the main thread has raised every event of the writes so far
+     */
+    void drainEvents() throws InterruptedException {
+        CountDownLatch drained = new CountDownLatch(1);
+        database.getReference("load-driver/drained").setValue(true)
+                .addOnCompleteListener(new com.google.android.gms.tasks.OnCompleteListener<Void>() {
+                    @Override
+                    public void onComplete(com.google.android.gms.tasks.Task<Void> task) {
+                        drained.countDown();
+                    }
+                });
+        drained.await(30, TimeUnit.SECONDS);
+    }
+
+    static String row(long second, long writes, long emissions, LatencyHistogram latency, long heapBytes){
+        return String.format(Locale.US, "%d\t%d\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f",
+                second, writes, emissions,
+                latency.getValueAtPercentile(50) / 1000d,
+                latency.getValueAtPercentile(90) / 1000d,
+                latency.getValueAtPercentile(99) / 1000d,
+                latency.getValueAtPercentile(99.9) / 1000d,
+                latency.getMax() / 1000d,
+                heapBytes / 1048576d);
+    }
+
+    static String option(String[] args, String name, String defaultValue){
+        for(int i = 0; i < args.length - 1; i++){
+            if(args[i].equals(name)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,60 @@
+package online.devliving.rxfirebase.perf.load;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import online.devliving.rxfirebase.ModelMapper;
+import online.devliving.rxfirebase.SnapshotValues;
+
+/**
+ * Value written by the load driver, carries the time it was written at
+ */
+
+public class LoadItem {
+    public static final ModelMapper<LoadItem> MAPPER = new ModelMapper<LoadItem>() {
+        @Override
+        public LoadItem fromSnapshot(DataSnapshot snapshot) {
+            return fromValue(snapshot.getValue());
+        }
+
+        @Override
+        public LoadItem fromValue(@Nullable Object value) {
+            if(value == null) return null;
+
+            Map<String, Object> raw = SnapshotValues.asObject(value, "LoadItem");
+            LoadItem item = new LoadItem();
+            Long writtenAt = SnapshotValues.LONG.fromValue(raw.get("writtenAt"));
+            if(writtenAt != null) item.writtenAt = writtenAt;
+            item.body = SnapshotValues.STRING.fromValue(raw.get("body"));
+            return item;
+        }
+
+        @Override
+        public Object toValue(@Nullable LoadItem model) {
+            if(model == null) return null;
+
+            HashMap<String, Object> result = new HashMap<>(4);
+            result.put("writtenAt", model.writtenAt);
+            result.put("body", model.body);
+            return result;
+        }
+    };
+
+    /**
+     * {@link System#nanoTime()} at the write, 0 for the initial data
+     */
+    public long writtenAt;
+    public String body;
+
+    public LoadItem() {
+    }
+
+    public LoadItem(long writtenAt, String body) {
+        this.writtenAt = writtenAt;
+        this.body = body;
+    }
+}
@@ -0,0 +1,83 @@
+package online.devliving.rxfirebase.perf.load;
+
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Shapes of data and listeners the load driver can simulate
+ */
+
+public enum TreeShape {
+    /**
+     * every listener watches the children of one hot post's comments, every write adds a comment
+     */
+    HOT_POST {
+        @Override
+        String listenPath(int listener, int children) {
+            return "post-comments/hot";
+        }
+
+        @Override
+        void write(FirebaseDatabase database, Random random, int children, LoadItem item) {
+            database.getReference("post-comments/hot").push().setValue(LoadItem.MAPPER.toValue(item));
+        }
+    },
+    /**
+     * listeners are spread over many posts, every write changes one of them
+     */
+    SPREAD {
+        @Override
+        String listenPath(int listener, int children) {
+            return "posts/" + key(listener % children);
+        }
+
+        @Override
+        void write(FirebaseDatabase database, Random random, int children, LoadItem item) {
+            database.getReference("posts").child(key(random.nextInt(children))).setValue(LoadItem.MAPPER.toValue(item));
+        }
+    },
+    /**
+     * every listener watches the value of the whole list, every write changes one item of it
+     */
+    LIST {
+        @Override
+        String listenPath(int listener, int children) {
+            return "posts";
+        }
+
+        @Override
+        void write(FirebaseDatabase database, Random random, int children, LoadItem item) {
+            SPREAD.write(database, random, children, item);
+        }
+    };
+
+    /**
+     * @return path listener number {@param listener} watches
+     */
+    abstract String listenPath(int listener, int children);
+
+    abstract void write(FirebaseDatabase database, Random random, int children, LoadItem item);
+
+    /**
+     * writes the initial data, {@param children} items under each list
+     */
+    void populate(FirebaseDatabase database, int children){
+        HashMap<String, Object> items = new HashMap<>();
+        for(int i = 0; i < children; i++){
+            items.put(key(i), LoadItem.MAPPER.toValue(new LoadItem(0, "initial item " + i)));
+        }
+
+        DatabaseReference root = database.getReference();
+        Map<String, Object> update = new HashMap<>();
+        update.put(this == HOT_POST ? "post-comments/hot" : "posts", items);
+        root.updateChildren(update);
+    }
+
+    static String key(int index){
+        return String.format("item%06d", index);
+    }
+}
@@ -23,3 +23,9 @@
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
 #-renamesourcefileattribute SourceFile
+
+# Mappers generated for @FirebaseModel classes are looked up by name
+-keep class * implements online.devliving.rxfirebase.SnapshotMapper {
+    public <init>();
+}
+-keepnames @online.devliving.rxfirebase.FirebaseModel class *
@@ -0,0 +1,325 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DatabaseException;
+import com.google.firebase.database.Exclude;
+import com.google.firebase.database.PropertyName;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts plain Java objects to and from raw database values by reflection, following the rules of the SDK's own
+ * class mapping: public fields and public getters or setters are properties, renamed with {@link PropertyName} and
+ * left out with {@link Exclude}; models need a no-argument constructor. Used for the classes that aren't annotated
+ * with {@link FirebaseModel}. The properties are looked up once per class.
+ */
+
+final class BeanValues {
+    private static final ConcurrentHashMap<Class<?>, Bean> beans = new ConcurrentHashMap<>();
+
+    private BeanValues(){}
+
+    /**
+     * @param value model, Map, List or value type
+     * @return {@param value} as Maps, Lists, Strings, Booleans and Numbers, the way the SDK writes it
+     * @throws DatabaseException if {@param value} can't be written
+     */
+    @Nullable
+    static Object toPlain(@Nullable Object value){
+        if(value == null || value instanceof String || value instanceof Boolean) return value;
+
+        if(value instanceof Number){
+            if(value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float) return value;
+            throw new DatabaseException("Numbers of type " + value.getClass().getSimpleName()
+                    + " are not supported, please use an int, long, float or double");
+        }
+
+        if(value instanceof Character) throw new DatabaseException("Characters are not supported, please use Strings");
+        if(value instanceof Enum) return ((Enum<?>) value).name();
+
+        if(value instanceof Map){
+            Map<?, ?> map = (Map<?, ?>) value;
+            HashMap<String, Object> plain = new HashMap<>(SnapshotValues.capacityFor(map.size()));
+            for(Map.Entry<?, ?> entry : map.entrySet()){
+                if(!(entry.getKey() instanceof String)){
+                    throw new DatabaseException("Maps with non-string keys are not supported");
+                }
+                plain.put((String) entry.getKey(), toPlain(entry.getValue()));
+            }
+            return plain;
+        }
+
+        if(value instanceof Collection){
+            if(!(value instanceof List)) throw new DatabaseException("Serializing Collections is not supported, please use Lists instead");
+
+            List<?> list = (List<?>) value;
+            ArrayList<Object> plain = new ArrayList<>(list.size());
+            for(int i = 0; i < list.size(); i++){
+                plain.add(toPlain(list.get(i)));
+            }
+            return plain;
+        }
+
+        if(value.getClass().isArray()) throw new DatabaseException("Serializing Arrays is not supported, please use Lists instead");
+
+        SnapshotMapper<?> mapper = SnapshotMappers.generatedOrNull(value.getClass());
+        if(mapper instanceof ModelMapper) return toPlain(toValue((ModelMapper<?>) mapper, value));
+
+        return bean(value.getClass()).toMap(value);
+    }
+
+    /**
+     * @param value raw value as returned by {@link com.google.firebase.database.DataSnapshot#getValue()}
+     * @param type class or parameterized List or Map type to convert to
+     * @return {@param value} as {@param type}
+     * @throws DatabaseException if {@param value} doesn't fit {@param type}
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    static <T> T fromPlain(@Nullable Object value, Type type){
+        if(value == null) return null;
+
+        if(type instanceof ParameterizedType){
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            Type[] arguments = parameterized.getActualTypeArguments();
+
+            if(List.class.isAssignableFrom(raw)) return (T) toList(value, arguments[0]);
+            if(Map.class.isAssignableFrom(raw)){
+                if(arguments[0] != String.class) throw new DatabaseException("Only Maps with string keys are supported, found " + type);
+                return (T) toMap(value, arguments[1]);
+            }
+            throw new DatabaseException("Generic types other than List and Map are not supported, found " + type);
+        }
+
+        if(type instanceof GenericArrayType || !(type instanceof Class)){
+            throw new DatabaseException("Type " + type + " is not supported, use a class, List or Map");
+        }
+
+        Class<?> clazz = (Class<?>) type;
+        if(clazz == Object.class) return (T) value;
+        if(clazz == String.class) return (T) SnapshotValues.STRING.fromValue(value);
+        if(clazz == Boolean.class || clazz == boolean.class) return (T) SnapshotValues.BOOLEAN.fromValue(value);
+        if(clazz == Integer.class || clazz == int.class) return (T) SnapshotValues.INTEGER.fromValue(value);
+        if(clazz == Long.class || clazz == long.class) return (T) SnapshotValues.LONG.fromValue(value);
+        if(clazz == Double.class || clazz == double.class) return (T) SnapshotValues.DOUBLE.fromValue(value);
+        if(clazz == Float.class || clazz == float.class) return (T) SnapshotValues.FLOAT.fromValue(value);
+
+        if(clazz.isEnum()){
+            String name = SnapshotValues.STRING.fromValue(value);
+            try {
+                return (T) Enum.valueOf((Class<? extends Enum>) clazz, name);
+            } catch (IllegalArgumentException e) {
+                throw new DatabaseException("Could not find enum value of " + clazz.getName() + " for value \"" + name + "\"");
+            }
+        }
+
+        if(clazz.isArray()) throw new DatabaseException("Converting to Arrays is not supported, please use Lists instead");
+        if(List.class.isAssignableFrom(clazz)) return (T) toList(value, Object.class);
+        if(Map.class.isAssignableFrom(clazz)) return (T) toMap(value, Object.class);
+        if(clazz.isPrimitive() || Number.class.isAssignableFrom(clazz) || clazz == Character.class){
+            throw new DatabaseException("Type " + clazz.getName() + " is not supported, please use an int, long, float or double");
+        }
+
+        SnapshotMapper<?> mapper = SnapshotMappers.generatedOrNull(clazz);
+        if(mapper != null) return (T) mapper.fromValue(value);
+
+        return (T) bean(clazz).fromMap(SnapshotValues.asObject(value, clazz.getName()));
+    }
+
+    private static List<Object> toList(Object value, Type itemType){
+        if(!(value instanceof List)) throw SnapshotValues.conversionError(value, "List");
+
+        List<?> raw = (List<?>) value;
+        ArrayList<Object> list = new ArrayList<>(raw.size());
+        for(int i = 0; i < raw.size(); i++){
+            list.add(fromPlain(raw.get(i), itemType));
+        }
+        return list;
+    }
+
+    private static Map<String, Object> toMap(Object value, Type valueType){
+        if(value instanceof List){
+            // an object with numeric keys is returned as a List by the SDK
+            List<?> raw = (List<?>) value;
+            HashMap<String, Object> map = new HashMap<>(SnapshotValues.capacityFor(raw.size()));
+            for(int i = 0; i < raw.size(); i++){
+                if(raw.get(i) != null) map.put(String.valueOf(i), fromPlain(raw.get(i), valueType));
+            }
+            return map;
+        }
+
+        Map<String, Object> raw = SnapshotValues.asObject(value, "Map");
+        HashMap<String, Object> map = new HashMap<>(SnapshotValues.capacityFor(raw.size()));
+        for(Map.Entry<String, Object> entry : raw.entrySet()){
+            map.put(entry.getKey(), fromPlain(entry.getValue(), valueType));
+        }
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Object toValue(ModelMapper<T> mapper, Object model){
+        return mapper.toValue((T) model);
+    }
+
+    private static Bean bean(Class<?> clazz){
+        Bean bean = beans.get(clazz);
+        if(bean == null){
+            bean = new Bean(clazz);
+            Bean existing = beans.putIfAbsent(clazz, bean);
+            if(existing != null) bean = existing;
+        }
+        return bean;
+    }
+
+    /**
+     * @return name of the property of an accessor, e.g "userName" for "getUserName", "url" for "getURL"
+     */
+    static String propertyName(AccessibleObject member, String name){
+        PropertyName renamed = member.getAnnotation(PropertyName.class);
+        if(renamed != null) return renamed.value();
+
+        char[] chars = name.toCharArray();
+        for(int i = 0; i < chars.length && Character.isUpperCase(chars[i]); i++){
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * properties of a model class
+     */
+    static final class Bean {
+        final Class<?> clazz;
+        @Nullable
+        final Constructor<?> constructor;
+        /**
+         * Method or Field by property name
+         */
+        final LinkedHashMap<String, Member> getters = new LinkedHashMap<>();
+        final LinkedHashMap<String, Member> setters = new LinkedHashMap<>();
+
+        Bean(Class<?> clazz) {
+            this.clazz = clazz;
+            this.constructor = noArgConstructor(clazz);
+
+            for(Method method : clazz.getMethods()){
+                if(Modifier.isStatic(method.getModifiers()) || method.getDeclaringClass() == Object.class
+                        || method.isAnnotationPresent(Exclude.class)) continue;
+
+                String name = method.getName();
+                int params = method.getParameterTypes().length;
+                if(params == 0 && method.getReturnType() != void.class){
+                    if(name.startsWith("get") && name.length() > 3){
+                        getters.put(propertyName(method, name.substring(3)), method);
+                    }
+                    else if(name.startsWith("is") && name.length() > 2
+                            && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)){
+                        getters.put(propertyName(method, name.substring(2)), method);
+                    }
+                }
+                else if(params == 1 && name.startsWith("set") && name.length() > 3){
+                    setters.put(propertyName(method, name.substring(3)), method);
+                }
+            }
+
+            for(Field field : clazz.getFields()){
+                int modifiers = field.getModifiers();
+                if(Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isAnnotationPresent(Exclude.class)) continue;
+
+                String name = propertyName(field, field.getName());
+                // accessors win over fields of the same name
+                if(!getters.containsKey(name)) getters.put(name, field);
+                if(!setters.containsKey(name) && !Modifier.isFinal(modifiers)) setters.put(name, field);
+            }
+        }
+
+        Map<String, Object> toMap(Object model){
+            if(getters.isEmpty()) throw new DatabaseException("No properties to serialize found on class " + clazz.getName());
+
+            HashMap<String, Object> map = new HashMap<>(SnapshotValues.capacityFor(getters.size()));
+            for(Map.Entry<String, Member> entry : getters.entrySet()){
+                map.put(entry.getKey(), toPlain(get(entry.getValue(), model)));
+            }
+            return map;
+        }
+
+        Object fromMap(Map<String, Object> values){
+            if(constructor == null){
+                throw new DatabaseException("Class " + clazz.getName() + " does not define a no-argument constructor."
+                        + " If you are using ProGuard, make sure these constructors are not stripped.");
+            }
+
+            Object model;
+            try {
+                model = constructor.newInstance();
+            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                throw new DatabaseException("Unable to create " + clazz.getName(), e);
+            }
+
+            for(Map.Entry<String, Object> entry : values.entrySet()){
+                Member setter = setters.get(entry.getKey());
+                // properties the class doesn't have are ignored
+                if(setter != null) set(setter, model, entry.getValue());
+            }
+            return model;
+        }
+
+        private static Object get(Member member, Object model){
+            try {
+                return member instanceof Method ? ((Method) member).invoke(model) : ((Field) member).get(model);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new DatabaseException("Unable to read " + member.getName() + " of " + model.getClass().getName(), e);
+            }
+        }
+
+        private static void set(Member member, Object model, Object raw){
+            try {
+                if(member instanceof Method){
+                    Method method = (Method) member;
+                    Object value = fromPlain(raw, method.getGenericParameterTypes()[0]);
+                    method.invoke(model, value);
+                }
+                else {
+                    Field field = (Field) member;
+                    Object value = fromPlain(raw, field.getGenericType());
+                    field.set(model, value);
+                }
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new DatabaseException("Unable to set " + member.getName() + " of " + model.getClass().getName(), e);
+            }
+        }
+
+        @Nullable
+        private static Constructor<?> noArgConstructor(Class<?> clazz){
+            if(clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) return null;
+            if(clazz.getEnclosingClass() != null && !Modifier.isStatic(clazz.getModifiers())) return null;
+
+            try {
+                Constructor<?> constructor = clazz.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return constructor;
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+    }
+}
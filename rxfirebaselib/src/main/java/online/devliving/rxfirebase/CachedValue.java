@@ -0,0 +1,55 @@
+package online.devliving.rxfirebase;
+
+/**
+ * A value emitted by the cached RxQuery methods, e.g {@link RxQuery#observeValueCached(com.google.firebase.database.Query, Class)},
+ * with where it came from
+ * @param <T> type of the value
+ */
+
+public final class CachedValue<T> {
+    public enum Source {
+        /**
+         * last value saved by {@link SnapshotDiskCache}, possibly stale
+         */
+        CACHE,
+        /**
+         * value delivered by the SDK
+         */
+        SERVER
+    }
+
+    final T value;
+    final Source source;
+    final long timestamp;
+
+    CachedValue(T value, Source source, long timestamp) {
+        this.value = value;
+        this.source = source;
+        this.timestamp = timestamp;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public boolean isFromCache() {
+        return source == Source.CACHE;
+    }
+
+    /**
+     * @return when the value was delivered by the SDK, in milliseconds since the epoch; for a cached value the time
+     * it was saved, use it to tell how stale it is
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "CachedValue{" + source + ", " + value + "}";
+    }
+}
@@ -0,0 +1,115 @@
+package online.devliving.rxfirebase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Overflow strategy for {@link RxQuery#observeChild(com.google.firebase.database.Query, ChildEventBackpressure)}.
+ *
+ * Child events are queued while the subscriber is not requesting, the queue never grows beyond {@link #getCapacity()}.
+ * An instance also collects queue statistics, when it is shared by several subscriptions the numbers are aggregated.
+ */
+
+public final class ChildEventBackpressure {
+    /**
+     * What to do with child events that arrive while the subscriber is busy
+     */
+    public enum Strategy {
+        /**
+         * queue events, signal {@link rx.exceptions.MissingBackpressureException} when the queue is full
+         */
+        BUFFER,
+        /**
+         * queue events, drop the oldest queued event when the queue is full
+         */
+        DROP_OLDEST,
+        /**
+         * fold queued events of the same child so only its latest value is kept,
+         * signal {@link rx.exceptions.MissingBackpressureException} if distinct children still overflow the queue
+         */
+        LATEST_PER_KEY
+    }
+
+    final Strategy strategy;
+    final int capacity;
+
+    final AtomicInteger queueDepth = new AtomicInteger();
+    final AtomicInteger maxQueueDepth = new AtomicInteger();
+    final AtomicLong droppedCount = new AtomicLong();
+
+    private ChildEventBackpressure(Strategy strategy, int capacity) {
+        if(capacity <= 0) throw new IllegalArgumentException("capacity must be positive, was " + capacity);
+
+        this.strategy = strategy;
+        this.capacity = capacity;
+    }
+
+    /**
+     * bounded buffer, errors when more than {@param capacity} events are waiting
+     * @param capacity
+     * @return
+     */
+    public static ChildEventBackpressure buffer(int capacity){
+        return new ChildEventBackpressure(Strategy.BUFFER, capacity);
+    }
+
+    /**
+     * bounded buffer, drops the oldest waiting event when more than {@param capacity} events are waiting
+     * @param capacity
+     * @return
+     */
+    public static ChildEventBackpressure dropOldest(int capacity){
+        return new ChildEventBackpressure(Strategy.DROP_OLDEST, capacity);
+    }
+
+    /**
+     * keeps only the latest waiting event per child key, e.g ADD followed by CHANGE becomes a single ADD
+     * with the latest value; errors when more than {@param capacity} distinct events are waiting
+     * @param capacity
+     * @return
+     */
+    public static ChildEventBackpressure latestPerKey(int capacity){
+        return new ChildEventBackpressure(Strategy.LATEST_PER_KEY, capacity);
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of events currently waiting for downstream demand
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return highest number of waiting events seen so far, useful for tuning {@link #getCapacity()}
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return number of events dropped or folded into a later event of the same child
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    void onQueueDepthChanged(int delta){
+        int depth = queueDepth.addAndGet(delta);
+        for(;;){
+            int max = maxQueueDepth.get();
+            if(depth <= max || maxQueueDepth.compareAndSet(max, depth)) return;
+        }
+    }
+
+    void onDropped(){
+        droppedCount.incrementAndGet();
+    }
+}
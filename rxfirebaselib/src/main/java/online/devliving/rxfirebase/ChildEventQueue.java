@@ -0,0 +1,172 @@
+package online.devliving.rxfirebase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent.ChildEventType;
+
+/**
+ * FIFO queue of child events that can optionally fold redundant events of the same child while they wait:
+ * <ul>
+ *     <li>ADD or CHANGE followed by CHANGE keeps the first event's type and position with the latest value</li>
+ *     <li>CHANGE followed by REMOVE keeps only the REMOVE, at the REMOVE's position</li>
+ * </ul>
+ * MOVE events and events without a key are never folded. Not thread safe.
+ */
+
+final class ChildEventQueue<T> {
+    private final ArrayList<FIRChildEvent<T>> slots = new ArrayList<>();
+    /**
+     * key -> absolute slot index of the latest foldable (ADD/CHANGE) event still waiting, null when not folding
+     */
+    private final HashMap<String, Integer> foldable;
+    /**
+     * absolute index of slots[0]
+     */
+    private int base;
+    /**
+     * index of the first slot that might hold an event
+     */
+    private int head;
+    private int size;
+
+    ChildEventQueue(boolean fold) {
+        this.foldable = fold ? new HashMap<String, Integer>() : null;
+    }
+
+    /**
+     * @param events
+     * @param <T>
+     * @return {@param events} with redundant events of the same child folded
+     */
+    static <T> List<FIRChildEvent<T>> fold(List<FIRChildEvent<T>> events){
+        ChildEventQueue<T> queue = new ChildEventQueue<>(true);
+        for(int i = 0; i < events.size(); i++){
+            queue.offer(events.get(i));
+        }
+
+        if(queue.size() == events.size()) return events;
+
+        List<FIRChildEvent<T>> folded = new ArrayList<>(queue.size());
+        queue.drainTo(folded);
+        return folded;
+    }
+
+    int size(){
+        return size;
+    }
+
+    boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * adds {@param event} to the tail of the queue, folding it into a waiting event of the same child if possible
+     * @param event
+     * @return change in size of the queue i.e 1 if the event was appended, 0 if it was folded
+     */
+    int offer(FIRChildEvent<T> event){
+        if(foldable == null || event.key == null){
+            append(event);
+            return 1;
+        }
+
+        Integer pendingIndex = foldable.get(event.key);
+        FIRChildEvent<T> pending = pendingIndex != null ? slots.get(pendingIndex - base) : null;
+
+        switch (event.type){
+            case CHANGE:
+                if(pending != null){
+                    slots.set(pendingIndex - base,
+                            new FIRChildEvent<T>(pending.key, event.value, pending.childName, pending.type));
+                    return 0;
+                }
+                foldable.put(event.key, append(event));
+                return 1;
+
+            case REMOVE:
+                foldable.remove(event.key);
+                if(pending != null && pending.type == ChildEventType.CHANGE){
+                    slots.set(pendingIndex - base, null);
+                    size--;
+                    append(event);
+                    return 0;
+                }
+                append(event);
+                return 1;
+
+            case ADD:
+                foldable.put(event.key, append(event));
+                return 1;
+
+            default:
+                foldable.remove(event.key);
+                append(event);
+                return 1;
+        }
+    }
+
+    /**
+     * @return event at the head of the queue or null if empty
+     */
+    FIRChildEvent<T> poll(){
+        while (head < slots.size()){
+            FIRChildEvent<T> event = slots.get(head);
+            slots.set(head, null);
+            head++;
+
+            if(event != null){
+                size--;
+                if(foldable != null && event.key != null){
+                    Integer pendingIndex = foldable.get(event.key);
+                    if(pendingIndex != null && pendingIndex == base + head - 1) foldable.remove(event.key);
+                }
+                compact();
+                return event;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * removes all the waiting events in order and adds them to {@param out}
+     * @param out
+     */
+    void drainTo(List<FIRChildEvent<T>> out){
+        for(int i = head; i < slots.size(); i++){
+            FIRChildEvent<T> event = slots.get(i);
+            if(event != null) out.add(event);
+        }
+        clear();
+    }
+
+    void clear(){
+        slots.clear();
+        if(foldable != null) foldable.clear();
+        base = 0;
+        head = 0;
+        size = 0;
+    }
+
+    private int append(FIRChildEvent<T> event){
+        slots.add(event);
+        size++;
+        return base + slots.size() - 1;
+    }
+
+    private void compact(){
+        if(head == slots.size()){
+            base += head;
+            slots.clear();
+            head = 0;
+        }
+        else if(head >= 64 && head >= slots.size() / 2){
+            slots.subList(0, head).clear();
+            base += head;
+            head = 0;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package online.devliving.rxfirebase;
+
+import android.net.Uri;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A progress snapshot of the uploads observed with {@link RxStorage#uploadAll(List, List, com.google.firebase.storage.StorageMetadata, int, int)},
+ * combining the latest progress of every file. The last one is completed and has the download url of every file.
+ */
+
+public final class FIRBatchUploadProgress {
+    final FIRUploadProgress[] files;
+    final int[] completionOrder;
+    final int completedCount;
+    final int lastChanged;
+
+    FIRBatchUploadProgress(FIRUploadProgress[] files, int[] completionOrder, int completedCount, int lastChanged) {
+        this.files = files;
+        this.completionOrder = completionOrder;
+        this.completedCount = completedCount;
+        this.lastChanged = lastChanged;
+    }
+
+    public int getFileCount() {
+        return files.length;
+    }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    public boolean isCompleted() {
+        return completedCount == files.length;
+    }
+
+    /**
+     * @return index of the file whose progress led to this snapshot
+     */
+    public int getLastChangedIndex() {
+        return lastChanged;
+    }
+
+    /**
+     * @param index index of the file in the list given to uploadAll
+     * @return latest progress of the file, null if its upload hasn't started yet
+     */
+    @Nullable
+    public FIRUploadProgress getProgress(int index) {
+        return files[index];
+    }
+
+    public long getBytesTransferred() {
+        long bytes = 0;
+        for(FIRUploadProgress file : files){
+            if(file != null) bytes += file.bytesTransferred;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return size of all the files, -1 until the size of every file is known i.e every upload started
+     */
+    public long getTotalBytes() {
+        long total = 0;
+        for(FIRUploadProgress file : files){
+            if(file == null || file.totalBytes < 0) return -1;
+            total += file.totalBytes;
+        }
+        return total;
+    }
+
+    /**
+     * @return transferred part between 0 and 1, by bytes once every size is known, the average of the files before
+     */
+    public double getFraction() {
+        if(files.length == 0) return 1;
+
+        long total = getTotalBytes();
+        if(total > 0) return getBytesTransferred() / (double) total;
+
+        double sum = 0;
+        for(FIRUploadProgress file : files){
+            if(file != null) sum += file.isCompleted() ? 1 : file.getFraction();
+        }
+        return sum / files.length;
+    }
+
+    /**
+     * @return combined rate of the uploads that are running
+     */
+    public double getBytesPerSecond() {
+        double rate = 0;
+        for(FIRUploadProgress file : files){
+            if(file != null && file.state == FIRUploadProgress.State.RUNNING) rate += file.bytesPerSecond;
+        }
+        return rate;
+    }
+
+    /**
+     * @return estimated time left at the current rate in milliseconds, -1 while it can't be estimated i.e some
+     * uploads haven't started or none is running
+     */
+    public long getEtaMillis() {
+        if(isCompleted()) return 0;
+
+        long total = getTotalBytes();
+        double rate = getBytesPerSecond();
+        if(total < 0 || rate <= 0) return -1;
+        return (long) ((total - getBytesTransferred()) * 1000 / rate);
+    }
+
+    /**
+     * @return download urls in the order of the files given to uploadAll, null for the files that aren't uploaded yet
+     */
+    public List<Uri> getDownloadUrls() {
+        List<Uri> urls = new ArrayList<>(files.length);
+        for(FIRUploadProgress file : files){
+            urls.add(file == null ? null : file.downloadUrl);
+        }
+        return Collections.unmodifiableList(urls);
+    }
+
+    /**
+     * @return the completed uploads in the order of the files given to uploadAll
+     */
+    public List<FIRUploadProgress> getResults() {
+        List<FIRUploadProgress> results = new ArrayList<>(completedCount);
+        for(FIRUploadProgress file : files){
+            if(file != null && file.isCompleted()) results.add(file);
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return indexes of the completed uploads in the order they completed
+     */
+    public List<Integer> getCompletionOrder() {
+        List<Integer> order = new ArrayList<>(completedCount);
+        for(int i = 0; i < completedCount; i++){
+            order.add(completionOrder[i]);
+        }
+        return Collections.unmodifiableList(order);
+    }
+
+    @Override
+    public String toString() {
+        return "FIRBatchUploadProgress{" + completedCount + "/" + files.length + " files, " + getBytesTransferred()
+                + "/" + getTotalBytes() + " bytes, " + (long) getBytesPerSecond() + " bytes/s, eta " + getEtaMillis()
+                + "ms, completed " + Arrays.toString(Arrays.copyOf(completionOrder, completedCount)) + "}";
+    }
+}
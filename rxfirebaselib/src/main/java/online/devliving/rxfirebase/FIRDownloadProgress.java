@@ -0,0 +1,72 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import java.io.File;
+
+/**
+ * A progress snapshot of a download observed with {@link RxStorage#download(com.google.firebase.storage.StorageReference, File)}
+ * or {@link RxStorage#stream(com.google.firebase.storage.StorageReference, java.nio.channels.WritableByteChannel)},
+ * the last one is completed
+ */
+
+public final class FIRDownloadProgress {
+    final long bytesTransferred;
+    final long totalBytes;
+    final double bytesPerSecond;
+    final boolean completed;
+    @Nullable
+    final File file;
+
+    FIRDownloadProgress(long bytesTransferred, long totalBytes, double bytesPerSecond, boolean completed, @Nullable File file) {
+        this.bytesTransferred = bytesTransferred;
+        this.totalBytes = totalBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.completed = completed;
+        this.file = file;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * @return size of the file, -1 if it isn't known
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return transferred part between 0 and 1, 0 while the size isn't known
+     */
+    public double getFraction() {
+        if(completed) return 1;
+        return totalBytes <= 0 ? 0 : bytesTransferred / (double) totalBytes;
+    }
+
+    /**
+     * @return average rate since the download started
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return the downloaded file once it is completed, null before or if it was streamed to a channel
+     */
+    @Nullable
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return "FIRDownloadProgress{" + (completed ? "completed" : "running") + ", " + bytesTransferred + "/" + totalBytes
+                + " bytes, " + (long) bytesPerSecond + " bytes/s}";
+    }
+}
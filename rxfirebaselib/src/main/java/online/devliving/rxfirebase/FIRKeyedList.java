@@ -0,0 +1,143 @@
+package online.devliving.rxfirebase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Ordered list of children with key to position lookup, kept in sync by applying {@link FIRListChange}s
+ * emitted by {@link RxQuery#observeList(com.google.firebase.database.Query, Class)}.
+ *
+ * Positions are indexed lazily: appends keep every lookup O(1), an insert or remove in the middle only
+ * re-indexes the shifted tail on the next lookup that needs it. Not thread safe.
+ * @param <T> type of the values
+ */
+
+public final class FIRKeyedList<T> {
+    private final ArrayList<String> keys = new ArrayList<>();
+    private final ArrayList<T> values = new ArrayList<>();
+    private final HashMap<String, Integer> positions = new HashMap<>();
+    /**
+     * positions of keys at indices lower than this are up to date
+     */
+    private int indexedUpTo;
+
+    public int size(){
+        return keys.size();
+    }
+
+    public boolean isEmpty(){
+        return keys.isEmpty();
+    }
+
+    public T get(int position){
+        return values.get(position);
+    }
+
+    public String getKey(int position){
+        return keys.get(position);
+    }
+
+    /**
+     * @param key
+     * @return position of the child with {@param key} or -1 if it isn't in the list
+     */
+    public int indexOf(String key){
+        Integer position = positions.get(key);
+        if(position == null) return -1;
+        if(position < indexedUpTo) return position;
+
+        reindex();
+        return positions.get(key);
+    }
+
+    public boolean containsKey(String key){
+        return positions.containsKey(key);
+    }
+
+    /**
+     * @return read only view of the values in order
+     */
+    public List<T> values(){
+        return Collections.unmodifiableList(values);
+    }
+
+    /**
+     * applies {@param change} to this list, changes must be applied in the order they were emitted
+     * @param change
+     */
+    public void apply(FIRListChange<T> change){
+        switch (change.type){
+            case INSERT:
+                for(int i = 0; i < change.count; i++){
+                    insert(change.position + i, change.keys.get(i), change.values.get(i));
+                }
+                break;
+
+            case REMOVE:
+                for(int i = 0; i < change.count; i++){
+                    remove(change.position);
+                }
+                break;
+
+            case CHANGE:
+                for(int i = 0; i < change.count; i++){
+                    values.set(change.position + i, change.values.get(i));
+                }
+                break;
+
+            case MOVE:
+                T value = change.values.get(0);
+                remove(change.position);
+                insert(change.toPosition, change.keys.get(0), value);
+                break;
+        }
+    }
+
+    public void clear(){
+        keys.clear();
+        values.clear();
+        positions.clear();
+        indexedUpTo = 0;
+    }
+
+    /**
+     * @param previousKey key of the previous sibling, null to insert at the start
+     * @return position where the child should go, after {@param previousKey}; the end of the list if it is unknown
+     */
+    int positionAfter(String previousKey){
+        if(previousKey == null) return 0;
+
+        int previous = indexOf(previousKey);
+        return previous < 0 ? keys.size() : previous + 1;
+    }
+
+    void insert(int position, String key, T value){
+        keys.add(position, key);
+        values.add(position, value);
+        positions.put(key, position);
+
+        if(indexedUpTo > position) indexedUpTo = position;
+        else if(indexedUpTo == position && position == keys.size() - 1) indexedUpTo = keys.size();
+    }
+
+    T remove(int position){
+        String key = keys.remove(position);
+        positions.remove(key);
+        if(indexedUpTo > position) indexedUpTo = position;
+
+        return values.remove(position);
+    }
+
+    void set(int position, T value){
+        values.set(position, value);
+    }
+
+    private void reindex(){
+        for(int i = indexedUpTo; i < keys.size(); i++){
+            positions.put(keys.get(i), i);
+        }
+        indexedUpTo = keys.size();
+    }
+}
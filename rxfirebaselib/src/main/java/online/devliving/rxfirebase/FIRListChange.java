@@ -0,0 +1,120 @@
+package online.devliving.rxfirebase;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A range change of an ordered child list, see {@link RxQuery#observeList(com.google.firebase.database.Query, Class)}.
+ * Apply it to a {@link FIRKeyedList} and forward it to the adapter with {@link #dispatchTo(Callback)}.
+ * @param <T> type of the values
+ */
+
+public final class FIRListChange<T> {
+    /**
+     * Types of list change
+     */
+    public enum Type{
+        INSERT,
+        REMOVE,
+        CHANGE,
+        MOVE
+    }
+
+    /**
+     * Receives list changes, maps 1:1 to RecyclerView.Adapter's notifyItem* methods
+     */
+    public interface Callback{
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position, int count);
+    }
+
+    final Type type;
+    /**
+     * first position of the range, the source position for MOVE
+     */
+    final int position;
+    /**
+     * target position for MOVE, same as position for the others
+     */
+    final int toPosition;
+    final int count;
+    /**
+     * keys of the children in the range
+     */
+    final List<String> keys;
+    /**
+     * new values of the children in the range, empty for REMOVE
+     */
+    final List<T> values;
+
+    FIRListChange(Type type, int position, int toPosition, List<String> keys, List<T> values) {
+        this.type = type;
+        this.position = position;
+        this.toPosition = toPosition;
+        this.count = keys.size();
+        this.keys = keys;
+        this.values = values;
+    }
+
+    static <T> FIRListChange<T> insert(int position, String key, T value){
+        return new FIRListChange<>(Type.INSERT, position, position, Collections.singletonList(key), Collections.singletonList(value));
+    }
+
+    static <T> FIRListChange<T> remove(int position, String key){
+        return new FIRListChange<>(Type.REMOVE, position, position, Collections.singletonList(key), Collections.<T>emptyList());
+    }
+
+    static <T> FIRListChange<T> change(int position, String key, T value){
+        return new FIRListChange<>(Type.CHANGE, position, position, Collections.singletonList(key), Collections.singletonList(value));
+    }
+
+    static <T> FIRListChange<T> move(int fromPosition, int toPosition, String key, T value){
+        return new FIRListChange<>(Type.MOVE, fromPosition, toPosition, Collections.singletonList(key), Collections.singletonList(value));
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getToPosition() {
+        return toPosition;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public List<T> getValues() {
+        return values;
+    }
+
+    public void dispatchTo(Callback callback){
+        switch (type){
+            case INSERT:
+                callback.onInserted(position, count);
+                break;
+            case REMOVE:
+                callback.onRemoved(position, count);
+                break;
+            case CHANGE:
+                callback.onChanged(position, count);
+                break;
+            case MOVE:
+                callback.onMoved(position, toPosition);
+                break;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package online.devliving.rxfirebase;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of children loaded by a {@link FIRPager}, in the order the pager walks the keys. A page covers a fixed
+ * range of keys; a live page can gain or lose children within its range, and even become empty.
+ * @param <T> type of the values
+ */
+
+public final class FIRPage<T> {
+    final int index;
+    final List<String> keys;
+    final List<T> values;
+    final String startKey;
+    final String endKey;
+
+    FIRPage(int index, List<String> keys, List<T> values, String startKey, String endKey) {
+        this.index = index;
+        this.keys = Collections.unmodifiableList(keys);
+        this.values = Collections.unmodifiableList(values);
+        this.startKey = startKey;
+        this.endKey = endKey;
+    }
+
+    /**
+     * @return position of this page, 0 for the first one
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int size(){
+        return keys.size();
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    public List<T> getValues() {
+        return values;
+    }
+
+    /**
+     * @return smallest key of the range this page covers
+     */
+    public String getStartKey(){
+        return startKey;
+    }
+
+    /**
+     * @return largest key of the range this page covers
+     */
+    public String getEndKey(){
+        return endKey;
+    }
+
+    /**
+     * @return true if {@param other} has the same children, compared with equals
+     */
+    boolean sameContent(FIRPage<T> other){
+        return keys.equals(other.keys) && values.equals(other.values);
+    }
+}
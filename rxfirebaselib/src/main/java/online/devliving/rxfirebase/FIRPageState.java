@@ -0,0 +1,130 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable state of a {@link FIRPager}: the pages loaded so far and what the pager is doing
+ * @param <T> type of the values
+ */
+
+public final class FIRPageState<T> {
+    final List<FIRPage<T>> pages;
+    final int itemCount;
+    final boolean loading;
+    final boolean endReached;
+    @Nullable
+    final Throwable error;
+
+    FIRPageState(List<FIRPage<T>> pages, int itemCount, boolean loading, boolean endReached, @Nullable Throwable error) {
+        this.pages = pages;
+        this.itemCount = itemCount;
+        this.loading = loading;
+        this.endReached = endReached;
+        this.error = error;
+    }
+
+    static <T> FIRPageState<T> initial(){
+        return new FIRPageState<>(Collections.<FIRPage<T>>emptyList(), 0, false, false, null);
+    }
+
+    FIRPageState<T> loading(){
+        return new FIRPageState<>(pages, itemCount, true, endReached, null);
+    }
+
+    FIRPageState<T> failed(Throwable error){
+        return new FIRPageState<>(pages, itemCount, false, endReached, error);
+    }
+
+    /**
+     * @return this state with {@param error}, e.g of a live page, without stopping a page that is loading
+     */
+    FIRPageState<T> withError(Throwable error){
+        return new FIRPageState<>(pages, itemCount, loading, endReached, error);
+    }
+
+    /**
+     * @param page null if there was nothing after the last page
+     * @param last true if nothing comes after {@param page}
+     */
+    FIRPageState<T> loaded(@Nullable FIRPage<T> page, boolean last){
+        if(page == null) return new FIRPageState<>(pages, itemCount, false, true, null);
+
+        ArrayList<FIRPage<T>> newPages = new ArrayList<>(pages.size() + 1);
+        newPages.addAll(pages);
+        newPages.add(page);
+        return new FIRPageState<>(Collections.unmodifiableList(newPages), itemCount + page.size(), false, last, null);
+    }
+
+    /**
+     * @param page new content of the page at its index
+     */
+    FIRPageState<T> replaced(FIRPage<T> page){
+        ArrayList<FIRPage<T>> newPages = new ArrayList<>(pages);
+        FIRPage<T> old = newPages.set(page.index, page);
+        return new FIRPageState<>(Collections.unmodifiableList(newPages), itemCount - old.size() + page.size(),
+                loading, endReached, error);
+    }
+
+    public List<FIRPage<T>> getPages() {
+        return pages;
+    }
+
+    /**
+     * @return number of children in all the pages
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public T getItem(int position){
+        checkPosition(position);
+
+        for(int i = 0; i < pages.size(); i++){
+            FIRPage<T> page = pages.get(i);
+            if(position < page.size()) return page.values.get(position);
+            position -= page.size();
+        }
+        throw new IllegalStateException();
+    }
+
+    public String getKey(int position){
+        checkPosition(position);
+
+        for(int i = 0; i < pages.size(); i++){
+            FIRPage<T> page = pages.get(i);
+            if(position < page.size()) return page.keys.get(position);
+            position -= page.size();
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * @return true while a page is being loaded
+     */
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * @return true once every child of the query was loaded
+     */
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    /**
+     * @return why the last page failed to load, null if it didn't
+     */
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+
+    private void checkPosition(int position){
+        if(position < 0 || position >= itemCount) throw new IndexOutOfBoundsException("position " + position + ", item count " + itemCount);
+    }
+}
@@ -0,0 +1,522 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.subjects.BehaviorSubject;
+
+/**
+ * Loads the children of a location page by page in key order, see {@link RxQuery#observePaged(DatabaseReference, SnapshotMapper, int)}.
+ *
+ * Every page is a single read of at most pageSize + 1 children, starting at the last key of the previous page,
+ * so the time and memory a feed needs grow with what was scrolled instead of with the size of the list.
+ * Report the positions that become visible with {@link #onItemVisible(int)} and the next page is loaded before
+ * the end of the list is reached.
+ *
+ * By default pages are read once and don't follow later changes of the data. A live pager, see
+ * {@link RxQuery#observeLivePaged(DatabaseReference, SnapshotMapper, int, Direction, int)}, keeps a {@link com.google.firebase.database.ValueEventListener}
+ * on every page within a window around the visible pages. A page is loaded by the listener that then keeps it up to
+ * date, so it is downloaded once. Its listener reads up to pageSize / 2 children more than the page holds, so children
+ * added to the key range of the page show up until it holds that many more; the rest are dropped, the download of
+ * a page stays bounded. Pages that leave the window are detached and keep their last values, they are attached
+ * again with a listener on their key range when they come back. Children added outside the loaded ranges, e.g new
+ * posts in front of a newest first feed, aren't picked up.
+ *
+ * {@link #states()} emits on the thread the page was loaded on, usually the main thread or the map Scheduler of
+ * {@link RxQuery}, in the order the states were reached; states are emitted after the pager's lock is released, so
+ * a subscriber can call back into the pager. When states follow each other quickly only the latest one may be
+ * emitted. Unsubscribe the pager to stop loading and remove its listeners.
+ * @param <T> type of the values
+ */
+
+public final class FIRPager<T> implements Subscription {
+    /**
+     * Order the pages walk the keys in
+     */
+    public enum Direction {
+        /**
+         * from the smallest key, pages are read with startAt and limitToFirst
+         */
+        ASCENDING,
+        /**
+         * from the largest key, e.g newest push ids first, pages are read with endAt and limitToLast
+         */
+        DESCENDING
+    }
+
+    final Query query;
+    final SnapshotMapper<T> mapper;
+    final int pageSize;
+    final int prefetchDistance;
+    final Direction direction;
+    /**
+     * pages kept live before and after the visible pages, -1 to read pages once
+     */
+    final int liveWindow;
+    /**
+     * children a live page can gain, 0 if pages are read once
+     */
+    final int slack;
+
+    private final BehaviorSubject<FIRPageState<T>> states;
+
+    /**
+     * guarded by this
+     */
+    private FIRPageState<T> state = FIRPageState.initial();
+    /**
+     * true while a thread emits the states, guarded by this
+     */
+    private boolean emitting;
+    private boolean completed;
+    @Nullable
+    private Subscription loading;
+    private boolean unsubscribed;
+    /**
+     * listener of each page, null if the page is detached
+     */
+    private final ArrayList<Subscription> pageListeners = new ArrayList<>();
+    private int firstVisible;
+    private int lastVisible;
+
+    FIRPager(DatabaseReference ref, SnapshotMapper<T> mapper, int pageSize, Direction direction, int liveWindow) {
+        if(pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive, was " + pageSize);
+        if(liveWindow < -1) throw new IllegalArgumentException("liveWindow must be -1 or more, was " + liveWindow);
+
+        this.query = ref.orderByKey();
+        this.mapper = RxQuery.mapperFor(ref, mapper);
+        this.pageSize = pageSize;
+        this.prefetchDistance = Math.max(1, pageSize / 2);
+        this.direction = direction;
+        this.liveWindow = liveWindow;
+        this.slack = liveWindow < 0 ? 0 : Math.max(1, pageSize / 2);
+        this.states = BehaviorSubject.create(state);
+    }
+
+    /**
+     * @return Observable of the state of this pager, emits the current state right away. The first page is
+     * loaded when it is subscribed to, if it isn't already.
+     */
+    public Observable<FIRPageState<T>> states(){
+        return states.doOnSubscribe(new Action0() {
+            @Override
+            public void call() {
+                synchronized (FIRPager.this){
+                    if(state.pages.isEmpty() && state.error == null) startLoading();
+                }
+                emit();
+            }
+        });
+    }
+
+    /**
+     * @return the latest state
+     */
+    public synchronized FIRPageState<T> getState(){
+        return state;
+    }
+
+    /**
+     * @return number of pages with a live listener right now
+     */
+    public synchronized int getLivePageCount(){
+        int count = 0;
+        for(int i = 0; i < pageListeners.size(); i++){
+            if(pageListeners.get(i) != null) count++;
+        }
+        return count;
+    }
+
+    /**
+     * call when the item at {@param position} is shown, e.g from onBindViewHolder, loads the next page when
+     * fewer than half a page of loaded items come after it
+     * @param position
+     */
+    public void onItemVisible(int position){
+        onVisibleRangeChanged(position, position);
+    }
+
+    /**
+     * call when the visible items change, e.g from a scroll listener with the first and last visible positions
+     * of the LayoutManager. Loads the next page like {@link #onItemVisible(int)} and moves the live window.
+     * @param first
+     * @param last
+     */
+    public void onVisibleRangeChanged(int first, int last){
+        synchronized (this){
+            firstVisible = first;
+            lastVisible = last;
+
+            if(state.error == null && last >= state.itemCount - prefetchDistance) startLoading();
+            updateWindow();
+        }
+        emit();
+    }
+
+    /**
+     * starts loading the next page, also retries a page that failed to load
+     * @return false if a page is already loading, the end was reached or the pager was unsubscribed
+     */
+    public boolean loadNext(){
+        boolean started;
+        synchronized (this){
+            started = startLoading();
+        }
+        emit();
+        return started;
+    }
+
+    /**
+     * {@link #loadNext()} without emitting the new state, guarded by this
+     */
+    private boolean startLoading(){
+        if(unsubscribed || state.loading || state.endReached) return false;
+
+        String cursor = null;
+        if(!state.pages.isEmpty()){
+            FIRPage<T> last = state.pages.get(state.pages.size() - 1);
+            cursor = direction == Direction.ASCENDING ? last.endKey : last.startKey;
+        }
+        int index = state.pages.size();
+        publish(state.loading());
+
+        Query pageQuery = pageQuery(cursor);
+        PageListener listener = new PageListener(index, false);
+        loading = listener;
+        RxQuery.handOff(liveWindow < 0 ? RxQuery.observeRefSingle(pageQuery) : RxQuery.observeRef(pageQuery),
+                RxQuery.getMapScheduler())
+                .map(new PageMapper(cursor, index))
+                .subscribe(listener);
+        return true;
+    }
+
+    @Override
+    public void unsubscribe() {
+        ArrayList<Subscription> subscriptions = new ArrayList<>();
+        synchronized (this){
+            if(unsubscribed) return;
+
+            unsubscribed = true;
+            if(loading != null) subscriptions.add(loading);
+            loading = null;
+
+            for(int i = 0; i < pageListeners.size(); i++){
+                Subscription listener = pageListeners.set(i, null);
+                if(listener != null) subscriptions.add(listener);
+            }
+        }
+
+        for(int i = 0; i < subscriptions.size(); i++){
+            subscriptions.get(i).unsubscribe();
+        }
+        emit();
+    }
+
+    @Override
+    public synchronized boolean isUnsubscribed() {
+        return unsubscribed;
+    }
+
+    /**
+     * @param cursor key the previous page ended at, null for the first page
+     * @return query for the page after {@param cursor}, one child longer if the cursor itself is included and
+     * {@link #slack} children longer for a live page
+     */
+    Query pageQuery(@Nullable String cursor){
+        int limit = pageSize + slack + (cursor == null ? 0 : 1);
+        if(direction == Direction.ASCENDING){
+            return cursor == null ? query.limitToFirst(limit) : query.startAt(cursor).limitToFirst(limit);
+        }
+
+        return cursor == null ? query.limitToLast(limit) : query.endAt(cursor).limitToLast(limit);
+    }
+
+    /**
+     * @return query for the children a live page covering {@param startKey} to {@param endKey} can show
+     */
+    Query rangeQuery(String startKey, String endKey){
+        Query range = query.startAt(startKey).endAt(endKey);
+        return direction == Direction.ASCENDING ? range.limitToFirst(pageSize + slack) : range.limitToLast(pageSize + slack);
+    }
+
+    PageResult<T> toPage(DataSnapshot snapshot, @Nullable String cursor, int index){
+        // children arrive in ascending key order, the cursor is the last child of the previous page
+        ArrayList<DataSnapshot> children = new ArrayList<>((int) snapshot.getChildrenCount());
+        for(DataSnapshot child : snapshot.getChildren()){
+            if(!child.getKey().equals(cursor)) children.add(child);
+        }
+
+        int available = children.size();
+        // a live page read slack children past its end, so a full page without them is the last one
+        boolean last = available < pageSize || (slack > 0 && available == pageSize);
+        if(available == 0) return new PageResult<>(null, true);
+
+        int from = direction == Direction.ASCENDING ? 0 : Math.max(0, available - pageSize);
+        int to = Math.min(available, from + pageSize);
+        ArrayList<String> keys = new ArrayList<>(to - from);
+        ArrayList<T> values = new ArrayList<>(to - from);
+        for(int i = from; i < to; i++){
+            DataSnapshot child = children.get(i);
+            keys.add(child.getKey());
+            values.add(mapper.fromSnapshot(child));
+        }
+
+        String startKey = keys.get(0);
+        String endKey = keys.get(keys.size() - 1);
+        return new PageResult<>(ordered(index, keys, values, startKey, endKey), last);
+    }
+
+    /**
+     * @return content of the page at {@param index} covering {@param startKey} to {@param endKey}, read from
+     * {@param snapshot}; children outside the range are skipped
+     */
+    FIRPage<T> toLivePage(DataSnapshot snapshot, int index, String startKey, String endKey){
+        int count = (int) snapshot.getChildrenCount();
+        ArrayList<String> keys = new ArrayList<>(count);
+        ArrayList<T> values = new ArrayList<>(count);
+
+        for(DataSnapshot child : snapshot.getChildren()){
+            String key = child.getKey();
+            if(key.compareTo(startKey) < 0 || key.compareTo(endKey) > 0) continue;
+
+            keys.add(key);
+            values.add(mapper.fromSnapshot(child));
+        }
+
+        return ordered(index, keys, values, startKey, endKey);
+    }
+
+    private FIRPage<T> ordered(int index, ArrayList<String> keys, ArrayList<T> values, String startKey, String endKey){
+        if(direction == Direction.DESCENDING){
+            Collections.reverse(keys);
+            Collections.reverse(values);
+        }
+        return new FIRPage<>(index, keys, values, startKey, endKey);
+    }
+
+    /**
+     * attaches the pages in the live window and detaches the others, guarded by this
+     */
+    private void updateWindow(){
+        if(liveWindow < 0 || unsubscribed) return;
+
+        int firstPage = pageAt(firstVisible) - liveWindow;
+        int lastPage = pageAt(lastVisible) + liveWindow;
+
+        for(int i = 0; i < pageListeners.size(); i++){
+            boolean inWindow = i >= firstPage && i <= lastPage;
+            Subscription listener = pageListeners.get(i);
+
+            if(inWindow && listener == null) attach(i);
+            else if(!inWindow && listener != null){
+                pageListeners.set(i, null);
+                listener.unsubscribe();
+            }
+        }
+    }
+
+    /**
+     * @return index of the page that has {@param position}, the nearest page if there is none
+     */
+    private int pageAt(int position){
+        int index = 0;
+        for(; index < state.pages.size() - 1; index++){
+            int size = state.pages.get(index).size();
+            if(position < size) break;
+            position -= size;
+        }
+        return index;
+    }
+
+    /**
+     * listens to the key range of the page at {@param index}, guarded by this
+     */
+    private void attach(int index){
+        FIRPage<T> page = state.pages.get(index);
+        String startKey = page.startKey;
+        String endKey = page.endKey;
+
+        // registered before subscribing, the first event can arrive synchronously
+        PageListener listener = new PageListener(index, true);
+        pageListeners.set(index, listener);
+
+        RxQuery.handOff(RxQuery.observeRef(rangeQuery(startKey, endKey)), RxQuery.getMapScheduler())
+                .map(new Func1<DataSnapshot, PageResult<T>>() {
+                    @Override
+                    public PageResult<T> call(DataSnapshot dataSnapshot) {
+                        return new PageResult<>(toLivePage(dataSnapshot, index, startKey, endKey), false);
+                    }
+                })
+                .subscribe(listener);
+    }
+
+    /**
+     * records {@param newState}, it is emitted by {@link #emit()} once the lock is released; guarded by this
+     */
+    private void publish(FIRPageState<T> newState){
+        state = newState;
+    }
+
+    /**
+     * emits the states recorded since the last emission, and completes once unsubscribed. One thread emits at a
+     * time, in order; a call while another thread emits, or while the lock is held, leaves the new state to them.
+     */
+    private void emit(){
+        // the caller holding the lock emits once it released it
+        if(Thread.holdsLock(this)) return;
+
+        synchronized (this){
+            if(emitting || completed) return;
+            emitting = true;
+        }
+
+        for(;;){
+            FIRPageState<T> current;
+            boolean complete = false;
+            synchronized (this){
+                current = state;
+                if(current == states.getValue()){
+                    emitting = false;
+                    if(!unsubscribed) return;
+
+                    completed = true;
+                    complete = true;
+                }
+            }
+
+            if(complete){
+                states.onCompleted();
+                return;
+            }
+
+            states.onNext(current);
+        }
+    }
+
+    /**
+     * maps the values of a page query: the first one to the loaded page, which fixes the key range of the page, and
+     * later ones of a live page to the children within that range
+     */
+    final class PageMapper implements Func1<DataSnapshot, PageResult<T>> {
+        @Nullable final String cursor;
+        final int index;
+        @Nullable
+        private FIRPage<T> first;
+
+        PageMapper(@Nullable String cursor, int index) {
+            this.cursor = cursor;
+            this.index = index;
+        }
+
+        @Override
+        public PageResult<T> call(DataSnapshot dataSnapshot) {
+            if(first == null){
+                PageResult<T> result = toPage(dataSnapshot, cursor, index);
+                first = result.page;
+                return result;
+            }
+            return new PageResult<>(toLivePage(dataSnapshot, index, first.startKey, first.endKey), false);
+        }
+    }
+
+    /**
+     * loads its page, and replaces the content of the page while it is the current listener of the page
+     */
+    final class PageListener extends Subscriber<PageResult<T>> {
+        final int index;
+        /**
+         * false until the page was loaded, guarded by the pager
+         */
+        boolean loaded;
+
+        PageListener(int index, boolean loaded) {
+            this.index = index;
+            this.loaded = loaded;
+        }
+
+        @Override
+        public void onCompleted() {}
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (FIRPager.this){
+                failed(e);
+            }
+            emit();
+        }
+
+        @Override
+        public void onNext(PageResult<T> result) {
+            synchronized (FIRPager.this){
+                next(result);
+            }
+            emit();
+        }
+
+        /**
+         * guarded by the pager
+         */
+        private void failed(Throwable e){
+            if(unsubscribed) return;
+
+            if(!loaded){
+                loaded = true;
+                loading = null;
+                publish(state.failed(e));
+                return;
+            }
+
+            if(pageListeners.get(index) != this) return;
+
+            pageListeners.set(index, null);
+            publish(state.withError(e));
+        }
+
+        /**
+         * guarded by the pager
+         */
+        private void next(PageResult<T> result){
+            if(unsubscribed) return;
+
+            if(!loaded){
+                loaded = true;
+                loading = null;
+                if(result.page != null){
+                    // a live page keeps this listener until it leaves the window
+                    pageListeners.add(liveWindow < 0 ? null : this);
+                }
+                else unsubscribe();
+
+                publish(state.loaded(result.page, result.last));
+                updateWindow();
+                return;
+            }
+
+            if(result.page == null || pageListeners.get(index) != this) return;
+
+            if(!result.page.sameContent(state.pages.get(index))) publish(state.replaced(result.page));
+        }
+    }
+
+    static final class PageResult<T> {
+        @Nullable
+        final FIRPage<T> page;
+        final boolean last;
+
+        PageResult(@Nullable FIRPage<T> page, boolean last) {
+            this.page = page;
+            this.last = last;
+        }
+    }
+}
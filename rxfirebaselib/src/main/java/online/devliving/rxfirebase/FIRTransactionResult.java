@@ -0,0 +1,58 @@
+package online.devliving.rxfirebase;
+
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * Outcome of a transaction run with {@link RxTransaction}
+ */
+
+public final class FIRTransactionResult {
+    final boolean committed;
+    final DataSnapshot snapshot;
+    final int attempts;
+    final int runs;
+    final long latencyNanos;
+
+    FIRTransactionResult(boolean committed, DataSnapshot snapshot, int attempts, int runs, long latencyNanos) {
+        this.committed = committed;
+        this.snapshot = snapshot;
+        this.attempts = attempts;
+        this.runs = runs;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * @return false if the update function aborted the transaction
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * @return value of the location when the transaction finished
+     */
+    public DataSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return number of times the update function was called, more than one per run when the data changed underneath it
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return number of times the transaction was handed to the SDK, more than one after a {@link TransactionBackoff}
+     */
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return time from subscribing to the outcome, backoff delays included
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+}
@@ -0,0 +1,134 @@
+package online.devliving.rxfirebase;
+
+import android.net.Uri;
+import android.support.annotation.Nullable;
+
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.UploadTask;
+
+/**
+ * A progress snapshot of an upload observed with {@link RxStorage#upload(com.google.firebase.storage.StorageReference, Uri, StorageMetadata)},
+ * the last one is {@link State#COMPLETED} and has the metadata of the uploaded file
+ */
+
+public final class FIRUploadProgress {
+    public enum State {
+        RUNNING,
+        PAUSED,
+        COMPLETED
+    }
+
+    final UploadTask task;
+    final State state;
+    final long bytesTransferred;
+    final long totalBytes;
+    final double bytesPerSecond;
+    final long etaMillis;
+    @Nullable
+    final Uri sessionUri;
+    @Nullable
+    final StorageMetadata metadata;
+    @Nullable
+    final Uri downloadUrl;
+
+    FIRUploadProgress(UploadTask task, State state, long bytesTransferred, long totalBytes, double bytesPerSecond,
+                      long etaMillis, @Nullable Uri sessionUri, @Nullable StorageMetadata metadata, @Nullable Uri downloadUrl) {
+        this.task = task;
+        this.state = state;
+        this.bytesTransferred = bytesTransferred;
+        this.totalBytes = totalBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.etaMillis = etaMillis;
+        this.sessionUri = sessionUri;
+        this.metadata = metadata;
+        this.downloadUrl = downloadUrl;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isCompleted() {
+        return state == State.COMPLETED;
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * @return size of the file, -1 if it isn't known yet
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return transferred part between 0 and 1, 0 while the size isn't known
+     */
+    public double getFraction() {
+        return totalBytes <= 0 ? 0 : bytesTransferred / (double) totalBytes;
+    }
+
+    /**
+     * @return recent upload rate, smoothed over the last progress events; the average rate of the whole upload once
+     * it is completed. 0 until it can be measured.
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return estimated time left at the current rate in milliseconds, -1 if it can't be estimated e.g while paused
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    /**
+     * @return session of the upload, save it to resume the upload with
+     * {@link RxStorage#upload(com.google.firebase.storage.StorageReference, Uri, StorageMetadata, Uri)} after the app
+     * was killed; null until the session is created
+     */
+    @Nullable
+    public Uri getSessionUri() {
+        return sessionUri;
+    }
+
+    /**
+     * @return metadata of the uploaded file, null until it is completed
+     */
+    @Nullable
+    public StorageMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return download url of the uploaded file, null until it is completed
+     */
+    @Nullable
+    public Uri getDownloadUrl() {
+        return downloadUrl;
+    }
+
+    /**
+     * pauses the upload, it resumes from where it stopped
+     * @return false if it can't be paused e.g it is completed
+     */
+    public boolean pause() {
+        return task.pause();
+    }
+
+    /**
+     * @return false if it isn't paused
+     */
+    public boolean resume() {
+        return task.resume();
+    }
+
+    @Override
+    public String toString() {
+        return "FIRUploadProgress{" + state + ", " + bytesTransferred + "/" + totalBytes + " bytes, "
+                + (long) bytesPerSecond + " bytes/s, eta " + etaMillis + "ms}";
+    }
+}
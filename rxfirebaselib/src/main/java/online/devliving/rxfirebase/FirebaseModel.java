@@ -0,0 +1,23 @@
+package online.devliving.rxfirebase;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model class for the rxfirebase-compiler annotation processor, which generates a reflection free
+ * {@link ModelMapper} named {@code <ModelName>_SnapshotMapper} next to the model.
+ *
+ * All non static, non transient fields that aren't private and aren't annotated with
+ * {@link com.google.firebase.database.Exclude} are mapped, {@link com.google.firebase.database.PropertyName} is honored.
+ * Supported field types are primitives and their boxed types, String, {@code Map<String, V>}, {@code List<V>} and
+ * other {@link FirebaseModel} classes. The model needs a non private no-arg constructor.
+ */
+
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface FirebaseModel {
+}
@@ -0,0 +1,46 @@
+package online.devliving.rxfirebase;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Runs actions at the start of the next UI frame, using {@link Choreographer} where available
+ */
+
+final class FrameBoundary {
+    static final long FRAME_MILLIS = 16;
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private FrameBoundary(){}
+
+    /**
+     * runs {@param action} on the main thread at the start of the next frame
+     * @param action
+     */
+    static void post(Runnable action){
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN){
+            if(Looper.myLooper() == Looper.getMainLooper()) postFrameCallback(action);
+            else mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    postFrameCallback(action);
+                }
+            });
+        }
+        else mainHandler.postDelayed(action, FRAME_MILLIS);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static void postFrameCallback(Runnable action){
+        Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                action.run();
+            }
+        });
+    }
+}
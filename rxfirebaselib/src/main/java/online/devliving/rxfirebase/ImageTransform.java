@@ -0,0 +1,248 @@
+package online.devliving.rxfirebase;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.support.media.ExifInterface;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Shrinks an image before it is uploaded, e.g with {@link RxStorage#upload(com.google.firebase.storage.StorageReference, Uri, com.google.firebase.storage.StorageMetadata)},
+ * so no more bytes are sent than the screens showing it need.
+ *
+ * The image is decoded subsampled by the largest power of two that keeps it at least as big as the target, so the
+ * full size bitmap of a camera image is never in memory: a decoded bitmap takes less than 4 times the memory of the
+ * target size. It is then scaled to fit within maxWidth x maxHeight, keeping its aspect ratio and never scaled up,
+ * and encoded to the output file at the given quality. The work is done on the transform's Scheduler,
+ * {@code Schedulers.io()} by default. The EXIF orientation of the source, e.g of a camera photo, is applied to the
+ * pixels in the same pass as the scaling, since the encoded output has no orientation tag.
+ */
+
+public final class ImageTransform {
+    final int maxWidth;
+    final int maxHeight;
+    final Bitmap.CompressFormat format;
+    final int quality;
+    final Scheduler scheduler;
+
+    private ImageTransform(int maxWidth, int maxHeight, Bitmap.CompressFormat format, int quality, Scheduler scheduler) {
+        if(maxWidth <= 0 || maxHeight <= 0){
+            throw new IllegalArgumentException("target size must be positive, was " + maxWidth + "x" + maxHeight);
+        }
+        if(quality < 0 || quality > 100) throw new IllegalArgumentException("quality must be 0..100, was " + quality);
+
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.format = format;
+        this.quality = quality;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * encodes JPEGs on {@code Schedulers.io()}
+     * @param maxWidth
+     * @param maxHeight
+     * @param quality 0..100
+     * @return
+     */
+    public static ImageTransform create(int maxWidth, int maxHeight, int quality){
+        return create(maxWidth, maxHeight, Bitmap.CompressFormat.JPEG, quality, Schedulers.io());
+    }
+
+    /**
+     * @param maxWidth
+     * @param maxHeight
+     * @param format
+     * @param quality 0..100, ignored by lossless formats
+     * @param scheduler Scheduler to decode and encode on
+     * @return
+     */
+    public static ImageTransform create(int maxWidth, int maxHeight, Bitmap.CompressFormat format, int quality, Scheduler scheduler){
+        return new ImageTransform(maxWidth, maxHeight, format, quality, scheduler);
+    }
+
+    /**
+     * @param resolver to read {@param source} with
+     * @param source image to shrink, e.g a file or content uri
+     * @param output file to write the shrunk image to, replaced only once it is completely written
+     * @return Observable that emits the uri of {@param output} once the image is written and completes
+     */
+    public Observable<Uri> apply(ContentResolver resolver, Uri source, File output){
+        return Observable.fromCallable(new Callable<Uri>() {
+            @Override
+            public Uri call() throws Exception {
+                transform(resolver, source, output);
+                return Uri.fromFile(output);
+            }
+        }).subscribeOn(scheduler);
+    }
+
+    void transform(ContentResolver resolver, Uri source, File output) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        decode(resolver, source, bounds);
+        if(bounds.outWidth <= 0 || bounds.outHeight <= 0) throw new IOException("Unable to decode " + source);
+
+        int orientation = orientation(resolver, source);
+        // the target size applies to the upright image
+        double scale = swapsSides(orientation) ? scale(bounds.outHeight, bounds.outWidth, maxWidth, maxHeight)
+                : scale(bounds.outWidth, bounds.outHeight, maxWidth, maxHeight);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(scale);
+        Bitmap decoded = decode(resolver, source, options);
+        if(decoded == null) throw new IOException("Unable to decode " + source);
+
+        Bitmap bitmap = decoded;
+        try {
+            int width = Math.max(1, (int) Math.round(bounds.outWidth * scale));
+            int height = Math.max(1, (int) Math.round(bounds.outHeight * scale));
+            Matrix matrix = new Matrix();
+            if(decoded.getWidth() != width || decoded.getHeight() != height){
+                matrix.postScale(width / (float) decoded.getWidth(), height / (float) decoded.getHeight());
+            }
+            orient(matrix, orientation);
+
+            if(!matrix.isIdentity()){
+                bitmap = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+                if(bitmap != decoded) decoded.recycle();
+            }
+
+            write(bitmap, output);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * @return EXIF orientation of {@param source}, {@link ExifInterface#ORIENTATION_NORMAL} if it has none
+     */
+    private static int orientation(ContentResolver resolver, Uri source){
+        InputStream in = null;
+        try {
+            in = resolver.openInputStream(source);
+            if(in == null) return ExifInterface.ORIENTATION_NORMAL;
+            return new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            // e.g a format without EXIF, its pixels are upright
+            return ExifInterface.ORIENTATION_NORMAL;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * @return true if the upright image of {@param orientation} is turned by 90 degrees, its width is the stored height
+     */
+    static boolean swapsSides(int orientation){
+        switch (orientation){
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * adds what turns the stored pixels of {@param orientation} upright to {@param matrix}
+     */
+    private static void orient(Matrix matrix, int orientation){
+        switch (orientation){
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(-90);
+                break;
+        }
+    }
+
+    private void write(Bitmap bitmap, File output) throws IOException {
+        File temp = RxStorage.tempFileFor(output);
+        OutputStream out = null;
+        try {
+            FileOutputStream file = new FileOutputStream(temp);
+            out = new BufferedOutputStream(file);
+            if(!bitmap.compress(format, quality, out)) throw new IOException("Unable to encode " + output);
+            out.flush();
+            // on disk before it replaces the output, a crash leaves either the old file or the whole image
+            file.getChannel().force(true);
+            out.close();
+            out = null;
+
+            // an upload of the output never sees a half written file
+            if(!temp.renameTo(output)) throw new IOException("Unable to rename " + temp);
+        } catch (IOException e){
+            close(out);
+            temp.delete();
+            throw e;
+        }
+    }
+
+    private static Bitmap decode(ContentResolver resolver, Uri source, BitmapFactory.Options options) throws IOException {
+        InputStream in = resolver.openInputStream(source);
+        if(in == null) throw new IOException("Unable to open " + source);
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * @return factor that fits {@param width} x {@param height} within the target, at most 1
+     */
+    static double scale(int width, int height, int maxWidth, int maxHeight){
+        return Math.min(1, Math.min(maxWidth / (double) width, maxHeight / (double) height));
+    }
+
+    /**
+     * @return largest power of two subsample that still decodes at least as many pixels as {@param scale} needs
+     */
+    static int sampleSize(double scale){
+        int sampleSize = 1;
+        while(sampleSize * 2 * scale <= 1) sampleSize *= 2;
+        return sampleSize;
+    }
+
+    private static void close(Closeable closeable){
+        if(closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package online.devliving.rxfirebase;
+
+import com.google.firebase.database.DataSnapshot;
+
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import rx.functions.Func1;
+
+/**
+ * Turns child events into {@link FIRListChange}s by tracking the child keys in order, one instance per subscription.
+ * Returns null for events that don't change the list e.g a REMOVE for an unknown key.
+ */
+
+final class ListChangeMapper<T> implements Func1<FIRChildEvent<DataSnapshot>, FIRListChange<T>> {
+    final SnapshotMapper<T> mapper;
+    /**
+     * mirror of the consumer's list, keys only
+     */
+    final FIRKeyedList<Void> keys = new FIRKeyedList<>();
+
+    ListChangeMapper(SnapshotMapper<T> mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public FIRListChange<T> call(FIRChildEvent<DataSnapshot> event) {
+        String key = event.value.getKey();
+        int position;
+
+        switch (event.type){
+            case ADD:
+                position = keys.positionAfter(event.childName);
+                keys.insert(position, key, null);
+                return FIRListChange.insert(position, key, mapper.fromSnapshot(event.value));
+
+            case CHANGE:
+                position = keys.indexOf(key);
+                if(position < 0) return null;
+                return FIRListChange.change(position, key, mapper.fromSnapshot(event.value));
+
+            case REMOVE:
+                position = keys.indexOf(key);
+                if(position < 0) return null;
+                keys.remove(position);
+                return FIRListChange.remove(position, key);
+
+            case MOVE:
+                position = keys.indexOf(key);
+                if(position < 0) return null;
+                keys.remove(position);
+                int toPosition = keys.positionAfter(event.childName);
+                keys.insert(toPosition, key, null);
+                return FIRListChange.move(position, toPosition, key, mapper.fromSnapshot(event.value));
+        }
+
+        return null;
+    }
+}
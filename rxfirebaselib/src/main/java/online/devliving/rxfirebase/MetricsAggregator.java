@@ -0,0 +1,363 @@
+package online.devliving.rxfirebase;
+
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free in-memory {@link RxFirebaseMetrics}, aggregates per query path. Install it with
+ * {@code RxFirebasePlugins.setMetrics(aggregator)}, then {@link #dump()} it or export {@link #getPaths()}.
+ */
+
+public class MetricsAggregator extends RxFirebaseMetrics {
+    private final ConcurrentHashMap<String, PathMetrics> paths = new ConcurrentHashMap<>();
+
+    private final AtomicLong tasks = new AtomicLong();
+    private final AtomicLong failedTasks = new AtomicLong();
+    private final AtomicLong taskNanos = new AtomicLong();
+    private final AtomicLong maxTaskNanos = new AtomicLong();
+    private final AtomicLong transfers = new AtomicLong();
+    private final AtomicLong failedTransfers = new AtomicLong();
+    private final AtomicLong transferredBytes = new AtomicLong();
+    private final AtomicLong transferNanos = new AtomicLong();
+
+    private volatile long startedAt = System.nanoTime();
+
+    @Override
+    public QueryMetrics forQuery(Query query) {
+        String path = pathOf(query);
+        PathMetrics metrics = paths.get(path);
+        if(metrics == null){
+            metrics = new PathMetrics(path);
+            PathMetrics existing = paths.putIfAbsent(path, metrics);
+            if(existing != null) metrics = existing;
+        }
+        return metrics;
+    }
+
+    @Override
+    public void onTaskCompleted(long nanos, boolean successful) {
+        tasks.incrementAndGet();
+        if(!successful) failedTasks.incrementAndGet();
+        taskNanos.addAndGet(nanos);
+        updateMax(maxTaskNanos, nanos);
+    }
+
+    @Override
+    public void onTransferCompleted(long nanos, long bytes, boolean successful) {
+        transfers.incrementAndGet();
+        if(!successful) failedTransfers.incrementAndGet();
+        transferredBytes.addAndGet(bytes);
+        transferNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return metrics of the paths seen so far, busiest first
+     */
+    public List<PathMetrics> getPaths(){
+        ArrayList<PathMetrics> result = new ArrayList<>(paths.values());
+        Collections.sort(result, new Comparator<PathMetrics>() {
+            @Override
+            public int compare(PathMetrics a, PathMetrics b) {
+                return Long.compare(b.getEvents() + b.getTransactions(), a.getEvents() + a.getTransactions());
+            }
+        });
+        return result;
+    }
+
+    public long getTaskCount(){
+        return tasks.get();
+    }
+
+    public long getFailedTaskCount(){
+        return failedTasks.get();
+    }
+
+    /**
+     * @return average time from subscribing to completion of the tasks, in nanoseconds
+     */
+    public long getAverageTaskNanos(){
+        long count = tasks.get();
+        return count == 0 ? 0 : taskNanos.get() / count;
+    }
+
+    public long getMaxTaskNanos(){
+        return maxTaskNanos.get();
+    }
+
+    public long getTransferCount(){
+        return transfers.get();
+    }
+
+    public long getFailedTransferCount(){
+        return failedTransfers.get();
+    }
+
+    public long getTransferredBytes(){
+        return transferredBytes.get();
+    }
+
+    /**
+     * @return bytes transferred per second of transfer time, over all transfers
+     */
+    public double getAverageTransferBytesPerSecond(){
+        long nanos = transferNanos.get();
+        return nanos == 0 ? 0 : transferredBytes.get() * 1e9 / nanos;
+    }
+
+    /**
+     * @return seconds since this aggregator was created or reset
+     */
+    public double getElapsedSeconds(){
+        return (System.nanoTime() - startedAt) / 1e9;
+    }
+
+    /**
+     * forgets everything collected so far, Observables that already exist keep reporting to the paths they had
+     */
+    public void reset(){
+        for(PathMetrics metrics : paths.values()){
+            metrics.reset();
+        }
+        tasks.set(0);
+        failedTasks.set(0);
+        taskNanos.set(0);
+        maxTaskNanos.set(0);
+        transfers.set(0);
+        failedTransfers.set(0);
+        transferredBytes.set(0);
+        transferNanos.set(0);
+        startedAt = System.nanoTime();
+    }
+
+    /**
+     * @return human readable table of everything collected so far, times in milliseconds
+     */
+    public String dump(){
+        double seconds = getElapsedSeconds();
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%.1fs, tasks: %d (%d failed) avg %.2fms max %.2fms%n",
+                seconds, getTaskCount(), getFailedTaskCount(), getAverageTaskNanos() / 1e6, getMaxTaskNanos() / 1e6));
+        out.append(String.format(Locale.US, "transfers: %d (%d failed) %d bytes at %.1f KB/s%n",
+                getTransferCount(), getFailedTransferCount(), getTransferredBytes(), getAverageTransferBytesPerSecond() / 1024));
+        out.append("path\tactive\tattached\tdetached\tevents\tevents/s\tfirst event ms\tchildren avg\tchildren max\tmapped\tmap avg ms\tmap max ms\ttx\ttx failed\ttx attempts\ttx avg ms\ttx max ms\n");
+
+        for(PathMetrics metrics : getPaths()){
+            out.append(String.format(Locale.US, "%s\t%d\t%d\t%d\t%d\t%.2f\t%.2f\t%.1f\t%d\t%d\t%.3f\t%.3f\t%d\t%d\t%.1f\t%.2f\t%.2f%n",
+                    metrics.path, metrics.getActiveListeners(), metrics.getAttached(), metrics.getDetached(),
+                    metrics.getEvents(), metrics.getEvents() / seconds, metrics.getAverageFirstEventNanos() / 1e6,
+                    metrics.getAverageChildCount(), metrics.getMaxChildCount(), metrics.getDeserializations(),
+                    metrics.getAverageDeserializationNanos() / 1e6, metrics.getMaxDeserializationNanos() / 1e6,
+                    metrics.getTransactions(), metrics.getFailedTransactions(), metrics.getAverageTransactionAttempts(),
+                    metrics.getAverageTransactionNanos() / 1e6, metrics.getMaxTransactionNanos() / 1e6));
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return path of {@param query} without the database url, "/" for the root
+     */
+    static String pathOf(Query query){
+        DatabaseReference ref = query.getRef();
+        String url = ref.toString();
+        String root = ref.getRoot().toString();
+        return url.length() > root.length() ? url.substring(root.length()) : "/";
+    }
+
+    static void updateMax(AtomicLong max, long value){
+        long current;
+        while(value > (current = max.get())){
+            if(max.compareAndSet(current, value)) return;
+        }
+    }
+
+    /**
+     * Metrics of one path, all counters are cumulative since the aggregator was created or reset
+     */
+    public static final class PathMetrics extends QueryMetrics {
+        final String path;
+
+        private final AtomicLong attached = new AtomicLong();
+        private final AtomicLong detached = new AtomicLong();
+        private final AtomicLong valueEvents = new AtomicLong();
+        private final AtomicLong childEvents = new AtomicLong();
+        private final AtomicLong childCount = new AtomicLong();
+        private final AtomicLong maxChildCount = new AtomicLong();
+        private final AtomicLong firstEvents = new AtomicLong();
+        private final AtomicLong firstEventNanos = new AtomicLong();
+        private final AtomicLong deserializations = new AtomicLong();
+        private final AtomicLong deserializationNanos = new AtomicLong();
+        private final AtomicLong maxDeserializationNanos = new AtomicLong();
+        private final AtomicLong transactions = new AtomicLong();
+        private final AtomicLong failedTransactions = new AtomicLong();
+        private final AtomicLong transactionAttempts = new AtomicLong();
+        private final AtomicLong transactionNanos = new AtomicLong();
+        private final AtomicLong maxTransactionNanos = new AtomicLong();
+
+        PathMetrics(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public void onAttached(ListenerType type) {
+            attached.incrementAndGet();
+        }
+
+        @Override
+        public void onDetached(ListenerType type) {
+            detached.incrementAndGet();
+        }
+
+        @Override
+        public void onValueEvent(long childCount) {
+            valueEvents.incrementAndGet();
+            this.childCount.addAndGet(childCount);
+            updateMax(maxChildCount, childCount);
+        }
+
+        @Override
+        public void onChildEvent() {
+            childEvents.incrementAndGet();
+        }
+
+        @Override
+        public void onFirstEvent(long nanos) {
+            firstEvents.incrementAndGet();
+            firstEventNanos.addAndGet(nanos);
+        }
+
+        @Override
+        public void onDeserialized(long nanos) {
+            deserializations.incrementAndGet();
+            deserializationNanos.addAndGet(nanos);
+            updateMax(maxDeserializationNanos, nanos);
+        }
+
+        @Override
+        public void onTransactionCompleted(long nanos, int attempts, boolean committed) {
+            transactions.incrementAndGet();
+            if(!committed) failedTransactions.incrementAndGet();
+            transactionAttempts.addAndGet(attempts);
+            transactionNanos.addAndGet(nanos);
+            updateMax(maxTransactionNanos, nanos);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getAttached(){
+            return attached.get();
+        }
+
+        public long getDetached(){
+            return detached.get();
+        }
+
+        /**
+         * @return listeners attached right now, approximate after a reset
+         */
+        public long getActiveListeners(){
+            return Math.max(0, attached.get() - detached.get());
+        }
+
+        public long getValueEvents(){
+            return valueEvents.get();
+        }
+
+        public long getChildEvents(){
+            return childEvents.get();
+        }
+
+        public long getEvents(){
+            return valueEvents.get() + childEvents.get();
+        }
+
+        /**
+         * @return average number of children of the value snapshots
+         */
+        public double getAverageChildCount(){
+            long count = valueEvents.get();
+            return count == 0 ? 0 : childCount.get() / (double) count;
+        }
+
+        public long getMaxChildCount(){
+            return maxChildCount.get();
+        }
+
+        /**
+         * @return average time from adding a listener to its first event, in nanoseconds
+         */
+        public long getAverageFirstEventNanos(){
+            long count = firstEvents.get();
+            return count == 0 ? 0 : firstEventNanos.get() / count;
+        }
+
+        public long getDeserializations(){
+            return deserializations.get();
+        }
+
+        public long getAverageDeserializationNanos(){
+            long count = deserializations.get();
+            return count == 0 ? 0 : deserializationNanos.get() / count;
+        }
+
+        public long getMaxDeserializationNanos(){
+            return maxDeserializationNanos.get();
+        }
+
+        public long getTransactions(){
+            return transactions.get();
+        }
+
+        /**
+         * @return transactions that were aborted or failed
+         */
+        public long getFailedTransactions(){
+            return failedTransactions.get();
+        }
+
+        /**
+         * @return average number of times the update function of a transaction ran, 1 without contention
+         */
+        public double getAverageTransactionAttempts(){
+            long count = transactions.get();
+            return count == 0 ? 0 : transactionAttempts.get() / (double) count;
+        }
+
+        public long getAverageTransactionNanos(){
+            long count = transactions.get();
+            return count == 0 ? 0 : transactionNanos.get() / count;
+        }
+
+        public long getMaxTransactionNanos(){
+            return maxTransactionNanos.get();
+        }
+
+        void reset(){
+            attached.set(0);
+            detached.set(0);
+            valueEvents.set(0);
+            childEvents.set(0);
+            childCount.set(0);
+            maxChildCount.set(0);
+            firstEvents.set(0);
+            firstEventNanos.set(0);
+            deserializations.set(0);
+            deserializationNanos.set(0);
+            maxDeserializationNanos.set(0);
+            transactions.set(0);
+            failedTransactions.set(0);
+            transactionAttempts.set(0);
+            transactionNanos.set(0);
+            maxTransactionNanos.set(0);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+/**
+ * {@link SnapshotMapper} that can also convert a model back into the value written to the database
+ * @param <T> type of the model
+ */
+
+public interface ModelMapper<T> extends SnapshotMapper<T> {
+    /**
+     * @param model
+     * @return value to pass to {@link com.google.firebase.database.DatabaseReference#setValue(Object)}
+     * or {@link com.google.firebase.database.DatabaseReference#updateChildren(java.util.Map)}
+     */
+    @Nullable
+    Object toValue(@Nullable T model);
+}
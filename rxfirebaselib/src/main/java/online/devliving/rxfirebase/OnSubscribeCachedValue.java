@@ -0,0 +1,84 @@
+package online.devliving.rxfirebase;
+
+import rx.Observable;
+import rx.Subscriber;
+
+/**
+ * Emits the value cached on disk, unless the server was faster, then the values of the server. The cached value is
+ * never emitted after a server value.
+ */
+
+final class OnSubscribeCachedValue<T> implements Observable.OnSubscribe<CachedValue<T>> {
+    final Observable<SnapshotDiskCache.Entry> cached;
+    final SnapshotMapper<T> mapper;
+    final Observable<CachedValue<T>> server;
+
+    OnSubscribeCachedValue(Observable<SnapshotDiskCache.Entry> cached, SnapshotMapper<T> mapper, Observable<CachedValue<T>> server) {
+        this.cached = cached;
+        this.mapper = mapper;
+        this.server = server;
+    }
+
+    @Override
+    public void call(Subscriber<? super CachedValue<T>> child) {
+        Gate gate = new Gate();
+
+        // the read starts first, it takes a trip to the io Scheduler
+        child.add(cached.subscribe(new Subscriber<SnapshotDiskCache.Entry>() {
+            @Override
+            public void onCompleted() {}
+
+            @Override
+            public void onError(Throwable e) {}
+
+            @Override
+            public void onNext(SnapshotDiskCache.Entry entry) {
+                T value;
+                try {
+                    value = mapper.fromValue(entry.value);
+                } catch (RuntimeException e){
+                    // e.g saved from an older version of the model, the server value replaces it
+                    return;
+                }
+
+                synchronized (gate){
+                    if(gate.serverEmitted || child.isUnsubscribed()) return;
+                    child.onNext(new CachedValue<>(value, CachedValue.Source.CACHE, entry.timestamp));
+                }
+            }
+        }));
+
+        server.unsafeSubscribe(new Subscriber<CachedValue<T>>(child) {
+            @Override
+            public void onCompleted() {
+                synchronized (gate){
+                    gate.serverEmitted = true;
+                    child.onCompleted();
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                synchronized (gate){
+                    gate.serverEmitted = true;
+                    child.onError(e);
+                }
+            }
+
+            @Override
+            public void onNext(CachedValue<T> value) {
+                synchronized (gate){
+                    gate.serverEmitted = true;
+                    child.onNext(value);
+                }
+            }
+        });
+    }
+
+    static final class Gate {
+        /**
+         * guarded by this
+         */
+        boolean serverEmitted;
+    }
+}
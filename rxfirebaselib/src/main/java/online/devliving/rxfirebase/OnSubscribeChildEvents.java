@@ -0,0 +1,210 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.exceptions.MissingBackpressureException;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent.ChildEventType;
+
+/**
+ * Backpressure aware child event source, events are only emitted as requested and queued in between
+ * according to a {@link ChildEventBackpressure}.
+ */
+
+final class OnSubscribeChildEvents implements Observable.OnSubscribe<FIRChildEvent<DataSnapshot>> {
+    final Query query;
+    final ChildEventBackpressure backpressure;
+    final QueryMetrics metrics;
+
+    OnSubscribeChildEvents(Query query, ChildEventBackpressure backpressure) {
+        this.query = query;
+        this.backpressure = backpressure;
+        this.metrics = RxFirebasePlugins.metricsFor(query);
+    }
+
+    @Override
+    public void call(Subscriber<? super FIRChildEvent<DataSnapshot>> subscriber) {
+        Emitter emitter = new Emitter(subscriber, backpressure,
+                RxFirebasePlugins.ListenerMetrics.attach(metrics, QueryMetrics.ListenerType.CHILD));
+
+        subscriber.setProducer(emitter);
+        query.addChildEventListener(emitter);
+
+        subscriber.add(Subscriptions.create(new Action0() {
+            @Override
+            public void call() {
+                query.removeEventListener(emitter);
+                emitter.cancel();
+                if(emitter.tracker != null) emitter.tracker.detach();
+            }
+        }));
+    }
+
+    static final class Emitter implements ChildEventListener, Producer {
+        final Subscriber<? super FIRChildEvent<DataSnapshot>> child;
+        final ChildEventBackpressure backpressure;
+        final ChildEventQueue<DataSnapshot> queue;
+        @Nullable final RxFirebasePlugins.ListenerMetrics tracker;
+
+        long requested;
+        Throwable error;
+        boolean terminated;
+        boolean emitting;
+        boolean missed;
+
+        Emitter(Subscriber<? super FIRChildEvent<DataSnapshot>> child, ChildEventBackpressure backpressure,
+                @Nullable RxFirebasePlugins.ListenerMetrics tracker) {
+            this.child = child;
+            this.backpressure = backpressure;
+            this.tracker = tracker;
+            this.queue = new ChildEventQueue<>(backpressure.strategy == ChildEventBackpressure.Strategy.LATEST_PER_KEY);
+        }
+
+        @Override
+        public void request(long n) {
+            if(n < 0) throw new IllegalArgumentException("n >= 0 required but it was " + n);
+            if(n == 0) return;
+
+            synchronized (this){
+                long r = requested + n;
+                requested = r < 0 ? Long.MAX_VALUE : r;
+            }
+            drain();
+        }
+
+        @Override
+        public void onChildAdded(DataSnapshot dataSnapshot, String s) {
+            offer(new FIRChildEvent<DataSnapshot>(dataSnapshot.getKey(), dataSnapshot, s, ChildEventType.ADD));
+        }
+
+        @Override
+        public void onChildChanged(DataSnapshot dataSnapshot, String s) {
+            offer(new FIRChildEvent<DataSnapshot>(dataSnapshot.getKey(), dataSnapshot, s, ChildEventType.CHANGE));
+        }
+
+        @Override
+        public void onChildRemoved(DataSnapshot dataSnapshot) {
+            offer(new FIRChildEvent<DataSnapshot>(dataSnapshot.getKey(), dataSnapshot, null, ChildEventType.REMOVE));
+        }
+
+        @Override
+        public void onChildMoved(DataSnapshot dataSnapshot, String s) {
+            offer(new FIRChildEvent<DataSnapshot>(dataSnapshot.getKey(), dataSnapshot, s, ChildEventType.MOVE));
+        }
+
+        @Override
+        public void onCancelled(DatabaseError databaseError) {
+            synchronized (this){
+                if(error == null) error = databaseError.toException();
+            }
+            drain();
+        }
+
+        void offer(FIRChildEvent<DataSnapshot> event){
+            if(tracker != null) tracker.onChildEvent();
+
+            synchronized (this){
+                if(error != null || child.isUnsubscribed()) return;
+
+                int added = queue.offer(event);
+                if(added == 0) backpressure.onDropped();
+
+                if(queue.size() > backpressure.capacity){
+                    if(backpressure.strategy == ChildEventBackpressure.Strategy.DROP_OLDEST){
+                        queue.poll();
+                        backpressure.onDropped();
+                        added--;
+                    }
+                    else {
+                        error = new MissingBackpressureException("more than " + backpressure.capacity
+                                + " child events waiting for " + event.value.getRef());
+                    }
+                }
+
+                if(added != 0) backpressure.onQueueDepthChanged(added);
+            }
+            drain();
+        }
+
+        void cancel(){
+            synchronized (this){
+                discardQueue();
+            }
+        }
+
+        void drain(){
+            synchronized (this){
+                if(emitting){
+                    missed = true;
+                    return;
+                }
+                emitting = true;
+            }
+
+            for(;;){
+                for(;;){
+                    FIRChildEvent<DataSnapshot> event;
+                    Throwable err = null;
+
+                    synchronized (this){
+                        if(terminated || child.isUnsubscribed()){
+                            discardQueue();
+                            emitting = false;
+                            return;
+                        }
+
+                        if(error != null){
+                            err = error;
+                            terminated = true;
+                            discardQueue();
+                            event = null;
+                        }
+                        else {
+                            if(requested == 0 || queue.isEmpty()) break;
+
+                            event = queue.poll();
+                            backpressure.onQueueDepthChanged(-1);
+                            if(requested != Long.MAX_VALUE) requested--;
+                        }
+                    }
+
+                    if(err != null){
+                        child.onError(err);
+                        synchronized (this){
+                            emitting = false;
+                        }
+                        return;
+                    }
+
+                    child.onNext(event);
+                }
+
+                synchronized (this){
+                    if(!missed){
+                        emitting = false;
+                        return;
+                    }
+                    missed = false;
+                }
+            }
+        }
+
+        private void discardQueue(){
+            if(!queue.isEmpty()){
+                backpressure.onQueueDepthChanged(-queue.size());
+                queue.clear();
+            }
+        }
+    }
+}
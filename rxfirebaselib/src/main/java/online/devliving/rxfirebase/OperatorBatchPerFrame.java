@@ -0,0 +1,100 @@
+package online.devliving.rxfirebase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import rx.Observable;
+import rx.Subscriber;
+import rx.observers.SerializedSubscriber;
+
+/**
+ * Collects child events until the next UI frame and emits them as one folded batch, see {@link ChildEventQueue}
+ * for the folding rules. A frame callback is only requested while there are events waiting. Completion is delivered
+ * on the main thread after the last batch, errors are delivered right away and drop the waiting events.
+ *
+ * Doesn't support backpressure: it requests everything from upstream and emits a batch every frame there are
+ * events, whatever the downstream requested. Folding bounds a batch by the number of children that changed, not by
+ * the number of events; apply an onBackpressure operator downstream if it can't keep up.
+ */
+
+final class OperatorBatchPerFrame<T> implements Observable.Operator<List<FIRChildEvent<T>>, FIRChildEvent<T>> {
+
+    @Override
+    public Subscriber<? super FIRChildEvent<T>> call(Subscriber<? super List<FIRChildEvent<T>>> child) {
+        SerializedSubscriber<List<FIRChildEvent<T>>> serialized = new SerializedSubscriber<>(child);
+        BatchSubscriber<T> parent = new BatchSubscriber<>(serialized);
+        child.add(parent);
+        return parent;
+    }
+
+    static final class BatchSubscriber<T> extends Subscriber<FIRChildEvent<T>> implements Runnable {
+        final Subscriber<? super List<FIRChildEvent<T>>> child;
+        final ChildEventQueue<T> queue = new ChildEventQueue<>(true);
+        boolean scheduled;
+        /**
+         * upstream completed, the next frame emits the last batch and completes
+         */
+        boolean completed;
+
+        BatchSubscriber(Subscriber<? super List<FIRChildEvent<T>>> child) {
+            this.child = child;
+        }
+
+        @Override
+        public void onNext(FIRChildEvent<T> event) {
+            boolean schedule;
+            synchronized (this){
+                queue.offer(event);
+                schedule = !scheduled;
+                scheduled = true;
+            }
+
+            if(schedule) FrameBoundary.post(this);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (this){
+                queue.clear();
+            }
+            child.onError(e);
+            unsubscribe();
+        }
+
+        @Override
+        public void onCompleted() {
+            boolean schedule;
+            synchronized (this){
+                completed = true;
+                schedule = !scheduled;
+                scheduled = true;
+            }
+
+            if(schedule) FrameBoundary.post(this);
+        }
+
+        /**
+         * frame callback, emits everything collected so far and completes if upstream did
+         */
+        @Override
+        public void run() {
+            List<FIRChildEvent<T>> batch = null;
+            boolean complete;
+            synchronized (this){
+                scheduled = false;
+                complete = completed;
+                if(!queue.isEmpty()){
+                    batch = new ArrayList<>(queue.size());
+                    queue.drainTo(batch);
+                }
+            }
+
+            if(batch != null && !child.isUnsubscribed()) child.onNext(batch);
+            if(complete){
+                child.onCompleted();
+                unsubscribe();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package online.devliving.rxfirebase;
+
+/**
+ * Receives what the listeners and transactions of a query path do, see {@link RxFirebaseMetrics#forQuery(com.google.firebase.database.Query)}.
+ * Methods are called on the Firebase callback thread, or the thread snapshots are mapped on, and must be cheap
+ * and thread safe. Override the ones you need.
+ */
+
+public abstract class QueryMetrics {
+    /**
+     * Metrics that ignore everything, used when no {@link RxFirebaseMetrics} is installed
+     */
+    public static final QueryMetrics NONE = new QueryMetrics() {};
+
+    /**
+     * Types of listener
+     */
+    public enum ListenerType{
+        VALUE,
+        SINGLE_VALUE,
+        CHILD
+    }
+
+    /**
+     * a listener was added to the query
+     * @param type
+     */
+    public void onAttached(ListenerType type){}
+
+    /**
+     * a listener was removed from the query
+     * @param type
+     */
+    public void onDetached(ListenerType type){}
+
+    /**
+     * a value event arrived
+     * @param childCount number of children of the snapshot
+     */
+    public void onValueEvent(long childCount){}
+
+    /**
+     * a child event arrived
+     */
+    public void onChildEvent(){}
+
+    /**
+     * the first event of a listener arrived
+     * @param nanos time since the listener was added
+     */
+    public void onFirstEvent(long nanos){}
+
+    /**
+     * a snapshot or raw value was mapped to a model
+     * @param nanos time the mapping took
+     */
+    public void onDeserialized(long nanos){}
+
+    /**
+     * a transaction at the query location finished, see {@link RxTransaction}
+     * @param nanos time from subscribing to the outcome
+     * @param attempts number of times the update function ran
+     * @param committed false if it was aborted or failed
+     */
+    public void onTransactionCompleted(long nanos, int attempts, boolean committed){}
+}
@@ -0,0 +1,158 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.subjects.BehaviorSubject;
+
+/**
+ * The signed in user of the default {@link FirebaseAuth}, kept up to date by a single
+ * {@link FirebaseAuth.AuthStateListener} that is added on first use and stays for the life of the process.
+ *
+ * {@link #observeUser()} replays the current user to every subscriber and emits again when another user signs in
+ * or the user signs out, not on token refreshes. {@link #getUid()} reads the current user without a lookup, so it
+ * can be used in hot code like transaction bodies. {@link #whenSignedIn(Func1)} attaches queries only while a user
+ * is signed in. Thread safe.
+ */
+
+public final class RxAuth {
+    private static final Object LOCK = new Object();
+
+    /**
+     * null until first used, guarded by LOCK
+     */
+    @Nullable
+    private static AuthState state;
+
+    /**
+     * @return Observable that emits the signed in user right away and whenever it changes, null while nobody is
+     * signed in. Changes are emitted on the main thread. It never completes.
+     */
+    public static Observable<FirebaseUser> observeUser(){
+        return state().subject.asObservable();
+    }
+
+    /**
+     * @return Observable that emits the signed in user right away if there is one, and every user that signs in
+     */
+    public static Observable<FirebaseUser> observeSignedIn(){
+        return observeUser().filter(new Func1<FirebaseUser, Boolean>() {
+            @Override
+            public Boolean call(FirebaseUser user) {
+                return user != null;
+            }
+        });
+    }
+
+    /**
+     * Subscribes to the Observable {@param whenSignedIn} returns for the signed in user, e.g a query of the user's
+     * node, once a user is signed in. It is unsubscribed when the user signs out, and subscribed again for the next
+     * user, so a query never attaches without a user.
+     * @param whenSignedIn
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<T> whenSignedIn(Func1<? super FirebaseUser, ? extends Observable<? extends T>> whenSignedIn){
+        return observeUser().switchMap(new Func1<FirebaseUser, Observable<? extends T>>() {
+            @Override
+            public Observable<? extends T> call(FirebaseUser user) {
+                return user == null ? Observable.<T>never() : whenSignedIn.call(user);
+            }
+        });
+    }
+
+    /**
+     * @return the signed in user, null if nobody is signed in
+     */
+    @Nullable
+    public static FirebaseUser getUser(){
+        AuthState current = state();
+        FirebaseUser user = current.user;
+        // a sign in that just completed may not have reached the listener yet
+        return user != null ? user : current.auth.getCurrentUser();
+    }
+
+    /**
+     * @return uid of the signed in user, null if nobody is signed in
+     */
+    @Nullable
+    public static String getUid(){
+        FirebaseUser user = getUser();
+        return user == null ? null : user.getUid();
+    }
+
+    /**
+     * @return uid of the signed in user
+     * @throws IllegalStateException if nobody is signed in
+     */
+    @NonNull
+    public static String requireUid(){
+        String uid = getUid();
+        if(uid == null) throw new IllegalStateException("No user is signed in");
+        return uid;
+    }
+
+    /**
+     * signs out of the default {@link FirebaseAuth}, {@link #getUid()} returns null right away instead of once the
+     * listener is called
+     */
+    public static void signOut(){
+        AuthState current = state();
+        current.auth.signOut();
+        current.update(null);
+    }
+
+    private static AuthState state(){
+        synchronized (LOCK){
+            if(state == null){
+                state = new AuthState(FirebaseAuth.getInstance());
+                state.auth.addAuthStateListener(state);
+            }
+            return state;
+        }
+    }
+
+    static final class AuthState implements FirebaseAuth.AuthStateListener {
+        final FirebaseAuth auth;
+        final BehaviorSubject<FirebaseUser> subject;
+
+        @Nullable
+        volatile FirebaseUser user;
+
+        /**
+         * uid of the last emitted user, guarded by this
+         */
+        @Nullable
+        private String uid;
+
+        AuthState(FirebaseAuth auth) {
+            this.auth = auth;
+            this.user = auth.getCurrentUser();
+            this.uid = user == null ? null : user.getUid();
+            this.subject = BehaviorSubject.create(user);
+        }
+
+        @Override
+        public void onAuthStateChanged(@NonNull FirebaseAuth firebaseAuth) {
+            update(firebaseAuth.getCurrentUser());
+        }
+
+        /**
+         * emits {@param current} if it is another user than the last one, under the lock so the emissions keep
+         * the order of the changes
+         */
+        synchronized void update(@Nullable FirebaseUser current){
+            user = current;
+            String currentUid = current == null ? null : current.getUid();
+            if(currentUid == null ? uid == null : currentUid.equals(uid)) return;
+
+            uid = currentUid;
+            subject.onNext(current);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package online.devliving.rxfirebase;
+
+import com.google.firebase.database.Query;
+
+/**
+ * Metrics hook installed with {@link RxFirebasePlugins#setMetrics(RxFirebaseMetrics)}, {@link MetricsAggregator}
+ * is a ready made one. Override the methods you need.
+ */
+
+public abstract class RxFirebaseMetrics {
+    /**
+     * called once for every Observable {@link RxQuery} creates, not for every event
+     * @param query
+     * @return metrics the listeners of {@param query} report to
+     */
+    public QueryMetrics forQuery(Query query){
+        return QueryMetrics.NONE;
+    }
+
+    /**
+     * a Task observed with {@link RxGMSTask} completed
+     * @param nanos time from subscribing to the completion
+     * @param successful
+     */
+    public void onTaskCompleted(long nanos, boolean successful){}
+
+    /**
+     * a Storage transfer observed with {@link RxStorage} completed
+     * @param nanos time from subscribing to the completion
+     * @param bytes bytes transferred by this attempt, without the ones of a resumed session
+     * @param successful
+     */
+    public void onTransferCompleted(long nanos, long bytes, boolean successful){}
+}
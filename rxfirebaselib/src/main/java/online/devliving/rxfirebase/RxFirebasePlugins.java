@@ -0,0 +1,148 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Query;
+
+
+/**
+ * Registry of the hooks {@link RxQuery}, {@link RxGMSTask} and {@link RxStorage} report into. Install the hooks before creating the
+ * Observables, an Observable keeps reporting to the metrics that were installed when it was created.
+ */
+
+public final class RxFirebasePlugins {
+    @Nullable
+    private static volatile RxFirebaseMetrics metrics;
+
+    private RxFirebasePlugins(){}
+
+    /**
+     * @param metrics null to stop collecting metrics, the default
+     */
+    public static void setMetrics(@Nullable RxFirebaseMetrics metrics){
+        RxFirebasePlugins.metrics = metrics;
+    }
+
+    @Nullable
+    public static RxFirebaseMetrics getMetrics(){
+        return metrics;
+    }
+
+    static QueryMetrics metricsFor(Query query){
+        RxFirebaseMetrics current = metrics;
+        return current == null ? QueryMetrics.NONE : current.forQuery(query);
+    }
+
+    /**
+     * @return {@param mapper} timed by {@param queryMetrics}, {@param mapper} itself if there are no metrics
+     */
+    static <T> SnapshotMapper<T> timed(QueryMetrics queryMetrics, SnapshotMapper<T> mapper){
+        return queryMetrics == QueryMetrics.NONE ? mapper : new TimedMapper<>(mapper, queryMetrics);
+    }
+
+    static void onTaskCompleted(long startNanos, boolean successful){
+        RxFirebaseMetrics current = metrics;
+        if(current != null) current.onTaskCompleted(System.nanoTime() - startNanos, successful);
+    }
+
+    static void onTransferCompleted(long startNanos, long bytes, boolean successful){
+        RxFirebaseMetrics current = metrics;
+        if(current != null) current.onTransferCompleted(System.nanoTime() - startNanos, bytes, successful);
+    }
+
+    /**
+     * @return value of {@link System#nanoTime()} if there are metrics, 0 otherwise
+     */
+    static long taskStart(){
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * tracks one listener, reports the first event and every event after it
+     */
+    static final class ListenerMetrics {
+        final QueryMetrics metrics;
+        final QueryMetrics.ListenerType type;
+        final long attachedAt;
+        volatile boolean seen;
+
+        private ListenerMetrics(QueryMetrics metrics, QueryMetrics.ListenerType type) {
+            this.metrics = metrics;
+            this.type = type;
+            this.attachedAt = System.nanoTime();
+        }
+
+        /**
+         * @return tracker of a newly attached listener, null if there are no metrics
+         */
+        @Nullable
+        static ListenerMetrics attach(QueryMetrics metrics, QueryMetrics.ListenerType type){
+            if(metrics == QueryMetrics.NONE) return null;
+
+            metrics.onAttached(type);
+            return new ListenerMetrics(metrics, type);
+        }
+
+        void onValueEvent(DataSnapshot snapshot){
+            onEvent();
+            metrics.onValueEvent(snapshot.getChildrenCount());
+        }
+
+        void onChildEvent(){
+            onEvent();
+            metrics.onChildEvent();
+        }
+
+        void detach(){
+            metrics.onDetached(type);
+        }
+
+        private void onEvent(){
+            if(!seen){
+                seen = true;
+                metrics.onFirstEvent(System.nanoTime() - attachedAt);
+            }
+        }
+    }
+
+    /**
+     * mapper that reports how long mapping took
+     * @param <T>
+     */
+    static final class TimedMapper<T> implements SnapshotMapper<T> {
+        final SnapshotMapper<T> mapper;
+        final QueryMetrics metrics;
+
+        TimedMapper(SnapshotMapper<T> mapper, QueryMetrics metrics) {
+            this.mapper = mapper;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public T fromSnapshot(DataSnapshot snapshot) {
+            long start = System.nanoTime();
+            T model = mapper.fromSnapshot(snapshot);
+            metrics.onDeserialized(System.nanoTime() - start);
+            return model;
+        }
+
+        @Override
+        public T fromValue(@Nullable Object value) {
+            long start = System.nanoTime();
+            T model = mapper.fromValue(value);
+            metrics.onDeserialized(System.nanoTime() - start);
+            return model;
+        }
+
+        /**
+         * times {@link SnapshotMappers#map(SnapshotMapper, DataSnapshot, Object)}
+         */
+        T map(DataSnapshot snapshot, @Nullable Object raw){
+            long start = System.nanoTime();
+            T model = SnapshotMappers.map(mapper, snapshot, raw);
+            metrics.onDeserialized(System.nanoTime() - start);
+            return model;
+        }
+    }
+}
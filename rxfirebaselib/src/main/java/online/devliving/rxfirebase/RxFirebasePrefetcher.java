@@ -0,0 +1,371 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.functions.Func0;
+
+/**
+ * Reads the hot queries of an app in parallel as soon as they are known, instead of one after another as the
+ * screens that need them subscribe.
+ *
+ * Register the queries by name, e.g the node of the current user, and call {@link #start()} once they can be built,
+ * usually when the user is signed in. A single read of every registered query starts right away. Single value reads
+ * of the prefetcher, by name or by query spec, get the read that is in flight or completed instead of starting a
+ * new one; a completed read is reused until it is older than maxAge. {@link #getPrefetches()} tells which reads
+ * were used. Thread safe.
+ */
+
+public final class RxFirebasePrefetcher {
+    final long maxAgeMillis;
+
+    /**
+     * guarded by this
+     */
+    private final LinkedHashMap<String, Func0<? extends Query>> registered = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Prefetch> byName = new LinkedHashMap<>();
+    private final HashMap<Object, Prefetch> bySpec = new HashMap<>();
+
+    private RxFirebasePrefetcher(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * completed reads are reused for a minute
+     * @return
+     */
+    public static RxFirebasePrefetcher create(){
+        return create(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @param maxAge how long a completed read is reused
+     * @param unit
+     * @return
+     */
+    public static RxFirebasePrefetcher create(long maxAge, TimeUnit unit){
+        if(maxAge < 0) throw new IllegalArgumentException("maxAge can't be negative, was " + maxAge);
+        return new RxFirebasePrefetcher(unit.toMillis(maxAge));
+    }
+
+    /**
+     * @param name
+     * @param query
+     * @return this
+     */
+    public RxFirebasePrefetcher register(String name, Query query){
+        return register(name, new Func0<Query>() {
+            @Override
+            public Query call() {
+                return query;
+            }
+        });
+    }
+
+    /**
+     * @param name
+     * @param query builds the query when the prefetch starts, e.g with the uid of the signed in user
+     * @return this
+     */
+    public synchronized RxFirebasePrefetcher register(String name, Func0<? extends Query> query){
+        registered.put(name, query);
+        return this;
+    }
+
+    /**
+     * starts a read of every registered query that isn't read already, in parallel
+     */
+    public void start(){
+        List<Prefetch> started = new ArrayList<>();
+        synchronized (this){
+            for(Map.Entry<String, Func0<? extends Query>> entry : registered.entrySet()){
+                Prefetch current = byName.get(entry.getKey());
+                if(current != null && !current.isExpired()) continue;
+
+                Prefetch prefetch = new Prefetch(entry.getKey(), entry.getValue().call());
+                put(prefetch);
+                started.add(prefetch);
+            }
+        }
+
+        // subscribed outside the lock, a read can complete synchronously
+        for(int i = 0; i < started.size(); i++){
+            started.get(i).start();
+        }
+    }
+
+    /**
+     * drops the reads, e.g when the user signs out, reads in flight complete unused. The queries stay registered.
+     */
+    public synchronized void reset(){
+        byName.clear();
+        bySpec.clear();
+    }
+
+    /**
+     * @param name name of a registered query
+     * @return Observable that emits the prefetched value of the query once and completes, or reads it if there is
+     * no usable prefetch
+     */
+    public Observable<DataSnapshot> observeRefSingle(String name){
+        return Observable.defer(new Func0<Observable<DataSnapshot>>() {
+            @Override
+            public Observable<DataSnapshot> call() {
+                Func0<? extends Query> query;
+                synchronized (RxFirebasePrefetcher.this){
+                    Prefetch prefetch = usable(byName.get(name));
+                    if(prefetch != null) return prefetch.use();
+
+                    query = registered.get(name);
+                }
+
+                if(query == null) return Observable.error(new IllegalArgumentException("No query registered as " + name));
+                return RxQuery.observeRefSingle(query.call());
+            }
+        });
+    }
+
+    /**
+     * @param query
+     * @return Observable that emits the prefetched value of a query with the same spec once and completes, or reads
+     * {@param query} if there is no usable prefetch
+     */
+    public Observable<DataSnapshot> observeRefSingle(Query query){
+        return Observable.defer(new Func0<Observable<DataSnapshot>>() {
+            @Override
+            public Observable<DataSnapshot> call() {
+                synchronized (RxFirebasePrefetcher.this){
+                    Prefetch prefetch = usable(bySpec.get(specOf(query)));
+                    if(prefetch != null) return prefetch.use();
+                }
+
+                return RxQuery.observeRefSingle(query);
+            }
+        });
+    }
+
+    /**
+     * @param name name of a registered query
+     * @param clazz
+     * @param <T>
+     * @return Observable that emits the prefetched value of the query once and completes
+     */
+    public <T> Observable<T> observeSingleValue(String name, Class<T> clazz){
+        return observeSingleValue(name, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * @param name name of a registered query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits the prefetched value of the query once and completes
+     */
+    public <T> Observable<T> observeSingleValue(String name, SnapshotMapper<T> mapper){
+        return RxQuery.handOff(observeRefSingle(name), RxQuery.getMapScheduler())
+                .map(RxQuery.mapSnapshot(cachedMapper(mapper)));
+    }
+
+    /**
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return Observable that emits the prefetched value of a query with the same spec once and completes
+     */
+    public <T> Observable<T> observeSingleValue(Query query, Class<T> clazz){
+        return observeSingleValue(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits the prefetched value of a query with the same spec once and completes
+     */
+    public <T> Observable<T> observeSingleValue(Query query, SnapshotMapper<T> mapper){
+        return RxQuery.handOff(observeRefSingle(query), RxQuery.getMapScheduler())
+                .map(RxQuery.mapSnapshot(RxQuery.mapperFor(query, mapper)));
+    }
+
+    /**
+     * @return the reads started so far, in registration order
+     */
+    public synchronized List<Prefetch> getPrefetches(){
+        return new ArrayList<>(byName.values());
+    }
+
+    /**
+     * @return one line per read: name, whether it completed, its latency and how often it was used, e.g for logging
+     * which prefetches pay off
+     */
+    public String dump(){
+        List<Prefetch> prefetches = getPrefetches();
+        StringBuilder out = new StringBuilder();
+        for(int i = 0; i < prefetches.size(); i++){
+            Prefetch prefetch = prefetches.get(i);
+            long latency = prefetch.getLatencyNanos();
+            out.append(String.format(Locale.US, "%s\t%s\t%s\tused %d%n", prefetch.name,
+                    prefetch.isCompleted() ? "completed" : prefetch.isFailed() ? "failed" : "in flight",
+                    latency < 0 ? "-" : String.format(Locale.US, "%.1fms", latency / 1e6), prefetch.getUseCount()));
+        }
+        return out.toString();
+    }
+
+    /**
+     * the query of a name is only built when it is read, values read by name are mapped without its metrics
+     */
+    private <T> SnapshotMapper<T> cachedMapper(SnapshotMapper<T> mapper){
+        SnapshotCache cache = RxQuery.getSnapshotCache();
+        return cache == null ? mapper : cache.wrap(mapper);
+    }
+
+    /**
+     * guarded by this
+     */
+    private void put(Prefetch prefetch){
+        Prefetch old = byName.put(prefetch.name, prefetch);
+        if(old != null) bySpec.remove(old.spec);
+        bySpec.put(prefetch.spec, prefetch);
+    }
+
+    /**
+     * @return {@param prefetch} if it is in flight or completed within maxAge, guarded by this
+     */
+    @Nullable
+    private Prefetch usable(@Nullable Prefetch prefetch){
+        return prefetch == null || prefetch.isFailed() || prefetch.isExpired() ? null : prefetch;
+    }
+
+    static Object specOf(Query query){
+        // the same spec in another database is another query
+        return RxQuery.keyOf(query);
+    }
+
+    /**
+     * A single read started by the prefetcher
+     */
+    public final class Prefetch {
+        final String name;
+        final Query query;
+        final Object spec;
+        final Observable<DataSnapshot> result;
+        final long start = System.nanoTime();
+
+        /**
+         * guarded by the prefetcher
+         */
+        private long completedAt = -1;
+        private long latencyNanos = -1;
+        private boolean failed;
+        private int useCount;
+
+        Prefetch(String name, Query query) {
+            this.name = name;
+            this.query = query;
+            this.spec = specOf(query);
+            this.result = RxQuery.observeRefSingle(query)
+                    .doOnNext(new Action1<DataSnapshot>() {
+                        @Override
+                        public void call(DataSnapshot dataSnapshot) {
+                            synchronized (RxFirebasePrefetcher.this){
+                                latencyNanos = System.nanoTime() - start;
+                                completedAt = System.currentTimeMillis();
+                            }
+                        }
+                    })
+                    .doOnError(new Action1<Throwable>() {
+                        @Override
+                        public void call(Throwable throwable) {
+                            synchronized (RxFirebasePrefetcher.this){
+                                failed = true;
+                            }
+                        }
+                    })
+                    .cache();
+        }
+
+        /**
+         * subscribes to the cached read, it runs to the end even if the prefetch is dropped
+         */
+        void start(){
+            result.subscribe(new Subscriber<DataSnapshot>() {
+                @Override
+                public void onCompleted() {}
+
+                @Override
+                public void onError(Throwable e) {
+                    // the consumers read the query themselves
+                }
+
+                @Override
+                public void onNext(DataSnapshot dataSnapshot) {}
+            });
+        }
+
+        /**
+         * @return the read, counted as used, that reads the query again if it fails, so a failed prefetch doesn't
+         * fail its consumers; guarded by the prefetcher
+         */
+        Observable<DataSnapshot> use(){
+            useCount++;
+            return result.onErrorResumeNext(RxQuery.observeRefSingle(query));
+        }
+
+        /**
+         * guarded by the prefetcher
+         */
+        boolean isExpired(){
+            return completedAt >= 0 && System.currentTimeMillis() - completedAt > maxAgeMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isCompleted() {
+            synchronized (RxFirebasePrefetcher.this){
+                return completedAt >= 0;
+            }
+        }
+
+        public boolean isFailed() {
+            synchronized (RxFirebasePrefetcher.this){
+                return failed;
+            }
+        }
+
+        /**
+         * @return true if a subscriber got this read instead of reading the query itself
+         */
+        public boolean isUsed() {
+            return getUseCount() > 0;
+        }
+
+        public int getUseCount() {
+            synchronized (RxFirebasePrefetcher.this){
+                return useCount;
+            }
+        }
+
+        /**
+         * @return time from the start of the read to the value, -1 while it is in flight
+         */
+        public long getLatencyNanos() {
+            synchronized (RxFirebasePrefetcher.this){
+                return latencyNanos;
+            }
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package online.devliving.rxfirebase;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
-import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
+import rx.functions.Action0;
 import rx.functions.Func0;
+import rx.subscriptions.Subscriptions;
 
 /**
  * Created by Mehedi Hasan Khan <mehedi.mailing@gmail.com> on 2/1/17.
@@ -16,41 +23,77 @@ import rx.functions.Func0;
  */
 
 public final class RxGMSTask {
+    /**
+     * Runs the completion listener on the thread that completes the task, or the subscribing thread if the task
+     * is already complete, instead of posting it to the main thread
+     */
+    public static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
 
     /**
-     * returns Observable that emits the result of {@param task}
+     * returns Observable that emits the result of {@param task}.
+     * A Task listener can't be removed, so the listener only holds the subscriber until it unsubscribes;
+     * an abandoned subscription doesn't keep the subscriber reachable until the task completes.
      * @param task
      * @param nullable if false then NULL value is not emitted
+     * @param executor executor for the completion listener, null for the main thread
      * @param <T>
      * @return
      */
-    static <T> Observable<T> just(Task<T> task, boolean nullable){
+    static <T> Observable<T> just(Task<T> task, boolean nullable, @Nullable Executor executor){
         return Observable.create(new Observable.OnSubscribe<T>() {
             @Override
             public void call(Subscriber<? super T> sub) {
-                task.continueWith(new Continuation<T, T>() {
-
+                long start = RxFirebasePlugins.taskStart();
+                AtomicReference<Subscriber<? super T>> subscriber = new AtomicReference<Subscriber<? super T>>(sub);
+                sub.add(Subscriptions.create(new Action0() {
                     @Override
-                    public T then(@NonNull Task<T> t) throws Exception {
-                        if(sub.isUnsubscribed()) return null;
+                    public void call() {
+                        subscriber.set(null);
+                    }
+                }));
 
-                        if(t.isSuccessful()){
-                            T  result = t.getResult();
-                            if(result != null || nullable) sub.onNext(result);
+                OnCompleteListener<T> listener = new OnCompleteListener<T>() {
+                    @Override
+                    public void onComplete(@NonNull Task<T> t) {
+                        if(start != 0) RxFirebasePlugins.onTaskCompleted(start, t.isSuccessful());
 
-                            sub.onCompleted();
-                        }
-                        else{
-                            sub.onError(task.getException());
-                        }
+                        Subscriber<? super T> sub = subscriber.getAndSet(null);
+                        if(sub == null || sub.isUnsubscribed()) return;
 
-                        return null;
+                        emit(t, nullable, sub);
                     }
-                });
+                };
+
+                if(executor == null) task.addOnCompleteListener(listener);
+                else task.addOnCompleteListener(executor, listener);
             }
         });
     }
 
+    /**
+     * sends the outcome of the completed {@param task} to {@param sub}
+     * @param task
+     * @param nullable if false then NULL value is not emitted
+     * @param sub
+     * @param <T>
+     */
+    static <T> void emit(Task<T> task, boolean nullable, Subscriber<? super T> sub){
+        if(task.isSuccessful()){
+            T  result = task.getResult();
+            if(result != null || nullable) sub.onNext(result);
+
+            sub.onCompleted();
+        }
+        else{
+            sub.onError(task.getException());
+        }
+    }
+
     /**
      * returns Observable that emits the result of {@param task}, might emit null
      * @param task
@@ -58,7 +101,31 @@ public final class RxGMSTask {
      * @return
      */
     public static <T> Observable<T> just(Task<T> task){
-        return just(task, true);
+        return just(task, true, null);
+    }
+
+    /**
+     * returns Observable that emits the result of {@param task} on {@param executor}, might emit null.
+     * Use {@link #DIRECT} to emit on the thread where the task completes.
+     * @param task
+     * @param executor
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<T> just(Task<T> task, Executor executor){
+        return just(task, true, executor);
+    }
+
+    /**
+     * returns Observable that emits the result of {@param task} on {@param scheduler}, might emit null.
+     * The result is handed to {@param scheduler} straight from the thread where the task completes.
+     * @param task
+     * @param scheduler
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<T> just(Task<T> task, Scheduler scheduler){
+        return just(task, true, DIRECT).observeOn(scheduler);
     }
 
     /**
@@ -68,7 +135,29 @@ public final class RxGMSTask {
      * @return
      */
     public static <T> Observable<T> justNonNullable(Task<T> task){
-        return just(task, false);
+        return just(task, false, null);
+    }
+
+    /**
+     * returns Observable that emits the result of {@param task} on {@param executor}, null value is not emitted
+     * @param task
+     * @param executor
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<T> justNonNullable(Task<T> task, Executor executor){
+        return just(task, false, executor);
+    }
+
+    /**
+     * returns Observable that emits the result of {@param task}, might emit null.
+     * Only one listener is attached to {@param task} no matter how many subscribers there are.
+     * @param task
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<T> cached(Task<T> task){
+        return just(task).cache();
     }
 
     /**
@@ -5,13 +5,23 @@ import android.support.annotation.Nullable;
 import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import rx.Observable;
+import rx.Scheduler;
 import rx.Subscriber;
 import rx.functions.Action0;
+import rx.functions.Func0;
 import rx.functions.Func1;
+import rx.schedulers.Schedulers;
 import rx.subscriptions.Subscriptions;
 
 /**
@@ -21,6 +31,73 @@ import rx.subscriptions.Subscriptions;
  */
 
 public final class RxQuery {
+    /**
+     * Shared Observables currently in use, keyed by query spec
+     */
+    private static final Map<Object, Observable<?>> sharedQueries = new HashMap<>();
+
+    /**
+     * Scheduler snapshots are mapped on when none is given, null to map on the Firebase callback thread
+     */
+    @Nullable
+    private static volatile Scheduler mapScheduler;
+
+    /**
+     * Cache of mapped children consulted by every method that maps snapshots, null for none
+     */
+    @Nullable
+    private static volatile SnapshotCache snapshotCache;
+
+    /**
+     * Disk cache of the cached methods e.g {@link #observeValueCached(Query, Class)}, null for none
+     */
+    @Nullable
+    private static volatile SnapshotDiskCache diskCache;
+
+    /**
+     * Firebase delivers snapshots on the main thread, set a Scheduler here to hand them off right away and map them
+     * on that Scheduler instead e.g {@code Schedulers.computation()}. Order of the emissions of a query is preserved.
+     * Applies to every method that maps snapshots and isn't given a Scheduler explicitly.
+     * @param scheduler null to map on the Firebase callback thread, the default
+     */
+    public static void setMapScheduler(@Nullable Scheduler scheduler){
+        mapScheduler = scheduler;
+    }
+
+    @Nullable
+    public static Scheduler getMapScheduler(){
+        return mapScheduler;
+    }
+
+    /**
+     * Snapshots are mapped from scratch every time they are emitted, set a cache here to reuse the model of a child
+     * whose content didn't change since it was last mapped, see {@link SnapshotCache}.
+     * Applies to the Observables created after it is set.
+     * @param cache null to map every snapshot, the default
+     */
+    public static void setSnapshotCache(@Nullable SnapshotCache cache){
+        snapshotCache = cache;
+    }
+
+    @Nullable
+    public static SnapshotCache getSnapshotCache(){
+        return snapshotCache;
+    }
+
+    /**
+     * Set a disk cache here for the cached methods, e.g {@link #observeValueCached(Query, Class)}, to emit the value
+     * they saved last time before the server answers. Applies to the Observables created after it is set.
+     * @param cache null to only emit server values, the default
+     */
+    public static void setDiskCache(@Nullable SnapshotDiskCache cache){
+        diskCache = cache;
+    }
+
+    @Nullable
+    public static SnapshotDiskCache getDiskCache(){
+        return diskCache;
+    }
+
     /**
      * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
      * @param query
@@ -29,13 +106,43 @@ public final class RxQuery {
      * @return Observable that emits the value of the {@param query} once and completes
      */
     public static <T> Observable<T> observeSingleValue(Query query, Class<T> clazz){
-        return observeRefSingle(query)
-                .map(new Func1<DataSnapshot, T>() {
-                    @Override
-                    public T call(DataSnapshot dataSnapshot) {
-                        return dataSnapshot.getValue(clazz);
-                    }
-                });
+        return observeSingleValue(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits the value of the {@param query} once and completes
+     */
+    public static <T> Observable<T> observeSingleValue(Query query, SnapshotMapper<T> mapper){
+        return observeSingleValue(query, mapper, mapScheduler);
+    }
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
+     * @param query
+     * @param clazz
+     * @param scheduler Scheduler to map the snapshot on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the value of the {@param query} once and completes
+     */
+    public static <T> Observable<T> observeSingleValue(Query query, Class<T> clazz, @Nullable Scheduler scheduler){
+        return observeSingleValue(query, SnapshotMappers.of(clazz), scheduler);
+    }
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
+     * @param query
+     * @param mapper
+     * @param scheduler Scheduler to map the snapshot on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the value of the {@param query} once and completes
+     */
+    public static <T> Observable<T> observeSingleValue(Query query, SnapshotMapper<T> mapper, @Nullable Scheduler scheduler){
+        return handOff(observeRefSingle(query), scheduler)
+                .map(mapSnapshot(mapperFor(query, mapper)));
     }
 
     /**
@@ -44,12 +151,15 @@ public final class RxQuery {
      * @return Observable that emits the value of the {@param query} once and completes
      */
     public static Observable<DataSnapshot> observeRefSingle(Query query){
+        QueryMetrics metrics = RxFirebasePlugins.metricsFor(query);
         return Observable.create(new Observable.OnSubscribe<DataSnapshot>() {
             @Override
             public void call(Subscriber<? super DataSnapshot> subscriber) {
+                RxFirebasePlugins.ListenerMetrics tracker = RxFirebasePlugins.ListenerMetrics.attach(metrics, QueryMetrics.ListenerType.SINGLE_VALUE);
                 ValueEventListener listener = new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
+                        if(tracker != null) tracker.onValueEvent(dataSnapshot);
                         try {
                             if(!subscriber.isUnsubscribed()){
                                 subscriber.onNext(dataSnapshot);
@@ -78,6 +188,7 @@ public final class RxQuery {
                     @Override
                     public void call() {
                         query.removeEventListener(listener);
+                        if(tracker != null) tracker.detach();
                     }
                 }));
             }
@@ -90,12 +201,15 @@ public final class RxQuery {
      * @return Observable that emits the value of the {@param query} once initially and then every time the value changes
      */
     public static Observable<DataSnapshot> observeRef(Query query){
+        QueryMetrics metrics = RxFirebasePlugins.metricsFor(query);
         return Observable.create(new Observable.OnSubscribe<DataSnapshot>() {
             @Override
             public void call(Subscriber<? super DataSnapshot> subscriber) {
+                RxFirebasePlugins.ListenerMetrics tracker = RxFirebasePlugins.ListenerMetrics.attach(metrics, QueryMetrics.ListenerType.VALUE);
                 ValueEventListener listener = new ValueEventListener() {
                     @Override
                     public void onDataChange(DataSnapshot dataSnapshot) {
+                        if(tracker != null) tracker.onValueEvent(dataSnapshot);
                         try {
                             if(!subscriber.isUnsubscribed()){
                                 subscriber.onNext(dataSnapshot);
@@ -123,12 +237,94 @@ public final class RxQuery {
                     @Override
                     public void call() {
                         query.removeEventListener(listener);
+                        if(tracker != null) tracker.detach();
                     }
                 }));
             }
         });
     }
 
+    /**
+     * Same as {@link #observeRef(Query)} but all subscribers to the same query spec (path, ordering, limits) of the
+     * same database share a single {@link ValueEventListener}. The listener is attached on the first subscribe and removed
+     * when the last subscriber unsubscribes. New subscribers receive the latest snapshot immediately.
+     * @param query
+     * @return Observable that emits the value of the {@param query} once initially and then every time the value changes
+     */
+    public static Observable<DataSnapshot> observeRefShared(Query query){
+        return share(keyOf(query), observeRef(query));
+    }
+
+    /**
+     * Same as {@link #observeValue(Query, Class)} but backed by {@link #observeRefShared(Query)}, every snapshot is
+     * deserialized once for all the subscribers of the same query spec and {@param clazz}.
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return Observable that emits the value of the {@param query} once initially and then every time the value changes
+     */
+    public static <T> Observable<T> observeValueShared(Query query, Class<T> clazz){
+        return observeValueShared(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * Same as {@link #observeValue(Query, SnapshotMapper)} but backed by {@link #observeRefShared(Query)}, every snapshot is
+     * mapped once for all the subscribers of the same query spec and {@param mapper}.
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits the value of the {@param query} once initially and then every time the value changes
+     */
+    public static <T> Observable<T> observeValueShared(Query query, SnapshotMapper<T> mapper){
+        return share(Arrays.asList(keyOf(query), mapper), handOff(observeRefShared(query), mapScheduler)
+                .map(mapSnapshot(mapperFor(query, mapper))));
+    }
+
+    /**
+     * @param query
+     * @return key of {@param query}: the database and the query spec, the same spec in another database, e.g of a
+     * second app, is a different query
+     */
+    static String keyOf(Query query){
+        return query.getRef().getRoot().toString() + query.getSpec();
+    }
+
+    /**
+     * returns a ref-counted Observable that replays the latest item of {@param source}, one per {@param key}
+     * @param key
+     * @param source
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Observable<T> share(Object key, Observable<T> source){
+        synchronized (sharedQueries){
+            Observable<T> shared = (Observable<T>) sharedQueries.get(key);
+            if(shared == null){
+                final Object[] holder = new Object[1];
+                Action0 release = new Action0() {
+                    @Override
+                    public void call() {
+                        synchronized (sharedQueries){
+                            if(sharedQueries.get(key) == holder[0]) sharedQueries.remove(key);
+                        }
+                    }
+                };
+
+                shared = source
+                        .doOnTerminate(release)
+                        .doOnUnsubscribe(release)
+                        .replay(1)
+                        .refCount();
+
+                holder[0] = shared;
+                sharedQueries.put(key, shared);
+            }
+
+            return shared;
+        }
+    }
+
     /**
      * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
      * @param query
@@ -137,13 +333,151 @@ public final class RxQuery {
      * @return Observable that emits the value of the {@param query} once initially and then every time the value changes
      */
     public static <T> Observable<T> observeValue(Query query, Class<T> clazz){
-        return observeRef(query)
-                .map(new Func1<DataSnapshot, T>() {
+        return observeValue(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits the value of the {@param query} once initially and then every time the value changes
+     */
+    public static <T> Observable<T> observeValue(Query query, SnapshotMapper<T> mapper){
+        return observeValue(query, mapper, mapScheduler);
+    }
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
+     * @param query
+     * @param clazz
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the value of the {@param query} once initially and then every time the value changes
+     */
+    public static <T> Observable<T> observeValue(Query query, Class<T> clazz, @Nullable Scheduler scheduler){
+        return observeValue(query, SnapshotMappers.of(clazz), scheduler);
+    }
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
+     * @param query
+     * @param mapper
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the value of the {@param query} once initially and then every time the value changes
+     */
+    public static <T> Observable<T> observeValue(Query query, SnapshotMapper<T> mapper, @Nullable Scheduler scheduler){
+        return handOff(observeRef(query), scheduler)
+                .map(mapSnapshot(mapperFor(query, mapper)));
+    }
+
+    /**
+     * Same as {@link #observeSingleValue(Query, Class)} but with the value saved in the {@link SnapshotDiskCache},
+     * see {@link #observeValueCached(Query, SnapshotMapper, Scheduler)}
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return Observable that emits the cached value if there is one, then the value of the {@param query} and completes
+     */
+    public static <T> Observable<CachedValue<T>> observeSingleValueCached(Query query, Class<T> clazz){
+        return observeSingleValueCached(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * Same as {@link #observeSingleValue(Query, SnapshotMapper)} but with the value saved in the {@link SnapshotDiskCache},
+     * see {@link #observeValueCached(Query, SnapshotMapper, Scheduler)}
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits the cached value if there is one, then the value of the {@param query} and completes
+     */
+    public static <T> Observable<CachedValue<T>> observeSingleValueCached(Query query, SnapshotMapper<T> mapper){
+        return cached(query, mapper, observeRefSingle(query), mapScheduler);
+    }
+
+    /**
+     * Same as {@link #observeValue(Query, Class)} but with the value saved in the {@link SnapshotDiskCache},
+     * see {@link #observeValueCached(Query, SnapshotMapper, Scheduler)}
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return Observable that emits the cached value if there is one, then the value of the {@param query} every time it changes
+     */
+    public static <T> Observable<CachedValue<T>> observeValueCached(Query query, Class<T> clazz){
+        return observeValueCached(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * Same as {@link #observeValue(Query, SnapshotMapper)} but with the value saved in the {@link SnapshotDiskCache},
+     * see {@link #observeValueCached(Query, SnapshotMapper, Scheduler)}
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits the cached value if there is one, then the value of the {@param query} every time it changes
+     */
+    public static <T> Observable<CachedValue<T>> observeValueCached(Query query, SnapshotMapper<T> mapper){
+        return observeValueCached(query, mapper, mapScheduler);
+    }
+
+    /**
+     * see {@link #observeValueCached(Query, SnapshotMapper, Scheduler)}
+     * @param query
+     * @param clazz
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the cached value if there is one, then the value of the {@param query} every time it changes
+     */
+    public static <T> Observable<CachedValue<T>> observeValueCached(Query query, Class<T> clazz, @Nullable Scheduler scheduler){
+        return observeValueCached(query, SnapshotMappers.of(clazz), scheduler);
+    }
+
+    /**
+     * Stale while revalidate: emits the value the {@link SnapshotDiskCache} saved for the query spec last time, as
+     * soon as it is read on the cache's Scheduler, then the values of the server, which are saved in turn. The cached
+     * value is skipped if the server answers first, {@link CachedValue#getSource()} tells them apart.
+     *
+     * With a {@code scheduler} both sources are mapped and emitted on it. Without one the server values arrive on
+     * the Firebase callback thread, but the cached value on the cache's Scheduler, so observe on the thread you need.
+     *
+     * Cached values are raw snapshot values, they need a mapper that maps raw values, like the mappers of
+     * {@link SnapshotMappers#of(Class)}. With a mapper of snapshots, or without a disk cache, only the server values
+     * are emitted.
+     * @param query
+     * @param mapper
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the cached value if there is one, then the value of the {@param query} every time it changes
+     */
+    public static <T> Observable<CachedValue<T>> observeValueCached(Query query, SnapshotMapper<T> mapper, @Nullable Scheduler scheduler){
+        return cached(query, mapper, observeRef(query), scheduler);
+    }
+
+    static <T> Observable<CachedValue<T>> cached(Query query, SnapshotMapper<T> mapper, Observable<DataSnapshot> source,
+                                                 @Nullable Scheduler scheduler){
+        SnapshotDiskCache cache = diskCache;
+        boolean persisted = cache != null && SnapshotMappers.mapsValues(mapper);
+        String key = persisted ? SnapshotDiskCache.keyOf(query) : null;
+        SnapshotMapper<T> mapped = mapperFor(query, mapper);
+
+        Observable<CachedValue<T>> server = handOff(source, scheduler)
+                .map(new Func1<DataSnapshot, CachedValue<T>>() {
                     @Override
-                    public T call(DataSnapshot dataSnapshot) {
-                        return dataSnapshot.getValue(clazz);
+                    public CachedValue<T> call(DataSnapshot dataSnapshot) {
+                        long now = System.currentTimeMillis();
+                        if(!persisted) return new CachedValue<>(mapped.fromSnapshot(dataSnapshot), CachedValue.Source.SERVER, now);
+
+                        Object raw = dataSnapshot.getValue();
+                        cache.put(key, raw, now);
+                        return new CachedValue<>(SnapshotMappers.map(mapped, dataSnapshot, raw), CachedValue.Source.SERVER, now);
                     }
                 });
+
+        if(!persisted) return server;
+
+        // delivered like the server values, unless those stay on the Firebase thread
+        Observable<SnapshotDiskCache.Entry> entries = scheduler == null ? cache.get(key) : cache.get(key).observeOn(scheduler);
+        return Observable.create(new OnSubscribeCachedValue<>(entries, mapper, server));
     }
 
     /**
@@ -154,17 +488,86 @@ public final class RxQuery {
      * @return Observable that emits the values of the {@param query} once initially and then every time there is a value change
      */
     public static <T> Observable<T> observeValues(Query query, Class<T> clazz){
-        return observeRef(query)
+        return observeValues(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * use when the reference/query points to a list, items in the list are flattened
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits the values of the {@param query} once initially and then every time there is a value change
+     */
+    public static <T> Observable<T> observeValues(Query query, SnapshotMapper<T> mapper){
+        return observeValues(query, mapper, mapScheduler);
+    }
+
+    /**
+     * use when the reference/query points to a list, items in the list are flattened
+     * @param query
+     * @param clazz
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the values of the {@param query} once initially and then every time there is a value change
+     */
+    public static <T> Observable<T> observeValues(Query query, Class<T> clazz, @Nullable Scheduler scheduler){
+        return observeValues(query, SnapshotMappers.of(clazz), scheduler);
+    }
+
+    /**
+     * use when the reference/query points to a list, items in the list are flattened
+     * @param query
+     * @param mapper
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the values of the {@param query} once initially and then every time there is a value change
+     */
+    public static <T> Observable<T> observeValues(Query query, SnapshotMapper<T> mapper, @Nullable Scheduler scheduler){
+        return handOff(observeRef(query), scheduler)
                 .flatMap(new Func1<DataSnapshot, Observable<DataSnapshot>>() {
                     @Override
                     public Observable<DataSnapshot> call(DataSnapshot dataSnapshot) {
                         return Observable.from(dataSnapshot.getChildren());
                     }
                 })
-                .map(new Func1<DataSnapshot, T>() {
+                .map(mapSnapshot(mapperFor(query, mapper)));
+    }
+
+    /**
+     * use when the reference/query points to a list, only the children that were added, changed or removed are emitted.
+     * Built on a child event listener, so a change costs the children it touches whatever the size of the list, unchanged
+     * children are never read or mapped. Unlike {@link #observeChildValue(Query, Class)} moves are left out, they don't
+     * change any value. Check {@see FIRChildEvent.type} for the type of event.
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return Observable that emits an ADD event for every child initially and then an event for every child that is added, changed or removed
+     */
+    public static <T> Observable<FIRChildEvent<T>> observeValuesDelta(Query query, Class<T> clazz){
+        return observeValuesDelta(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * use when the reference/query points to a list, only the children that were added, changed or removed are
+     * emitted, see {@link #observeValuesDelta(Query, Class)}
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits an ADD event for every child initially and then an event for every child that is added, changed or removed
+     */
+    public static <T> Observable<FIRChildEvent<T>> observeValuesDelta(Query query, SnapshotMapper<T> mapper){
+        SnapshotMapper<T> childMapper = mapperFor(query, mapper);
+        return handOff(observeChild(query), mapScheduler)
+                .filter(new Func1<FIRChildEvent<DataSnapshot>, Boolean>() {
+                    @Override
+                    public Boolean call(FIRChildEvent<DataSnapshot> event) {
+                        return event.type != FIRChildEvent.ChildEventType.MOVE;
+                    }
+                })
+                .map(new Func1<FIRChildEvent<DataSnapshot>, FIRChildEvent<T>>() {
                     @Override
-                    public T call(DataSnapshot dataSnapshot) {
-                        return dataSnapshot.getValue(clazz);
+                    public FIRChildEvent<T> call(FIRChildEvent<DataSnapshot> event) {
+                        return new FIRChildEvent<T>(event.key, childMapper.fromSnapshot(event.value), event.childName, event.type);
                     }
                 });
     }
@@ -177,19 +580,49 @@ public final class RxQuery {
      * @return Observable that emits the values of the {@param query} once and completes
      */
     public static <T> Observable<T> observeValuesSingle(Query query, Class<T> clazz){
-        return observeRefSingle(query)
+        return observeValuesSingle(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * use when the reference/query points to a list, items in the list are flattened
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Observable that emits the values of the {@param query} once and completes
+     */
+    public static <T> Observable<T> observeValuesSingle(Query query, SnapshotMapper<T> mapper){
+        return observeValuesSingle(query, mapper, mapScheduler);
+    }
+
+    /**
+     * use when the reference/query points to a list, items in the list are flattened
+     * @param query
+     * @param clazz
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the values of the {@param query} once and completes
+     */
+    public static <T> Observable<T> observeValuesSingle(Query query, Class<T> clazz, @Nullable Scheduler scheduler){
+        return observeValuesSingle(query, SnapshotMappers.of(clazz), scheduler);
+    }
+
+    /**
+     * use when the reference/query points to a list, items in the list are flattened
+     * @param query
+     * @param mapper
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return Observable that emits the values of the {@param query} once and completes
+     */
+    public static <T> Observable<T> observeValuesSingle(Query query, SnapshotMapper<T> mapper, @Nullable Scheduler scheduler){
+        return handOff(observeRefSingle(query), scheduler)
                 .flatMap(new Func1<DataSnapshot, Observable<DataSnapshot>>() {
                     @Override
                     public Observable<DataSnapshot> call(DataSnapshot dataSnapshot) {
                         return Observable.from(dataSnapshot.getChildren());
                     }
                 })
-                .map(new Func1<DataSnapshot, T>() {
-                    @Override
-                    public T call(DataSnapshot dataSnapshot) {
-                        return dataSnapshot.getValue(clazz);
-                    }
-                });
+                .map(mapSnapshot(mapperFor(query, mapper)));
     }
 
     /**
@@ -198,35 +631,41 @@ public final class RxQuery {
      * @return
      */
     public static Observable<FIRChildEvent<DataSnapshot>> observeChild(Query query) {
+        QueryMetrics metrics = RxFirebasePlugins.metricsFor(query);
         return Observable.create(new Observable.OnSubscribe<FIRChildEvent<DataSnapshot>>() {
             @Override
             public void call(Subscriber<? super FIRChildEvent<DataSnapshot>> subscriber) {
+                RxFirebasePlugins.ListenerMetrics tracker = RxFirebasePlugins.ListenerMetrics.attach(metrics, QueryMetrics.ListenerType.CHILD);
                 ChildEventListener eventListener = new ChildEventListener() {
                     @Override
                     public void onChildAdded(DataSnapshot dataSnapshot, String s) {
+                        if(tracker != null) tracker.onChildEvent();
                         if(!subscriber.isUnsubscribed()){
-                            subscriber.onNext(new FIRChildEvent<DataSnapshot>(dataSnapshot, s, FIRChildEvent.ChildEventType.ADD));
+                            subscriber.onNext(new FIRChildEvent<DataSnapshot>(dataSnapshot.getKey(), dataSnapshot, s, FIRChildEvent.ChildEventType.ADD));
                         }
                     }
 
                     @Override
                     public void onChildChanged(DataSnapshot dataSnapshot, String s) {
+                        if(tracker != null) tracker.onChildEvent();
                         if(!subscriber.isUnsubscribed()){
-                            subscriber.onNext(new FIRChildEvent<DataSnapshot>(dataSnapshot, s, FIRChildEvent.ChildEventType.CHANGE));
+                            subscriber.onNext(new FIRChildEvent<DataSnapshot>(dataSnapshot.getKey(), dataSnapshot, s, FIRChildEvent.ChildEventType.CHANGE));
                         }
                     }
 
                     @Override
                     public void onChildRemoved(DataSnapshot dataSnapshot) {
+                        if(tracker != null) tracker.onChildEvent();
                         if(!subscriber.isUnsubscribed()){
-                            subscriber.onNext(new FIRChildEvent<DataSnapshot>(dataSnapshot, null, FIRChildEvent.ChildEventType.REMOVE));
+                            subscriber.onNext(new FIRChildEvent<DataSnapshot>(dataSnapshot.getKey(), dataSnapshot, null, FIRChildEvent.ChildEventType.REMOVE));
                         }
                     }
 
                     @Override
                     public void onChildMoved(DataSnapshot dataSnapshot, String s) {
+                        if(tracker != null) tracker.onChildEvent();
                         if(!subscriber.isUnsubscribed()){
-                            subscriber.onNext(new FIRChildEvent<DataSnapshot>(dataSnapshot, s, FIRChildEvent.ChildEventType.MOVE));
+                            subscriber.onNext(new FIRChildEvent<DataSnapshot>(dataSnapshot.getKey(), dataSnapshot, s, FIRChildEvent.ChildEventType.MOVE));
                         }
                     }
 
@@ -244,11 +683,24 @@ public final class RxQuery {
                     @Override
                     public void call() {
                         query.removeEventListener(eventListener);
+                        if(tracker != null) tracker.detach();
                     }
                 }));
             }
         });
     }
+    /**
+     * Observe child value change events while respecting downstream demand. Events that arrive while the
+     * subscriber is not requesting are queued and handled according to {@param backpressure}.
+     * Check {@see FIRChildEvent.type} for the type of event.
+     * @param query
+     * @param backpressure overflow strategy and queue statistics, see {@link ChildEventBackpressure}
+     * @return
+     */
+    public static Observable<FIRChildEvent<DataSnapshot>> observeChild(Query query, ChildEventBackpressure backpressure) {
+        return Observable.create(new OnSubscribeChildEvents(query, backpressure));
+    }
+
     /**
      * Observe child value change events. Check {@see FIRChildEvent.type} for the type of event.
      * @param query
@@ -257,15 +709,258 @@ public final class RxQuery {
      * @return
      */
     public static <T> Observable<FIRChildEvent<T>> observeChildValue(Query query, Class<T> clazz){
-        return observeChild(query)
+        return observeChildValue(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * Observe child value change events. Check {@see FIRChildEvent.type} for the type of event.
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<FIRChildEvent<T>> observeChildValue(Query query, SnapshotMapper<T> mapper){
+        return observeChildValue(query, mapper, mapScheduler);
+    }
+
+    /**
+     * Observe child value change events. Check {@see FIRChildEvent.type} for the type of event.
+     * @param query
+     * @param clazz
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<FIRChildEvent<T>> observeChildValue(Query query, Class<T> clazz, @Nullable Scheduler scheduler){
+        return observeChildValue(query, SnapshotMappers.of(clazz), scheduler);
+    }
+
+    /**
+     * Observe child value change events. Check {@see FIRChildEvent.type} for the type of event.
+     * @param query
+     * @param mapper
+     * @param scheduler Scheduler to map the snapshots on, null to map on the Firebase callback thread
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<FIRChildEvent<T>> observeChildValue(Query query, SnapshotMapper<T> mapper, @Nullable Scheduler scheduler){
+        SnapshotMapper<T> childMapper = mapperFor(query, mapper);
+        return handOff(observeChild(query), scheduler)
                 .map(new Func1<FIRChildEvent<DataSnapshot>, FIRChildEvent<T>>() {
                     @Override
                     public FIRChildEvent<T> call(FIRChildEvent<DataSnapshot> event) {
-                        return new FIRChildEvent<T>(event.value.getValue(clazz), event.childName, event.type);
+                        return new FIRChildEvent<T>(event.key, childMapper.fromSnapshot(event.value), event.childName, event.type);
                     }
                 });
     }
 
+    /**
+     * Materialize the children of {@param query} as an ordered list. Children are placed using the previous child name
+     * of each event and every change is emitted as a {@link FIRListChange} with positions, so it can be applied to a
+     * {@link FIRKeyedList} and passed straight to RecyclerView's notifyItem* methods.
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<FIRListChange<T>> observeList(Query query, Class<T> clazz){
+        return observeList(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * Materialize the children of {@param query} as an ordered list, see {@link #observeList(Query, Class)}
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable<FIRListChange<T>> observeList(Query query, SnapshotMapper<T> mapper){
+        return Observable.defer(new Func0<Observable<FIRListChange<T>>>() {
+            @Override
+            public Observable<FIRListChange<T>> call() {
+                return handOff(observeChild(query), mapScheduler)
+                        .map(new ListChangeMapper<T>(mapperFor(query, mapper)))
+                        .filter(new Func1<FIRListChange<T>, Boolean>() {
+                            @Override
+                            public Boolean call(FIRListChange<T> change) {
+                                return change != null;
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * Load the children of {@param ref} page by page in key order, see {@link FIRPager}
+     * @param ref location of the list, the pager orders its children by key
+     * @param pageSize number of children per page
+     * @return pager of the child snapshots
+     */
+    public static FIRPager<DataSnapshot> observePaged(DatabaseReference ref, int pageSize){
+        return observePaged(ref, SnapshotMappers.SNAPSHOT, pageSize);
+    }
+
+    /**
+     * Load the children of {@param ref} page by page in key order, see {@link FIRPager}
+     * @param ref location of the list, the pager orders its children by key
+     * @param clazz
+     * @param pageSize number of children per page
+     * @param <T>
+     * @return
+     */
+    public static <T> FIRPager<T> observePaged(DatabaseReference ref, Class<T> clazz, int pageSize){
+        return observePaged(ref, SnapshotMappers.of(clazz), pageSize);
+    }
+
+    /**
+     * Load the children of {@param ref} page by page in ascending key order, see {@link FIRPager}
+     * @param ref location of the list, the pager orders its children by key
+     * @param mapper
+     * @param pageSize number of children per page
+     * @param <T>
+     * @return
+     */
+    public static <T> FIRPager<T> observePaged(DatabaseReference ref, SnapshotMapper<T> mapper, int pageSize){
+        return observePaged(ref, mapper, pageSize, FIRPager.Direction.ASCENDING);
+    }
+
+    /**
+     * Load the children of {@param ref} page by page in key order, e.g {@link FIRPager.Direction#DESCENDING}
+     * for a feed of pushed children, newest first. See {@link FIRPager}.
+     * @param ref location of the list, the pager orders its children by key
+     * @param mapper
+     * @param pageSize number of children per page
+     * @param direction
+     * @param <T>
+     * @return
+     */
+    public static <T> FIRPager<T> observePaged(DatabaseReference ref, SnapshotMapper<T> mapper, int pageSize, FIRPager.Direction direction){
+        return new FIRPager<>(ref, mapper, pageSize, direction, -1);
+    }
+
+    /**
+     * Load the children of {@param ref} page by page in ascending key order and keep the pages around the
+     * visible ones up to date, see {@link FIRPager}
+     * @param ref location of the list, the pager orders its children by key
+     * @param clazz
+     * @param pageSize number of children per page
+     * @param liveWindow number of pages before and after the visible pages that keep a live listener
+     * @param <T>
+     * @return
+     */
+    public static <T> FIRPager<T> observeLivePaged(DatabaseReference ref, Class<T> clazz, int pageSize, int liveWindow){
+        return observeLivePaged(ref, SnapshotMappers.of(clazz), pageSize, FIRPager.Direction.ASCENDING, liveWindow);
+    }
+
+    /**
+     * Load the children of {@param ref} page by page in key order and keep the pages around the visible ones
+     * up to date. Listeners of pages that scroll out of the window are removed, the pages keep their last values
+     * until they scroll back in. See {@link FIRPager}.
+     * @param ref location of the list, the pager orders its children by key
+     * @param mapper
+     * @param pageSize number of children per page
+     * @param direction
+     * @param liveWindow number of pages before and after the visible pages that keep a live listener
+     * @param <T>
+     * @return
+     */
+    public static <T> FIRPager<T> observeLivePaged(DatabaseReference ref, SnapshotMapper<T> mapper, int pageSize,
+                                                   FIRPager.Direction direction, int liveWindow){
+        if(liveWindow < 0) throw new IllegalArgumentException("liveWindow can't be negative, was " + liveWindow);
+        return new FIRPager<>(ref, mapper, pageSize, direction, liveWindow);
+    }
+
+    /**
+     * Coalesce child events into batches of at most {@param maxCount} events collected over {@param timespan}, e.g
+     * {@code observeChild(query).compose(RxQuery.<DataSnapshot>batchChildEvents(100, TimeUnit.MILLISECONDS, 200))}.
+     * Redundant events of the same child are folded, e.g ADD followed by CHANGE becomes one ADD with the latest value.
+     * Empty batches are not emitted.
+     * @param timespan
+     * @param unit
+     * @param maxCount
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable.Transformer<FIRChildEvent<T>, List<FIRChildEvent<T>>> batchChildEvents(long timespan, TimeUnit unit, int maxCount){
+        return batchChildEvents(timespan, unit, maxCount, Schedulers.computation());
+    }
+
+    /**
+     * Coalesce child events into folded batches, see {@link #batchChildEvents(long, TimeUnit, int)}
+     * @param timespan
+     * @param unit
+     * @param maxCount
+     * @param scheduler scheduler for the time window
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable.Transformer<FIRChildEvent<T>, List<FIRChildEvent<T>>> batchChildEvents(long timespan, TimeUnit unit,
+                                                                                                       int maxCount, Scheduler scheduler){
+        return new Observable.Transformer<FIRChildEvent<T>, List<FIRChildEvent<T>>>() {
+            @Override
+            public Observable<List<FIRChildEvent<T>>> call(Observable<FIRChildEvent<T>> events) {
+                return events
+                        .buffer(timespan, unit, maxCount, scheduler)
+                        .filter(new Func1<List<FIRChildEvent<T>>, Boolean>() {
+                            @Override
+                            public Boolean call(List<FIRChildEvent<T>> batch) {
+                                return !batch.isEmpty();
+                            }
+                        })
+                        .map(new Func1<List<FIRChildEvent<T>>, List<FIRChildEvent<T>>>() {
+                            @Override
+                            public List<FIRChildEvent<T>> call(List<FIRChildEvent<T>> batch) {
+                                return ChildEventQueue.fold(batch);
+                            }
+                        });
+            }
+        };
+    }
+
+    /**
+     * Coalesce child events into one folded batch per UI frame, batches are emitted on the main thread at the start
+     * of the frame after the first event of the batch arrived. See {@link #batchChildEvents(long, TimeUnit, int)} for folding.
+     * Batches are emitted regardless of backpressure requests, completion follows the last batch on the main thread.
+     * @param <T>
+     * @return
+     */
+    public static <T> Observable.Transformer<FIRChildEvent<T>, List<FIRChildEvent<T>>> batchChildEventsPerFrame(){
+        return new Observable.Transformer<FIRChildEvent<T>, List<FIRChildEvent<T>>>() {
+            @Override
+            public Observable<List<FIRChildEvent<T>>> call(Observable<FIRChildEvent<T>> events) {
+                return events.lift(new OperatorBatchPerFrame<T>());
+            }
+        };
+    }
+
+    /**
+     * moves the emissions of {@param source} to {@param scheduler} in order, queueing them instead of blocking the callback thread
+     * @param source
+     * @param scheduler null to keep emitting on the current thread
+     * @param <T>
+     * @return
+     */
+    static <T> Observable<T> handOff(Observable<T> source, @Nullable Scheduler scheduler){
+        return scheduler == null ? source : source.onBackpressureBuffer().observeOn(scheduler);
+    }
+
+    /**
+     * @return {@param mapper} backed by the snapshot cache and timed by the metrics of {@param query}, if there are any
+     */
+    static <T> SnapshotMapper<T> mapperFor(Query query, SnapshotMapper<T> mapper){
+        SnapshotCache cache = snapshotCache;
+        return RxFirebasePlugins.timed(RxFirebasePlugins.metricsFor(query), cache == null ? mapper : cache.wrap(mapper, query.getSpec()));
+    }
+
+    static <T> Func1<DataSnapshot, T> mapSnapshot(SnapshotMapper<T> mapper){
+        return new Func1<DataSnapshot, T>() {
+            @Override
+            public T call(DataSnapshot dataSnapshot) {
+                return mapper.fromSnapshot(dataSnapshot);
+            }
+        };
+    }
+
     /**
      * Defines a child value change event
      * @param <T>
@@ -281,6 +976,10 @@ public final class RxQuery {
             MOVE
         };
 
+        /**
+         * key of the changed child
+         */
+        @Nullable String key;
         /**
          * Changed value
          */
@@ -295,11 +994,24 @@ public final class RxQuery {
         ChildEventType type;
 
         public FIRChildEvent(T value, String childName, ChildEventType type) {
+            this(null, value, childName, type);
+        }
+
+        public FIRChildEvent(String key, T value, String childName, ChildEventType type) {
+            this.key = key;
             this.value = value;
             this.childName = childName;
             this.type = type;
         }
 
+        /**
+         * @return key of the changed child, might be null for events created without one
+         */
+        @Nullable
+        public String getKey() {
+            return key;
+        }
+
         public T getValue() {
             return value;
         }
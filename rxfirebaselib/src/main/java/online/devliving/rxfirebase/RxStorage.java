@@ -0,0 +1,596 @@
+package online.devliving.rxfirebase;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.storage.OnPausedListener;
+import com.google.firebase.storage.OnProgressListener;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.StorageTask;
+import com.google.firebase.storage.StreamDownloadTask;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.observers.SerializedSubscriber;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Observables for Firebase Storage tasks i.e uploads and downloads
+ */
+
+public final class RxStorage {
+    /**
+     * weight of the latest progress event in the upload rate
+     */
+    static final double RATE_SMOOTHING = 0.3;
+
+    /**
+     * size of the buffer a download is copied through
+     */
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * a download reports its progress after this many bytes
+     */
+    static final long PROGRESS_INTERVAL = 64 * 1024;
+
+    /**
+     * one buffer per thread of the SDK that runs the downloads, reused by every download on it
+     */
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * returns Observable that emits the result of {@param task}. Unsubscribing detaches the listener right away
+     * and cancels {@param task} if it hasn't completed yet.
+     * @param task
+     * @param <R>
+     * @return
+     */
+    public static <R extends StorageTask.ProvideError> Observable<R> just(StorageTask<R> task){
+        return just(task, null);
+    }
+
+    /**
+     * returns Observable that emits the result of {@param task} on {@param executor}. Unsubscribing detaches the
+     * listener right away and cancels {@param task} if it hasn't completed yet.
+     * @param task
+     * @param executor executor for the completion listener, null for the main thread
+     * @param <R>
+     * @return
+     */
+    public static <R extends StorageTask.ProvideError> Observable<R> just(StorageTask<R> task, @Nullable Executor executor){
+        return Observable.create(new Observable.OnSubscribe<R>() {
+            @Override
+            public void call(Subscriber<? super R> sub) {
+                OnCompleteListener<R> listener = new OnCompleteListener<R>() {
+                    @Override
+                    public void onComplete(@NonNull Task<R> t) {
+                        if(!sub.isUnsubscribed()) RxGMSTask.emit(t, true, sub);
+                    }
+                };
+
+                if(executor == null) task.addOnCompleteListener(listener);
+                else task.addOnCompleteListener(executor, listener);
+
+                sub.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        task.removeOnCompleteListener(listener);
+                        if(!task.isComplete()) task.cancel();
+                    }
+                }));
+            }
+        });
+    }
+
+    /**
+     * uploads {@param file} to {@param ref}, see {@link #upload(StorageReference, Uri, StorageMetadata, Uri, Executor)}
+     * @param ref
+     * @param file
+     * @param metadata
+     * @return Observable that emits the progress of the upload, the metadata of the uploaded file last
+     */
+    public static Observable<FIRUploadProgress> upload(StorageReference ref, Uri file, @Nullable StorageMetadata metadata){
+        return upload(ref, file, metadata, null, null);
+    }
+
+    /**
+     * uploads {@param file} to {@param ref}, see {@link #upload(StorageReference, Uri, StorageMetadata, Uri, Executor)}
+     * @param ref
+     * @param file
+     * @param metadata
+     * @param sessionUri session of an earlier upload of {@param file} to resume, null to start a new one
+     * @return Observable that emits the progress of the upload, the metadata of the uploaded file last
+     */
+    public static Observable<FIRUploadProgress> upload(StorageReference ref, Uri file, @Nullable StorageMetadata metadata,
+                                                       @Nullable Uri sessionUri){
+        return upload(ref, file, metadata, sessionUri, null);
+    }
+
+    /**
+     * Uploads {@param file} to {@param ref} when subscribed to and emits its progress: bytes transferred, rate, ETA
+     * and the session of the upload, then a {@link FIRUploadProgress.State#COMPLETED} snapshot with the metadata of
+     * the uploaded file. Only the latest progress is kept for a slow subscriber.
+     *
+     * Pause and resume with {@link FIRUploadProgress#pause()} and {@link FIRUploadProgress#resume()}. The Observable
+     * keeps the session of the upload: subscribing again after the upload failed, e.g with {@code retry()} after the
+     * connection dropped, resumes the session instead of starting over. A session that fails before it made any
+     * progress is dropped and the next attempt starts over. Save {@link FIRUploadProgress#getSessionUri()} to resume
+     * in a later run of the app. Unsubscribing cancels the upload, which ends its session.
+     *
+     * Because of that the Observable is for one subscriber at a time: subscribers running at the same time would each
+     * upload the file and take turns overwriting the one session. Call this again for every separate upload.
+     * @param ref
+     * @param file
+     * @param metadata
+     * @param sessionUri session of an earlier upload of {@param file} to resume, null to start a new one
+     * @param executor executor for the task listeners, null for the main thread
+     * @return Observable that emits the progress of the upload, the metadata of the uploaded file last
+     */
+    public static Observable<FIRUploadProgress> upload(StorageReference ref, Uri file, @Nullable StorageMetadata metadata,
+                                                       @Nullable Uri sessionUri, @Nullable Executor executor){
+        // shared by the subscriptions of this Observable so a retry resumes the session of the attempt that failed
+        AtomicReference<Uri> session = new AtomicReference<>(sessionUri);
+        return Observable.create(new Observable.OnSubscribe<FIRUploadProgress>() {
+            @Override
+            public void call(Subscriber<? super FIRUploadProgress> child) {
+                // the listener callbacks can overlap on the threads of an executor
+                Subscriber<? super FIRUploadProgress> sub = new SerializedSubscriber<>(child);
+                Uri resumeFrom = session.get();
+                UploadTask task = resumeFrom != null ? ref.putFile(file, metadata, resumeFrom)
+                        : metadata != null ? ref.putFile(file, metadata) : ref.putFile(file);
+
+                UploadListener listener = new UploadListener(task, sub, session, resumeFrom != null);
+                if(executor == null){
+                    task.addOnProgressListener(listener);
+                    task.addOnPausedListener(listener);
+                    task.addOnCompleteListener(listener);
+                }
+                else {
+                    task.addOnProgressListener(executor, listener);
+                    task.addOnPausedListener(executor, listener);
+                    task.addOnCompleteListener(executor, listener);
+                }
+
+                sub.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        task.removeOnProgressListener(listener);
+                        task.removeOnPausedListener(listener);
+                        task.removeOnCompleteListener(listener);
+                        if(!task.isComplete()){
+                            // a cancelled session can't be resumed
+                            session.set(null);
+                            task.cancel();
+                        }
+                    }
+                }));
+            }
+        }).onBackpressureLatest();
+    }
+
+    /**
+     * uploads every file of {@param files} to the reference at the same index of {@param refs}, see
+     * {@link #uploadAll(List, List, StorageMetadata, int, int, Executor)}
+     * @param refs
+     * @param files
+     * @param metadata metadata of every file, null for none
+     * @param maxConcurrent how many files are uploaded at the same time
+     * @param retries how often an upload is retried before the batch fails
+     * @return Observable that emits the combined progress of the uploads, the download url of every file last
+     */
+    public static Observable<FIRBatchUploadProgress> uploadAll(List<StorageReference> refs, List<Uri> files,
+                                                               @Nullable StorageMetadata metadata, int maxConcurrent, int retries){
+        return uploadAll(refs, files, metadata, maxConcurrent, retries, null);
+    }
+
+    /**
+     * Uploads every file of {@param files} to the reference at the same index of {@param refs} when subscribed to,
+     * at most {@param maxConcurrent} at a time, and emits their combined progress. Fewer parallel uploads leave
+     * bandwidth to each of them on a slow network, so they don't time out; more keep a fast one busy. Pick it per
+     * network type.
+     *
+     * Each file is uploaded with {@link #upload(StorageReference, Uri, StorageMetadata, Uri, Executor)} and retried
+     * up to {@param retries} times, resuming its session. If a file still fails the batch fails and the other uploads
+     * are cancelled. The last {@link FIRBatchUploadProgress} is completed, its
+     * {@link FIRBatchUploadProgress#getDownloadUrls()} are in the order of {@param files}, ready to be written to the
+     * database in one multi-path update e.g with {@link RxWriteBatcher#updateChildren(com.google.firebase.database.DatabaseReference, java.util.Map)}.
+     * Only the latest progress is kept for a slow subscriber.
+     * @param refs
+     * @param files
+     * @param metadata metadata of every file, null for none
+     * @param maxConcurrent how many files are uploaded at the same time
+     * @param retries how often an upload is retried before the batch fails
+     * @param executor executor for the task listeners, null for the main thread
+     * @return Observable that emits the combined progress of the uploads, the download url of every file last
+     */
+    public static Observable<FIRBatchUploadProgress> uploadAll(List<StorageReference> refs, List<Uri> files,
+                                                               @Nullable StorageMetadata metadata, int maxConcurrent,
+                                                               int retries, @Nullable Executor executor){
+        if(refs.size() != files.size()){
+            throw new IllegalArgumentException(refs.size() + " references for " + files.size() + " files");
+        }
+        if(maxConcurrent < 1) throw new IllegalArgumentException("maxConcurrent must be positive, was " + maxConcurrent);
+        if(retries < 0) throw new IllegalArgumentException("retries can't be negative, was " + retries);
+
+        List<StorageReference> targets = new ArrayList<>(refs);
+        List<Uri> sources = new ArrayList<>(files);
+        return Observable.defer(new Func0<Observable<FIRBatchUploadProgress>>() {
+            @Override
+            public Observable<FIRBatchUploadProgress> call() {
+                BatchState state = new BatchState(sources.size());
+                if(sources.isEmpty()) return Observable.just(state.snapshot(-1));
+
+                return Observable.range(0, sources.size())
+                        .flatMap(new Func1<Integer, Observable<IndexedProgress>>() {
+                            @Override
+                            public Observable<IndexedProgress> call(Integer index) {
+                                return upload(targets.get(index), sources.get(index), metadata, null, executor)
+                                        .retry(retries)
+                                        .map(new Func1<FIRUploadProgress, IndexedProgress>() {
+                                            @Override
+                                            public IndexedProgress call(FIRUploadProgress progress) {
+                                                return new IndexedProgress(index, progress);
+                                            }
+                                        });
+                            }
+                        }, maxConcurrent)
+                        // combined after the merge so the snapshots are built in the order they are emitted
+                        .map(new Func1<IndexedProgress, FIRBatchUploadProgress>() {
+                            @Override
+                            public FIRBatchUploadProgress call(IndexedProgress progress) {
+                                return state.update(progress.index, progress.progress);
+                            }
+                        })
+                        .onBackpressureLatest();
+            }
+        });
+    }
+
+    /**
+     * downloads the file at {@param ref} to {@param file}, see {@link #download(StorageReference, File, Executor)}
+     * @param ref
+     * @param file
+     * @return Observable that emits the progress of the download, a completed one once {@param file} is written
+     */
+    public static Observable<FIRDownloadProgress> download(StorageReference ref, File file){
+        return download(ref, file, null);
+    }
+
+    /**
+     * Downloads the file at {@param ref} when subscribed to and writes it to {@param file}, emitting the progress
+     * every {@value #PROGRESS_INTERVAL} bytes. Unlike {@link StorageReference#getBytes(long)} the file is never held
+     * in memory: it is copied through a small buffer, reused by the downloads of the same SDK thread, into a temp
+     * file next to {@param file}. The temp file replaces {@param file} once it is complete, so a failed or cancelled
+     * download leaves {@param file} as it was. Only the latest progress is kept for a slow subscriber. Unsubscribing
+     * cancels the download.
+     * @param ref
+     * @param file
+     * @param executor executor for the completion listener, null for the main thread
+     * @return Observable that emits the progress of the download, a completed one once {@param file} is written
+     */
+    public static Observable<FIRDownloadProgress> download(StorageReference ref, File file, @Nullable Executor executor){
+        return transfer(ref, file, null, executor);
+    }
+
+    /**
+     * streams the file at {@param ref} to {@param channel}, see {@link #stream(StorageReference, WritableByteChannel, Executor)}
+     * @param ref
+     * @param channel
+     * @return Observable that emits the progress of the download, a completed one once all of it is written
+     */
+    public static Observable<FIRDownloadProgress> stream(StorageReference ref, WritableByteChannel channel){
+        return stream(ref, channel, null);
+    }
+
+    /**
+     * Downloads the file at {@param ref} when subscribed to and writes it to {@param channel} as it arrives,
+     * through a small buffer like {@link #download(StorageReference, File, Executor)}. {@param channel} is written
+     * on a thread of the SDK and isn't closed. Unsubscribing cancels the download.
+     * @param ref
+     * @param channel
+     * @param executor executor for the completion listener, null for the main thread
+     * @return Observable that emits the progress of the download, a completed one once all of it is written
+     */
+    public static Observable<FIRDownloadProgress> stream(StorageReference ref, WritableByteChannel channel, @Nullable Executor executor){
+        return transfer(ref, null, channel, executor);
+    }
+
+    private static Observable<FIRDownloadProgress> transfer(StorageReference ref, @Nullable File file,
+                                                            @Nullable WritableByteChannel channel, @Nullable Executor executor){
+        return Observable.create(new Observable.OnSubscribe<FIRDownloadProgress>() {
+            @Override
+            public void call(Subscriber<? super FIRDownloadProgress> sub) {
+                DownloadProcessor processor = new DownloadProcessor(sub, file, channel);
+                StreamDownloadTask task = ref.getStream(processor);
+                if(executor == null) task.addOnCompleteListener(processor);
+                else task.addOnCompleteListener(executor, processor);
+
+                sub.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        task.removeOnCompleteListener(processor);
+                        if(!task.isComplete()) task.cancel();
+                    }
+                }));
+            }
+        }).onBackpressureLatest();
+    }
+
+    /**
+     * @param file
+     * @return new empty file next to {@param file} to write its content to before it is renamed to {@param file},
+     * unique so writers of the same file don't share it
+     * @throws IOException
+     */
+    static File tempFileFor(File file) throws IOException {
+        // the prefix needs at least 3 characters
+        return File.createTempFile(file.getName() + "-", ".tmp", file.getParentFile());
+    }
+
+    /**
+     * copies the stream of one download task to a file or a channel and reports its progress
+     */
+    static final class DownloadProcessor implements StreamDownloadTask.StreamProcessor,
+            OnCompleteListener<StreamDownloadTask.TaskSnapshot> {
+        final Subscriber<? super FIRDownloadProgress> sub;
+        @Nullable
+        final File file;
+        @Nullable
+        final WritableByteChannel channel;
+        final long start = System.nanoTime();
+
+        /**
+         * written by the SDK thread before the task completes
+         */
+        private volatile long bytes;
+        private volatile long total = -1;
+
+        DownloadProcessor(Subscriber<? super FIRDownloadProgress> sub, @Nullable File file, @Nullable WritableByteChannel channel) {
+            this.sub = sub;
+            this.file = file;
+            this.channel = channel;
+        }
+
+        @Override
+        public void doInBackground(StreamDownloadTask.TaskSnapshot snapshot, InputStream stream) throws IOException {
+            total = snapshot.getTotalByteCount();
+            ReadableByteChannel source = Channels.newChannel(stream);
+            File temp = null;
+            WritableByteChannel target = null;
+            boolean written = false;
+            try {
+                FileChannel fileChannel = null;
+                if(file != null){
+                    temp = tempFileFor(file);
+                    target = fileChannel = new FileOutputStream(temp).getChannel();
+                }
+                else target = channel;
+
+                copy(source, target);
+
+                if(fileChannel != null){
+                    // on disk before it replaces the file, a crash leaves either the old file or the whole download
+                    fileChannel.force(true);
+                    target.close();
+                    // readers of the file never see a half written download
+                    if(!temp.renameTo(file)) throw new IOException("Unable to rename " + temp);
+                }
+                written = true;
+            } finally {
+                source.close();
+                if(!written && temp != null){
+                    if(target != null) target.close();
+                    temp.delete();
+                }
+            }
+        }
+
+        void copy(ReadableByteChannel source, WritableByteChannel target) throws IOException {
+            ByteBuffer buffer = BUFFERS.get();
+            long reported = 0;
+            while(true){
+                // the task is cancelled too, no need to read the rest
+                if(sub.isUnsubscribed()) throw new IOException("Download cancelled");
+
+                buffer.clear();
+                int read = source.read(buffer);
+                if(read < 0) break;
+
+                buffer.flip();
+                while(buffer.hasRemaining()) target.write(buffer);
+                bytes += read;
+
+                if(bytes - reported >= PROGRESS_INTERVAL){
+                    reported = bytes;
+                    sub.onNext(progress(false));
+                }
+            }
+        }
+
+        @Override
+        public void onComplete(@NonNull Task<StreamDownloadTask.TaskSnapshot> t) {
+            RxFirebasePlugins.onTransferCompleted(start, bytes, t.isSuccessful());
+            if(sub.isUnsubscribed()) return;
+
+            if(t.isSuccessful()){
+                sub.onNext(progress(true));
+                sub.onCompleted();
+            }
+            else {
+                sub.onError(t.getException());
+            }
+        }
+
+        FIRDownloadProgress progress(boolean completed){
+            long elapsed = System.nanoTime() - start;
+            double rate = elapsed <= 0 ? 0 : bytes * 1e9 / elapsed;
+            return new FIRDownloadProgress(bytes, total, rate, completed, completed ? file : null);
+        }
+    }
+
+    static final class IndexedProgress {
+        final int index;
+        final FIRUploadProgress progress;
+
+        IndexedProgress(int index, FIRUploadProgress progress) {
+            this.index = index;
+            this.progress = progress;
+        }
+    }
+
+    /**
+     * latest progress of every file of a batch, updated serially by the merged uploads
+     */
+    static final class BatchState {
+        final FIRUploadProgress[] files;
+        final int[] completionOrder;
+        int completedCount;
+
+        BatchState(int count) {
+            this.files = new FIRUploadProgress[count];
+            this.completionOrder = new int[count];
+        }
+
+        FIRBatchUploadProgress update(int index, FIRUploadProgress progress){
+            files[index] = progress;
+            if(progress.isCompleted()) completionOrder[completedCount++] = index;
+            return snapshot(index);
+        }
+
+        FIRBatchUploadProgress snapshot(int lastChanged){
+            return new FIRBatchUploadProgress(files.clone(), completionOrder.clone(), completedCount, lastChanged);
+        }
+    }
+
+    /**
+     * turns the callbacks of one upload task into {@link FIRUploadProgress}es
+     */
+    static final class UploadListener implements OnProgressListener<UploadTask.TaskSnapshot>,
+            OnPausedListener<UploadTask.TaskSnapshot>, OnCompleteListener<UploadTask.TaskSnapshot> {
+        final UploadTask task;
+        final Subscriber<? super FIRUploadProgress> sub;
+        final AtomicReference<Uri> session;
+        final boolean resumed;
+        final long start = System.nanoTime();
+
+        /**
+         * guarded by this, the callbacks can arrive on different threads of an executor
+         */
+        private long firstBytes = -1;
+        private long lastBytes;
+        private long lastNanos;
+        private double rate;
+        private boolean progressed;
+
+        UploadListener(UploadTask task, Subscriber<? super FIRUploadProgress> sub, AtomicReference<Uri> session, boolean resumed) {
+            this.task = task;
+            this.sub = sub;
+            this.session = session;
+            this.resumed = resumed;
+        }
+
+        @Override
+        public void onProgress(UploadTask.TaskSnapshot snapshot) {
+            Uri current = snapshot.getUploadSessionUri();
+            if(current != null) session.set(current);
+
+            FIRUploadProgress progress = progress(snapshot, FIRUploadProgress.State.RUNNING);
+            if(!sub.isUnsubscribed()) sub.onNext(progress);
+        }
+
+        @Override
+        public void onPaused(UploadTask.TaskSnapshot snapshot) {
+            FIRUploadProgress progress = progress(snapshot, FIRUploadProgress.State.PAUSED);
+            if(!sub.isUnsubscribed()) sub.onNext(progress);
+        }
+
+        @Override
+        public void onComplete(@NonNull Task<UploadTask.TaskSnapshot> t) {
+            FIRUploadProgress completed = null;
+            long transferred;
+            synchronized (this){
+                if(t.isSuccessful()){
+                    UploadTask.TaskSnapshot snapshot = t.getResult();
+                    long bytes = snapshot.getBytesTransferred();
+                    long elapsed = System.nanoTime() - start;
+                    double average = elapsed <= 0 ? rate : (bytes - Math.max(firstBytes, 0)) * 1e9 / elapsed;
+
+                    completed = new FIRUploadProgress(task, FIRUploadProgress.State.COMPLETED, bytes,
+                            snapshot.getTotalByteCount(), average, 0, snapshot.getUploadSessionUri(),
+                            snapshot.getMetadata(), snapshot.getDownloadUrl());
+                    transferred = bytes - Math.max(firstBytes, 0);
+                }
+                else {
+                    transferred = firstBytes < 0 ? 0 : lastBytes - firstBytes;
+                    // the session of a resumed upload that never got going is likely expired
+                    if(resumed && !progressed) session.set(null);
+                }
+            }
+
+            RxFirebasePlugins.onTransferCompleted(start, transferred, completed != null);
+            if(completed != null) session.set(null);
+            if(sub.isUnsubscribed()) return;
+
+            if(completed != null){
+                sub.onNext(completed);
+                sub.onCompleted();
+            }
+            else {
+                sub.onError(t.getException());
+            }
+        }
+
+        synchronized FIRUploadProgress progress(UploadTask.TaskSnapshot snapshot, FIRUploadProgress.State state){
+            long bytes = snapshot.getBytesTransferred();
+            long total = snapshot.getTotalByteCount();
+            long now = System.nanoTime();
+            if(firstBytes < 0) firstBytes = bytes;
+
+            if(state == FIRUploadProgress.State.RUNNING){
+                progressed = true;
+                if(lastNanos != 0 && now > lastNanos && bytes >= lastBytes){
+                    double instant = (bytes - lastBytes) * 1e9 / (now - lastNanos);
+                    rate = rate == 0 ? instant : RATE_SMOOTHING * instant + (1 - RATE_SMOOTHING) * rate;
+                }
+                lastNanos = now;
+            }
+            else {
+                // the time spent paused isn't part of the rate
+                lastNanos = 0;
+            }
+            lastBytes = bytes;
+
+            long eta = state == FIRUploadProgress.State.RUNNING && rate > 0 && total > 0
+                    ? (long) ((total - bytes) * 1000 / rate) : -1;
+            return new FIRUploadProgress(task, state, bytes, total, rate, eta, snapshot.getUploadSessionUri(), null, null);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package online.devliving.rxfirebase;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Transaction;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+/**
+ * Observables for Realtime Database transactions.
+ *
+ * Every attempt of a transaction moves the whole value of its location, and under contention there are many
+ * attempts, so run transactions on the smallest location that has to change atomically, e.g a counter instead of
+ * the object that holds it. Transactions run when subscribed to, don't raise local events for intermediate
+ * attempts, and are run again with a {@link TransactionBackoff} when the SDK gives up on them.
+ */
+
+public final class RxTransaction {
+    /**
+     * reruns up to 3 times, after 50ms, 100ms and 200ms with jitter
+     */
+    public static final TransactionBackoff DEFAULT_BACKOFF = TransactionBackoff.exponential(3, 50, TimeUnit.MILLISECONDS);
+
+    private RxTransaction(){}
+
+    /**
+     * @param ref location of the transaction
+     * @param update called with the current value of {@param ref}, possibly several times, returns
+     *               {@link Transaction#success(MutableData)} or {@link Transaction#abort()}
+     * @return Observable that runs the transaction when subscribed to and emits its outcome
+     */
+    public static Observable<FIRTransactionResult> run(DatabaseReference ref, Func1<MutableData, Transaction.Result> update){
+        return run(ref, update, DEFAULT_BACKOFF);
+    }
+
+    /**
+     * @param ref location of the transaction
+     * @param update called with the current value of {@param ref}, possibly several times, returns
+     *               {@link Transaction#success(MutableData)} or {@link Transaction#abort()}
+     * @param backoff when to run the transaction again after the SDK gave up on it
+     * @return Observable that runs the transaction when subscribed to and emits its outcome
+     */
+    public static Observable<FIRTransactionResult> run(DatabaseReference ref, Func1<MutableData, Transaction.Result> update,
+                                                       TransactionBackoff backoff){
+        return run(ref, update, backoff, Schedulers.computation());
+    }
+
+    /**
+     * @param ref location of the transaction
+     * @param update called with the current value of {@param ref}, possibly several times, returns
+     *               {@link Transaction#success(MutableData)} or {@link Transaction#abort()}
+     * @param backoff when to run the transaction again after the SDK gave up on it
+     * @param scheduler scheduler for the backoff delays
+     * @return Observable that runs the transaction when subscribed to and emits its outcome
+     */
+    public static Observable<FIRTransactionResult> run(DatabaseReference ref, Func1<MutableData, Transaction.Result> update,
+                                                       TransactionBackoff backoff, Scheduler scheduler){
+        QueryMetrics metrics = RxFirebasePlugins.metricsFor(ref);
+        return Observable.create(new Observable.OnSubscribe<FIRTransactionResult>() {
+            @Override
+            public void call(Subscriber<? super FIRTransactionResult> subscriber) {
+                new Run(ref, update, backoff, scheduler, metrics, subscriber).start();
+            }
+        });
+    }
+
+    /**
+     * adds {@param delta} to the number at {@param ref}, a missing value counts as 0
+     * @param ref
+     * @param delta
+     * @return Observable that emits the outcome, the new number is in its snapshot
+     */
+    public static Observable<FIRTransactionResult> increment(DatabaseReference ref, long delta){
+        return run(ref, new Func1<MutableData, Transaction.Result>() {
+            @Override
+            public Transaction.Result call(MutableData data) {
+                Long current = data.getValue(Long.class);
+                data.setValue((current == null ? 0 : current) + delta);
+                return Transaction.success(data);
+            }
+        });
+    }
+
+    /**
+     * sets {@param ref} to true if it has no value, removes it otherwise
+     * @param ref
+     * @return Observable that emits the outcome, the snapshot exists if the flag is set now
+     */
+    public static Observable<FIRTransactionResult> toggle(DatabaseReference ref){
+        return run(ref, new Func1<MutableData, Transaction.Result>() {
+            @Override
+            public Transaction.Result call(MutableData data) {
+                data.setValue(data.getValue() == null ? Boolean.TRUE : null);
+                return Transaction.success(data);
+            }
+        });
+    }
+
+    /**
+     * toggles the flag at {@param flagPath} below {@param parent} and adds 1 to, or subtracts 1 from, the counter at
+     * {@param countPath}, e.g {@code stars/<uid>} and {@code starCount} of a post. Both change in one transaction on
+     * {@param parent}, so the counter always matches the flags whatever happens to the app in between. The update
+     * only touches those two children, but every attempt still moves the value of {@param parent}; keep the counted
+     * flags in a node that is small, or put up with that for a counter that never drifts.
+     *
+     * A missing parent is taken as deleted: nothing is written, so nothing is left under it, and the flag isn't set.
+     * @param parent
+     * @param flagPath path of the flag relative to {@param parent}
+     * @param countPath path of the counter relative to {@param parent}, a missing counter counts as 0
+     * @return Observable that emits true if the flag is set now
+     */
+    public static Observable<Boolean> toggleCounted(DatabaseReference parent, String flagPath, String countPath){
+        return run(parent, new Func1<MutableData, Transaction.Result>() {
+            @Override
+            public Transaction.Result call(MutableData data) {
+                if(data.getValue() == null) return Transaction.success(data);
+
+                MutableData flag = data.child(flagPath);
+                MutableData count = data.child(countPath);
+                boolean set = flag.getValue() == null;
+                Long current = count.getValue(Long.class);
+
+                flag.setValue(set ? Boolean.TRUE : null);
+                count.setValue((current == null ? 0 : current) + (set ? 1 : -1));
+                return Transaction.success(data);
+            }
+        }).map(new Func1<FIRTransactionResult, Boolean>() {
+            @Override
+            public Boolean call(FIRTransactionResult result) {
+                return result.committed && result.snapshot.child(flagPath).exists();
+            }
+        });
+    }
+
+    /**
+     * one subscription: runs the transaction and reruns it after the backoff delays
+     */
+    static final class Run implements Transaction.Handler {
+        final DatabaseReference ref;
+        final Func1<MutableData, Transaction.Result> update;
+        final TransactionBackoff backoff;
+        final Scheduler.Worker worker;
+        final QueryMetrics metrics;
+        final Subscriber<? super FIRTransactionResult> subscriber;
+
+        final AtomicInteger attempts = new AtomicInteger();
+        final long start = System.nanoTime();
+        volatile int runs;
+
+        Run(DatabaseReference ref, Func1<MutableData, Transaction.Result> update, TransactionBackoff backoff,
+            Scheduler scheduler, QueryMetrics metrics, Subscriber<? super FIRTransactionResult> subscriber) {
+            this.ref = ref;
+            this.update = update;
+            this.backoff = backoff;
+            this.worker = scheduler.createWorker();
+            this.metrics = metrics;
+            this.subscriber = subscriber;
+
+            subscriber.add(worker);
+        }
+
+        void start(){
+            runs++;
+            ref.runTransaction(this, false);
+        }
+
+        @Override
+        public Transaction.Result doTransaction(MutableData mutableData) {
+            attempts.incrementAndGet();
+            return update.call(mutableData);
+        }
+
+        @Override
+        public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
+            if(databaseError != null && databaseError.getCode() == DatabaseError.MAX_RETRIES && runs <= backoff.maxReruns
+                    && !subscriber.isUnsubscribed()){
+                worker.schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        start();
+                    }
+                }, backoff.delayMillis(runs), TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            long latency = System.nanoTime() - start;
+            metrics.onTransactionCompleted(latency, attempts.get(), databaseError == null && committed);
+            if(subscriber.isUnsubscribed()) return;
+
+            if(databaseError != null){
+                subscriber.onError(databaseError.toException());
+            }
+            else {
+                subscriber.onNext(new FIRTransactionResult(committed, dataSnapshot, attempts.get(), runs, latency));
+                subscriber.onCompleted();
+            }
+        }
+    }
+}
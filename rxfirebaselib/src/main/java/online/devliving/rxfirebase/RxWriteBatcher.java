@@ -0,0 +1,346 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.DatabaseException;
+import com.google.firebase.database.DatabaseReference;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+import rx.subjects.AsyncSubject;
+
+/**
+ * Coalesces the writes issued within a short window into one multi-path {@link DatabaseReference#updateChildren(Map)}
+ * of the database root, so a burst of small writes is sent and acknowledged once.
+ *
+ * Writes are queued as soon as they are called, like the Task based SDK methods, the returned Observable only
+ * reports the outcome of the batch the write went out with. A batch is sent when its window has passed since its
+ * first write, when it holds maxWrites writes or on {@link #flush()}.
+ *
+ * Values are converted to Maps, Lists and value types when they are queued, like the SDK converts them, so a value
+ * that can't be written only fails its own write. The last write to a path wins: a write replaces the queued writes
+ * to the same path and below it. A write below a queued write is merged into its value when that value is a Map;
+ * otherwise, e.g below a String, the queued batch is sent first so the SDK applies both writes in order. The values
+ * of one {@link #updateChildren(DatabaseReference, Map)} always go out in the same batch. Thread safe.
+ */
+
+public final class RxWriteBatcher {
+    final DatabaseReference root;
+    final long window;
+    final TimeUnit unit;
+    final int maxWrites;
+    final Scheduler scheduler;
+
+    /**
+     * guarded by this
+     */
+    @Nullable
+    private Batch batch;
+    private long writeCount;
+    private long batchCount;
+
+    private RxWriteBatcher(DatabaseReference root, long window, TimeUnit unit, int maxWrites, Scheduler scheduler) {
+        if(maxWrites <= 0) throw new IllegalArgumentException("maxWrites must be positive, was " + maxWrites);
+
+        this.root = root;
+        this.window = window;
+        this.unit = unit;
+        this.maxWrites = maxWrites;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * batches writes issued within 50ms, up to 100 writes per batch
+     * @param reference any reference of the database to write to
+     * @return
+     */
+    public static RxWriteBatcher create(DatabaseReference reference){
+        return create(reference, 50, TimeUnit.MILLISECONDS, 100);
+    }
+
+    /**
+     * @param reference any reference of the database to write to
+     * @param window how long a batch waits for more writes after its first one
+     * @param unit
+     * @param maxWrites number of writes that sends a batch right away
+     * @return
+     */
+    public static RxWriteBatcher create(DatabaseReference reference, long window, TimeUnit unit, int maxWrites){
+        return create(reference, window, unit, maxWrites, Schedulers.computation());
+    }
+
+    /**
+     * @param reference any reference of the database to write to
+     * @param window how long a batch waits for more writes after its first one
+     * @param unit
+     * @param maxWrites number of writes that sends a batch right away
+     * @param scheduler scheduler for the window
+     * @return
+     */
+    public static RxWriteBatcher create(DatabaseReference reference, long window, TimeUnit unit, int maxWrites, Scheduler scheduler){
+        return new RxWriteBatcher(reference.getRoot(), window, unit, maxWrites, scheduler);
+    }
+
+    /**
+     * queues {@param value} to be written at {@param ref}
+     * @param ref
+     * @param value
+     * @return Observable that completes once the batch of the write was written, or errors if it failed or
+     * {@param value} can't be written
+     */
+    public Observable<Void> setValue(DatabaseReference ref, @Nullable Object value){
+        LinkedHashMap<String, Object> writes = new LinkedHashMap<>(2);
+        writes.put(pathOf(ref), value);
+        return write(writes);
+    }
+
+    /**
+     * queues the removal of {@param ref}
+     * @param ref
+     * @return Observable that completes once the batch of the write was written, or errors if it failed
+     */
+    public Observable<Void> removeValue(DatabaseReference ref){
+        return setValue(ref, null);
+    }
+
+    /**
+     * queues the values of {@param update}, by path relative to {@param ref}. They always go out in the same batch,
+     * so they are applied atomically like a direct updateChildren.
+     * @param ref
+     * @param update
+     * @return Observable that completes once the batch of the writes was written, or errors if it failed or one of
+     * the values can't be written
+     * @throws DatabaseException if a path of {@param update} is below another one
+     */
+    public Observable<Void> updateChildren(DatabaseReference ref, Map<String, Object> update){
+        String base = pathOf(ref);
+        LinkedHashMap<String, Object> writes = new LinkedHashMap<>(SnapshotValues.capacityFor(update.size()));
+        for(Map.Entry<String, Object> entry : update.entrySet()){
+            String child = normalize(entry.getKey());
+            writes.put(base.isEmpty() ? child : child.isEmpty() ? base : base + "/" + child, entry.getValue());
+        }
+
+        for(String path : writes.keySet()){
+            for(String other : writes.keySet()){
+                if(other.startsWith(path + "/")){
+                    throw new DatabaseException("Path '" + path + "' is an ancestor of '" + other + "' in the same update");
+                }
+            }
+        }
+
+        return write(writes);
+    }
+
+    /**
+     * sends the queued writes now
+     */
+    public synchronized void flush(){
+        if(batch != null){
+            send(batch);
+            batch = null;
+        }
+    }
+
+    /**
+     * @return number of writes queued so far
+     */
+    public synchronized long getWriteCount(){
+        return writeCount;
+    }
+
+    /**
+     * @return number of batches sent so far, each one a single updateChildren
+     */
+    public synchronized long getBatchCount(){
+        return batchCount;
+    }
+
+    /**
+     * @param writes values by path from the root, none of them below another
+     */
+    private Observable<Void> write(LinkedHashMap<String, Object> writes){
+        if(writes.containsKey("")) throw new IllegalArgumentException("The root can't be written through a RxWriteBatcher");
+
+        // converted up front, a value the SDK can't write would fail the whole batch
+        try {
+            for(Map.Entry<String, Object> entry : writes.entrySet()){
+                entry.setValue(BeanValues.toPlain(entry.getValue()));
+            }
+        } catch (DatabaseException e){
+            return Observable.error(e);
+        }
+
+        synchronized (this){
+            writeCount += writes.size();
+
+            // the earlier writes go out first, batches are sent under the lock so they reach the SDK in order
+            if(batch != null && !batch.accepts(writes.keySet())){
+                send(batch);
+                batch = null;
+            }
+
+            if(batch == null){
+                batch = new Batch();
+                batch.schedule();
+            }
+
+            for(Map.Entry<String, Object> entry : writes.entrySet()){
+                batch.put(entry.getKey(), entry.getValue());
+            }
+            batch.writes += writes.size();
+
+            Observable<Void> result = batch.result;
+            if(batch.writes >= maxWrites){
+                send(batch);
+                batch = null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * guarded by this
+     */
+    private void send(Batch sent){
+        sent.cancelSchedule();
+        batchCount++;
+
+        Task<Void> task;
+        try {
+            task = root.updateChildren(sent.values);
+        } catch (RuntimeException e){
+            // reported to the writers of the batch, never thrown to the timer or to a later writer
+            sent.subject.onError(e);
+            return;
+        }
+        RxGMSTask.just(task, RxGMSTask.DIRECT).subscribe(sent.subject);
+    }
+
+    /**
+     * @return path of {@param ref} from the root, without leading or trailing slashes
+     */
+    static String pathOf(DatabaseReference ref){
+        StringBuilder path = new StringBuilder();
+        for(DatabaseReference current = ref; current.getKey() != null; current = current.getParent()){
+            if(path.length() > 0) path.insert(0, '/');
+            path.insert(0, current.getKey());
+        }
+        return path.toString();
+    }
+
+    static String normalize(String path){
+        StringBuilder normalized = new StringBuilder(path.length());
+        for(String segment : path.split("/")){
+            if(segment.isEmpty()) continue;
+            if(normalized.length() > 0) normalized.append('/');
+            normalized.append(segment);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * writes waiting to be sent together, guarded by the batcher
+     */
+    final class Batch {
+        final LinkedHashMap<String, Object> values = new LinkedHashMap<>();
+        final AsyncSubject<Void> subject = AsyncSubject.create();
+        final Observable<Void> result = subject.asObservable();
+        int writes;
+        @Nullable
+        Scheduler.Worker worker;
+
+        /**
+         * @return false if one of {@param paths} is below a queued value that can't be merged into
+         */
+        boolean accepts(Iterable<String> paths){
+            for(String path : paths){
+                for(Map.Entry<String, Object> entry : values.entrySet()){
+                    String queued = entry.getKey();
+                    if(path.startsWith(queued + "/")
+                            && !mergeable(entry.getValue(), path.substring(queued.length() + 1).split("/"), 0)) return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * last writer wins: replaces the queued values at and below {@param path}, or is merged into the queued value
+         * above it, which {@link #accepts(Iterable)} checked
+         */
+        void put(String path, @Nullable Object value){
+            String prefix = path + "/";
+            for(Iterator<Map.Entry<String, Object>> it = values.entrySet().iterator(); it.hasNext(); ){
+                Map.Entry<String, Object> entry = it.next();
+                String queued = entry.getKey();
+
+                if(queued.startsWith(prefix)){
+                    it.remove();
+                }
+                else if(path.startsWith(queued + "/")){
+                    entry.setValue(merge(entry.getValue(), path.substring(queued.length() + 1).split("/"), 0, value));
+                    return;
+                }
+            }
+
+            // re-inserted so the batch keeps the order of the last writes
+            values.remove(path);
+            values.put(path, value);
+        }
+
+        void schedule(){
+            worker = scheduler.createWorker();
+            worker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    synchronized (RxWriteBatcher.this){
+                        if(batch != Batch.this) return;
+
+                        send(batch);
+                        batch = null;
+                    }
+                }
+            }, window, unit);
+        }
+
+        void cancelSchedule(){
+            Subscription current = worker;
+            if(current != null) current.unsubscribe();
+        }
+    }
+
+    /**
+     * @return true if a value can be set at {@param segments} of {@param node}, i.e every node on the way is a Map or null
+     */
+    static boolean mergeable(@Nullable Object node, String[] segments, int depth){
+        if(depth == segments.length || node == null) return true;
+        if(!(node instanceof Map)) return false;
+
+        return mergeable(((Map<?, ?>) node).get(segments[depth]), segments, depth + 1);
+    }
+
+    /**
+     * @return copy of {@param node} with {@param value} at {@param segments}, the Maps on the way are copied
+     */
+    @SuppressWarnings("unchecked")
+    static Object merge(@Nullable Object node, String[] segments, int depth, @Nullable Object value){
+        if(depth == segments.length) return value;
+
+        Map<String, Object> children = (Map<String, Object>) node;
+        Object merged = merge(children == null ? null : children.get(segments[depth]), segments, depth + 1, value);
+
+        HashMap<String, Object> copy = children == null ? new HashMap<String, Object>(2) : new HashMap<>(children);
+        if(merged == null) copy.remove(segments[depth]);
+        else copy.put(segments[depth], merged);
+        return copy;
+    }
+}
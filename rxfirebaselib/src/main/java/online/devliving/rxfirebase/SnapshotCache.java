@@ -0,0 +1,279 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of mapped children, keyed by the query the child was read with, the key of the child and the
+ * mapper. The raw value a model was mapped from is kept with it as its fingerprint: a child that shows up again with
+ * the same content, e.g in every snapshot of a mostly static list, gets the model mapped the first time instead of
+ * being mapped again. As the fingerprint is checked on every hit, children that share a key only cost hits, never
+ * return another child's model.
+ *
+ * Install one for every RxQuery method with {@link RxQuery#setSnapshotCache(SnapshotCache)} or wrap single mappers
+ * with {@link #wrap(SnapshotMapper)}. Cached models are handed out more than once, treat them as immutable.
+ * Thread safe.
+ */
+
+public final class SnapshotCache {
+    /**
+     * per entry overhead of the key, the entry and the map node, in bytes
+     */
+    static final int ENTRY_OVERHEAD = 96;
+
+    private final int maxEntries;
+    private final long maxBytes;
+
+    /**
+     * guarded by itself
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    private SnapshotCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param maxEntries number of children kept
+     * @return cache that evicts the least recently used child once it holds more than {@param maxEntries}
+     */
+    public static SnapshotCache withMaxEntries(int maxEntries){
+        if(maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be positive, was " + maxEntries);
+        return new SnapshotCache(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxBytes estimated size of the cached children, see {@link #getEstimatedBytes()}
+     * @return cache that evicts the least recently used children once they are estimated to take more than {@param maxBytes}
+     */
+    public static SnapshotCache withMaxBytes(long maxBytes){
+        if(maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive, was " + maxBytes);
+        return new SnapshotCache(Integer.MAX_VALUE, maxBytes);
+    }
+
+    /**
+     * @param mapper
+     * @param <T>
+     * @return mapper that looks children up in this cache before mapping them with {@param mapper}
+     */
+    public <T> SnapshotMapper<T> wrap(SnapshotMapper<T> mapper){
+        return wrap(mapper, null);
+    }
+
+    /**
+     * @param mapper
+     * @param scope what the children are read with e.g the spec of their query, null if unknown
+     * @param <T>
+     * @return mapper that looks children up by {@param scope} and their key before mapping them with {@param mapper}
+     */
+    @SuppressWarnings("unchecked")
+    <T> SnapshotMapper<T> wrap(SnapshotMapper<T> mapper, @Nullable Object scope){
+        if(mapper == SnapshotMappers.SNAPSHOT) return mapper;
+        if(mapper instanceof CachedMapper && ((CachedMapper<T>) mapper).cache() == this) return mapper;
+
+        return new CachedMapper<>(mapper, scope);
+    }
+
+    public int size(){
+        synchronized (entries){
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return estimated size of the cached children, twice the estimated size of their raw values i.e the raw
+     * values and models of similar size, plus the keys and a fixed overhead per child
+     */
+    public long getEstimatedBytes(){
+        synchronized (entries){
+            return bytes;
+        }
+    }
+
+    public long getHitCount(){
+        synchronized (entries){
+            return hitCount;
+        }
+    }
+
+    public long getMissCount(){
+        synchronized (entries){
+            return missCount;
+        }
+    }
+
+    public long getEvictionCount(){
+        synchronized (entries){
+            return evictionCount;
+        }
+    }
+
+    public void clear(){
+        synchronized (entries){
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    @Nullable
+    Object get(Key key, Object raw){
+        synchronized (entries){
+            Entry entry = entries.get(key);
+            if(entry != null && entry.raw.equals(raw)){
+                hitCount++;
+                return entry.model;
+            }
+
+            missCount++;
+            return null;
+        }
+    }
+
+    void put(Key key, Object raw, Object model){
+        Entry entry = new Entry(raw, model, 2 * estimateBytes(raw) + 2 * key.key.length() + ENTRY_OVERHEAD);
+
+        synchronized (entries){
+            Entry old = entries.put(key, entry);
+            if(old != null) bytes -= old.bytes;
+            bytes += entry.bytes;
+
+            Iterator<Entry> eldest = entries.values().iterator();
+            while((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()){
+                Entry evicted = eldest.next();
+                eldest.remove();
+                bytes -= evicted.bytes;
+                evictionCount++;
+            }
+        }
+    }
+
+    /**
+     * @return rough size of {@param raw} in memory, in bytes
+     */
+    static long estimateBytes(@Nullable Object raw){
+        if(raw == null) return 0;
+        if(raw instanceof String) return 40 + 2 * ((String) raw).length();
+
+        if(raw instanceof Map){
+            long size = 48;
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) raw).entrySet()){
+                size += 32 + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return size;
+        }
+
+        if(raw instanceof List){
+            List<?> list = (List<?>) raw;
+            long size = 40 + 4 * list.size();
+            for(int i = 0; i < list.size(); i++){
+                size += estimateBytes(list.get(i));
+            }
+            return size;
+        }
+
+        // Boolean, Long, Double
+        return 16;
+    }
+
+    static final class Key {
+        @Nullable
+        final Object scope;
+        final String key;
+        final SnapshotMapper<?> mapper;
+
+        Key(@Nullable Object scope, String key, SnapshotMapper<?> mapper) {
+            this.scope = scope;
+            this.key = key;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+
+            Key other = (Key) o;
+            return mapper == other.mapper && key.equals(other.key)
+                    && (scope == null ? other.scope == null : scope.equals(other.scope));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 31 * key.hashCode() + System.identityHashCode(mapper);
+            return 31 * hash + (scope == null ? 0 : scope.hashCode());
+        }
+    }
+
+    static final class Entry {
+        final Object raw;
+        final Object model;
+        final long bytes;
+
+        Entry(Object raw, Object model, long bytes) {
+            this.raw = raw;
+            this.model = model;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * mapper that consults the cache, raw values without a snapshot have no key and are mapped directly
+     * @param <T>
+     */
+    final class CachedMapper<T> implements SnapshotMapper<T> {
+        final SnapshotMapper<T> mapper;
+        @Nullable
+        final Object scope;
+
+        CachedMapper(SnapshotMapper<T> mapper, @Nullable Object scope) {
+            this.mapper = mapper;
+            this.scope = scope;
+        }
+
+        SnapshotCache cache(){
+            return SnapshotCache.this;
+        }
+
+        @Override
+        public T fromSnapshot(DataSnapshot snapshot) {
+            return map(snapshot, snapshot.getValue());
+        }
+
+        @Override
+        public T fromValue(@Nullable Object value) {
+            return mapper.fromValue(value);
+        }
+
+        /**
+         * keyed by the key of {@param snapshot}, building its path from the reference would cost more than most hits
+         * save; a miss is mapped like {@link SnapshotMappers#map(SnapshotMapper, DataSnapshot, Object)} does
+         * @param snapshot
+         * @param raw raw value of {@param snapshot}
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        T map(DataSnapshot snapshot, @Nullable Object raw){
+            String childKey = snapshot.getKey();
+            if(raw == null || childKey == null) return SnapshotMappers.map(mapper, snapshot, raw);
+
+            Key key = new Key(scope, childKey, mapper);
+            T model = (T) get(key, raw);
+            if(model == null){
+                model = SnapshotMappers.map(mapper, snapshot, raw);
+                if(model != null) put(key, raw, model);
+            }
+            return model;
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.Query;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+/**
+ * Disk cache of the last value of queries, so a screen can show what it showed last time while the SDK is still
+ * connecting. Values are kept as raw snapshot values in a compact binary file per query spec and are mapped again
+ * when read, see {@link RxQuery#setDiskCache(SnapshotDiskCache)}.
+ *
+ * Files are only read and written on the cache's Scheduler, {@code Schedulers.io()} by default. Writes of the same
+ * query are coalesced, only the latest value of a burst is written. A file is read and written under a lock of its
+ * own key, so a large write doesn't hold up reads of other queries. The least recently used files are deleted once
+ * the files take more than maxBytes. Thread safe, use one instance per directory.
+ *
+ * Cached values are readable by anyone with access to the directory, clear the cache when the user signs out.
+ */
+
+public final class SnapshotDiskCache {
+    static final int MAGIC = 0x52584643; // "RXFC"
+    static final int VERSION = 1;
+    static final String SUFFIX = ".snap";
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final byte NULL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte LONG = 3;
+    static final byte DOUBLE = 4;
+    static final byte STRING = 5;
+    static final byte MAP = 6;
+    static final byte LIST = 7;
+
+    private final File directory;
+    private final long maxBytes;
+    private final Scheduler scheduler;
+    /**
+     * file I/O of a name is done under locks[hash of the name], the index under this
+     */
+    private final Object[] locks = new Object[16];
+
+    /**
+     * size of every file by name, least recently used first, guarded by this; null until the directory was listed
+     */
+    @Nullable
+    private LinkedHashMap<String, Long> files;
+    private long bytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * latest value to write by key, guarded by itself
+     */
+    private final HashMap<String, Entry> pendingWrites = new HashMap<>();
+    /**
+     * incremented by every clear, values read or put before a clear are dropped; guarded by pendingWrites
+     */
+    private int generation;
+
+    private SnapshotDiskCache(File directory, long maxBytes, Scheduler scheduler) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.scheduler = scheduler;
+        for(int i = 0; i < locks.length; i++){
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param directory directory of the cache files e.g {@code new File(context.getCacheDir(), "rxfirebase")}, created if missing
+     * @param maxBytes size the files are kept under
+     * @return
+     */
+    public static SnapshotDiskCache open(File directory, long maxBytes){
+        return open(directory, maxBytes, Schedulers.io());
+    }
+
+    /**
+     * @param directory directory of the cache files, created if missing
+     * @param maxBytes size the files are kept under
+     * @param scheduler Scheduler the files are read and written on
+     * @return
+     */
+    public static SnapshotDiskCache open(File directory, long maxBytes, Scheduler scheduler){
+        if(maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive, was " + maxBytes);
+        return new SnapshotDiskCache(directory, maxBytes, scheduler);
+    }
+
+    /**
+     * @param query
+     * @return key the value of {@param query} is cached under: the database and the query spec (path, ordering, limits)
+     */
+    static String keyOf(Query query){
+        return RxQuery.keyOf(query);
+    }
+
+    /**
+     * reads the value cached for {@param key} on the cache's Scheduler
+     * @param key
+     * @return Observable that emits the cached entry if there is one and completes, it doesn't error
+     */
+    Observable<Entry> get(String key){
+        return Observable.create(new Observable.OnSubscribe<Entry>() {
+            @Override
+            public void call(Subscriber<? super Entry> subscriber) {
+                Entry entry = read(key);
+                if(subscriber.isUnsubscribed()) return;
+
+                if(entry != null) subscriber.onNext(entry);
+                subscriber.onCompleted();
+            }
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * saves {@param raw} as the value of {@param key} on the cache's Scheduler, replacing a value that wasn't written yet
+     * @param key
+     * @param raw raw value of a snapshot, null removes the cached value
+     * @param timestamp when the SDK delivered {@param raw}
+     */
+    void put(String key, @Nullable Object raw, long timestamp){
+        boolean scheduled;
+        synchronized (pendingWrites){
+            scheduled = pendingWrites.containsKey(key);
+            pendingWrites.put(key, new Entry(raw, timestamp));
+        }
+        if(scheduled) return;
+
+        Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                try {
+                    Entry latest;
+                    int current;
+                    synchronized (pendingWrites){
+                        latest = pendingWrites.remove(key);
+                        current = generation;
+                    }
+                    // null if the cache was cleared in between
+                    if(latest != null) write(key, latest.value, latest.timestamp, current);
+                } finally {
+                    worker.unsubscribe();
+                }
+            }
+        });
+    }
+
+    /**
+     * deletes every cached value on the cache's Scheduler, e.g when the user signs out
+     */
+    public void clear(){
+        synchronized (pendingWrites){
+            pendingWrites.clear();
+            generation++;
+        }
+
+        Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                try {
+                    synchronized (SnapshotDiskCache.this){
+                        File[] existing = directory.listFiles();
+                        if(existing != null){
+                            for(File file : existing){
+                                if(file.getName().endsWith(SUFFIX)) file.delete();
+                            }
+                        }
+                        files = new LinkedHashMap<>(16, 0.75f, true);
+                        bytes = 0;
+                    }
+                } finally {
+                    worker.unsubscribe();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return size of the cached files, 0 until the cache was first used
+     */
+    public synchronized long getSize(){
+        return bytes;
+    }
+
+    public synchronized long getHitCount(){
+        return hitCount;
+    }
+
+    public synchronized long getMissCount(){
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount(){
+        return evictionCount;
+    }
+
+    /**
+     * @return current generation, see {@link #clear()}
+     */
+    int generation(){
+        synchronized (pendingWrites){
+            return generation;
+        }
+    }
+
+    @Nullable
+    Entry read(String key){
+        int readGeneration = generation();
+        String name = fileName(key);
+
+        synchronized (lockFor(name)){
+            synchronized (this){
+                ensureListed();
+                if(files.get(name) == null){
+                    missCount++;
+                    return null;
+                }
+            }
+
+            File file = new File(directory, name);
+            DataInputStream in = null;
+            Entry entry;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                if(in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(readString(in))){
+                    throw new IOException("Not a cache file of " + key);
+                }
+
+                long timestamp = in.readLong();
+                entry = new Entry(readValue(in), timestamp);
+            } catch (IOException e){
+                // corrupt, truncated or written by another version
+                synchronized (this){
+                    missCount++;
+                    delete(name);
+                }
+                return null;
+            } finally {
+                close(in);
+            }
+
+            synchronized (this){
+                // the value of whoever used the cache before it was cleared
+                if(readGeneration != generation()){
+                    missCount++;
+                    return null;
+                }
+                hitCount++;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        }
+    }
+
+    /**
+     * @param key
+     * @param raw
+     * @param timestamp
+     * @param writeGeneration generation the value was put in, it isn't kept if the cache was cleared since
+     */
+    void write(String key, @Nullable Object raw, long timestamp, int writeGeneration){
+        String name = fileName(key);
+
+        synchronized (lockFor(name)){
+            synchronized (this){
+                ensureListed();
+                if(raw == null){
+                    delete(name);
+                    return;
+                }
+            }
+
+            if(!directory.isDirectory() && !directory.mkdirs()) return;
+
+            File file = new File(directory, name);
+            File temp = new File(directory, name + ".tmp");
+            DataOutputStream out = null;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, key);
+                out.writeLong(timestamp);
+                writeValue(out, raw);
+                out.close();
+                out = null;
+
+                // readers never see a half written file
+                if(!temp.renameTo(file)) throw new IOException("Unable to rename " + temp);
+            } catch (IOException e){
+                close(out);
+                temp.delete();
+                return;
+            }
+
+            long length = file.length();
+            synchronized (this){
+                // cleared while the file was written
+                if(writeGeneration != generation()){
+                    delete(name);
+                    return;
+                }
+
+                Long old = files.put(name, length);
+                if(old != null) bytes -= old;
+                bytes += length;
+
+                trim();
+            }
+        }
+    }
+
+    private Object lockFor(String name){
+        return locks[(name.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    /**
+     * lists the files left by earlier runs, least recently used first, guarded by this
+     */
+    private void ensureListed(){
+        if(files != null) return;
+
+        files = new LinkedHashMap<>(16, 0.75f, true);
+        File[] existing = directory.listFiles();
+        if(existing == null) return;
+
+        Arrays.sort(existing, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long byTime = a.lastModified() - b.lastModified();
+                return byTime < 0 ? -1 : byTime > 0 ? 1 : 0;
+            }
+        });
+
+        for(File file : existing){
+            String name = file.getName();
+            if(name.endsWith(SUFFIX)){
+                files.put(name, file.length());
+                bytes += file.length();
+            }
+            else if(name.endsWith(SUFFIX + ".tmp")){
+                // left by a write that was killed
+                file.delete();
+            }
+        }
+
+        trim();
+    }
+
+    /**
+     * deletes the least recently used files until they fit in maxBytes, guarded by this
+     */
+    private void trim(){
+        Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+        while(bytes > maxBytes && eldest.hasNext()){
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            bytes -= entry.getValue();
+            evictionCount++;
+            new File(directory, entry.getKey()).delete();
+        }
+    }
+
+    private void delete(String name){
+        Long old = files.remove(name);
+        if(old != null) bytes -= old;
+        new File(directory, name).delete();
+    }
+
+    static String fileName(String key){
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+            for(byte b : digest){
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.append(SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * writes a raw snapshot value: a tag byte, then the value; objects and arrays as their size followed by their children
+     */
+    static void writeValue(DataOutputStream out, @Nullable Object value) throws IOException {
+        if(value == null){
+            out.writeByte(NULL);
+        }
+        else if(value instanceof Boolean){
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        }
+        else if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte){
+            out.writeByte(LONG);
+            out.writeLong(((Number) value).longValue());
+        }
+        else if(value instanceof Number){
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        }
+        else if(value instanceof String){
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        }
+        else if(value instanceof Map){
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for(Map.Entry<?, ?> entry : map.entrySet()){
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        }
+        else if(value instanceof List){
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for(int i = 0; i < list.size(); i++){
+                writeValue(out, list.get(i));
+            }
+        }
+        else {
+            throw new IOException("Unsupported value type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * @return value written by {@link #writeValue(DataOutputStream, Object)}, objects as HashMaps and arrays as
+     * ArrayLists like the SDK returns them
+     */
+    @Nullable
+    static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag){
+            case NULL: return null;
+            case FALSE: return Boolean.FALSE;
+            case TRUE: return Boolean.TRUE;
+            case LONG: return in.readLong();
+            case DOUBLE: return in.readDouble();
+            case STRING: return readString(in);
+            case MAP: {
+                int size = readSize(in);
+                HashMap<String, Object> map = new HashMap<>(SnapshotValues.capacityFor(size));
+                for(int i = 0; i < size; i++){
+                    String key = readString(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            case LIST: {
+                int size = readSize(in);
+                ArrayList<Object> list = new ArrayList<>(size);
+                for(int i = 0; i < size; i++){
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            default: throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    /**
+     * strings are written as their UTF-8 length and bytes, {@link DataOutputStream#writeUTF(String)} is limited to 64KB
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readSize(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readSize(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if(size < 0 || size > in.available()) throw new EOFException("Invalid size " + size);
+        return size;
+    }
+
+    private static void close(@Nullable Closeable closeable){
+        if(closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored){}
+    }
+
+    /**
+     * a cached value and when it was saved
+     */
+    static final class Entry {
+        @Nullable
+        final Object value;
+        final long timestamp;
+
+        Entry(@Nullable Object value, long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+    }
+}
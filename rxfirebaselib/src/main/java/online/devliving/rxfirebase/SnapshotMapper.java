@@ -0,0 +1,26 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * Converts a {@link DataSnapshot} into a model object, used by {@link RxQuery} instead of {@link DataSnapshot#getValue(Class)}
+ * @param <T> type of the model
+ */
+
+public interface SnapshotMapper<T> {
+    /**
+     * @param snapshot
+     * @return model for the value of {@param snapshot}, null if the snapshot has no value
+     */
+    @Nullable
+    T fromSnapshot(DataSnapshot snapshot);
+
+    /**
+     * @param value raw value as returned by {@link DataSnapshot#getValue()}, i.e Map, List, String, Boolean, Long or Double
+     * @return model for {@param value}, null if {@param value} is null
+     */
+    @Nullable
+    T fromValue(@Nullable Object value);
+}
@@ -0,0 +1,150 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the {@link SnapshotMapper} for a model class
+ */
+
+public final class SnapshotMappers {
+    static final String GENERATED_SUFFIX = "_SnapshotMapper";
+
+    /**
+     * returns the snapshot itself
+     */
+    static final SnapshotMapper<DataSnapshot> SNAPSHOT = new SnapshotMapper<DataSnapshot>() {
+        @Override
+        public DataSnapshot fromSnapshot(DataSnapshot snapshot) {
+            return snapshot;
+        }
+
+        @Override
+        public DataSnapshot fromValue(@Nullable Object value) {
+            throw new UnsupportedOperationException("a DataSnapshot can't be created from a raw value");
+        }
+    };
+
+    private static final ConcurrentHashMap<Class<?>, SnapshotMapper<?>> mappers = new ConcurrentHashMap<>();
+
+    static {
+        mappers.put(String.class, SnapshotValues.STRING);
+        mappers.put(Boolean.class, SnapshotValues.BOOLEAN);
+        mappers.put(Integer.class, SnapshotValues.INTEGER);
+        mappers.put(Long.class, SnapshotValues.LONG);
+        mappers.put(Double.class, SnapshotValues.DOUBLE);
+        mappers.put(Float.class, SnapshotValues.FLOAT);
+    }
+
+    private SnapshotMappers(){}
+
+    /**
+     * returns the generated mapper for {@param clazz} if it is annotated with {@link FirebaseModel},
+     * otherwise a mapper that falls back to {@link DataSnapshot#getValue(Class)}, raw values without a snapshot, e.g
+     * the ones of the {@link SnapshotDiskCache}, are mapped by reflection. The lookup is done once per class.
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SnapshotMapper<T> of(Class<T> clazz){
+        SnapshotMapper<T> mapper = (SnapshotMapper<T>) mappers.get(clazz);
+        if(mapper == null){
+            mapper = generatedMapper(clazz);
+            if(mapper == null) mapper = new ReflectiveMapper<>(clazz);
+
+            SnapshotMapper<T> existing = (SnapshotMapper<T>) mappers.putIfAbsent(clazz, mapper);
+            if(existing != null) mapper = existing;
+        }
+
+        return mapper;
+    }
+
+    /**
+     * maps {@param snapshot} whose raw value, {@param raw}, is already known, avoiding a second conversion of the
+     * snapshot when {@param mapper} can map raw values. Classes without a generated mapper are still mapped from the
+     * snapshot, by the SDK, so a model maps the same whichever RxQuery method reads it
+     * @param mapper
+     * @param snapshot
+     * @param raw
+     * @param <T>
+     * @return
+     */
+    static <T> T map(SnapshotMapper<T> mapper, DataSnapshot snapshot, Object raw){
+        if(mapper instanceof RxFirebasePlugins.TimedMapper) return ((RxFirebasePlugins.TimedMapper<T>) mapper).map(snapshot, raw);
+        if(mapper instanceof SnapshotCache.CachedMapper) return ((SnapshotCache.CachedMapper<T>) mapper).map(snapshot, raw);
+
+        return mapper == SNAPSHOT || mapper instanceof ReflectiveMapper ? mapper.fromSnapshot(snapshot) : mapper.fromValue(raw);
+    }
+
+    /**
+     * @return false if {@param mapper} can only map snapshots, not raw values
+     */
+    static boolean mapsValues(SnapshotMapper<?> mapper){
+        return mapper != SNAPSHOT;
+    }
+
+    /**
+     * @return the mapper of {@param clazz} if it is a value type or a {@link FirebaseModel}, null for other classes
+     */
+    @Nullable
+    static SnapshotMapper<?> generatedOrNull(Class<?> clazz){
+        SnapshotMapper<?> mapper = of(clazz);
+        return mapper instanceof ReflectiveMapper ? null : mapper;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static <T> SnapshotMapper<T> generatedMapper(Class<T> clazz){
+        String name = clazz.getName();
+        int packageEnd = name.lastIndexOf('.');
+        String mapperName = name.substring(0, packageEnd + 1)
+                + name.substring(packageEnd + 1).replace('$', '_')
+                + GENERATED_SUFFIX;
+
+        try {
+            return (SnapshotMapper<T>) Class.forName(mapperName, true, clazz.getClassLoader())
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Unable to create " + mapperName, e.getCause());
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to create " + mapperName, e);
+        }
+    }
+
+    /**
+     * maps snapshots with the reflection based mapping of the Firebase SDK. Raw values and models are mapped with
+     * {@link BeanValues}, which only the disk cache and writes need: it doesn't check everything the SDK does, e.g
+     * {@code @ThrowOnExtraProperties}, so snapshots never go through it
+     * @param <T>
+     */
+    static final class ReflectiveMapper<T> implements ModelMapper<T> {
+        final Class<T> clazz;
+
+        ReflectiveMapper(Class<T> clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        public T fromSnapshot(DataSnapshot snapshot) {
+            return snapshot.getValue(clazz);
+        }
+
+        @Override
+        public T fromValue(@Nullable Object value) {
+            return BeanValues.fromPlain(value, clazz);
+        }
+
+        @Override
+        public Object toValue(@Nullable T model) {
+            return BeanValues.toPlain(model);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ModelMapper}s for the value types supported by the Realtime Database, used by the mappers that
+ * rxfirebase-compiler generates for {@link FirebaseModel} classes.
+ */
+
+public final class SnapshotValues {
+    public static final ModelMapper<String> STRING = new PlainMapper<String>() {
+        @Override
+        public String fromValue(@Nullable Object value) {
+            if(value == null || value instanceof String) return (String) value;
+            throw conversionError(value, "String");
+        }
+    };
+
+    public static final ModelMapper<Boolean> BOOLEAN = new PlainMapper<Boolean>() {
+        @Override
+        public Boolean fromValue(@Nullable Object value) {
+            if(value == null || value instanceof Boolean) return (Boolean) value;
+            throw conversionError(value, "boolean");
+        }
+    };
+
+    public static final ModelMapper<Integer> INTEGER = new PlainMapper<Integer>() {
+        @Override
+        public Integer fromValue(@Nullable Object value) {
+            return value == null ? null : asNumber(value, "int").intValue();
+        }
+    };
+
+    public static final ModelMapper<Long> LONG = new PlainMapper<Long>() {
+        @Override
+        public Long fromValue(@Nullable Object value) {
+            return value == null ? null : asNumber(value, "long").longValue();
+        }
+    };
+
+    public static final ModelMapper<Double> DOUBLE = new PlainMapper<Double>() {
+        @Override
+        public Double fromValue(@Nullable Object value) {
+            return value == null ? null : asNumber(value, "double").doubleValue();
+        }
+    };
+
+    public static final ModelMapper<Float> FLOAT = new PlainMapper<Float>() {
+        @Override
+        public Float fromValue(@Nullable Object value) {
+            return value == null ? null : asNumber(value, "float").floatValue();
+        }
+    };
+
+    private SnapshotValues(){}
+
+    /**
+     * @param valueMapper mapper for the values of the map
+     * @param <V>
+     * @return mapper for a {@code Map<String, V>}
+     */
+    public static <V> ModelMapper<Map<String, V>> mapOf(ModelMapper<V> valueMapper){
+        return new MapMapper<>(valueMapper);
+    }
+
+    /**
+     * @param itemMapper mapper for the items of the list
+     * @param <V>
+     * @return mapper for a {@code List<V>}
+     */
+    public static <V> ModelMapper<List<V>> listOf(ModelMapper<V> itemMapper){
+        return new ListMapper<>(itemMapper);
+    }
+
+    /**
+     * @param value raw value of an object node
+     * @param type name of the model, used in the error message
+     * @return {@param value} as a Map
+     * @throws DatabaseException if {@param value} isn't an object
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> asObject(Object value, String type){
+        if(value instanceof Map) return (Map<String, Object>) value;
+        throw conversionError(value, type);
+    }
+
+    static Number asNumber(Object value, String type){
+        if(value instanceof Number) return (Number) value;
+        throw conversionError(value, type);
+    }
+
+    static DatabaseException conversionError(Object value, String type){
+        return new DatabaseException("Failed to convert value of type " + value.getClass().getName() + " to " + type);
+    }
+
+    /**
+     * mapper whose models are written as they are
+     * @param <T>
+     */
+    private static abstract class PlainMapper<T> implements ModelMapper<T> {
+        @Override
+        public T fromSnapshot(DataSnapshot snapshot) {
+            return fromValue(snapshot.getValue());
+        }
+
+        @Override
+        public Object toValue(@Nullable T model) {
+            return model;
+        }
+    }
+
+    private static final class MapMapper<V> implements ModelMapper<Map<String, V>> {
+        final ModelMapper<V> valueMapper;
+
+        MapMapper(ModelMapper<V> valueMapper) {
+            this.valueMapper = valueMapper;
+        }
+
+        @Override
+        public Map<String, V> fromSnapshot(DataSnapshot snapshot) {
+            return fromValue(snapshot.getValue());
+        }
+
+        @Override
+        public Map<String, V> fromValue(@Nullable Object value) {
+            if(value == null) return null;
+
+            if(value instanceof Map){
+                Map<?, ?> raw = (Map<?, ?>) value;
+                HashMap<String, V> result = new HashMap<>(capacityFor(raw.size()));
+                for(Map.Entry<?, ?> entry : raw.entrySet()){
+                    result.put((String) entry.getKey(), valueMapper.fromValue(entry.getValue()));
+                }
+                return result;
+            }
+
+            if(value instanceof List){
+                // the database returns objects with sequential integer keys as lists
+                List<?> raw = (List<?>) value;
+                HashMap<String, V> result = new HashMap<>(capacityFor(raw.size()));
+                for(int i = 0; i < raw.size(); i++){
+                    Object item = raw.get(i);
+                    if(item != null) result.put(String.valueOf(i), valueMapper.fromValue(item));
+                }
+                return result;
+            }
+
+            throw conversionError(value, "Map");
+        }
+
+        @Override
+        public Object toValue(@Nullable Map<String, V> model) {
+            if(model == null || valueMapper instanceof PlainMapper) return model;
+
+            HashMap<String, Object> result = new HashMap<>(capacityFor(model.size()));
+            for(Map.Entry<String, V> entry : model.entrySet()){
+                result.put(entry.getKey(), valueMapper.toValue(entry.getValue()));
+            }
+            return result;
+        }
+    }
+
+    private static final class ListMapper<V> implements ModelMapper<List<V>> {
+        final ModelMapper<V> itemMapper;
+
+        ListMapper(ModelMapper<V> itemMapper) {
+            this.itemMapper = itemMapper;
+        }
+
+        @Override
+        public List<V> fromSnapshot(DataSnapshot snapshot) {
+            return fromValue(snapshot.getValue());
+        }
+
+        @Override
+        public List<V> fromValue(@Nullable Object value) {
+            if(value == null) return null;
+            if(!(value instanceof List)) throw conversionError(value, "List");
+
+            List<?> raw = (List<?>) value;
+            ArrayList<V> result = new ArrayList<>(raw.size());
+            for(int i = 0; i < raw.size(); i++){
+                result.add(itemMapper.fromValue(raw.get(i)));
+            }
+            return result;
+        }
+
+        @Override
+        public Object toValue(@Nullable List<V> model) {
+            if(model == null || itemMapper instanceof PlainMapper) return model;
+
+            ArrayList<Object> result = new ArrayList<>(model.size());
+            for(int i = 0; i < model.size(); i++){
+                result.add(itemMapper.toValue(model.get(i)));
+            }
+            return result;
+        }
+    }
+
+    static int capacityFor(int size){
+        return size < 3 ? size + 1 : (int) (size / 0.75f) + 1;
+    }
+}
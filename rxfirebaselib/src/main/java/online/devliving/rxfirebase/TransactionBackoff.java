@@ -0,0 +1,56 @@
+package online.devliving.rxfirebase;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When to run a transaction again after the SDK gave up on it, see {@link RxTransaction}.
+ *
+ * The SDK reruns a transaction right away every time the data changed underneath it and fails with
+ * {@link com.google.firebase.database.DatabaseError#MAX_RETRIES} after 25 tries. On a hot location the clients that
+ * gave up would all try again at the same moment; the delays here double with every run and are randomized so
+ * they spread out instead.
+ */
+
+public final class TransactionBackoff {
+    /**
+     * fail as soon as the SDK gives up
+     */
+    public static final TransactionBackoff NONE = new TransactionBackoff(0, 0);
+
+    private static final Random random = new Random();
+
+    final int maxReruns;
+    final long initialDelayMillis;
+
+    private TransactionBackoff(int maxReruns, long initialDelayMillis) {
+        this.maxReruns = maxReruns;
+        this.initialDelayMillis = initialDelayMillis;
+    }
+
+    /**
+     * @param maxReruns how many times the transaction is run again before failing
+     * @param initialDelay delay before the first rerun, doubled for every following one
+     * @param unit
+     * @return backoff that waits between half and all of the delay before each rerun
+     */
+    public static TransactionBackoff exponential(int maxReruns, long initialDelay, TimeUnit unit){
+        if(maxReruns < 0) throw new IllegalArgumentException("maxReruns can't be negative, was " + maxReruns);
+        if(initialDelay < 0) throw new IllegalArgumentException("initialDelay can't be negative, was " + initialDelay);
+
+        return new TransactionBackoff(maxReruns, unit.toMillis(initialDelay));
+    }
+
+    public int getMaxReruns() {
+        return maxReruns;
+    }
+
+    /**
+     * @param rerun 1 for the first rerun
+     * @return delay before {@param rerun} in milliseconds, with jitter
+     */
+    long delayMillis(int rerun){
+        long delay = initialDelayMillis << Math.min(rerun - 1, 20);
+        return delay / 2 + (long) (random.nextDouble() * (delay - delay / 2));
+    }
+}
@@ -0,0 +1,163 @@
+package online.devliving.rxfirebase;
+
+import com.google.firebase.database.DatabaseException;
+import com.google.firebase.database.Exclude;
+import com.google.firebase.database.PropertyName;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BeanValuesTest {
+    public enum Kind { TEXT, PHOTO }
+
+    public static class Comment {
+        public String text;
+        public int likes;
+
+        public Comment() {}
+
+        Comment(String text, int likes) {
+            this.text = text;
+            this.likes = likes;
+        }
+    }
+
+    public static class Post {
+        public String title;
+        public long starCount;
+        public Kind kind;
+        public List<Comment> comments;
+        public Map<String, Boolean> stars;
+        @Exclude
+        public String local;
+        @PropertyName("author_name")
+        public String author;
+
+        private double score;
+
+        public double getScore() {
+            return score;
+        }
+
+        public void setScore(double score) {
+            this.score = score;
+        }
+
+        @Exclude
+        public String getSummary() {
+            return title + " by " + author;
+        }
+    }
+
+    @Test
+    public void modelIsWrittenAsMapOfItsProperties() throws Exception {
+        Post post = new Post();
+        post.title = "hello";
+        post.starCount = 3;
+        post.kind = Kind.PHOTO;
+        post.comments = Arrays.asList(new Comment("nice", 2));
+        post.local = "not written";
+        post.author = "jane";
+        post.setScore(1.5);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> plain = (Map<String, Object>) BeanValues.toPlain(post);
+
+        assertEquals(new HashSet<>(Arrays.asList("title", "starCount", "kind", "comments", "stars", "author_name", "score")),
+                plain.keySet());
+        assertEquals("hello", plain.get("title"));
+        assertEquals(3L, plain.get("starCount"));
+        assertEquals("PHOTO", plain.get("kind"));
+        assertEquals("jane", plain.get("author_name"));
+        assertEquals(1.5, plain.get("score"));
+        assertNull(plain.get("stars"));
+
+        Map<?, ?> comment = (Map<?, ?>) ((List<?>) plain.get("comments")).get(0);
+        assertEquals("nice", comment.get("text"));
+        assertEquals(2, comment.get("likes"));
+    }
+
+    @Test
+    public void rawValueIsReadIntoModel() throws Exception {
+        Map<String, Object> comment = new HashMap<>();
+        comment.put("text", "nice");
+        comment.put("likes", 2L);
+
+        Map<String, Object> stars = new HashMap<>();
+        stars.put("uid1", true);
+
+        Map<String, Object> raw = new HashMap<>();
+        raw.put("title", "hello");
+        raw.put("starCount", 3L);
+        raw.put("kind", "TEXT");
+        raw.put("comments", new ArrayList<Object>(Arrays.asList(comment)));
+        raw.put("stars", stars);
+        raw.put("author_name", "jane");
+        raw.put("score", 2L);
+        raw.put("unknown", "ignored");
+
+        Post post = SnapshotMappers.of(Post.class).fromValue(raw);
+
+        assertEquals("hello", post.title);
+        assertEquals(3L, post.starCount);
+        assertEquals(Kind.TEXT, post.kind);
+        assertEquals("nice", post.comments.get(0).text);
+        assertEquals(2, post.comments.get(0).likes);
+        assertEquals(Boolean.TRUE, post.stars.get("uid1"));
+        assertEquals("jane", post.author);
+        assertEquals(2.0, post.getScore(), 0);
+        assertNull(post.local);
+    }
+
+    @Test
+    public void modelRoundTrips() throws Exception {
+        Post post = new Post();
+        post.title = "hello";
+        post.stars = new HashMap<>();
+        post.stars.put("uid1", true);
+
+        ModelMapper<Post> mapper = (ModelMapper<Post>) SnapshotMappers.of(Post.class);
+        Post read = mapper.fromValue(mapper.toValue(post));
+
+        assertEquals("hello", read.title);
+        assertEquals(post.stars, read.stars);
+    }
+
+    @Test
+    public void nullIsNull() throws Exception {
+        assertNull(BeanValues.toPlain(null));
+        assertNull(SnapshotMappers.of(Post.class).fromValue(null));
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void classWithoutPropertiesCantBeWritten() throws Exception {
+        BeanValues.toPlain(new Object());
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void arraysCantBeWritten() throws Exception {
+        BeanValues.toPlain(new String[]{"a"});
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void nonStringKeysCantBeWritten() throws Exception {
+        Map<Integer, String> map = new HashMap<>();
+        map.put(1, "a");
+        BeanValues.toPlain(map);
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void wrongTypeIsRejected() throws Exception {
+        Map<String, Object> raw = new HashMap<>();
+        raw.put("title", 5L);
+        SnapshotMappers.of(Post.class).fromValue(raw);
+    }
+}
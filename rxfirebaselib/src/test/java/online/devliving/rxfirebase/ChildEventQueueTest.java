@@ -0,0 +1,226 @@
+package online.devliving.rxfirebase;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Query;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent.ChildEventType;
+import rx.exceptions.MissingBackpressureException;
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class ChildEventQueueTest {
+
+    @Test
+    public void changesAfterAddAreFoldedIntoTheAdd() throws Exception {
+        ChildEventQueue<String> queue = new ChildEventQueue<>(true);
+        assertEquals(1, queue.offer(event("a", "1", ChildEventType.ADD)));
+        assertEquals(1, queue.offer(event("b", "1", ChildEventType.ADD)));
+        assertEquals(0, queue.offer(event("a", "2", ChildEventType.CHANGE)));
+        assertEquals(0, queue.offer(event("a", "3", ChildEventType.CHANGE)));
+
+        assertEquals(2, queue.size());
+        assertEvent(queue.poll(), "a", "3", ChildEventType.ADD);
+        assertEvent(queue.poll(), "b", "1", ChildEventType.ADD);
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void removeReplacesWaitingChangeAtItsOwnPosition() throws Exception {
+        ChildEventQueue<String> queue = new ChildEventQueue<>(true);
+        queue.offer(event("a", "1", ChildEventType.CHANGE));
+        queue.offer(event("b", "1", ChildEventType.ADD));
+        assertEquals(0, queue.offer(event("a", null, ChildEventType.REMOVE)));
+
+        assertEquals(2, queue.size());
+        assertEvent(queue.poll(), "b", "1", ChildEventType.ADD);
+        assertEvent(queue.poll(), "a", null, ChildEventType.REMOVE);
+    }
+
+    @Test
+    public void removeAfterAddKeepsBoth() throws Exception {
+        ChildEventQueue<String> queue = new ChildEventQueue<>(true);
+        queue.offer(event("a", "1", ChildEventType.ADD));
+        assertEquals(1, queue.offer(event("a", null, ChildEventType.REMOVE)));
+        // a child added again after the remove is a new event, not folded into the first ADD
+        assertEquals(1, queue.offer(event("a", "2", ChildEventType.ADD)));
+        assertEquals(0, queue.offer(event("a", "3", ChildEventType.CHANGE)));
+
+        List<FIRChildEvent<String>> events = new ArrayList<>();
+        queue.drainTo(events);
+        assertEquals(3, events.size());
+        assertEvent(events.get(0), "a", "1", ChildEventType.ADD);
+        assertEvent(events.get(1), "a", null, ChildEventType.REMOVE);
+        assertEvent(events.get(2), "a", "3", ChildEventType.ADD);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void moveAndKeylessEventsAreNeverFolded() throws Exception {
+        ChildEventQueue<String> queue = new ChildEventQueue<>(true);
+        queue.offer(event("a", "1", ChildEventType.CHANGE));
+        queue.offer(event("a", "1", ChildEventType.MOVE));
+        assertEquals(1, queue.offer(event("a", "2", ChildEventType.CHANGE)));
+        queue.offer(new FIRChildEvent<String>("x", null, ChildEventType.CHANGE));
+        assertEquals(1, queue.offer(new FIRChildEvent<String>("y", null, ChildEventType.CHANGE)));
+
+        assertEquals(5, queue.size());
+    }
+
+    @Test
+    public void changeOfPolledEventIsNotFolded() throws Exception {
+        ChildEventQueue<String> queue = new ChildEventQueue<>(true);
+        queue.offer(event("a", "1", ChildEventType.ADD));
+        assertEvent(queue.poll(), "a", "1", ChildEventType.ADD);
+
+        assertEquals(1, queue.offer(event("a", "2", ChildEventType.CHANGE)));
+        assertEvent(queue.poll(), "a", "2", ChildEventType.CHANGE);
+    }
+
+    @Test
+    public void queueWithoutFoldingKeepsEveryEvent() throws Exception {
+        ChildEventQueue<String> queue = new ChildEventQueue<>(false);
+        queue.offer(event("a", "1", ChildEventType.ADD));
+        assertEquals(1, queue.offer(event("a", "2", ChildEventType.CHANGE)));
+
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void foldingSurvivesCompaction() throws Exception {
+        ChildEventQueue<String> queue = new ChildEventQueue<>(true);
+        for(int i = 0; i < 200; i++){
+            queue.offer(event("k" + i, "1", ChildEventType.ADD));
+        }
+        for(int i = 0; i < 150; i++){
+            assertEvent(queue.poll(), "k" + i, "1", ChildEventType.ADD);
+        }
+
+        assertEquals(0, queue.offer(event("k199", "2", ChildEventType.CHANGE)));
+        assertEquals(1, queue.offer(event("k0", "2", ChildEventType.CHANGE)));
+
+        for(int i = 150; i < 199; i++){
+            assertEvent(queue.poll(), "k" + i, "1", ChildEventType.ADD);
+        }
+        assertEvent(queue.poll(), "k199", "2", ChildEventType.ADD);
+        assertEvent(queue.poll(), "k0", "2", ChildEventType.CHANGE);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void foldReturnsSameListWhenNothingFolds() throws Exception {
+        List<FIRChildEvent<String>> events = Arrays.asList(
+                event("a", "1", ChildEventType.ADD),
+                event("b", "1", ChildEventType.ADD));
+
+        assertSame(events, ChildEventQueue.fold(events));
+
+        List<FIRChildEvent<String>> folded = ChildEventQueue.fold(Arrays.asList(
+                event("a", "1", ChildEventType.ADD),
+                event("a", "2", ChildEventType.CHANGE)));
+        assertEquals(1, folded.size());
+        assertEvent(folded.get(0), "a", "2", ChildEventType.ADD);
+    }
+
+    @Test
+    public void bufferOverflowSignalsMissingBackpressure() throws Exception {
+        Query query = new Query("posts");
+        ChildEventBackpressure backpressure = ChildEventBackpressure.buffer(2);
+        TestSubscriber<FIRChildEvent<DataSnapshot>> subscriber = TestSubscriber.create(0);
+        RxQuery.observeChild(query, backpressure).subscribe(subscriber);
+
+        query.fireChildAdded(new DataSnapshot("a", 1L), null);
+        query.fireChildAdded(new DataSnapshot("b", 2L), "a");
+        subscriber.assertNoErrors();
+        assertEquals(2, backpressure.getQueueDepth());
+
+        query.fireChildAdded(new DataSnapshot("c", 3L), "b");
+
+        subscriber.assertError(MissingBackpressureException.class);
+        subscriber.assertNoValues();
+        assertEquals(0, backpressure.getQueueDepth());
+        assertEquals(3, backpressure.getMaxQueueDepth());
+        assertEquals(0, query.getListenerCount());
+    }
+
+    @Test
+    public void bufferEmitsQueuedEventsAsRequested() throws Exception {
+        Query query = new Query("posts");
+        ChildEventBackpressure backpressure = ChildEventBackpressure.buffer(4);
+        TestSubscriber<FIRChildEvent<DataSnapshot>> subscriber = TestSubscriber.create(0);
+        RxQuery.observeChild(query, backpressure).subscribe(subscriber);
+
+        query.fireChildAdded(new DataSnapshot("a", 1L), null);
+        query.fireChildChanged(new DataSnapshot("a", 2L), null);
+        query.fireChildAdded(new DataSnapshot("b", 3L), "a");
+
+        subscriber.requestMore(2);
+        assertEquals(2, subscriber.getOnNextEvents().size());
+        assertEquals(ChildEventType.ADD, subscriber.getOnNextEvents().get(0).getType());
+        assertEquals(ChildEventType.CHANGE, subscriber.getOnNextEvents().get(1).getType());
+        assertEquals(1, backpressure.getQueueDepth());
+        assertEquals(0, backpressure.getDroppedCount());
+
+        subscriber.requestMore(1);
+        assertEquals("b", subscriber.getOnNextEvents().get(2).getKey());
+        subscriber.assertNoErrors();
+    }
+
+    @Test
+    public void dropOldestDropsInsteadOfFailing() throws Exception {
+        Query query = new Query("posts");
+        ChildEventBackpressure backpressure = ChildEventBackpressure.dropOldest(2);
+        TestSubscriber<FIRChildEvent<DataSnapshot>> subscriber = TestSubscriber.create(0);
+        RxQuery.observeChild(query, backpressure).subscribe(subscriber);
+
+        query.fireChildAdded(new DataSnapshot("a", 1L), null);
+        query.fireChildAdded(new DataSnapshot("b", 2L), "a");
+        query.fireChildAdded(new DataSnapshot("c", 3L), "b");
+
+        subscriber.requestMore(Long.MAX_VALUE);
+        subscriber.assertNoErrors();
+        assertEquals(2, subscriber.getOnNextEvents().size());
+        assertEquals("b", subscriber.getOnNextEvents().get(0).getKey());
+        assertEquals("c", subscriber.getOnNextEvents().get(1).getKey());
+        assertEquals(1, backpressure.getDroppedCount());
+    }
+
+    @Test
+    public void latestPerKeyFoldsWaitingEvents() throws Exception {
+        Query query = new Query("posts");
+        ChildEventBackpressure backpressure = ChildEventBackpressure.latestPerKey(1);
+        TestSubscriber<FIRChildEvent<DataSnapshot>> subscriber = TestSubscriber.create(0);
+        RxQuery.observeChild(query, backpressure).subscribe(subscriber);
+
+        query.fireChildAdded(new DataSnapshot("a", 1L), null);
+        query.fireChildChanged(new DataSnapshot("a", 2L), null);
+        query.fireChildChanged(new DataSnapshot("a", 3L), null);
+
+        subscriber.requestMore(Long.MAX_VALUE);
+        subscriber.assertNoErrors();
+        assertEquals(1, subscriber.getOnNextEvents().size());
+        FIRChildEvent<DataSnapshot> event = subscriber.getOnNextEvents().get(0);
+        assertEquals(ChildEventType.ADD, event.getType());
+        assertEquals(3L, event.getValue().getValue());
+        assertEquals(2, backpressure.getDroppedCount());
+    }
+
+    static FIRChildEvent<String> event(String key, String value, ChildEventType type){
+        return new FIRChildEvent<>(key, value, null, type);
+    }
+
+    static void assertEvent(FIRChildEvent<String> event, String key, String value, ChildEventType type){
+        assertNotNull(event);
+        assertEquals(key, event.getKey());
+        assertEquals(value, event.getValue());
+        assertEquals(type, event.getType());
+    }
+}
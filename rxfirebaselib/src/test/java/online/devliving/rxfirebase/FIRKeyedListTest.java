@@ -0,0 +1,148 @@
+package online.devliving.rxfirebase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FIRKeyedListTest {
+
+    @Test
+    public void appendsAreIndexed() throws Exception {
+        FIRKeyedList<String> list = new FIRKeyedList<>();
+        list.apply(FIRListChange.insert(0, "a", "A"));
+        list.apply(FIRListChange.insert(1, "b", "B"));
+        list.apply(FIRListChange.insert(2, "c", "C"));
+
+        assertEquals(3, list.size());
+        assertEquals(0, list.indexOf("a"));
+        assertEquals(1, list.indexOf("b"));
+        assertEquals(2, list.indexOf("c"));
+        assertEquals(-1, list.indexOf("d"));
+        assertEquals(Arrays.asList("A", "B", "C"), list.values());
+    }
+
+    @Test
+    public void insertInTheMiddleShiftsTheTail() throws Exception {
+        FIRKeyedList<String> list = listOf("a", "b", "c");
+        list.apply(FIRListChange.insert(1, "x", "X"));
+
+        assertKeys(list, "a", "x", "b", "c");
+        assertEquals("X", list.get(1));
+    }
+
+    @Test
+    public void removeShiftsTheTail() throws Exception {
+        FIRKeyedList<String> list = listOf("a", "b", "c", "d");
+        list.apply(FIRListChange.<String>remove(1, "b"));
+
+        assertKeys(list, "a", "c", "d");
+        assertFalse(list.containsKey("b"));
+        assertEquals(-1, list.indexOf("b"));
+    }
+
+    @Test
+    public void changeKeepsThePosition() throws Exception {
+        FIRKeyedList<String> list = listOf("a", "b");
+        list.apply(FIRListChange.change(1, "b", "B2"));
+
+        assertKeys(list, "a", "b");
+        assertEquals("B2", list.get(1));
+    }
+
+    @Test
+    public void moveReindexesBothEnds() throws Exception {
+        FIRKeyedList<String> list = listOf("a", "b", "c", "d");
+        list.apply(FIRListChange.move(0, 2, "a", "A2"));
+
+        assertKeys(list, "b", "c", "a", "d");
+        assertEquals("A2", list.get(2));
+
+        list.apply(FIRListChange.move(3, 0, "d", "D"));
+        assertKeys(list, "d", "b", "c", "a");
+    }
+
+    @Test
+    public void positionAfterUnknownKeyIsTheEnd() throws Exception {
+        FIRKeyedList<String> list = listOf("a", "b");
+
+        assertEquals(0, list.positionAfter(null));
+        assertEquals(1, list.positionAfter("a"));
+        assertEquals(2, list.positionAfter("b"));
+        assertEquals(2, list.positionAfter("unknown"));
+    }
+
+    @Test
+    public void clearForgetsEverything() throws Exception {
+        FIRKeyedList<String> list = listOf("a", "b");
+        list.clear();
+
+        assertTrue(list.isEmpty());
+        assertEquals(-1, list.indexOf("a"));
+
+        list.apply(FIRListChange.insert(0, "b", "B"));
+        assertEquals(0, list.indexOf("b"));
+    }
+
+    @Test
+    public void randomChangesMatchAPlainList() throws Exception {
+        Random random = new Random(42);
+        FIRKeyedList<String> list = new FIRKeyedList<>();
+        List<String> expected = new ArrayList<>();
+        int nextKey = 0;
+
+        for(int step = 0; step < 2000; step++){
+            int op = expected.isEmpty() ? 0 : random.nextInt(4);
+            switch (op){
+                case 0: {
+                    int position = random.nextInt(expected.size() + 1);
+                    String key = "k" + nextKey++;
+                    expected.add(position, key);
+                    list.apply(FIRListChange.insert(position, key, key));
+                    break;
+                }
+                case 1: {
+                    int position = random.nextInt(expected.size());
+                    String key = expected.remove(position);
+                    list.apply(FIRListChange.<String>remove(position, key));
+                    break;
+                }
+                case 2: {
+                    int from = random.nextInt(expected.size());
+                    String key = expected.remove(from);
+                    int to = random.nextInt(expected.size() + 1);
+                    expected.add(to, key);
+                    list.apply(FIRListChange.move(from, to, key, key));
+                    break;
+                }
+                default: {
+                    // lookups interleaved with the changes exercise the lazy re-indexing
+                    String key = expected.get(random.nextInt(expected.size()));
+                    assertEquals(expected.indexOf(key), list.indexOf(key));
+                }
+            }
+        }
+
+        assertKeys(list, expected.toArray(new String[expected.size()]));
+    }
+
+    static FIRKeyedList<String> listOf(String... keys){
+        FIRKeyedList<String> list = new FIRKeyedList<>();
+        for(int i = 0; i < keys.length; i++){
+            list.apply(FIRListChange.insert(i, keys[i], keys[i].toUpperCase()));
+        }
+        return list;
+    }
+
+    static void assertKeys(FIRKeyedList<?> list, String... keys){
+        assertEquals(keys.length, list.size());
+        for(int i = 0; i < keys.length; i++){
+            assertEquals(keys[i], list.getKey(i));
+            assertEquals(i, list.indexOf(keys[i]));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import rx.functions.Action1;
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class FIRPagerTest {
+    DatabaseReference items;
+
+    @Before
+    public void setUp() throws Exception {
+        RxQuery.setMapScheduler(null);
+        items = new FirebaseDatabase(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        }).getReference("items");
+
+        for(String key : Arrays.asList("a", "b", "c", "d", "e", "f", "g")){
+            items.child(key).setValue(key.toUpperCase());
+        }
+    }
+
+    @Test
+    public void pagesWalkTheKeysInOrder() throws Exception {
+        FIRPager<String> pager = RxQuery.observePaged(items, String.class, 3);
+        TestSubscriber<FIRPageState<String>> subscriber = new TestSubscriber<>();
+        pager.states().subscribe(subscriber);
+
+        assertEquals(Arrays.asList("a", "b", "c"), keys(pager.getState()));
+        assertFalse(pager.getState().isEndReached());
+
+        pager.onItemVisible(2);
+        pager.onItemVisible(5);
+
+        FIRPageState<String> state = pager.getState();
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f", "g"), keys(state));
+        assertEquals("G", state.getItem(6));
+        assertTrue(state.isEndReached());
+        assertEquals(3, state.getPages().size());
+        assertEquals(0, items.getListenerCount());
+    }
+
+    @Test
+    public void descendingPagesStartAtTheLargestKey() throws Exception {
+        FIRPager<String> pager = RxQuery.observePaged(items, SnapshotMappers.of(String.class), 3, FIRPager.Direction.DESCENDING);
+        pager.states().subscribe(new TestSubscriber<FIRPageState<String>>());
+        pager.onItemVisible(2);
+        pager.onItemVisible(5);
+
+        assertEquals(Arrays.asList("g", "f", "e", "d", "c", "b", "a"), keys(pager.getState()));
+        assertTrue(pager.getState().isEndReached());
+    }
+
+    @Test
+    public void livePageIsLoadedByItsListener() throws Exception {
+        FIRPager<String> pager = RxQuery.observeLivePaged(items, String.class, 3, 0);
+        pager.states().subscribe(new TestSubscriber<FIRPageState<String>>());
+
+        assertEquals(Arrays.asList("a", "b", "c"), keys(pager.getState()));
+        assertEquals(1, pager.getLivePageCount());
+        // the listener that loaded the page is the one that keeps it up to date
+        assertEquals(1, items.getListenerCount());
+
+        items.child("bb").setValue("BB");
+        assertEquals(Arrays.asList("a", "b", "bb", "c"), keys(pager.getState()));
+
+        items.child("a").removeValue();
+        assertEquals(Arrays.asList("b", "bb", "c"), keys(pager.getState()));
+
+        // outside the range of the page
+        items.child("cc").setValue("CC");
+        assertEquals(Arrays.asList("b", "bb", "c"), keys(pager.getState()));
+    }
+
+    @Test
+    public void livePageStaysBounded() throws Exception {
+        FIRPager<String> pager = RxQuery.observeLivePaged(items, String.class, 4, 0);
+        pager.states().subscribe(new TestSubscriber<FIRPageState<String>>());
+        assertEquals(Arrays.asList("a", "b", "c", "d"), keys(pager.getState()));
+
+        for(int i = 0; i < 10; i++){
+            items.child("b" + i).setValue("B");
+        }
+
+        // pageSize + pageSize / 2 children at most
+        assertEquals(6, pager.getState().getItemCount());
+        assertEquals("a", pager.getState().getKey(0));
+    }
+
+    @Test
+    public void pagesOutsideTheWindowAreDetachedAndAttachedAgain() throws Exception {
+        FIRPager<String> pager = RxQuery.observeLivePaged(items, SnapshotMappers.of(String.class), 2,
+                FIRPager.Direction.ASCENDING, 0);
+        pager.states().subscribe(new TestSubscriber<FIRPageState<String>>());
+        pager.onVisibleRangeChanged(0, 1);
+        pager.onVisibleRangeChanged(2, 3);
+
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f"), keys(pager.getState()));
+        assertEquals(1, pager.getLivePageCount());
+
+        // the first page doesn't follow changes while it is detached
+        items.child("a").setValue("A2");
+        assertEquals("A", pager.getState().getItem(0));
+
+        pager.onVisibleRangeChanged(0, 1);
+        assertEquals("A2", pager.getState().getItem(0));
+        assertEquals(1, pager.getLivePageCount());
+        assertEquals(1, items.getListenerCount());
+
+        pager.unsubscribe();
+        assertEquals(0, items.getListenerCount());
+    }
+
+    @Test
+    public void statesAreEmittedOutsideTheLock() throws Exception {
+        FIRPager<String> pager = RxQuery.observePaged(items, String.class, 3);
+        List<Integer> itemCounts = new ArrayList<>();
+        pager.states().subscribe(new Action1<FIRPageState<String>>() {
+            @Override
+            public void call(FIRPageState<String> state) {
+                assertFalse(Thread.holdsLock(pager));
+                itemCounts.add(state.getItemCount());
+                // loads every page from the subscriber, like an adapter binding the last item
+                if(!state.isLoading()) pager.loadNext();
+            }
+        });
+
+        assertTrue(pager.getState().isEndReached());
+        assertEquals(7, pager.getState().getItemCount());
+        assertEquals(Integer.valueOf(7), itemCounts.get(itemCounts.size() - 1));
+        for(int i = 1; i < itemCounts.size(); i++){
+            assertTrue(itemCounts.get(i) >= itemCounts.get(i - 1));
+        }
+    }
+
+    @Test
+    public void unsubscribeCompletesTheStates() throws Exception {
+        FIRPager<String> pager = RxQuery.observeLivePaged(items, String.class, 3, 1);
+        TestSubscriber<FIRPageState<String>> subscriber = new TestSubscriber<>();
+        pager.states().subscribe(subscriber);
+
+        pager.unsubscribe();
+
+        subscriber.assertCompleted();
+        assertEquals(0, items.getListenerCount());
+        assertFalse(pager.loadNext());
+    }
+
+    static List<String> keys(FIRPageState<?> state){
+        List<String> keys = new ArrayList<>();
+        for(int i = 0; i < state.getItemCount(); i++){
+            keys.add(state.getKey(i));
+        }
+        return keys;
+    }
+}
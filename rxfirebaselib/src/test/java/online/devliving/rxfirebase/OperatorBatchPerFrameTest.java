@@ -0,0 +1,63 @@
+package online.devliving.rxfirebase;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent.ChildEventType;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class OperatorBatchPerFrameTest {
+
+    @Test
+    public void eventsOfAFrameAreFoldedIntoOneBatch() throws Exception {
+        TestSubscriber<List<FIRChildEvent<String>>> subscriber = new TestSubscriber<>();
+        Observable.just(
+                new FIRChildEvent<>("a", "1", null, ChildEventType.ADD),
+                new FIRChildEvent<>("a", "2", null, ChildEventType.CHANGE),
+                new FIRChildEvent<>("b", "1", "a", ChildEventType.ADD))
+                .compose(RxQuery.<String>batchChildEventsPerFrame())
+                .subscribe(subscriber);
+
+        subscriber.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertCompleted();
+        subscriber.assertValueCount(1);
+
+        List<FIRChildEvent<String>> batch = subscriber.getOnNextEvents().get(0);
+        assertEquals(2, batch.size());
+        assertEquals("2", batch.get(0).getValue());
+        assertEquals(ChildEventType.ADD, batch.get(0).getType());
+    }
+
+    @Test
+    public void completionFollowsTheLastBatchOnTheMainThread() throws Exception {
+        TestSubscriber<List<FIRChildEvent<String>>> subscriber = new TestSubscriber<>();
+        Observable.just(new FIRChildEvent<>("a", "1", null, ChildEventType.ADD))
+                .compose(RxQuery.<String>batchChildEventsPerFrame())
+                .subscribe(subscriber);
+
+        subscriber.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        subscriber.assertCompleted();
+        subscriber.assertValueCount(1);
+        assertEquals("main", subscriber.getLastSeenThread().getName());
+    }
+
+    @Test
+    public void emptySourceCompletesOnTheMainThread() throws Exception {
+        TestSubscriber<List<FIRChildEvent<String>>> subscriber = new TestSubscriber<>();
+        Observable.<FIRChildEvent<String>>empty()
+                .compose(RxQuery.<String>batchChildEventsPerFrame())
+                .subscribe(subscriber);
+
+        subscriber.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        subscriber.assertCompleted();
+        subscriber.assertNoValues();
+        assertEquals("main", subscriber.getLastSeenThread().getName());
+    }
+}
@@ -0,0 +1,55 @@
+package online.devliving.rxfirebase;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.*;
+
+public class RxFirebasePrefetcherTest {
+
+    @Test
+    public void consumerGetsThePrefetchedRead() throws Exception {
+        Query query = new Query("users/uid1");
+        RxFirebasePrefetcher prefetcher = RxFirebasePrefetcher.create().register("user", query);
+        prefetcher.start();
+
+        TestSubscriber<DataSnapshot> subscriber = new TestSubscriber<>();
+        prefetcher.observeRefSingle("user").subscribe(subscriber);
+        query.fireValue(new DataSnapshot("uid1", "jane"));
+
+        subscriber.assertValueCount(1);
+        subscriber.assertCompleted();
+        assertEquals(1, prefetcher.getPrefetches().get(0).getUseCount());
+        assertEquals(0, query.getListenerCount());
+    }
+
+    @Test
+    public void failedPrefetchIsReadAgainByItsConsumers() throws Exception {
+        Query query = new Query("users/uid1");
+        RxFirebasePrefetcher prefetcher = RxFirebasePrefetcher.create().register("user", query);
+        prefetcher.start();
+
+        TestSubscriber<DataSnapshot> byName = new TestSubscriber<>();
+        TestSubscriber<DataSnapshot> bySpec = new TestSubscriber<>();
+        prefetcher.observeRefSingle("user").subscribe(byName);
+        prefetcher.observeRefSingle(query).subscribe(bySpec);
+
+        query.fireCancelled(DatabaseError.fromCode(DatabaseError.DISCONNECTED));
+
+        byName.assertNoErrors();
+        bySpec.assertNoErrors();
+        assertTrue(prefetcher.getPrefetches().get(0).isFailed());
+
+        query.fireValue(new DataSnapshot("uid1", "jane"));
+
+        byName.assertValueCount(1);
+        byName.assertCompleted();
+        bySpec.assertValueCount(1);
+        assertEquals("jane", bySpec.getOnNextEvents().get(0).getValue());
+    }
+}
@@ -0,0 +1,182 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent.ChildEventType;
+import rx.Scheduler;
+import rx.functions.Action1;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+
+import static org.junit.Assert.*;
+
+public class RxQueryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    DatabaseReference items;
+
+    @Before
+    public void setUp() throws Exception {
+        RxQuery.setMapScheduler(null);
+        items = new FirebaseDatabase(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        }).getReference("items");
+
+        items.child("a").setValue("A");
+        items.child("b").setValue("B");
+        items.child("c").setValue("C");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        RxQuery.setDiskCache(null);
+    }
+
+    @Test
+    public void cachedValueArrivesOnTheMapScheduler() throws Exception {
+        // a query without a database never answers, so the cached value is the only one
+        Query query = new Query("items/a");
+        SnapshotDiskCache cache = SnapshotDiskCache.open(new File(folder.getRoot(), "cache"), 1024 * 1024, Schedulers.io());
+        cache.put(SnapshotDiskCache.keyOf(query), "cached", 1);
+        RxQuery.setDiskCache(cache);
+
+        Scheduler mapScheduler = Schedulers.from(Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "map");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+
+        final CountDownLatch emitted = new CountDownLatch(1);
+        final AtomicReference<String> thread = new AtomicReference<>();
+        TestSubscriber<CachedValue<String>> subscriber = new TestSubscriber<>();
+        RxQuery.observeValueCached(query, String.class, mapScheduler)
+                .doOnNext(new Action1<CachedValue<String>>() {
+                    @Override
+                    public void call(CachedValue<String> value) {
+                        thread.set(Thread.currentThread().getName());
+                        emitted.countDown();
+                    }
+                })
+                .subscribe(subscriber);
+
+        assertTrue(emitted.await(5, TimeUnit.SECONDS));
+        assertEquals("map", thread.get());
+        assertEquals(CachedValue.Source.CACHE, subscriber.getOnNextEvents().get(0).getSource());
+        assertEquals("cached", subscriber.getOnNextEvents().get(0).getValue());
+        subscriber.unsubscribe();
+    }
+
+    @Test
+    public void sharedSubscribersOfAQueryShareOneListener() throws Exception {
+        TestSubscriber<DataSnapshot> first = new TestSubscriber<>();
+        TestSubscriber<DataSnapshot> second = new TestSubscriber<>();
+        RxQuery.observeRefShared(items).subscribe(first);
+        RxQuery.observeRefShared(items).subscribe(second);
+
+        assertEquals(1, items.getListenerCount());
+        second.assertValueCount(1);
+
+        first.unsubscribe();
+        second.unsubscribe();
+        assertEquals(0, items.getListenerCount());
+    }
+
+    @Test
+    public void sameQueryOfAnotherDatabaseIsNotShared() throws Exception {
+        DatabaseReference other = new FirebaseDatabase("fake://other", new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        }).getReference("items");
+        other.child("z").setValue("Z");
+
+        TestSubscriber<DataSnapshot> first = new TestSubscriber<>();
+        TestSubscriber<DataSnapshot> second = new TestSubscriber<>();
+        RxQuery.observeRefShared(items).subscribe(first);
+        RxQuery.observeRefShared(other).subscribe(second);
+
+        assertEquals(1, other.getListenerCount());
+        assertEquals(3, first.getOnNextEvents().get(0).getChildrenCount());
+        assertEquals(1, second.getOnNextEvents().get(0).getChildrenCount());
+
+        first.unsubscribe();
+        second.unsubscribe();
+    }
+
+    @Test
+    public void deltaAddsEveryChildFirst() throws Exception {
+        TestSubscriber<FIRChildEvent<String>> subscriber = new TestSubscriber<>();
+        RxQuery.observeValuesDelta(items, String.class).subscribe(subscriber);
+
+        List<FIRChildEvent<String>> events = subscriber.getOnNextEvents();
+        assertEquals(3, events.size());
+        for(FIRChildEvent<String> event : events){
+            assertEquals(ChildEventType.ADD, event.getType());
+        }
+        assertEquals("a", events.get(0).getKey());
+        assertEquals("A", events.get(0).getValue());
+        assertEquals("a", events.get(1).getChildName());
+    }
+
+    @Test
+    public void deltaMapsOnlyTheChangedChildren() throws Exception {
+        SnapshotCacheTest.CountingMapper mapper = new SnapshotCacheTest.CountingMapper();
+        TestSubscriber<FIRChildEvent<String>> subscriber = new TestSubscriber<>();
+        RxQuery.observeValuesDelta(items, mapper).subscribe(subscriber);
+        assertEquals(3, mapper.fromValueCount);
+
+        items.child("b").setValue("B2");
+
+        assertEquals(4, subscriber.getOnNextEvents().size());
+        FIRChildEvent<String> changed = subscriber.getOnNextEvents().get(3);
+        assertEquals(ChildEventType.CHANGE, changed.getType());
+        assertEquals("b", changed.getKey());
+        assertEquals("B2!", changed.getValue());
+        assertEquals(4, mapper.fromValueCount);
+    }
+
+    @Test
+    public void deltaRemovesWithTheLastValue() throws Exception {
+        TestSubscriber<FIRChildEvent<String>> subscriber = new TestSubscriber<>();
+        RxQuery.observeValuesDelta(items, String.class).subscribe(subscriber);
+
+        items.child("c").removeValue();
+
+        FIRChildEvent<String> removed = subscriber.getOnNextEvents().get(3);
+        assertEquals(ChildEventType.REMOVE, removed.getType());
+        assertEquals("c", removed.getKey());
+        assertEquals("C", removed.getValue());
+
+        subscriber.unsubscribe();
+        assertEquals(0, items.getListenerCount());
+    }
+}
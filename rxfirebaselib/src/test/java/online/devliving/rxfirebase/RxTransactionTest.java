@@ -0,0 +1,88 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RxTransactionTest {
+    DatabaseReference root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = new FirebaseDatabase(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        }).getReference();
+    }
+
+    @Test
+    public void toggleCountedKeepsTheCountInStep() throws Exception {
+        Map<String, Object> post = new HashMap<>();
+        post.put("title", "hello");
+        post.put("starCount", 0L);
+        root.child("posts/p1").setValue(post);
+
+        DatabaseReference postRef = root.child("posts/p1");
+
+        assertTrue(RxTransaction.toggleCounted(postRef, "stars/uid1", "starCount").toBlocking().single());
+        assertEquals(true, read(postRef.child("stars/uid1")));
+        assertEquals(1L, read(postRef.child("starCount")));
+
+        assertTrue(RxTransaction.toggleCounted(postRef, "stars/uid2", "starCount").toBlocking().single());
+        assertEquals(2L, read(postRef.child("starCount")));
+
+        assertFalse(RxTransaction.toggleCounted(postRef, "stars/uid1", "starCount").toBlocking().single());
+        assertNull(read(postRef.child("stars/uid1")));
+        assertEquals(1L, read(postRef.child("starCount")));
+        assertEquals("hello", read(postRef.child("title")));
+    }
+
+    @Test
+    public void toggleCountedStartsAMissingCountAtZero() throws Exception {
+        root.child("posts/p2/title").setValue("hello");
+        DatabaseReference postRef = root.child("posts/p2");
+
+        assertTrue(RxTransaction.toggleCounted(postRef, "stars/uid1", "starCount").toBlocking().single());
+        assertEquals(1L, read(postRef.child("starCount")));
+    }
+
+    @Test
+    public void toggleCountedLeavesDeletedParentDeleted() throws Exception {
+        DatabaseReference postRef = root.child("posts/deleted");
+
+        assertFalse(RxTransaction.toggleCounted(postRef, "stars/uid1", "starCount").toBlocking().single());
+        assertNull(read(postRef));
+    }
+
+    static Object read(DatabaseReference ref){
+        AtomicReference<Object> value = new AtomicReference<>();
+        ref.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                value.set(snapshot.getValue());
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                fail(error.getMessage());
+            }
+        });
+        return value.get();
+    }
+}
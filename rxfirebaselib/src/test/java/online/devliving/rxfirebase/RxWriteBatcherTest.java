@@ -0,0 +1,207 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseException;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+import static org.junit.Assert.*;
+
+public class RxWriteBatcherTest {
+    TestScheduler scheduler;
+    DatabaseReference root;
+    RxWriteBatcher batcher;
+
+    @Before
+    public void setUp() throws Exception {
+        // events are raised on the writing thread
+        FirebaseDatabase database = new FirebaseDatabase(new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                command.run();
+            }
+        });
+        root = database.getReference();
+        scheduler = new TestScheduler();
+        batcher = RxWriteBatcher.create(root, 50, TimeUnit.MILLISECONDS, 10, scheduler);
+    }
+
+    @Test
+    public void writesWithinWindowGoOutAsOneBatch() throws Exception {
+        TestSubscriber<Void> first = write(batcher.setValue(root.child("a"), "1"));
+        TestSubscriber<Void> second = write(batcher.setValue(root.child("b"), 2L));
+
+        assertNull(read("a"));
+        first.assertNotCompleted();
+
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+
+        assertEquals("1", read("a"));
+        assertEquals(2L, read("b"));
+        assertEquals(1, batcher.getBatchCount());
+        assertEquals(2, batcher.getWriteCount());
+        first.assertCompleted();
+        second.assertCompleted();
+    }
+
+    @Test
+    public void lastWriteToSamePathWins() throws Exception {
+        batcher.setValue(root.child("a"), "1");
+        batcher.setValue(root.child("a"), "2");
+        batcher.flush();
+
+        assertEquals("2", read("a"));
+        assertEquals(1, batcher.getBatchCount());
+    }
+
+    @Test
+    public void writeBelowQueuedMapIsMerged() throws Exception {
+        Map<String, Object> value = new HashMap<>();
+        value.put("x", 1L);
+        value.put("y", 2L);
+        batcher.setValue(root.child("a"), value);
+        batcher.setValue(root.child("a/y"), 3L);
+        batcher.setValue(root.child("a/z/deep"), "d");
+        batcher.removeValue(root.child("a/x"));
+        batcher.flush();
+
+        assertNull(read("a/x"));
+        assertEquals(3L, read("a/y"));
+        assertEquals("d", read("a/z/deep"));
+        assertEquals(1, batcher.getBatchCount());
+        // the queued map isn't changed by the merge
+        assertEquals(2L, value.get("y"));
+    }
+
+    @Test
+    public void writeBelowQueuedNonMapSendsQueuedBatchFirst() throws Exception {
+        batcher.setValue(root.child("a"), "text");
+        batcher.setValue(root.child("a/b"), 1L);
+
+        assertEquals("text", read("a"));
+        assertEquals(1, batcher.getBatchCount());
+
+        batcher.flush();
+
+        assertEquals(1L, read("a/b"));
+        assertEquals(2, batcher.getBatchCount());
+    }
+
+    @Test
+    public void ancestorWriteReplacesQueuedDescendants() throws Exception {
+        batcher.setValue(root.child("a/b"), 1L);
+        batcher.setValue(root.child("a/c"), 2L);
+
+        Map<String, Object> value = new HashMap<>();
+        value.put("d", 3L);
+        batcher.setValue(root.child("a"), value);
+        batcher.flush();
+
+        assertNull(read("a/b"));
+        assertNull(read("a/c"));
+        assertEquals(3L, read("a/d"));
+        assertEquals(1, batcher.getBatchCount());
+    }
+
+    @Test
+    public void writeBelowQueuedModelIsMerged() throws Exception {
+        BeanValuesTest.Comment comment = new BeanValuesTest.Comment("nice", 1);
+        batcher.setValue(root.child("comment"), comment);
+        batcher.setValue(root.child("comment/likes"), 2L);
+        batcher.flush();
+
+        assertEquals("nice", read("comment/text"));
+        assertEquals(2L, read("comment/likes"));
+        assertEquals(1, batcher.getBatchCount());
+    }
+
+    @Test
+    public void updateChildrenIsRelativeToItsReference() throws Exception {
+        Map<String, Object> update = new HashMap<>();
+        update.put("x", 1L);
+        update.put("/y/z/", 2L);
+        write(batcher.updateChildren(root.child("a"), update));
+        batcher.flush();
+
+        assertEquals(1L, read("a/x"));
+        assertEquals(2L, read("a/y/z"));
+    }
+
+    @Test(expected = DatabaseException.class)
+    public void updateChildrenRejectsNestedPaths() throws Exception {
+        Map<String, Object> update = new HashMap<>();
+        update.put("x", 1L);
+        update.put("x/y", 2L);
+        batcher.updateChildren(root, update);
+    }
+
+    @Test
+    public void maxWritesSendsBatchRightAway() throws Exception {
+        for(int i = 0; i < 10; i++){
+            batcher.setValue(root.child("item" + i), (long) i);
+        }
+
+        assertEquals(1, batcher.getBatchCount());
+        assertEquals(9L, read("item9"));
+    }
+
+    @Test
+    public void unwritableValueOnlyFailsItsOwnWrite() throws Exception {
+        TestSubscriber<Void> good = write(batcher.setValue(root.child("good"), "x"));
+        TestSubscriber<Void> bad = write(batcher.setValue(root.child("bad"), new Object()));
+
+        bad.assertError(DatabaseException.class);
+
+        TestSubscriber<Void> later = write(batcher.setValue(root.child("later"), "y"));
+        scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+
+        good.assertCompleted();
+        later.assertCompleted();
+        assertEquals("x", read("good"));
+        assertEquals("y", read("later"));
+        assertNull(read("bad"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rootCantBeWritten() throws Exception {
+        batcher.setValue(root, "x");
+    }
+
+    static TestSubscriber<Void> write(rx.Observable<Void> result){
+        TestSubscriber<Void> subscriber = new TestSubscriber<>();
+        result.subscribe(subscriber);
+        return subscriber;
+    }
+
+    Object read(String path){
+        AtomicReference<Object> value = new AtomicReference<>();
+        root.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                value.set(snapshot.getValue());
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                fail(error.getMessage());
+            }
+        });
+        return value.get();
+    }
+}
@@ -0,0 +1,70 @@
+package online.devliving.rxfirebase;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SnapshotCacheTest {
+
+    @Test
+    public void sameChildIsMappedOnce() throws Exception {
+        SnapshotCache cache = SnapshotCache.withMaxEntries(10);
+        CountingMapper counting = new CountingMapper();
+        SnapshotMapper<String> mapper = cache.wrap(counting, "posts");
+
+        assertEquals("v!", mapper.fromSnapshot(new DataSnapshot("k", "v")));
+        assertEquals("v!", mapper.fromSnapshot(new DataSnapshot("k", "v")));
+
+        assertEquals(1, counting.fromValueCount);
+        assertEquals(0, counting.fromSnapshotCount);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void changedValueIsMappedAgain() throws Exception {
+        SnapshotCache cache = SnapshotCache.withMaxEntries(10);
+        SnapshotMapper<String> mapper = cache.wrap(new CountingMapper(), "posts");
+
+        assertEquals("v!", mapper.fromSnapshot(new DataSnapshot("k", "v")));
+        assertEquals("w!", mapper.fromSnapshot(new DataSnapshot("k", "w")));
+
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void scopesDoNotShareEntries() throws Exception {
+        SnapshotCache cache = SnapshotCache.withMaxEntries(10);
+        CountingMapper counting = new CountingMapper();
+
+        cache.wrap(counting, "posts").fromSnapshot(new DataSnapshot("k", "v"));
+        cache.wrap(counting, "user-posts").fromSnapshot(new DataSnapshot("k", "v"));
+
+        assertEquals(2, counting.fromValueCount);
+        assertEquals(2, cache.size());
+    }
+
+    static final class CountingMapper implements SnapshotMapper<String> {
+        int fromSnapshotCount;
+        int fromValueCount;
+
+        @Nullable
+        @Override
+        public String fromSnapshot(DataSnapshot snapshot) {
+            fromSnapshotCount++;
+            return fromValue(snapshot.getValue());
+        }
+
+        @Nullable
+        @Override
+        public String fromValue(@Nullable Object value) {
+            fromValueCount++;
+            return value == null? null : value + "!";
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package online.devliving.rxfirebase;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import rx.schedulers.Schedulers;
+import rx.schedulers.TestScheduler;
+
+import static org.junit.Assert.*;
+
+public class SnapshotDiskCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File(folder.getRoot(), "cache");
+    }
+
+    @Test
+    public void valuesRoundTrip() throws Exception {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("flag", true);
+        nested.put("off", false);
+        nested.put("count", 42L);
+        nested.put("score", 1.5);
+        nested.put("text", "h\u00e9llo");
+        nested.put("list", new ArrayList<Object>(Arrays.asList(1L, null, "two")));
+
+        Map<String, Object> value = new HashMap<>();
+        value.put("nested", nested);
+        value.put("empty", new HashMap<String, Object>());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotDiskCache.writeValue(new DataOutputStream(bytes), value);
+        Object read = SnapshotDiskCache.readValue(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(value, read);
+    }
+
+    @Test
+    public void integersAreReadAsLongs() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotDiskCache.writeValue(new DataOutputStream(bytes), 7);
+
+        assertEquals(7L, SnapshotDiskCache.readValue(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    @Test
+    public void putValueIsReadBack() throws Exception {
+        SnapshotDiskCache cache = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        Map<String, Object> value = new HashMap<>();
+        value.put("title", "hello");
+        cache.put("posts", value, 1234L);
+
+        SnapshotDiskCache.Entry entry = single(cache, "posts");
+        assertNotNull(entry);
+        assertEquals(value, entry.value);
+        assertEquals(1234L, entry.timestamp);
+        assertEquals(1, cache.getHitCount());
+
+        // a new instance finds the file left by the previous one
+        SnapshotDiskCache reopened = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        assertEquals(value, single(reopened, "posts").value);
+        assertTrue(reopened.getSize() > 0);
+    }
+
+    @Test
+    public void nullRemovesTheValue() throws Exception {
+        SnapshotDiskCache cache = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        cache.put("posts", "value", 1L);
+        cache.put("posts", null, 2L);
+
+        assertNull(single(cache, "posts"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void corruptFileIsDeletedAndMissed() throws Exception {
+        SnapshotDiskCache cache = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        cache.put("posts", "value", 1L);
+
+        File file = new File(directory, SnapshotDiskCache.fileName("posts"));
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        out.close();
+
+        assertNull(single(cache, "posts"));
+        assertFalse(file.exists());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void truncatedFileIsDeletedAndMissed() throws Exception {
+        SnapshotDiskCache cache = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        Map<String, Object> value = new HashMap<>();
+        value.put("title", "a long enough title");
+        cache.put("posts", value, 1L);
+
+        File file = new File(directory, SnapshotDiskCache.fileName("posts"));
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(file.length() - 4);
+        truncated.close();
+
+        assertNull(single(cache, "posts"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void leastRecentlyUsedFileIsEvicted() throws Exception {
+        SnapshotDiskCache cache = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        cache.put("a", "value", 1L);
+        long fileSize = cache.getSize();
+
+        cache = SnapshotDiskCache.open(new File(folder.getRoot(), "small"), fileSize * 2, Schedulers.immediate());
+        cache.put("a", "value", 1L);
+        cache.put("b", "value", 1L);
+        // reading a makes b the least recently used
+        assertNotNull(single(cache, "a"));
+        cache.put("c", "value", 1L);
+
+        assertNotNull(single(cache, "a"));
+        assertNull(single(cache, "b"));
+        assertNotNull(single(cache, "c"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(fileSize * 2, cache.getSize());
+    }
+
+    @Test
+    public void clearDeletesEverything() throws Exception {
+        SnapshotDiskCache cache = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        cache.put("a", "value", 1L);
+        cache.put("b", "value", 1L);
+        cache.clear();
+
+        assertNull(single(cache, "a"));
+        assertNull(single(cache, "b"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void pendingPutIsDroppedByClear() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        SnapshotDiskCache cache = SnapshotDiskCache.open(directory, 1024 * 1024, scheduler);
+        cache.put("a", "previous user", 1L);
+        cache.clear();
+        scheduler.triggerActions();
+
+        cache = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        assertNull(single(cache, "a"));
+    }
+
+    @Test
+    public void writeOfAnEarlierGenerationIsDropped() throws Exception {
+        SnapshotDiskCache cache = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        int generation = cache.generation();
+        cache.clear();
+
+        // a write that was already running when the cache was cleared
+        cache.write("a", "previous user", 1L, generation);
+
+        assertNull(single(cache, "a"));
+        assertFalse(new File(directory, SnapshotDiskCache.fileName("a")).exists());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void putsOfABurstAreCoalesced() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        SnapshotDiskCache cache = SnapshotDiskCache.open(directory, 1024 * 1024, scheduler);
+        cache.put("a", "first", 1L);
+        cache.put("a", "second", 2L);
+        scheduler.triggerActions();
+
+        SnapshotDiskCache reader = SnapshotDiskCache.open(directory, 1024 * 1024, Schedulers.immediate());
+        SnapshotDiskCache.Entry entry = single(reader, "a");
+        assertEquals("second", entry.value);
+        assertEquals(2L, entry.timestamp);
+    }
+
+    static SnapshotDiskCache.Entry single(SnapshotDiskCache cache, String key){
+        List<SnapshotDiskCache.Entry> entries = cache.get(key).toList().toBlocking().single();
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+}
@@ -0,0 +1,44 @@
+package online.devliving.rxfirebase;
+
+import com.google.firebase.database.DataSnapshot;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SnapshotMappersTest {
+
+    @Test
+    public void plainClassesAreMappedFromTheSnapshot() throws Exception {
+        BeanValuesTest.Comment comment = new BeanValuesTest.Comment("nice", 1);
+        // the stand-in returns a value that already is of the class, like the SDK's mapping would
+        DataSnapshot snapshot = new DataSnapshot("c1", comment);
+        Map<String, Object> raw = new HashMap<>();
+        raw.put("text", "other");
+
+        SnapshotMapper<BeanValuesTest.Comment> mapper = SnapshotMappers.of(BeanValuesTest.Comment.class);
+
+        assertSame(comment, SnapshotMappers.map(mapper, snapshot, raw));
+        assertSame(comment, SnapshotCache.withMaxEntries(10).wrap(mapper).fromSnapshot(snapshot));
+    }
+
+    @Test
+    public void plainClassesAreMappedFromRawValuesWithoutASnapshot() throws Exception {
+        Map<String, Object> raw = new HashMap<>();
+        raw.put("text", "nice");
+        raw.put("likes", 2L);
+
+        BeanValuesTest.Comment comment = SnapshotMappers.of(BeanValuesTest.Comment.class).fromValue(raw);
+
+        assertEquals("nice", comment.text);
+        assertEquals(2, comment.likes);
+    }
+
+    @Test
+    public void valueTypesAreMappedFromTheRawValue() throws Exception {
+        assertEquals("v", SnapshotMappers.map(SnapshotMappers.of(String.class), new DataSnapshot("k", "v"), "v"));
+    }
+}
@@ -0,0 +1,18 @@
+package android.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.CONSTRUCTOR;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * JVM stand-in for the framework annotation
+ */
+@Target({TYPE, METHOD, CONSTRUCTOR})
+@Retention(CLASS)
+public @interface TargetApi {
+    int value();
+}
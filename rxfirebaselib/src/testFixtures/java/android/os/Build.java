@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * JVM stand-in, reports the API level the library is compiled against
+ */
+
+public class Build {
+    public static class VERSION {
+        public static final int SDK_INT = 25;
+    }
+
+    public static class VERSION_CODES {
+        public static final int ICE_CREAM_SANDWICH = 14;
+        public static final int JELLY_BEAN = 16;
+    }
+}
@@ -0,0 +1,25 @@
+package android.os;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM stand-in, runs messages on the thread of its {@link Looper}
+ */
+
+public class Handler {
+    private final Looper looper;
+
+    public Handler(Looper looper) {
+        this.looper = looper;
+    }
+
+    public final boolean post(Runnable r){
+        looper.executor.execute(r);
+        return true;
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis){
+        looper.executor.schedule(r, delayMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+package android.os;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * JVM stand-in, the main looper is a single daemon thread
+ */
+
+public final class Looper {
+    private static final Looper main = new Looper();
+
+    final ScheduledExecutorService executor;
+    volatile Thread thread;
+
+    private Looper() {
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "main");
+                t.setDaemon(true);
+                thread = t;
+                return t;
+            }
+        });
+    }
+
+    public static Looper getMainLooper(){
+        return main;
+    }
+
+    /**
+     * @return the main looper on the main thread, null on every other thread
+     */
+    public static Looper myLooper(){
+        return Thread.currentThread() == main.thread ? main : null;
+    }
+}
@@ -0,0 +1,32 @@
+package android.view;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * JVM stand-in, frames are 16ms apart on the main looper
+ */
+
+public final class Choreographer {
+    private static final long FRAME_MILLIS = 16;
+    private static final Choreographer instance = new Choreographer();
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    public static Choreographer getInstance(){
+        return instance;
+    }
+
+    public void postFrameCallback(FrameCallback callback){
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                callback.doFrame(System.nanoTime());
+            }
+        }, FRAME_MILLIS);
+    }
+}
@@ -0,0 +1,11 @@
+package com.google.android.gms.tasks;
+
+import android.support.annotation.NonNull;
+
+/**
+ * JVM stand-in for the Play services listener
+ */
+
+public interface OnCompleteListener<TResult> {
+    void onComplete(@NonNull Task<TResult> task);
+}
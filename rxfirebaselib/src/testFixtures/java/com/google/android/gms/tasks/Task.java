@@ -0,0 +1,31 @@
+package com.google.android.gms.tasks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+
+/**
+ * JVM stand-in for the Play services Task, only the part the library uses
+ */
+
+public abstract class Task<TResult> {
+    public abstract boolean isComplete();
+
+    public abstract boolean isSuccessful();
+
+    public abstract TResult getResult();
+
+    @Nullable
+    public abstract Exception getException();
+
+    /**
+     * There is no main thread to post to on the JVM, the listener is called on the completing thread
+     * like {@link #addOnCompleteListener(Executor, OnCompleteListener)} with a direct executor
+     */
+    @NonNull
+    public abstract Task<TResult> addOnCompleteListener(@NonNull OnCompleteListener<TResult> listener);
+
+    @NonNull
+    public abstract Task<TResult> addOnCompleteListener(@NonNull Executor executor, @NonNull OnCompleteListener<TResult> listener);
+}
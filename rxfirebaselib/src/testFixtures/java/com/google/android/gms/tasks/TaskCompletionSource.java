@@ -0,0 +1,32 @@
+package com.google.android.gms.tasks;
+
+import android.support.annotation.NonNull;
+
+/**
+ * JVM stand-in for the Play services TaskCompletionSource
+ */
+
+public class TaskCompletionSource<TResult> {
+    private final TaskImpl<TResult> task = new TaskImpl<>();
+
+    @NonNull
+    public Task<TResult> getTask() {
+        return task;
+    }
+
+    public void setResult(TResult result){
+        if(!task.trySetResult(result)) throw new IllegalStateException("Task is already complete");
+    }
+
+    public boolean trySetResult(TResult result){
+        return task.trySetResult(result);
+    }
+
+    public void setException(@NonNull Exception e){
+        if(!task.trySetException(e)) throw new IllegalStateException("Task is already complete");
+    }
+
+    public boolean trySetException(@NonNull Exception e){
+        return task.trySetException(e);
+    }
+}
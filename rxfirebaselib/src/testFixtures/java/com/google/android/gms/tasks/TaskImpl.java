@@ -0,0 +1,124 @@
+package com.google.android.gms.tasks;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Task completed through a {@link TaskCompletionSource}
+ */
+
+final class TaskImpl<TResult> extends Task<TResult> {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Object lock = new Object();
+    private boolean complete;
+    private TResult result;
+    private Exception exception;
+    private List<Runnable> pending;
+
+    @Override
+    public boolean isComplete() {
+        synchronized (lock){
+            return complete;
+        }
+    }
+
+    @Override
+    public boolean isSuccessful() {
+        synchronized (lock){
+            return complete && exception == null;
+        }
+    }
+
+    @Override
+    public TResult getResult() {
+        synchronized (lock){
+            if(!complete) throw new IllegalStateException("Task is not yet complete");
+            if(exception != null) throw new RuntimeException(exception);
+            return result;
+        }
+    }
+
+    @Override
+    public Exception getException() {
+        synchronized (lock){
+            return exception;
+        }
+    }
+
+    @NonNull
+    @Override
+    public Task<TResult> addOnCompleteListener(@NonNull OnCompleteListener<TResult> listener) {
+        return addOnCompleteListener(DIRECT, listener);
+    }
+
+    @NonNull
+    @Override
+    public Task<TResult> addOnCompleteListener(@NonNull Executor executor, @NonNull OnCompleteListener<TResult> listener) {
+        Runnable notification = new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onComplete(TaskImpl.this);
+                    }
+                });
+            }
+        };
+
+        synchronized (lock){
+            if(!complete){
+                if(pending == null) pending = new ArrayList<>(1);
+                pending.add(notification);
+                return this;
+            }
+        }
+
+        notification.run();
+        return this;
+    }
+
+    boolean trySetResult(TResult result){
+        List<Runnable> notifications;
+        synchronized (lock){
+            if(complete) return false;
+            complete = true;
+            this.result = result;
+            notifications = pending;
+            pending = null;
+        }
+
+        notifyAll(notifications);
+        return true;
+    }
+
+    boolean trySetException(@NonNull Exception exception){
+        List<Runnable> notifications;
+        synchronized (lock){
+            if(complete) return false;
+            complete = true;
+            this.exception = exception;
+            notifications = pending;
+            pending = null;
+        }
+
+        notifyAll(notifications);
+        return true;
+    }
+
+    private static void notifyAll(List<Runnable> notifications){
+        if(notifications == null) return;
+        for(int i = 0; i < notifications.size(); i++){
+            notifications.get(i).run();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.google.android.gms.tasks;
+
+import android.support.annotation.NonNull;
+
+/**
+ * JVM stand-in for the Play services Tasks
+ */
+
+public final class Tasks {
+    private Tasks(){}
+
+    public static <TResult> Task<TResult> forResult(TResult result){
+        TaskCompletionSource<TResult> source = new TaskCompletionSource<>();
+        source.setResult(result);
+        return source.getTask();
+    }
+
+    public static <TResult> Task<TResult> forException(@NonNull Exception e){
+        TaskCompletionSource<TResult> source = new TaskCompletionSource<>();
+        source.setException(e);
+        return source.getTask();
+    }
+}
@@ -0,0 +1,17 @@
+package com.google.firebase.database;
+
+/**
+ * JVM stand-in for the Realtime Database listener
+ */
+
+public interface ChildEventListener {
+    void onChildAdded(DataSnapshot snapshot, String previousChildName);
+
+    void onChildChanged(DataSnapshot snapshot, String previousChildName);
+
+    void onChildRemoved(DataSnapshot snapshot);
+
+    void onChildMoved(DataSnapshot snapshot, String previousChildName);
+
+    void onCancelled(DatabaseError error);
+}
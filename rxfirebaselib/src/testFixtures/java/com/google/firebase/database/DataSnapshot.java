@@ -0,0 +1,155 @@
+package com.google.firebase.database;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the Realtime Database snapshot, wraps a raw value the way the SDK returns it:
+ * {@code Map<String, Object>} for objects, {@code List<Object>} for arrays, or a String, Boolean, Long or Double.
+ * Children are iterated in the order of the map.
+ */
+
+public class DataSnapshot {
+    private final String key;
+    /**
+     * location of the parent, null if only the key is known
+     */
+    @Nullable
+    private final DatabaseReference parent;
+    @Nullable
+    private final Object value;
+
+    public DataSnapshot(String key, @Nullable Object value) {
+        this(null, key, value);
+    }
+
+    public DataSnapshot(@Nullable DatabaseReference parent, String key, @Nullable Object value) {
+        this.parent = parent;
+        this.key = key;
+        this.value = value;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public DatabaseReference getRef() {
+        return parent == null ? new DatabaseReference(key) : parent.child(key);
+    }
+
+    @Nullable
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * There is no class mapping on the JVM, only values that already are of {@param valueType}, or numbers, are
+     * converted. Use a {@code SnapshotMapper} for models.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T getValue(Class<T> valueType) {
+        if(value == null || valueType.isInstance(value)) return (T) value;
+
+        if(value instanceof Number){
+            Number number = (Number) value;
+            if(valueType == Integer.class) return (T) Integer.valueOf(number.intValue());
+            if(valueType == Long.class) return (T) Long.valueOf(number.longValue());
+            if(valueType == Double.class) return (T) Double.valueOf(number.doubleValue());
+            if(valueType == Float.class) return (T) Float.valueOf(number.floatValue());
+        }
+
+        throw new DatabaseException("Can't convert " + value.getClass().getName() + " to " + valueType.getName()
+                + " without a SnapshotMapper");
+    }
+
+    public boolean exists() {
+        return value != null;
+    }
+
+    public boolean hasChildren() {
+        return getChildrenCount() > 0;
+    }
+
+    public long getChildrenCount() {
+        if(value instanceof Map) return ((Map<?, ?>) value).size();
+        if(value instanceof List){
+            long count = 0;
+            for(Object item : (List<?>) value){
+                if(item != null) count++;
+            }
+            return count;
+        }
+        return 0;
+    }
+
+    public boolean hasChild(String path) {
+        return child(path).exists();
+    }
+
+    public DataSnapshot child(String path) {
+        Object node = value;
+        String[] segments = DatabaseReference.normalize(path).split("/");
+        for(String segment : segments){
+            node = childValue(node, segment);
+        }
+
+        DatabaseReference childRef = getRef().child(path);
+        return new DataSnapshot(childRef.getParent(), childRef.getKey(), node);
+    }
+
+    public Iterable<DataSnapshot> getChildren() {
+        if(value instanceof Map){
+            DatabaseReference ref = getRef();
+            Map<?, ?> map = (Map<?, ?>) value;
+            ArrayList<DataSnapshot> children = new ArrayList<>(map.size());
+            for(Map.Entry<?, ?> entry : map.entrySet()){
+                children.add(new DataSnapshot(ref, (String) entry.getKey(), entry.getValue()));
+            }
+            return children;
+        }
+
+        if(value instanceof List){
+            DatabaseReference ref = getRef();
+            List<?> list = (List<?>) value;
+            ArrayList<DataSnapshot> children = new ArrayList<>(list.size());
+            for(int i = 0; i < list.size(); i++){
+                if(list.get(i) != null) children.add(new DataSnapshot(ref, String.valueOf(i), list.get(i)));
+            }
+            return children;
+        }
+
+        return Collections.emptyList();
+    }
+
+    @Nullable
+    public Object getPriority() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "DataSnapshot { key = " + key + ", value = " + value + " }";
+    }
+
+    @Nullable
+    static Object childValue(@Nullable Object node, String key){
+        if(node instanceof Map) return ((Map<?, ?>) node).get(key);
+
+        if(node instanceof List){
+            List<?> list = (List<?>) node;
+            try {
+                int index = Integer.parseInt(key);
+                return index >= 0 && index < list.size() ? list.get(index) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+}
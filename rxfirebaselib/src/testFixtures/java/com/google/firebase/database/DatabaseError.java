@@ -0,0 +1,78 @@
+package com.google.firebase.database;
+
+/**
+ * JVM stand-in for the Realtime Database error, codes match the SDK
+ */
+
+public class DatabaseError {
+    public static final int DATA_STALE = -1;
+    public static final int OPERATION_FAILED = -2;
+    public static final int PERMISSION_DENIED = -3;
+    public static final int DISCONNECTED = -4;
+    public static final int EXPIRED_TOKEN = -6;
+    public static final int INVALID_TOKEN = -7;
+    public static final int MAX_RETRIES = -8;
+    public static final int OVERRIDDEN_BY_SET = -9;
+    public static final int UNAVAILABLE = -10;
+    public static final int USER_CODE_EXCEPTION = -11;
+    public static final int NETWORK_ERROR = -24;
+    public static final int WRITE_CANCELED = -25;
+    public static final int UNKNOWN_ERROR = -999;
+
+    private final int code;
+    private final String message;
+    private final String details;
+
+    private DatabaseError(int code, String message, String details) {
+        this.code = code;
+        this.message = message;
+        this.details = details;
+    }
+
+    public static DatabaseError fromCode(int code){
+        return new DatabaseError(code, messageFor(code), "");
+    }
+
+    public static DatabaseError fromException(Throwable e){
+        return new DatabaseError(USER_CODE_EXCEPTION, messageFor(USER_CODE_EXCEPTION) + " " + e.getMessage(), String.valueOf(e));
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    public DatabaseException toException(){
+        return new DatabaseException("Firebase Database error: " + message);
+    }
+
+    @Override
+    public String toString() {
+        return "DatabaseError: " + message;
+    }
+
+    private static String messageFor(int code){
+        switch (code){
+            case DATA_STALE: return "The transaction needs to be run again with current data";
+            case OPERATION_FAILED: return "The server indicated that this operation failed";
+            case PERMISSION_DENIED: return "This client does not have permission to perform this operation";
+            case DISCONNECTED: return "The operation had to be aborted due to a network disconnect";
+            case EXPIRED_TOKEN: return "The supplied auth token has expired";
+            case INVALID_TOKEN: return "The supplied auth token was invalid";
+            case MAX_RETRIES: return "The transaction had too many retries";
+            case OVERRIDDEN_BY_SET: return "The transaction was overridden by a subsequent set";
+            case UNAVAILABLE: return "The service is unavailable";
+            case USER_CODE_EXCEPTION: return "User code called from the Firebase Database runloop threw an exception:";
+            case NETWORK_ERROR: return "The operation could not be performed due to a network error";
+            case WRITE_CANCELED: return "The write was canceled by the user.";
+            default: return "An unknown error occurred";
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.google.firebase.database;
+
+/**
+ * JVM stand-in for the Realtime Database exception
+ */
+
+public class DatabaseException extends RuntimeException {
+    public DatabaseException(String message) {
+        super(message);
+    }
+
+    public DatabaseException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,128 @@
+package com.google.firebase.database;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for a Realtime Database location, see {@link Query}. Only references of a {@link FirebaseDatabase}
+ * can be written to.
+ */
+
+public class DatabaseReference extends Query {
+    static final String DEFAULT_URL = "fake://database";
+
+    private final String path;
+
+    /**
+     * @param path slash separated path from the root, "" or "/" for the root
+     */
+    public DatabaseReference(String path) {
+        super(normalize(path));
+        this.path = normalize(path);
+    }
+
+    DatabaseReference(Repo repo, String path) {
+        super(repo, normalize(path));
+        this.path = normalize(path);
+    }
+
+    @Nullable
+    public String getKey() {
+        return path.isEmpty() ? null : path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    public DatabaseReference child(String pathString) {
+        String child = normalize(pathString);
+        return at(path.isEmpty() ? child : path + "/" + child);
+    }
+
+    @Nullable
+    public DatabaseReference getParent() {
+        if(path.isEmpty()) return null;
+
+        int end = path.lastIndexOf('/');
+        return at(end < 0 ? "" : path.substring(0, end));
+    }
+
+    @Override
+    public DatabaseReference getRef() {
+        return this;
+    }
+
+    public DatabaseReference getRoot() {
+        return at("");
+    }
+
+    /**
+     * @return reference to a new child with a unique key, keys of later pushes sort after earlier ones
+     */
+    public DatabaseReference push() {
+        return child(repo().nextPushKey());
+    }
+
+    public Task<Void> setValue(@Nullable Object value) {
+        return repo().setValue(path, value);
+    }
+
+    public Task<Void> removeValue() {
+        return setValue(null);
+    }
+
+    /**
+     * @param update values by path relative to this location, applied atomically
+     */
+    public Task<Void> updateChildren(Map<String, Object> update) {
+        HashMap<String, Object> absolute = new HashMap<>(update.size() * 2);
+        for(Map.Entry<String, Object> entry : update.entrySet()){
+            String child = normalize(entry.getKey());
+            absolute.put(path.isEmpty() ? child : path + "/" + child, entry.getValue());
+        }
+        return repo().write(absolute);
+    }
+
+    public void runTransaction(Transaction.Handler handler) {
+        runTransaction(handler, true);
+    }
+
+    /**
+     * runs {@param handler} on the caller's thread, the stand-in raises no events for intermediate values,
+     * so {@param fireLocalEvents} has no effect
+     */
+    public void runTransaction(Transaction.Handler handler, boolean fireLocalEvents) {
+        repo().runTransaction(path, handler);
+    }
+
+    /**
+     * @return path of this location from the root, without leading or trailing slashes
+     */
+    public String getPath() {
+        return path;
+    }
+
+    private DatabaseReference at(String path){
+        return repo == null ? new DatabaseReference(path) : new DatabaseReference(repo, path);
+    }
+
+    private Repo repo(){
+        if(repo == null) throw new IllegalStateException("Only references of a FirebaseDatabase can be written to");
+        return repo;
+    }
+
+    @Override
+    public String toString() {
+        String url = repo == null ? DEFAULT_URL : repo.url;
+        return path.isEmpty() ? url : url + "/" + path;
+    }
+
+    static String normalize(String path){
+        int start = 0;
+        int end = path.length();
+        while(start < end && path.charAt(start) == '/') start++;
+        while(end > start && path.charAt(end - 1) == '/') end--;
+        return path.substring(start, end);
+    }
+}
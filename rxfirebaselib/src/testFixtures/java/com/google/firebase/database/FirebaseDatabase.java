@@ -0,0 +1,54 @@
+package com.google.firebase.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+/**
+ * JVM stand-in for the Realtime Database: an in-memory JSON tree, see {@link Repo}. Writes are applied locally and
+ * events are raised on the event target, the main looper by default like on Android.
+ */
+
+public class FirebaseDatabase {
+    private static FirebaseDatabase instance;
+
+    private final Repo repo;
+
+    /**
+     * @param eventTarget runs the listener callbacks, must run them one at a time and in order
+     */
+    public FirebaseDatabase(Executor eventTarget) {
+        this(DatabaseReference.DEFAULT_URL, eventTarget);
+    }
+
+    /**
+     * @param url url of the root, different for every database like the urls of the SDK's databases
+     * @param eventTarget runs the listener callbacks, must run them one at a time and in order
+     */
+    public FirebaseDatabase(String url, Executor eventTarget) {
+        this.repo = new Repo(url, eventTarget);
+    }
+
+    public static synchronized FirebaseDatabase getInstance(){
+        if(instance == null){
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new FirebaseDatabase(new Executor() {
+                @Override
+                public void execute(@NonNull Runnable command) {
+                    mainHandler.post(command);
+                }
+            });
+        }
+        return instance;
+    }
+
+    public DatabaseReference getReference(){
+        return new DatabaseReference(repo, "");
+    }
+
+    public DatabaseReference getReference(String path){
+        return new DatabaseReference(repo, path);
+    }
+}
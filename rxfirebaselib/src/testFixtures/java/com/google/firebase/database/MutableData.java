@@ -0,0 +1,110 @@
+package com.google.firebase.database;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JVM stand-in for the value a transaction updates. The value is a private copy of the tree below the location of
+ * the transaction, children share it with their parent.
+ */
+
+public class MutableData {
+    private final Holder holder;
+    /**
+     * path from the location of the transaction, "" for the location itself
+     */
+    private final String path;
+
+    MutableData(@Nullable String key, @Nullable Object value) {
+        this(new Holder(key, value), "");
+    }
+
+    private MutableData(Holder holder, String path) {
+        this.holder = holder;
+        this.path = path;
+    }
+
+    @Nullable
+    public String getKey() {
+        return path.isEmpty() ? holder.key : path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @Nullable
+    public Object getValue() {
+        return snapshot().getValue();
+    }
+
+    @Nullable
+    public <T> T getValue(Class<T> valueType) {
+        return snapshot().getValue(valueType);
+    }
+
+    public void setValue(@Nullable Object value) {
+        holder.value = Repo.setAt(holder.value, Repo.segments(path), 0, Repo.normalize(value));
+    }
+
+    public MutableData child(String path) {
+        String child = DatabaseReference.normalize(path);
+        return new MutableData(holder, this.path.isEmpty() ? child : this.path + "/" + child);
+    }
+
+    public boolean hasChild(String path) {
+        return child(path).getValue() != null;
+    }
+
+    public boolean hasChildren() {
+        return current() instanceof TreeMap;
+    }
+
+    public long getChildrenCount() {
+        Object value = current();
+        return value instanceof TreeMap ? ((TreeMap<?, ?>) value).size() : 0;
+    }
+
+    public Iterable<MutableData> getChildren() {
+        Object value = current();
+        List<MutableData> children = new ArrayList<>();
+        if(value instanceof TreeMap){
+            for(Map.Entry<?, ?> entry : ((TreeMap<?, ?>) value).entrySet()){
+                children.add(child((String) entry.getKey()));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * @return value in the tree's representation, shared with the tree until it is set
+     */
+    @Nullable
+    Object current() {
+        return Repo.valueAt(holder.value, path);
+    }
+
+    private DataSnapshot snapshot(){
+        return new DataSnapshot(getKey(), current());
+    }
+
+    @Override
+    public String toString() {
+        return "MutableData { key = " + getKey() + ", value = " + getValue() + " }";
+    }
+
+    /**
+     * value of the transaction's location
+     */
+    static final class Holder {
+        @Nullable
+        final String key;
+        @Nullable
+        Object value;
+
+        Holder(@Nullable String key, @Nullable Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.google.firebase.database;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.core.view.QuerySpec;
+
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * JVM stand-in for a Realtime Database query.
+ *
+ * A query of a {@link FirebaseDatabase} listens to its in-memory tree. A query created on its own isn't backed by
+ * anything: events are pushed to its listeners with the {@code fire*} methods, on the calling thread, and like the
+ * SDK a value listener added after a value was fired gets the latest value right away.
+ * Queries can be limited to a range of keys and a number of children, other orderings aren't supported.
+ */
+
+public class Query {
+    private final QuerySpec spec;
+    /**
+     * backing tree, null for a query created on its own
+     */
+    @Nullable
+    final Repo repo;
+    final QueryParams params;
+
+    private final CopyOnWriteArrayList<ValueEventListener> valueListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<ValueEventListener> singleValueListeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<ChildEventListener> childListeners = new CopyOnWriteArrayList<>();
+
+    @Nullable
+    private volatile DataSnapshot current;
+
+    public Query(String path) {
+        this(new QuerySpec(path, "default"));
+    }
+
+    public Query(QuerySpec spec) {
+        this(spec, null, QueryParams.DEFAULT);
+    }
+
+    Query(Repo repo, String path) {
+        this(new QuerySpec(path, QueryParams.DEFAULT.toString()), repo, QueryParams.DEFAULT);
+    }
+
+    private Query(QuerySpec spec, @Nullable Repo repo, QueryParams params) {
+        this.spec = spec;
+        this.repo = repo;
+        this.params = params;
+    }
+
+    public QuerySpec getSpec() {
+        return spec;
+    }
+
+    public Query orderByKey() {
+        return this;
+    }
+
+    public Query startAt(String key) {
+        return with(params.startAt(key));
+    }
+
+    public Query endAt(String key) {
+        return with(params.endAt(key));
+    }
+
+    public Query limitToFirst(int limit) {
+        return with(params.limit(limit, false));
+    }
+
+    public Query limitToLast(int limit) {
+        return with(params.limit(limit, true));
+    }
+
+    public DatabaseReference getRef() {
+        return repo == null ? new DatabaseReference(spec.getPath()) : new DatabaseReference(repo, spec.getPath());
+    }
+
+    public ValueEventListener addValueEventListener(ValueEventListener listener) {
+        if(repo != null){
+            repo.addValueListener(spec.getPath(), params, listener, false);
+            return listener;
+        }
+
+        valueListeners.add(listener);
+
+        DataSnapshot snapshot = current;
+        if(snapshot != null) listener.onDataChange(snapshot);
+        return listener;
+    }
+
+    public void addListenerForSingleValueEvent(ValueEventListener listener) {
+        if(repo != null){
+            repo.addValueListener(spec.getPath(), params, listener, true);
+            return;
+        }
+
+        DataSnapshot snapshot = current;
+        if(snapshot != null) listener.onDataChange(snapshot);
+        else singleValueListeners.add(listener);
+    }
+
+    public ChildEventListener addChildEventListener(ChildEventListener listener) {
+        if(repo != null){
+            repo.addChildListener(spec.getPath(), params, listener);
+            return listener;
+        }
+
+        childListeners.add(listener);
+        return listener;
+    }
+
+    public void removeEventListener(ValueEventListener listener) {
+        if(repo != null){
+            repo.removeListener(spec.getPath(), listener);
+            return;
+        }
+
+        valueListeners.remove(listener);
+        singleValueListeners.remove(listener);
+    }
+
+    public void removeEventListener(ChildEventListener listener) {
+        if(repo != null){
+            repo.removeListener(spec.getPath(), listener);
+            return;
+        }
+
+        childListeners.remove(listener);
+    }
+
+    /**
+     * @return number of listeners currently registered, for a query of a {@link FirebaseDatabase} the listeners
+     * of the whole database
+     */
+    public int getListenerCount(){
+        if(repo != null) return repo.getListenerCount();
+
+        return valueListeners.size() + singleValueListeners.size() + childListeners.size();
+    }
+
+    /**
+     * @return query of the same location with {@param params}, a query created on its own ignores them
+     */
+    private Query with(QueryParams params){
+        return new Query(new QuerySpec(spec.getPath(), params.toString()), repo, params);
+    }
+
+    public void fireValue(DataSnapshot snapshot){
+        current = snapshot;
+
+        for(ValueEventListener listener : valueListeners){
+            listener.onDataChange(snapshot);
+        }
+
+        if(!singleValueListeners.isEmpty()){
+            for(ValueEventListener listener : singleValueListeners){
+                if(singleValueListeners.remove(listener)) listener.onDataChange(snapshot);
+            }
+        }
+    }
+
+    public void fireChildAdded(DataSnapshot snapshot, @Nullable String previousChildName){
+        for(ChildEventListener listener : childListeners){
+            listener.onChildAdded(snapshot, previousChildName);
+        }
+    }
+
+    public void fireChildChanged(DataSnapshot snapshot, @Nullable String previousChildName){
+        for(ChildEventListener listener : childListeners){
+            listener.onChildChanged(snapshot, previousChildName);
+        }
+    }
+
+    public void fireChildRemoved(DataSnapshot snapshot){
+        for(ChildEventListener listener : childListeners){
+            listener.onChildRemoved(snapshot);
+        }
+    }
+
+    public void fireChildMoved(DataSnapshot snapshot, @Nullable String previousChildName){
+        for(ChildEventListener listener : childListeners){
+            listener.onChildMoved(snapshot, previousChildName);
+        }
+    }
+
+    /**
+     * sends {@param error} to every listener and removes them, like the SDK does
+     * @param error
+     */
+    public void fireCancelled(DatabaseError error){
+        // listeners added while the error is delivered, e.g by a retry, aren't cancelled
+        ArrayList<ValueEventListener> values = new ArrayList<>(valueListeners);
+        ArrayList<ValueEventListener> singleValues = new ArrayList<>(singleValueListeners);
+        ArrayList<ChildEventListener> children = new ArrayList<>(childListeners);
+        valueListeners.removeAll(values);
+        singleValueListeners.removeAll(singleValues);
+        childListeners.removeAll(children);
+
+        for(ValueEventListener listener : values){
+            listener.onCancelled(error);
+        }
+        for(ValueEventListener listener : singleValues){
+            listener.onCancelled(error);
+        }
+        for(ChildEventListener listener : children){
+            listener.onCancelled(error);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.google.firebase.database;
+
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Key range and limit of a {@link Query} stand-in. Only ordering by key is supported, which is also the default order.
+ */
+
+final class QueryParams {
+    static final QueryParams DEFAULT = new QueryParams(null, null, 0, false);
+
+    @Nullable
+    final String startKey;
+    @Nullable
+    final String endKey;
+    /**
+     * 0 for no limit
+     */
+    final int limit;
+    final boolean fromEnd;
+
+    private QueryParams(@Nullable String startKey, @Nullable String endKey, int limit, boolean fromEnd) {
+        this.startKey = startKey;
+        this.endKey = endKey;
+        this.limit = limit;
+        this.fromEnd = fromEnd;
+    }
+
+    QueryParams startAt(String key){
+        if(startKey != null) throw new IllegalArgumentException("Query.startAt: Starting point was already set");
+        return new QueryParams(key, endKey, limit, fromEnd);
+    }
+
+    QueryParams endAt(String key){
+        if(endKey != null) throw new IllegalArgumentException("Query.endAt: Ending point was already set");
+        return new QueryParams(startKey, key, limit, fromEnd);
+    }
+
+    QueryParams limit(int limit, boolean fromEnd){
+        if(limit <= 0) throw new IllegalArgumentException("Limit must be a positive integer!");
+        if(this.limit != 0) throw new IllegalArgumentException("Can't call limitToLast on query with previously set limit!");
+        return new QueryParams(startKey, endKey, limit, fromEnd);
+    }
+
+    boolean isDefault(){
+        return startKey == null && endKey == null && limit == 0;
+    }
+
+    /**
+     * @return the children of {@param children} this query selects, {@param children} itself if it selects them all
+     */
+    TreeMap<String, Object> filter(TreeMap<String, Object> children){
+        if(isDefault()) return children;
+
+        NavigableMap<String, Object> range = children;
+        if(startKey != null && endKey != null){
+            if(Repo.KEY_ORDER.compare(startKey, endKey) > 0) return new TreeMap<>(Repo.KEY_ORDER);
+            range = children.subMap(startKey, true, endKey, true);
+        }
+        else if(startKey != null) range = children.tailMap(startKey, true);
+        else if(endKey != null) range = children.headMap(endKey, true);
+
+        TreeMap<String, Object> result = new TreeMap<>(Repo.KEY_ORDER);
+        int count = 0;
+        for(Map.Entry<String, Object> child : (fromEnd ? range.descendingMap() : range).entrySet()){
+            if(limit != 0 && count++ == limit) break;
+            result.put(child.getKey(), child.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if(isDefault()) return "default";
+
+        return "key" + (startKey == null ? "" : ",start=" + startKey) + (endKey == null ? "" : ",end=" + endKey)
+                + (limit == 0 ? "" : (fromEnd ? ",last=" : ",first=") + limit);
+    }
+}
@@ -0,0 +1,621 @@
+package com.google.firebase.database;
+
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * In-memory JSON tree behind a {@link FirebaseDatabase} stand-in.
+ *
+ * The tree is persistent: objects are TreeMaps that are never changed once published, a write copies the objects on
+ * the path from the root and shares every other subtree. Snapshots handed to listeners stay valid, and a subtree that
+ * is the same instance before and after a write hasn't changed, so most listeners are skipped without a diff.
+ *
+ * Writes are applied right away, like the SDK applies local writes before the server acknowledges them. The events
+ * of a write are computed under the lock for the listeners registered at that time, then raised on the event
+ * target in the SDK's order: child_removed, child_added, child_changed and then value, per location.
+ * Children are ordered by key; there is no orderByChild, so child_moved is never raised. Listeners of a limited or
+ * ranged query compare the children they select before and after the write.
+ */
+
+final class Repo {
+    static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            // integer keys come first, in numeric order, then the rest in lexicographic order
+            boolean aInt = isIntKey(a);
+            boolean bInt = isIntKey(b);
+            if(aInt && bInt){
+                int byValue = Long.compare(Long.parseLong(a), Long.parseLong(b));
+                return byValue != 0 ? byValue : Integer.compare(a.length(), b.length());
+            }
+            if(aInt) return -1;
+            if(bInt) return 1;
+            return a.compareTo(b);
+        }
+    };
+
+    static final int MAX_TRANSACTION_RETRIES = 25;
+
+    private final Object lock = new Object();
+    /**
+     * url of the root, tells databases apart
+     */
+    final String url;
+    private final Executor eventTarget;
+    /**
+     * registrations by path, only changed under the lock
+     */
+    private final HashMap<String, CopyOnWriteArrayList<Registration>> registrations = new HashMap<>();
+
+    @Nullable
+    private Object root;
+    private long pushCounter;
+
+    Repo(String url, Executor eventTarget) {
+        this.url = url;
+        this.eventTarget = eventTarget;
+    }
+
+    /**
+     * @return value at {@param path} right now
+     */
+    @Nullable
+    Object getValue(String path){
+        synchronized (lock){
+            return valueAt(root, path);
+        }
+    }
+
+    String nextPushKey(){
+        synchronized (lock){
+            // ordered by creation like the SDK's push ids
+            return String.format("-P%018d", pushCounter++);
+        }
+    }
+
+    Task<Void> setValue(String path, @Nullable Object value){
+        HashMap<String, Object> update = new HashMap<>(2);
+        update.put(path, value);
+        return write(update);
+    }
+
+    /**
+     * applies every path of {@param update} atomically
+     * @param update values by path, relative to the root
+     * @return Task that completes once the events of the write were raised
+     */
+    Task<Void> write(Map<String, Object> update){
+        TaskCompletionSource<Void> completion = new TaskCompletionSource<>();
+        ArrayList<Event> events = new ArrayList<>();
+
+        synchronized (lock){
+            Object oldRoot = root;
+            Object newRoot = oldRoot;
+            ArrayList<String[]> written = new ArrayList<>(update.size());
+            for(Map.Entry<String, Object> entry : update.entrySet()){
+                String[] segments = segments(entry.getKey());
+                newRoot = setAt(newRoot, segments, 0, normalize(entry.getValue()));
+                written.add(segments);
+            }
+            root = newRoot;
+
+            if(oldRoot != newRoot){
+                for(Map.Entry<String, CopyOnWriteArrayList<Registration>> entry : registrations.entrySet()){
+                    collectEvents(entry.getKey(), entry.getValue(), written, oldRoot, newRoot, events);
+                }
+            }
+        }
+
+        eventTarget.execute(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < events.size(); i++){
+                    events.get(i).raise();
+                }
+                completion.setResult(null);
+            }
+        });
+
+        return completion.getTask();
+    }
+
+    /**
+     * runs {@param handler} on the value at {@param path} until its result is written over the value it was computed
+     * from, like the SDK retries when the server rejects a stale value. Gives up with {@link DatabaseError#MAX_RETRIES}
+     * after {@link #MAX_TRANSACTION_RETRIES} attempts.
+     */
+    void runTransaction(String path, Transaction.Handler handler){
+        DatabaseReference ref = new DatabaseReference(this, path);
+        DatabaseError error = DatabaseError.fromCode(DatabaseError.MAX_RETRIES);
+        boolean committed = false;
+        Object value = null;
+
+        for(int attempt = 0; attempt < MAX_TRANSACTION_RETRIES; attempt++){
+            Object current = getValue(path);
+            MutableData data = new MutableData(ref.getKey(), current);
+
+            Transaction.Result result;
+            try {
+                result = handler.doTransaction(data);
+            } catch (Throwable e){
+                error = DatabaseError.fromException(e);
+                value = current;
+                break;
+            }
+
+            if(!result.isSuccess()){
+                error = null;
+                value = current;
+                break;
+            }
+
+            Object written = result.getData().current();
+            synchronized (lock){
+                if(valueAt(root, path) != current) continue;
+
+                HashMap<String, Object> update = new HashMap<>(2);
+                update.put(path, written);
+                write(update);
+            }
+            error = null;
+            committed = true;
+            value = written;
+            break;
+        }
+
+        DatabaseError outcome = error;
+        boolean done = committed;
+        DataSnapshot snapshot = snapshot(path, value);
+        eventTarget.execute(new Runnable() {
+            @Override
+            public void run() {
+                handler.onComplete(outcome, done, snapshot);
+            }
+        });
+    }
+
+    void addValueListener(String path, QueryParams params, ValueEventListener listener, boolean single){
+        Registration registration = new Registration(path, params, listener, null, single);
+        ArrayList<Event> events = new ArrayList<>(1);
+
+        synchronized (lock){
+            // single value listeners are registered too so that removing them drops the pending event
+            register(registration);
+
+            Object value = filter(valueAt(root, path), params);
+            events.add(new Event(registration, Event.VALUE, snapshot(path, value), null));
+        }
+
+        raiseLater(events);
+    }
+
+    void addChildListener(String path, QueryParams params, ChildEventListener listener){
+        Registration registration = new Registration(path, params, null, listener, false);
+        ArrayList<Event> events = new ArrayList<>();
+
+        synchronized (lock){
+            register(registration);
+
+            Object value = valueAt(root, path);
+            if(value instanceof TreeMap){
+                DatabaseReference ref = new DatabaseReference(this, path);
+                String previous = null;
+                for(Map.Entry<String, Object> child : params.filter(children(value)).entrySet()){
+                    events.add(new Event(registration, Event.CHILD_ADDED,
+                            new DataSnapshot(ref, child.getKey(), child.getValue()), previous));
+                    previous = child.getKey();
+                }
+            }
+        }
+
+        raiseLater(events);
+    }
+
+    void removeListener(String path, Object listener){
+        synchronized (lock){
+            CopyOnWriteArrayList<Registration> atPath = registrations.get(path);
+            if(atPath == null) return;
+
+            for(Registration registration : atPath){
+                if(registration.valueListener == listener || registration.childListener == listener){
+                    registration.active = false;
+                    atPath.remove(registration);
+                }
+            }
+            if(atPath.isEmpty()) registrations.remove(path);
+        }
+    }
+
+    /**
+     * @return number of registered listeners
+     */
+    int getListenerCount(){
+        synchronized (lock){
+            int count = 0;
+            for(List<Registration> atPath : registrations.values()){
+                count += atPath.size();
+            }
+            return count;
+        }
+    }
+
+    private void unregister(Registration registration){
+        synchronized (lock){
+            registration.active = false;
+
+            CopyOnWriteArrayList<Registration> atPath = registrations.get(registration.path);
+            if(atPath != null && atPath.remove(registration) && atPath.isEmpty()) registrations.remove(registration.path);
+        }
+    }
+
+    private void register(Registration registration){
+        CopyOnWriteArrayList<Registration> atPath = registrations.get(registration.path);
+        if(atPath == null){
+            atPath = new CopyOnWriteArrayList<>();
+            registrations.put(registration.path, atPath);
+        }
+        atPath.add(registration);
+    }
+
+    private void raiseLater(List<Event> events){
+        if(events.isEmpty()) return;
+
+        eventTarget.execute(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < events.size(); i++){
+                    Event event = events.get(i);
+                    event.raise();
+
+                    Registration registration = event.registration;
+                    if(registration.single) unregister(registration);
+                }
+            }
+        });
+    }
+
+    /**
+     * adds the events a write raises at {@param path} to {@param events}
+     * @param written paths of the write
+     */
+    private void collectEvents(String path, List<Registration> atPath, List<String[]> written,
+                               @Nullable Object oldRoot, @Nullable Object newRoot, List<Event> events){
+        Object oldValue = valueAt(oldRoot, path);
+        Object newValue = valueAt(newRoot, path);
+        if(oldValue == newValue || (oldValue != null && oldValue.equals(newValue))) return;
+
+        boolean hasChildListeners = false;
+        for(Registration registration : atPath){
+            if(registration.childListener != null && registration.params.isDefault()){
+                hasChildListeners = true;
+                break;
+            }
+        }
+
+        if(hasChildListeners){
+            List<Change> changes = childChanges(path, written, children(oldValue), children(newValue));
+
+            // like the SDK: all removals, then additions, then changes, each raised for every registration
+            for(int type : Event.CHILD_ORDER){
+                for(int i = 0; i < changes.size(); i++){
+                    Change change = changes.get(i);
+                    if(change.type != type) continue;
+
+                    for(Registration registration : atPath){
+                        if(registration.childListener != null && registration.params.isDefault()){
+                            events.add(new Event(registration, change.type, change.snapshot, change.previousChildName));
+                        }
+                    }
+                }
+            }
+        }
+
+        DataSnapshot snapshot = null;
+        for(Registration registration : atPath){
+            if(registration.valueListener == null || registration.single || !registration.params.isDefault()) continue;
+            if(snapshot == null) snapshot = snapshot(path, newValue);
+
+            events.add(new Event(registration, Event.VALUE, snapshot, null));
+        }
+
+        for(Registration registration : atPath){
+            if(!registration.params.isDefault() && !registration.single){
+                collectQueryEvents(path, registration, oldValue, newValue, events);
+            }
+        }
+    }
+
+    /**
+     * adds the events a write raises for a limited or ranged {@param registration}, its children are compared as a whole
+     */
+    private void collectQueryEvents(String path, Registration registration, @Nullable Object oldValue, @Nullable Object newValue,
+                                    List<Event> events){
+        Object oldVisible = filter(oldValue, registration.params);
+        Object newVisible = filter(newValue, registration.params);
+        if(oldVisible == newVisible || (oldVisible != null && oldVisible.equals(newVisible))) return;
+
+        if(registration.childListener != null){
+            List<Change> changes = allChanges(new DatabaseReference(this, path), children(oldVisible), children(newVisible));
+            for(int type : Event.CHILD_ORDER){
+                for(int i = 0; i < changes.size(); i++){
+                    Change change = changes.get(i);
+                    if(change.type == type) events.add(new Event(registration, type, change.snapshot, change.previousChildName));
+                }
+            }
+        }
+        else {
+            events.add(new Event(registration, Event.VALUE, snapshot(path, newVisible), null));
+        }
+    }
+
+    /**
+     * @return changed children of {@param path}, only the children under a written path are compared unless
+     * the location itself or one of its ancestors was written
+     */
+    private List<Change> childChanges(String path, List<String[]> written,
+                                      TreeMap<String, Object> oldChildren, TreeMap<String, Object> newChildren){
+        int depth = segments(path).length;
+        boolean all = false;
+        ArrayList<String> keys = new ArrayList<>();
+        for(String[] segments : written){
+            if(!isUnder(segments, path, depth)) continue;
+
+            if(segments.length <= depth){
+                all = true;
+                break;
+            }
+            keys.add(segments[depth]);
+        }
+
+        DatabaseReference ref = new DatabaseReference(this, path);
+        if(all) return allChanges(ref, oldChildren, newChildren);
+
+        ArrayList<Change> changes = new ArrayList<>();
+        for(int i = 0; i < keys.size(); i++){
+            String key = keys.get(i);
+            if(keys.indexOf(key) < i) continue;
+
+            Change change = change(ref, key, oldChildren.get(key), newChildren.get(key), newChildren);
+            if(change != null) changes.add(change);
+        }
+        return changes;
+    }
+
+    /**
+     * @return every child that differs between {@param oldChildren} and {@param newChildren}
+     */
+    private static List<Change> allChanges(DatabaseReference ref, TreeMap<String, Object> oldChildren, TreeMap<String, Object> newChildren){
+        ArrayList<Change> changes = new ArrayList<>();
+        for(Map.Entry<String, Object> child : oldChildren.entrySet()){
+            if(!newChildren.containsKey(child.getKey())) changes.add(change(ref, child.getKey(), child.getValue(), null, newChildren));
+        }
+        for(Map.Entry<String, Object> child : newChildren.entrySet()){
+            Change change = change(ref, child.getKey(), oldChildren.get(child.getKey()), child.getValue(), newChildren);
+            if(change != null) changes.add(change);
+        }
+        return changes;
+    }
+
+    @Nullable
+    private static Change change(DatabaseReference ref, String key, @Nullable Object before, @Nullable Object after,
+                                 TreeMap<String, Object> newChildren){
+        if(before == after || (before != null && before.equals(after))) return null;
+
+        if(after == null) return new Change(Event.CHILD_REMOVED, new DataSnapshot(ref, key, before), null);
+
+        int type = before == null ? Event.CHILD_ADDED : Event.CHILD_CHANGED;
+        return new Change(type, new DataSnapshot(ref, key, after), newChildren.lowerKey(key));
+    }
+
+    /**
+     * @return true if {@param segments} is {@param path} or one of its ancestors or descendants
+     */
+    private static boolean isUnder(String[] segments, String path, int depth){
+        String[] pathSegments = segments(path);
+        int common = Math.min(segments.length, depth);
+        for(int i = 0; i < common; i++){
+            if(!segments[i].equals(pathSegments[i])) return false;
+        }
+        return true;
+    }
+
+    private DataSnapshot snapshot(String path, @Nullable Object value){
+        DatabaseReference ref = new DatabaseReference(this, path);
+        return new DataSnapshot(ref.getParent(), ref.getKey(), value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TreeMap<String, Object> children(@Nullable Object value){
+        return value instanceof TreeMap ? (TreeMap<String, Object>) value : new TreeMap<String, Object>(KEY_ORDER);
+    }
+
+    /**
+     * @return what a query with {@param params} sees of {@param value}: the selected children, null if there are none
+     */
+    @Nullable
+    private static Object filter(@Nullable Object value, QueryParams params){
+        if(params.isDefault() || !(value instanceof TreeMap)) return value;
+
+        TreeMap<String, Object> selected = params.filter(children(value));
+        return selected.isEmpty() ? null : selected;
+    }
+
+    @Nullable
+    static Object valueAt(@Nullable Object node, String path){
+        if(path.isEmpty()) return node;
+
+        for(String segment : segments(path)){
+            if(!(node instanceof TreeMap)) return null;
+            node = ((TreeMap<?, ?>) node).get(segment);
+        }
+        return node;
+    }
+
+    /**
+     * @return copy of {@param node} with {@param value} at the path, shares every untouched subtree; null if it became empty
+     */
+    @Nullable
+    static Object setAt(@Nullable Object node, String[] segments, int depth, @Nullable Object value){
+        if(depth == segments.length) return value;
+
+        TreeMap<String, Object> children = children(node);
+        Object child = children.get(segments[depth]);
+        Object newChild = setAt(child, segments, depth + 1, value);
+        if(newChild == child && node instanceof TreeMap) return node;
+
+        TreeMap<String, Object> copy = new TreeMap<>(children);
+        if(newChild == null) copy.remove(segments[depth]);
+        else copy.put(segments[depth], newChild);
+
+        return copy.isEmpty() ? null : copy;
+    }
+
+    /**
+     * converts a written value to the tree's representation: objects and arrays become TreeMaps, ints and floats
+     * become longs and doubles, empty objects are removed
+     */
+    @Nullable
+    static Object normalize(@Nullable Object value){
+        if(value == null || value instanceof String || value instanceof Boolean
+                || value instanceof Long || value instanceof Double) return value;
+
+        if(value instanceof Integer || value instanceof Short || value instanceof Byte) return ((Number) value).longValue();
+        if(value instanceof Number) return ((Number) value).doubleValue();
+
+        if(value instanceof Map){
+            TreeMap<String, Object> node = new TreeMap<>(KEY_ORDER);
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()){
+                Object child = normalize(entry.getValue());
+                if(child != null) node.put(String.valueOf(entry.getKey()), child);
+            }
+            return node.isEmpty() ? null : node;
+        }
+
+        if(value instanceof List){
+            TreeMap<String, Object> node = new TreeMap<>(KEY_ORDER);
+            List<?> list = (List<?>) value;
+            for(int i = 0; i < list.size(); i++){
+                Object child = normalize(list.get(i));
+                if(child != null) node.put(String.valueOf(i), child);
+            }
+            return node.isEmpty() ? null : node;
+        }
+
+        throw new DatabaseException("Unsupported value type " + value.getClass().getName()
+                + ", write Maps, Lists, Strings, Booleans or Numbers");
+    }
+
+    static String[] segments(String path){
+        String normalized = DatabaseReference.normalize(path);
+        return normalized.isEmpty() ? new String[0] : normalized.split("/");
+    }
+
+    private static boolean isIntKey(String key){
+        int length = key.length();
+        if(length == 0 || length > 10) return false;
+
+        int start = key.charAt(0) == '-' ? 1 : 0;
+        if(start == length) return false;
+        for(int i = start; i < length; i++){
+            char c = key.charAt(i);
+            if(c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    /**
+     * a listener added at a path
+     */
+    static final class Registration {
+        final String path;
+        final QueryParams params;
+        @Nullable
+        final ValueEventListener valueListener;
+        @Nullable
+        final ChildEventListener childListener;
+        /**
+         * listener for a single value event, never registered
+         */
+        final boolean single;
+        volatile boolean active = true;
+
+        Registration(String path, QueryParams params, @Nullable ValueEventListener valueListener,
+                     @Nullable ChildEventListener childListener, boolean single) {
+            this.path = path;
+            this.params = params;
+            this.valueListener = valueListener;
+            this.childListener = childListener;
+            this.single = single;
+        }
+    }
+
+    /**
+     * a changed child of a location
+     */
+    static final class Change {
+        final int type;
+        final DataSnapshot snapshot;
+        @Nullable
+        final String previousChildName;
+
+        Change(int type, DataSnapshot snapshot, @Nullable String previousChildName) {
+            this.type = type;
+            this.snapshot = snapshot;
+            this.previousChildName = previousChildName;
+        }
+    }
+
+    /**
+     * an event for one listener, dropped if the listener was removed before it is raised
+     */
+    static final class Event {
+        static final int VALUE = 0;
+        static final int CHILD_ADDED = 1;
+        static final int CHILD_CHANGED = 2;
+        static final int CHILD_REMOVED = 3;
+        static final int[] CHILD_ORDER = {CHILD_REMOVED, CHILD_ADDED, CHILD_CHANGED};
+
+        final Registration registration;
+        final int type;
+        final DataSnapshot snapshot;
+        @Nullable
+        final String previousChildName;
+
+        Event(Registration registration, int type, DataSnapshot snapshot, @Nullable String previousChildName) {
+            this.registration = registration;
+            this.type = type;
+            this.snapshot = snapshot;
+            this.previousChildName = previousChildName;
+        }
+
+        void raise(){
+            if(!registration.active) return;
+
+            switch (type){
+                case VALUE:
+                    registration.valueListener.onDataChange(snapshot);
+                    break;
+                case CHILD_ADDED:
+                    registration.childListener.onChildAdded(snapshot, previousChildName);
+                    break;
+                case CHILD_CHANGED:
+                    registration.childListener.onChildChanged(snapshot, previousChildName);
+                    break;
+                case CHILD_REMOVED:
+                    registration.childListener.onChildRemoved(snapshot);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.google.firebase.database;
+
+/**
+ * JVM stand-in for the Realtime Database listener
+ */
+
+public interface ValueEventListener {
+    void onDataChange(DataSnapshot snapshot);
+
+    void onCancelled(DatabaseError error);
+}
@@ -0,0 +1,42 @@
+package com.google.firebase.database.core.view;
+
+/**
+ * JVM stand-in, identifies a query by its path and parameters
+ */
+
+public final class QuerySpec {
+    private final String path;
+    private final String params;
+
+    public QuerySpec(String path, String params) {
+        this.path = path;
+        this.params = params;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getParams() {
+        return params;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof QuerySpec)) return false;
+
+        QuerySpec other = (QuerySpec) o;
+        return path.equals(other.path) && params.equals(other.params);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * path.hashCode() + params.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path + ":" + params;
+    }
+}
@@ -0,0 +1,69 @@
+package online.devliving.rxfirebase2;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableObserver;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Completes when a Task succeeds, ignoring its result
+ */
+
+final class CompletableTask extends Completable {
+    final Task<?> task;
+    @Nullable
+    final Executor executor;
+
+    CompletableTask(Task<?> task, @Nullable Executor executor) {
+        this.task = task;
+        this.executor = executor;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void subscribeActual(CompletableObserver observer) {
+        Listener listener = new Listener(observer);
+        observer.onSubscribe(listener);
+        if(listener.isDisposed()) return;
+
+        Task<Object> t = (Task<Object>) task;
+        if(executor == null) t.addOnCompleteListener(listener);
+        else t.addOnCompleteListener(executor, listener);
+    }
+
+    /**
+     * A Task listener can't be removed, disposing only lets go of the observer
+     */
+    static final class Listener extends AtomicReference<CompletableObserver> implements OnCompleteListener<Object>, Disposable {
+        Listener(CompletableObserver observer) {
+            super(observer);
+        }
+
+        @Override
+        public void onComplete(@NonNull Task<Object> task) {
+            CompletableObserver observer = getAndSet(null);
+            if(observer == null) return;
+
+            if(task.isSuccessful()) observer.onComplete();
+            else observer.onError(RxGMSTask.errorOf(task));
+        }
+
+        @Override
+        public void dispose() {
+            lazySet(null);
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return get() == null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package online.devliving.rxfirebase2;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+
+import org.reactivestreams.Subscriber;
+
+import io.reactivex.Flowable;
+import io.reactivex.internal.queue.SpscLinkedArrayQueue;
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import online.devliving.rxfirebase.SnapshotMapper;
+
+/**
+ * Emits the child events of a query. Events are buffered while there is no demand, every one of them is needed to
+ * rebuild the children in order; use {@code onBackpressureDrop()} and the likes downstream to bound it.
+ * @param <T> type of the mapped values
+ */
+
+final class FlowableChildEvents<T> extends Flowable<FIRChildEvent<T>> {
+    final Query query;
+    /**
+     * null to emit the snapshots themselves
+     */
+    @Nullable
+    final SnapshotMapper<T> mapper;
+
+    FlowableChildEvents(Query query, @Nullable SnapshotMapper<T> mapper) {
+        this.query = query;
+        this.mapper = mapper;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super FIRChildEvent<T>> s) {
+        new ChildEventSubscription<T>(s, query, mapper).start();
+    }
+
+    static final class ChildEventSubscription<T> extends ListenerSubscription<FIRChildEvent<T>> implements ChildEventListener {
+        @Nullable
+        final SnapshotMapper<T> mapper;
+        final SpscLinkedArrayQueue<FIRChildEvent<DataSnapshot>> queue = new SpscLinkedArrayQueue<>(bufferSize());
+
+        ChildEventSubscription(Subscriber<? super FIRChildEvent<T>> actual, Query query, @Nullable SnapshotMapper<T> mapper) {
+            super(actual, query);
+            this.mapper = mapper;
+        }
+
+        @Override
+        void attach() {
+            query.addChildEventListener(this);
+        }
+
+        @Override
+        void detach() {
+            query.removeEventListener(this);
+        }
+
+        void onEvent(DataSnapshot dataSnapshot, @Nullable String previousChildName, FIRChildEvent.ChildEventType type){
+            if(cancelled) return;
+
+            queue.offer(new FIRChildEvent<DataSnapshot>(dataSnapshot.getKey(), dataSnapshot, previousChildName, type));
+            drain();
+        }
+
+        @Override
+        public void onChildAdded(DataSnapshot dataSnapshot, String s) {
+            onEvent(dataSnapshot, s, FIRChildEvent.ChildEventType.ADD);
+        }
+
+        @Override
+        public void onChildChanged(DataSnapshot dataSnapshot, String s) {
+            onEvent(dataSnapshot, s, FIRChildEvent.ChildEventType.CHANGE);
+        }
+
+        @Override
+        public void onChildRemoved(DataSnapshot dataSnapshot) {
+            onEvent(dataSnapshot, null, FIRChildEvent.ChildEventType.REMOVE);
+        }
+
+        @Override
+        public void onChildMoved(DataSnapshot dataSnapshot, String s) {
+            onEvent(dataSnapshot, s, FIRChildEvent.ChildEventType.MOVE);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError databaseError) {
+            onDatabaseError(databaseError);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Nullable
+        @Override
+        public FIRChildEvent<T> poll() throws Exception {
+            FIRChildEvent<DataSnapshot> event = queue.poll();
+            if(event == null || mapper == null) return (FIRChildEvent<T>) (FIRChildEvent<?>) event;
+
+            return new FIRChildEvent<T>(event.getKey(), mapper.fromSnapshot(event.getValue()), event.getChildName(), event.getType());
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package online.devliving.rxfirebase2;
+
+import android.support.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import org.reactivestreams.Subscriber;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Flowable;
+import online.devliving.rxfirebase.SnapshotMapper;
+
+/**
+ * Emits the value of a query every time it changes. Only the latest snapshot is kept while there is no demand,
+ * an older value of the same query is never worth delivering. Snapshots without a value are skipped.
+ * @param <T> type of the mapped values
+ */
+
+final class FlowableValueEvents<T> extends Flowable<T> {
+    final Query query;
+    /**
+     * null to emit the snapshots themselves
+     */
+    @Nullable
+    final SnapshotMapper<T> mapper;
+
+    FlowableValueEvents(Query query, @Nullable SnapshotMapper<T> mapper) {
+        this.query = query;
+        this.mapper = mapper;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        new ValueEventSubscription<T>(s, query, mapper).start();
+    }
+
+    static final class ValueEventSubscription<T> extends ListenerSubscription<T> implements ValueEventListener {
+        @Nullable
+        final SnapshotMapper<T> mapper;
+        final AtomicReference<DataSnapshot> latest = new AtomicReference<>();
+
+        ValueEventSubscription(Subscriber<? super T> actual, Query query, @Nullable SnapshotMapper<T> mapper) {
+            super(actual, query);
+            this.mapper = mapper;
+        }
+
+        @Override
+        void attach() {
+            query.addValueEventListener(this);
+        }
+
+        @Override
+        void detach() {
+            query.removeEventListener(this);
+        }
+
+        @Override
+        public void onDataChange(DataSnapshot dataSnapshot) {
+            latest.set(dataSnapshot);
+            drain();
+        }
+
+        @Override
+        public void onCancelled(DatabaseError databaseError) {
+            onDatabaseError(databaseError);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Nullable
+        @Override
+        public T poll() throws Exception {
+            for(;;){
+                DataSnapshot snapshot = latest.getAndSet(null);
+                if(snapshot == null) return null;
+
+                T value = mapper == null ? (T) snapshot : mapper.fromSnapshot(snapshot);
+                if(value != null) return value;
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return latest.get() == null;
+        }
+
+        @Override
+        public void clear() {
+            latest.lazySet(null);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package online.devliving.rxfirebase2;
+
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+
+import org.reactivestreams.Subscriber;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.internal.fuseable.QueueSubscription;
+import io.reactivex.internal.util.BackpressureHelper;
+import io.reactivex.internal.subscriptions.SubscriptionHelper;
+
+/**
+ * Base of the Subscriptions that are also the Firebase listener of a Flowable. Events are queued by the subclass
+ * and drained respecting downstream demand.
+ *
+ * Supports async queue fusion: a fusing consumer like {@code observeOn} polls the queue directly instead of copying
+ * events into a queue of its own. Subclasses map snapshots in {@link #poll()}, so with a fused {@code observeOn}
+ * the mapping runs on that Scheduler rather than the Firebase callback thread.
+ *
+ * Firebase calls the listener from a single thread, the queues are single producer.
+ * @param <T> type of the emitted values
+ */
+
+abstract class ListenerSubscription<T> extends AtomicInteger implements QueueSubscription<T> {
+    final Subscriber<? super T> actual;
+    final Query query;
+    final AtomicLong requested = new AtomicLong();
+
+    volatile boolean cancelled;
+    volatile boolean done;
+    Throwable error;
+
+    boolean outputFused;
+
+    ListenerSubscription(Subscriber<? super T> actual, Query query) {
+        this.actual = actual;
+        this.query = query;
+    }
+
+    /**
+     * adds the listener to the query
+     */
+    abstract void attach();
+
+    /**
+     * removes the listener from the query
+     */
+    abstract void detach();
+
+    /**
+     * subscribes {@link #actual} to this, then starts listening unless it cancelled right away
+     */
+    final void start(){
+        actual.onSubscribe(this);
+        if(cancelled) return;
+
+        attach();
+        // cancel() might have raced with attach()
+        if(cancelled) detach();
+    }
+
+    final void onDatabaseError(DatabaseError databaseError){
+        error = databaseError.toException();
+        done = true;
+        drain();
+    }
+
+    @Override
+    public final void request(long n) {
+        if(SubscriptionHelper.validate(n)){
+            BackpressureHelper.add(requested, n);
+            drain();
+        }
+    }
+
+    @Override
+    public final void cancel() {
+        if(cancelled) return;
+        cancelled = true;
+        detach();
+
+        if(!outputFused && getAndIncrement() == 0) clear();
+    }
+
+    @Override
+    public final int requestFusion(int mode) {
+        if((mode & ASYNC) != 0){
+            outputFused = true;
+            return ASYNC;
+        }
+        return NONE;
+    }
+
+    @Override
+    public final boolean offer(T value) {
+        throw new UnsupportedOperationException("Should not be called!");
+    }
+
+    @Override
+    public final boolean offer(T v1, T v2) {
+        throw new UnsupportedOperationException("Should not be called!");
+    }
+
+    final void drain(){
+        if(getAndIncrement() != 0) return;
+
+        if(outputFused) drainFused();
+        else drainNormal();
+    }
+
+    private void drainFused(){
+        int missed = 1;
+
+        for(;;){
+            if(cancelled) return;
+
+            boolean d = done;
+            // in fused mode onNext only signals that the consumer should poll
+            actual.onNext(null);
+
+            if(d){
+                Throwable e = error;
+                if(e != null) actual.onError(e);
+                else actual.onComplete();
+                return;
+            }
+
+            missed = addAndGet(-missed);
+            if(missed == 0) break;
+        }
+    }
+
+    private void drainNormal(){
+        int missed = 1;
+
+        for(;;){
+            long r = requested.get();
+            long e = 0L;
+
+            while(e != r){
+                boolean d = done;
+                T value;
+                try {
+                    value = poll();
+                } catch (Throwable ex) {
+                    Exceptions.throwIfFatal(ex);
+                    cancel();
+                    actual.onError(ex);
+                    return;
+                }
+
+                boolean empty = value == null;
+                if(checkTerminated(d, empty)) return;
+                if(empty) break;
+
+                actual.onNext(value);
+                e++;
+            }
+
+            if(e == r && checkTerminated(done, isEmpty())) return;
+
+            if(e != 0L && r != Long.MAX_VALUE) requested.addAndGet(-e);
+
+            missed = addAndGet(-missed);
+            if(missed == 0) break;
+        }
+    }
+
+    private boolean checkTerminated(boolean d, boolean empty){
+        if(cancelled){
+            clear();
+            return true;
+        }
+
+        if(d){
+            Throwable e = error;
+            if(e != null){
+                clear();
+                actual.onError(e);
+                return true;
+            }
+            if(empty){
+                actual.onComplete();
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
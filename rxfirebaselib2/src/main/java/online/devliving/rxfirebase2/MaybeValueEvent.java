@@ -0,0 +1,85 @@
+package online.devliving.rxfirebase2;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Maybe;
+import io.reactivex.MaybeObserver;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.exceptions.Exceptions;
+import online.devliving.rxfirebase.SnapshotMapper;
+
+/**
+ * Emits the mapped value of a query once, completes without a value if there is none
+ * @param <T> type of the mapped value
+ */
+
+final class MaybeValueEvent<T> extends Maybe<T> {
+    final Query query;
+    final SnapshotMapper<T> mapper;
+
+    MaybeValueEvent(Query query, SnapshotMapper<T> mapper) {
+        this.query = query;
+        this.mapper = mapper;
+    }
+
+    @Override
+    protected void subscribeActual(MaybeObserver<? super T> observer) {
+        Listener<T> listener = new Listener<T>(observer, query, mapper);
+        observer.onSubscribe(listener);
+        if(!listener.isDisposed()) query.addListenerForSingleValueEvent(listener);
+    }
+
+    /**
+     * holds the observer until the value arrives or it is disposed
+     * @param <T>
+     */
+    static final class Listener<T> extends AtomicReference<MaybeObserver<? super T>> implements ValueEventListener, Disposable {
+        final Query query;
+        final SnapshotMapper<T> mapper;
+
+        Listener(MaybeObserver<? super T> observer, Query query, SnapshotMapper<T> mapper) {
+            super(observer);
+            this.query = query;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void onDataChange(DataSnapshot dataSnapshot) {
+            MaybeObserver<? super T> observer = getAndSet(null);
+            if(observer == null) return;
+
+            T value;
+            try {
+                value = mapper.fromSnapshot(dataSnapshot);
+            } catch (Throwable e) {
+                Exceptions.throwIfFatal(e);
+                observer.onError(e);
+                return;
+            }
+
+            if(value == null) observer.onComplete();
+            else observer.onSuccess(value);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError databaseError) {
+            MaybeObserver<? super T> observer = getAndSet(null);
+            if(observer != null) observer.onError(databaseError.toException());
+        }
+
+        @Override
+        public void dispose() {
+            if(getAndSet(null) != null) query.removeEventListener(this);
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return get() == null;
+        }
+    }
+}
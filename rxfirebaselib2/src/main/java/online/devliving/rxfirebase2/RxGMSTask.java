@@ -0,0 +1,102 @@
+package online.devliving.rxfirebase2;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+
+/**
+ * Create RxJava 2 sources for {@see com.google.android.gms.tasks.Task}
+ */
+
+public final class RxGMSTask {
+    /**
+     * Runs the completion listener on the thread that completes the task, or the subscribing thread if the task
+     * is already complete, instead of posting it to the main thread
+     */
+    public static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private RxGMSTask(){}
+
+    /**
+     * returns Maybe that emits the result of {@param task} or completes if the result is null
+     * @param task
+     * @param <T>
+     * @return
+     */
+    public static <T> Maybe<T> maybe(Task<T> task){
+        return maybe(task, null);
+    }
+
+    /**
+     * returns Maybe that emits the result of {@param task} or completes if the result is null
+     * @param task
+     * @param executor executor for the completion listener, null for the main thread
+     * @param <T>
+     * @return
+     */
+    public static <T> Maybe<T> maybe(Task<T> task, @Nullable Executor executor){
+        return new MaybeTask<>(task, executor);
+    }
+
+    /**
+     * returns Single that emits the result of {@param task}, use with tasks that always have a result
+     * @param task
+     * @param <T>
+     * @return
+     */
+    public static <T> Single<T> single(Task<T> task){
+        return single(task, null);
+    }
+
+    /**
+     * returns Single that emits the result of {@param task}, use with tasks that always have a result
+     * @param task
+     * @param executor executor for the completion listener, null for the main thread
+     * @param <T>
+     * @return
+     */
+    public static <T> Single<T> single(Task<T> task, @Nullable Executor executor){
+        return new SingleTask<>(task, executor);
+    }
+
+    /**
+     * returns Completable that completes when {@param task} succeeds, use for writes e.g {@code ref.setValue(value)}
+     * @param task
+     * @return
+     */
+    public static Completable completable(Task<?> task){
+        return completable(task, null);
+    }
+
+    /**
+     * returns Completable that completes when {@param task} succeeds, use for writes e.g {@code ref.setValue(value)}
+     * @param task
+     * @param executor executor for the completion listener, null for the main thread
+     * @return
+     */
+    public static Completable completable(Task<?> task, @Nullable Executor executor){
+        return new CompletableTask(task, executor);
+    }
+
+    /**
+     * @param task an unsuccessful task
+     * @return the failure of {@param task}
+     */
+    static Throwable errorOf(Task<?> task){
+        Exception e = task.getException();
+        return e != null ? e : new CancellationException("Task was cancelled");
+    }
+}
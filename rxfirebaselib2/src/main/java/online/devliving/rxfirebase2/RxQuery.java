@@ -0,0 +1,187 @@
+package online.devliving.rxfirebase2;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import online.devliving.rxfirebase.RxQuery.FIRChildEvent;
+import online.devliving.rxfirebase.SnapshotMapper;
+import online.devliving.rxfirebase.SnapshotMappers;
+
+/**
+ * RxJava 2 sources for FireBase Query i.e DatabaseReference
+ *
+ * The streams support async fusion, snapshots are mapped by the consumer: with {@code observeOn(scheduler)} right
+ * after them the mapping runs on that Scheduler instead of the main thread. RxJava 2 doesn't allow null values,
+ * snapshots that map to null are skipped; use {@link #observeRef(Query)} to see that a value was removed.
+ */
+
+public final class RxQuery {
+
+    private RxQuery(){}
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return Maybe that emits the value of the {@param query} or completes if there is none
+     */
+    public static <T> Maybe<T> observeSingleValue(Query query, Class<T> clazz){
+        return observeSingleValue(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Maybe that emits the value of the {@param query} or completes if there is none
+     */
+    public static <T> Maybe<T> observeSingleValue(Query query, SnapshotMapper<T> mapper){
+        return new MaybeValueEvent<>(query, mapper);
+    }
+
+    /**
+     * @param query
+     * @return Single that emits the snapshot of the {@param query} once
+     */
+    public static Single<DataSnapshot> observeRefSingle(Query query){
+        return new SingleValueEvent(query);
+    }
+
+    /**
+     * Only the latest snapshot is kept while the subscriber isn't requesting
+     * @param query
+     * @return Flowable that emits the snapshot of the {@param query} every time it changes
+     */
+    public static Flowable<DataSnapshot> observeRef(Query query){
+        return new FlowableValueEvents<>(query, null);
+    }
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole.
+     * Only the latest value is kept while the subscriber isn't requesting.
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return Flowable that emits the value of the {@param query} every time it changes
+     */
+    public static <T> Flowable<T> observeValue(Query query, Class<T> clazz){
+        return observeValue(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * use when the reference/query points to an object; if it points to a list the whole list will be emitted as a whole.
+     * Only the latest value is kept while the subscriber isn't requesting.
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Flowable that emits the value of the {@param query} every time it changes
+     */
+    public static <T> Flowable<T> observeValue(Query query, SnapshotMapper<T> mapper){
+        return new FlowableValueEvents<>(query, mapper);
+    }
+
+    /**
+     * use when the reference/query points to a list
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return Flowable that emits the children of the {@param query} one by one every time there is a value change
+     */
+    public static <T> Flowable<T> observeValues(Query query, Class<T> clazz){
+        return observeValues(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * use when the reference/query points to a list
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Flowable that emits the children of the {@param query} one by one every time there is a value change
+     */
+    public static <T> Flowable<T> observeValues(Query query, SnapshotMapper<T> mapper){
+        return observeRef(query).flatMapIterable(children(mapper));
+    }
+
+    /**
+     * use when the reference/query points to a list
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return Flowable that emits the children of the {@param query} one by one and completes
+     */
+    public static <T> Flowable<T> observeValuesSingle(Query query, Class<T> clazz){
+        return observeValuesSingle(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * use when the reference/query points to a list
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return Flowable that emits the children of the {@param query} one by one and completes
+     */
+    public static <T> Flowable<T> observeValuesSingle(Query query, SnapshotMapper<T> mapper){
+        return observeRefSingle(query).flattenAsFlowable(children(mapper));
+    }
+
+    /**
+     * Observe child value change events. Check {@see FIRChildEvent.type} for the type of event.
+     * Events are buffered while the subscriber isn't requesting.
+     * @param query
+     * @return
+     */
+    public static Flowable<FIRChildEvent<DataSnapshot>> observeChild(Query query){
+        return new FlowableChildEvents<DataSnapshot>(query, null);
+    }
+
+    /**
+     * Observe child value change events. Check {@see FIRChildEvent.type} for the type of event.
+     * Events are buffered while the subscriber isn't requesting.
+     * @param query
+     * @param clazz
+     * @param <T>
+     * @return
+     */
+    public static <T> Flowable<FIRChildEvent<T>> observeChildValue(Query query, Class<T> clazz){
+        return observeChildValue(query, SnapshotMappers.of(clazz));
+    }
+
+    /**
+     * Observe child value change events. Check {@see FIRChildEvent.type} for the type of event.
+     * Events are buffered while the subscriber isn't requesting.
+     * @param query
+     * @param mapper
+     * @param <T>
+     * @return
+     */
+    public static <T> Flowable<FIRChildEvent<T>> observeChildValue(Query query, SnapshotMapper<T> mapper){
+        return new FlowableChildEvents<>(query, mapper);
+    }
+
+    /**
+     * @param mapper
+     * @param <T>
+     * @return function that maps the children of a snapshot, skipping the ones that map to null
+     */
+    static <T> Function<DataSnapshot, Iterable<T>> children(final SnapshotMapper<T> mapper){
+        return new Function<DataSnapshot, Iterable<T>>() {
+            @Override
+            public Iterable<T> apply(DataSnapshot dataSnapshot) throws Exception {
+                ArrayList<T> values = new ArrayList<>((int) dataSnapshot.getChildrenCount());
+                for(DataSnapshot child : dataSnapshot.getChildren()){
+                    T value = mapper.fromSnapshot(child);
+                    if(value != null) values.add(value);
+                }
+                return values;
+            }
+        };
+    }
+}
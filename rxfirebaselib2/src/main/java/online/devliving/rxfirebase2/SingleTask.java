@@ -0,0 +1,76 @@
+package online.devliving.rxfirebase2;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Single;
+import io.reactivex.SingleObserver;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Emits the result of a Task, fails with {@link NoSuchElementException} if the result is null
+ * @param <T> type of the result
+ */
+
+final class SingleTask<T> extends Single<T> {
+    final Task<T> task;
+    @Nullable
+    final Executor executor;
+
+    SingleTask(Task<T> task, @Nullable Executor executor) {
+        this.task = task;
+        this.executor = executor;
+    }
+
+    @Override
+    protected void subscribeActual(SingleObserver<? super T> observer) {
+        Listener<T> listener = new Listener<T>(observer);
+        observer.onSubscribe(listener);
+        if(listener.isDisposed()) return;
+
+        if(executor == null) task.addOnCompleteListener(listener);
+        else task.addOnCompleteListener(executor, listener);
+    }
+
+    /**
+     * A Task listener can't be removed, disposing only lets go of the observer
+     * @param <T>
+     */
+    static final class Listener<T> extends AtomicReference<SingleObserver<? super T>> implements OnCompleteListener<T>, Disposable {
+        Listener(SingleObserver<? super T> observer) {
+            super(observer);
+        }
+
+        @Override
+        public void onComplete(@NonNull Task<T> task) {
+            SingleObserver<? super T> observer = getAndSet(null);
+            if(observer == null) return;
+
+            if(task.isSuccessful()){
+                T result = task.getResult();
+                if(result == null) observer.onError(new NoSuchElementException("Task completed without a result"));
+                else observer.onSuccess(result);
+            }
+            else{
+                observer.onError(RxGMSTask.errorOf(task));
+            }
+        }
+
+        @Override
+        public void dispose() {
+            lazySet(null);
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return get() == null;
+        }
+    }
+}
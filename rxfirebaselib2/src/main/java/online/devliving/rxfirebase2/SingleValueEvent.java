@@ -0,0 +1,65 @@
+package online.devliving.rxfirebase2;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Single;
+import io.reactivex.SingleObserver;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Emits the value of a query once
+ */
+
+final class SingleValueEvent extends Single<DataSnapshot> {
+    final Query query;
+
+    SingleValueEvent(Query query) {
+        this.query = query;
+    }
+
+    @Override
+    protected void subscribeActual(SingleObserver<? super DataSnapshot> observer) {
+        Listener listener = new Listener(observer, query);
+        observer.onSubscribe(listener);
+        if(!listener.isDisposed()) query.addListenerForSingleValueEvent(listener);
+    }
+
+    /**
+     * holds the observer until the value arrives or it is disposed
+     */
+    static final class Listener extends AtomicReference<SingleObserver<? super DataSnapshot>> implements ValueEventListener, Disposable {
+        final Query query;
+
+        Listener(SingleObserver<? super DataSnapshot> observer, Query query) {
+            super(observer);
+            this.query = query;
+        }
+
+        @Override
+        public void onDataChange(DataSnapshot dataSnapshot) {
+            SingleObserver<? super DataSnapshot> observer = getAndSet(null);
+            if(observer != null) observer.onSuccess(dataSnapshot);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError databaseError) {
+            SingleObserver<? super DataSnapshot> observer = getAndSet(null);
+            if(observer != null) observer.onError(databaseError.toException());
+        }
+
+        @Override
+        public void dispose() {
+            if(getAndSet(null) != null) query.removeEventListener(this);
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return get() == null;
+        }
+    }
+}